@@ -0,0 +1,45 @@
+package com.nocountry.backend.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class AutomationExecutorConfig {
+
+    /**
+     * Bounded pool that runs claimed automation queue items. The scheduler never
+     * claims more rows than there are free threads, so the queue only absorbs
+     * the hand-off between claim and execution.
+     */
+    @Bean(name = "automationTaskExecutor")
+    public ThreadPoolTaskExecutor automationTaskExecutor(
+            @Value("${automation.queue.worker-threads:4}") int workerThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(workerThreads);
+        executor.setThreadNamePrefix("automation-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Runs bulk campaigns. Each node runs at most one campaign at a time, so a
+     * single thread is enough; rendering fans out to the common pool.
+     */
+    @Bean(name = "campaignTaskExecutor")
+    public ThreadPoolTaskExecutor campaignTaskExecutor() {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(1);
+        executor.setMaxPoolSize(1);
+        executor.setQueueCapacity(0);
+        executor.setThreadNamePrefix("campaign-");
+        executor.setWaitForTasksToCompleteOnShutdown(false);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,33 @@
+package com.nocountry.backend.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+import java.util.concurrent.ThreadPoolExecutor;
+
+@Configuration
+public class EmailInboundExecutorConfig {
+
+    /**
+     * Bounded pool that parses and persists inbound emails downloaded by the
+     * IMAP listener. When the queue is full the listener thread parses the
+     * email itself, which slows down further downloads instead of dropping work.
+     */
+    @Bean(name = "emailParseExecutor")
+    public ThreadPoolTaskExecutor emailParseExecutor(
+            @Value("${email.inbound.parse-threads:4}") int parseThreads,
+            @Value("${email.inbound.queue-capacity:200}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(parseThreads);
+        executor.setMaxPoolSize(parseThreads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("email-parse-");
+        executor.setRejectedExecutionHandler(new ThreadPoolExecutor.CallerRunsPolicy());
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -0,0 +1,28 @@
+package com.nocountry.backend.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class OutboundExecutorConfig {
+
+    /**
+     * Bounded pool that delivers agent-sent messages from message_outbox. The
+     * sender never claims more deliveries than there are free threads.
+     */
+    @Bean(name = "outboxSenderExecutor")
+    public ThreadPoolTaskExecutor outboxSenderExecutor(
+            @Value("${outbound.outbox.worker-threads:4}") int workerThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(workerThreads);
+        executor.setThreadNamePrefix("outbox-sender-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
@@ -49,6 +49,7 @@ public class SecurityConfiguration {
                                                 .requestMatchers(
                                                                 "/api/webhooks/whatsapp",
                                                                 "/api/media/**",
+                                                                "/api/track/**",
                                                                 "/ws/**",
                                                                 "/swagger-ui/**",
                                                                 "/swagger-ui.html",
@@ -0,0 +1,47 @@
+package com.nocountry.backend.configuration;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+
+@Configuration
+public class WhatsAppInboundExecutorConfig {
+
+    /**
+     * Bounded pool that processes queued webhook events. Like the automation
+     * pool, the dispatcher never claims more events than there are free threads.
+     */
+    @Bean(name = "whatsappInboundExecutor")
+    public ThreadPoolTaskExecutor whatsappInboundExecutor(
+            @Value("${whatsapp.inbound.worker-threads:4}") int workerThreads) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(workerThreads);
+        executor.setMaxPoolSize(workerThreads);
+        executor.setQueueCapacity(workerThreads);
+        executor.setThreadNamePrefix("whatsapp-inbound-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+
+    /**
+     * Bounded pool for inbound media downloads. When the queue is full the
+     * message stays PENDING and the periodic sweep submits it again later.
+     */
+    @Bean(name = "mediaFetchExecutor")
+    public ThreadPoolTaskExecutor mediaFetchExecutor(
+            @Value("${whatsapp.media.fetch-threads:4}") int fetchThreads,
+            @Value("${whatsapp.media.queue-capacity:100}") int queueCapacity) {
+        ThreadPoolTaskExecutor executor = new ThreadPoolTaskExecutor();
+        executor.setCorePoolSize(fetchThreads);
+        executor.setMaxPoolSize(fetchThreads);
+        executor.setQueueCapacity(queueCapacity);
+        executor.setThreadNamePrefix("media-fetch-");
+        executor.setWaitForTasksToCompleteOnShutdown(true);
+        executor.setAwaitTerminationSeconds(30);
+        executor.initialize();
+        return executor;
+    }
+}
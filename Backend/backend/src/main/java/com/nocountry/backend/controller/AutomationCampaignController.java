@@ -0,0 +1,67 @@
+package com.nocountry.backend.controller;
+
+import com.nocountry.backend.dto.AutomationCampaignDTO;
+import com.nocountry.backend.dto.CreateAutomationCampaignDTO;
+import com.nocountry.backend.dto.UpdateCampaignRateDTO;
+import com.nocountry.backend.services.AutomationCampaignService;
+import jakarta.validation.Valid;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+
+@RestController
+@RequestMapping("/api/automation-campaigns")
+@RequiredArgsConstructor
+@PreAuthorize("isAuthenticated()")
+public class AutomationCampaignController {
+
+    private final AutomationCampaignService campaignService;
+
+    // Lanza la regla sobre todos los contactos asignados
+    @PostMapping
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<AutomationCampaignDTO> start(@Valid @RequestBody CreateAutomationCampaignDTO dto) {
+        return new ResponseEntity<>(campaignService.start(dto), HttpStatus.CREATED);
+    }
+
+    @GetMapping
+    public ResponseEntity<List<AutomationCampaignDTO>> getAll() {
+        return ResponseEntity.ok(campaignService.findAll());
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<AutomationCampaignDTO> getById(@PathVariable Long id) {
+        return ResponseEntity.ok(campaignService.findById(id));
+    }
+
+    @PostMapping("/{id}/pause")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<AutomationCampaignDTO> pause(@PathVariable Long id) {
+        return ResponseEntity.ok(campaignService.pause(id));
+    }
+
+    @PostMapping("/{id}/resume")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<AutomationCampaignDTO> resume(@PathVariable Long id) {
+        return ResponseEntity.ok(campaignService.resume(id));
+    }
+
+    @PostMapping("/{id}/cancel")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<AutomationCampaignDTO> cancel(@PathVariable Long id) {
+        return ResponseEntity.ok(campaignService.cancel(id));
+    }
+
+    // Ajusta el throttling mientras la campaña corre
+    @PutMapping("/{id}/rate")
+    @PreAuthorize("hasRole('ADMIN')")
+    public ResponseEntity<AutomationCampaignDTO> updateRate(
+            @PathVariable Long id,
+            @Valid @RequestBody UpdateCampaignRateDTO dto) {
+        return ResponseEntity.ok(campaignService.updateRate(id, dto.ratePerMinute()));
+    }
+}
@@ -0,0 +1,34 @@
+package com.nocountry.backend.controller;
+
+import com.nocountry.backend.dto.AutomationDeadLetterDTO;
+import com.nocountry.backend.dto.ReplayDeadLettersDTO;
+import com.nocountry.backend.services.AutomationDeadLetterService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.security.access.prepost.PreAuthorize;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.List;
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/automation-dead-letters")
+@RequiredArgsConstructor
+public class AutomationDeadLetterController {
+
+    private final AutomationDeadLetterService deadLetterService;
+
+    @GetMapping
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public List<AutomationDeadLetterDTO> getPending(
+            @RequestParam(defaultValue = "0") int page,
+            @RequestParam(defaultValue = "50") int size) {
+        return deadLetterService.getPending(page, size);
+    }
+
+    @PostMapping("/replay")
+    @PreAuthorize("hasAuthority('ROLE_ADMIN')")
+    public Map<String, Integer> replay(@RequestBody(required = false) ReplayDeadLettersDTO dto) {
+        int replayed = deadLetterService.replay(dto != null ? dto.ids() : null);
+        return Map.of("replayed", replayed);
+    }
+}
@@ -0,0 +1,84 @@
+package com.nocountry.backend.controller;
+
+import com.nocountry.backend.enums.EmailTrackingEventType;
+import com.nocountry.backend.services.email.EmailTrackingBuffer;
+import com.nocountry.backend.services.email.EmailTrackingService;
+import jakarta.servlet.http.HttpServletRequest;
+import lombok.RequiredArgsConstructor;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+
+/**
+ * Public endpoints hit by tracked emails. They only validate the signature
+ * and hand the hit to {@link EmailTrackingBuffer}; nothing touches the
+ * database on the request thread.
+ */
+@RestController
+@RequestMapping("/api/track")
+@RequiredArgsConstructor
+public class EmailTrackingController {
+
+    // GIF transparente de 1x1
+    private static final byte[] PIXEL = Base64.getDecoder()
+            .decode("R0lGODlhAQABAIAAAAAAAP///yH5BAEAAAAALAAAAAABAAEAAAIBRAA7");
+
+    private final EmailTrackingService trackingService;
+    private final EmailTrackingBuffer trackingBuffer;
+
+    @GetMapping("/open/{emailLogId}/{signature}.gif")
+    public ResponseEntity<byte[]> open(
+            @PathVariable Long emailLogId,
+            @PathVariable String signature,
+            HttpServletRequest request) {
+        // Con firma inválida igual se devuelve la imagen, para no romper el email
+        if (trackingService.isValidOpen(emailLogId, signature)) {
+            trackingBuffer.record(EmailTrackingEventType.OPEN, emailLogId, null,
+                    request.getRemoteAddr(), request.getHeader(HttpHeaders.USER_AGENT));
+        }
+        return ResponseEntity.ok()
+                .cacheControl(CacheControl.noStore())
+                .contentType(MediaType.IMAGE_GIF)
+                .body(PIXEL);
+    }
+
+    @GetMapping("/click/{emailLogId}/{signature}")
+    public ResponseEntity<Void> click(
+            @PathVariable Long emailLogId,
+            @PathVariable String signature,
+            @RequestParam("u") String target,
+            HttpServletRequest request) {
+        // Sin firma válida no se redirige: evita un open redirect
+        if (!trackingService.isValidClick(emailLogId, target, signature)) {
+            return ResponseEntity.status(HttpStatus.BAD_REQUEST).build();
+        }
+        trackingBuffer.record(EmailTrackingEventType.CLICK, emailLogId, target,
+                request.getRemoteAddr(), request.getHeader(HttpHeaders.USER_AGENT));
+        return ResponseEntity.status(HttpStatus.FOUND)
+                .cacheControl(CacheControl.noStore())
+                .header(HttpHeaders.LOCATION, toAsciiUrl(target))
+                .build();
+    }
+
+    /**
+     * Percent-encodes non-ASCII characters (the header is sent as ISO-8859-1),
+     * leaving the rest of the URL, including existing escapes, untouched.
+     */
+    private static String toAsciiUrl(String url) {
+        StringBuilder out = new StringBuilder(url.length());
+        for (byte b : url.getBytes(StandardCharsets.UTF_8)) {
+            if (b >= 0x21 && b < 0x7F) {
+                out.append((char) b);
+            } else {
+                out.append('%').append(String.format("%02X", b & 0xFF));
+            }
+        }
+        return out.toString();
+    }
+}
@@ -13,7 +13,6 @@ import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.net.MalformedURLException;
-import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Map;
 
@@ -73,22 +72,14 @@ public class MediaController {
     public ResponseEntity<Resource> serveMedia(@PathVariable String filename) {
         try {
             Path filePath = mediaStorageService.getFilePath(filename);
-
-            if (!Files.exists(filePath)) {
-                return ResponseEntity.notFound().build();
-            }
-
             Resource resource = new UrlResource(filePath.toUri());
 
-            if (!resource.exists() || !resource.isReadable()) {
+            if (!resource.isReadable()) {
                 return ResponseEntity.notFound().build();
             }
 
-            // Determine content type
-            String contentType = Files.probeContentType(filePath);
-            if (contentType == null) {
-                contentType = "application/octet-stream";
-            }
+            // Content type comes from media_object metadata, not from probing the file
+            String contentType = mediaStorageService.getContentType(filename);
 
             return ResponseEntity.ok()
                     .contentType(MediaType.parseMediaType(contentType))
@@ -99,9 +90,6 @@ public class MediaController {
         } catch (MalformedURLException e) {
             log.error("Invalid file path: {}", filename, e);
             return ResponseEntity.badRequest().build();
-        } catch (IOException e) {
-            log.error("Error reading file: {}", filename, e);
-            return ResponseEntity.internalServerError().build();
         }
     }
 
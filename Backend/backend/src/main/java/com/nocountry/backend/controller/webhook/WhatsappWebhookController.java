@@ -1,22 +1,32 @@
 package com.nocountry.backend.controller.webhook;
 
-import com.nocountry.backend.services.whatsapp.WhatsAppApiService;
+import com.nocountry.backend.exceptions.WebhookPayloadTooLargeException;
+import com.nocountry.backend.exceptions.WebhookSignatureException;
+import com.nocountry.backend.services.whatsapp.WebhookSignatureVerifier;
 import com.nocountry.backend.services.whatsapp.WhatsAppConfigService;
 import com.nocountry.backend.services.whatsapp.WhatsAppConfigService.WhatsAppCredentials;
+import com.nocountry.backend.services.whatsapp.WhatsAppInboundQueue;
+import com.nocountry.backend.services.whatsapp.WhatsAppInboundWorker;
+import jakarta.servlet.http.HttpServletRequest;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
-import java.util.Map;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
 
 @RestController
 @RequestMapping("/api/webhooks/whatsapp")
 @RequiredArgsConstructor
+@Slf4j
 public class WhatsappWebhookController {
 
-    private final WhatsAppApiService whatsAppApiService;
+    private final WhatsAppInboundQueue inboundQueue;
+    private final WhatsAppInboundWorker inboundWorker;
     private final WhatsAppConfigService configService;
+    private final WebhookSignatureVerifier signatureVerifier;
 
     // ==========================================
     // 1. VERIFICACIÓN DE WEBHOOK (GET)
@@ -49,12 +59,28 @@ public class WhatsappWebhookController {
     // ==========================================
 
     @PostMapping
-    public ResponseEntity<String> receiveMessage(@RequestBody Map<String, Object> payload) {
+    public ResponseEntity<String> receiveMessage(
+            HttpServletRequest request,
+            @RequestHeader(value = "X-Hub-Signature-256", required = false) String signature) throws IOException {
 
-        // La validación de JSON y la lógica de negocio se delega al servicio de la API
-        whatsAppApiService.processInboundWebhook(payload);
+        // El body se lee una sola vez, verificando la firma HMAC mientras se lee
+        byte[] body;
+        try {
+            body = signatureVerifier.readVerified(request.getInputStream(), signature, request.getContentLength());
+        } catch (WebhookSignatureException e) {
+            log.warn("Webhook de WhatsApp rechazado: {}", e.getMessage());
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.FORBIDDEN);
+        } catch (WebhookPayloadTooLargeException e) {
+            log.warn("Webhook de WhatsApp rechazado: {}", e.getMessage());
+            return new ResponseEntity<>("Error: " + e.getMessage(), HttpStatus.PAYLOAD_TOO_LARGE);
+        }
+
+        // Solo se persiste el payload crudo; el procesamiento es asíncrono
+        // (WhatsAppInboundWorker), así Meta recibe el 200 sin esperar DB ni media
+        inboundQueue.enqueue(new String(body, StandardCharsets.UTF_8));
+        inboundWorker.wakeUp();
 
         // Meta requiere una respuesta 200 OK para confirmar la recepción
-        return ResponseEntity.ok("Message received and processed.");
+        return ResponseEntity.ok("Message received.");
     }
 }
\ No newline at end of file
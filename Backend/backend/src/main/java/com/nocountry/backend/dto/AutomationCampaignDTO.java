@@ -0,0 +1,21 @@
+package com.nocountry.backend.dto;
+
+import com.nocountry.backend.enums.CampaignStatus;
+
+import java.time.LocalDateTime;
+
+public record AutomationCampaignDTO(
+        Long id,
+        Long automationRuleId,
+        String automationRuleName,
+        CampaignStatus status,
+        Integer ratePerMinute,
+        Integer totalLeads,
+        Integer processedLeads,
+        Integer sentCount,
+        Integer failedCount,
+        String errorMessage,
+        LocalDateTime createdAt,
+        LocalDateTime startedAt,
+        LocalDateTime finishedAt
+) {}
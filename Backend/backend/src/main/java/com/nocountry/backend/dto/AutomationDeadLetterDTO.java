@@ -0,0 +1,18 @@
+package com.nocountry.backend.dto;
+
+import com.nocountry.backend.enums.ActionType;
+
+import java.time.LocalDateTime;
+
+public record AutomationDeadLetterDTO(
+        Long id,
+        Long queueItemId,
+        Long automationRuleId,
+        String automationRuleName,
+        Long leadId,
+        ActionType actionType,
+        Integer actionsCompleted,
+        Integer retryCount,
+        String errorMessage,
+        LocalDateTime failedAt
+) {}
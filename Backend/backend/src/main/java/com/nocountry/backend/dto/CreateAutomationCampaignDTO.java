@@ -0,0 +1,10 @@
+package com.nocountry.backend.dto;
+
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Positive;
+
+public record CreateAutomationCampaignDTO(
+        @NotNull Long automationRuleId,
+        // Mensajes por minuto; null = sin límite
+        @Positive Integer ratePerMinute
+) {}
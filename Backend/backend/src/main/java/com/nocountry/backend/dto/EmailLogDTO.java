@@ -11,5 +11,9 @@ public record EmailLogDTO(
         String body,
         String providerMessageId,
         EmailStatus status,
-        LocalDateTime createdAt
+        LocalDateTime createdAt,
+        Integer openCount,
+        Integer clickCount,
+        LocalDateTime lastOpenedAt,
+        LocalDateTime lastClickedAt
 ) {}
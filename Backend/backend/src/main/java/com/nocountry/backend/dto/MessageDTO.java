@@ -1,6 +1,8 @@
 package com.nocountry.backend.dto;
 
+import com.nocountry.backend.enums.DeliveryStatus;
 import com.nocountry.backend.enums.Direction;
+import com.nocountry.backend.enums.MediaStatus;
 import com.nocountry.backend.enums.MessageType;
 import com.nocountry.backend.enums.SenderType;
 
@@ -30,12 +32,22 @@ public record MessageDTO(
 
         String mediaCaption,
 
+        MediaStatus mediaStatus,
+
         String externalMessageId,
 
         Long templateId,
 
         LocalDateTime sentAt,
 
+        DeliveryStatus deliveryStatus,
+
+        String deliveryError,
+
+        LocalDateTime deliveredAt,
+
+        LocalDateTime readAt,
+
         // Reply-to message support
         Long replyToMessageId,
 
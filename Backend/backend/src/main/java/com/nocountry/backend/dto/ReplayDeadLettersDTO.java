@@ -0,0 +1,8 @@
+package com.nocountry.backend.dto;
+
+import java.util.List;
+
+// ids vacío o null = reintentar todas las entradas pendientes
+public record ReplayDeadLettersDTO(
+        List<Long> ids
+) {}
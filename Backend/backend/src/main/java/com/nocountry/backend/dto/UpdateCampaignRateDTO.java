@@ -0,0 +1,8 @@
+package com.nocountry.backend.dto;
+
+import jakarta.validation.constraints.Positive;
+
+public record UpdateCampaignRateDTO(
+        // Mensajes por minuto; null = sin límite
+        @Positive Integer ratePerMinute
+) {}
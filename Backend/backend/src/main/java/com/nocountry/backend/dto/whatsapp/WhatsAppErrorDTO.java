@@ -0,0 +1,7 @@
+package com.nocountry.backend.dto.whatsapp;
+
+public record WhatsAppErrorDTO(
+        Integer code,
+        String title,
+        String message) {
+}
@@ -0,0 +1,13 @@
+package com.nocountry.backend.dto.whatsapp;
+
+import com.fasterxml.jackson.annotation.JsonProperty;
+
+import java.util.List;
+
+public record WhatsAppStatusDTO(
+        String id,
+        String status,
+        String timestamp,
+        @JsonProperty("recipient_id") String recipientId,
+        List<WhatsAppErrorDTO> errors) {
+}
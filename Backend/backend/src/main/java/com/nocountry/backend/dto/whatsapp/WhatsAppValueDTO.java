@@ -13,5 +13,5 @@ public record WhatsAppValueDTO(
 
         List<WhatsAppInboundMessageDTO> messages,
 
-        List<Object> statuses) {
+        List<WhatsAppStatusDTO> statuses) {
 }
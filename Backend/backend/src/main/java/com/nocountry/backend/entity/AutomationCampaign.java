@@ -0,0 +1,74 @@
+package com.nocountry.backend.entity;
+
+import com.nocountry.backend.enums.CampaignStatus;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "automation_campaign")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AutomationCampaign {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "automation_rule_id", nullable = false)
+    private AutomationRule automationRule;
+
+    @Enumerated(EnumType.STRING)
+    @Column(nullable = false, length = 20)
+    @Builder.Default
+    private CampaignStatus status = CampaignStatus.RUNNING;
+
+    // Null = no throttling
+    @Column(name = "rate_per_minute")
+    private Integer ratePerMinute;
+
+    // Keyset checkpoint: leads with id <= lastLeadId are already processed
+    @Column(name = "last_lead_id", nullable = false)
+    @Builder.Default
+    private Long lastLeadId = 0L;
+
+    @Column(name = "total_leads", nullable = false)
+    @Builder.Default
+    private Integer totalLeads = 0;
+
+    @Column(name = "processed_leads", nullable = false)
+    @Builder.Default
+    private Integer processedLeads = 0;
+
+    @Column(name = "sent_count", nullable = false)
+    @Builder.Default
+    private Integer sentCount = 0;
+
+    @Column(name = "failed_count", nullable = false)
+    @Builder.Default
+    private Integer failedCount = 0;
+
+    // Worker currently running the campaign and until when it holds it
+    @Column(name = "locked_by", length = 100)
+    private String lockedBy;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "started_at")
+    private LocalDateTime startedAt;
+
+    @Column(name = "finished_at")
+    private LocalDateTime finishedAt;
+}
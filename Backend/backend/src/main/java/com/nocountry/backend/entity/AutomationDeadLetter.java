@@ -0,0 +1,54 @@
+package com.nocountry.backend.entity;
+
+import com.nocountry.backend.enums.ActionType;
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "automation_dead_letter")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class AutomationDeadLetter {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "queue_item_id", nullable = false)
+    private AutomationExecutionQueue queueItem;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "automation_rule_id", nullable = false)
+    private AutomationRule automationRule;
+
+    @ManyToOne(fetch = FetchType.LAZY)
+    @JoinColumn(name = "lead_id", nullable = false)
+    private CrmLead lead;
+
+    // Action that exhausted its retry budget (null if the failure happened outside an action)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "action_type", length = 30)
+    private ActionType actionType;
+
+    @Column(name = "actions_completed", nullable = false)
+    @Builder.Default
+    private Integer actionsCompleted = 0;
+
+    @Column(name = "retry_count", nullable = false)
+    private Integer retryCount;
+
+    @Column(name = "error_message", columnDefinition = "TEXT")
+    private String errorMessage;
+
+    @Column(name = "failed_at", nullable = false)
+    private LocalDateTime failedAt;
+
+    @Column(name = "replayed_at")
+    private LocalDateTime replayedAt;
+}
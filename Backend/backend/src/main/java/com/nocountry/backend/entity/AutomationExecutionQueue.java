@@ -45,4 +45,20 @@ public class AutomationExecutionQueue {
 
     @Column(name = "created_at")
     private LocalDateTime createdAt;
+
+    // Worker que tiene reclamada la fila mientras está EXECUTING
+    @Column(name = "locked_by", length = 100)
+    private String lockedBy;
+
+    @Column(name = "locked_until")
+    private LocalDateTime lockedUntil;
+
+    // Earliest time a failed execution may be retried (null = as soon as scheduled)
+    @Column(name = "next_attempt_at")
+    private LocalDateTime nextAttemptAt;
+
+    // Number of the rule's actions already executed; retries resume after them
+    @Column(name = "actions_completed", nullable = false)
+    @Builder.Default
+    private Integer actionsCompleted = 0;
 }
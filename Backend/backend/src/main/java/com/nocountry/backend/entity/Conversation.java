@@ -56,6 +56,13 @@ public class Conversation {
 
     private LocalDateTime firstInboundAt;
 
+    // Hilo de email: solo lo escribe ConversationRepository.appendEmailMessageId
+    @Column(name = "email_last_inbound_message_id", insertable = false, updatable = false)
+    private String emailLastInboundMessageId;
+
+    @Column(name = "email_references", columnDefinition = "TEXT", insertable = false, updatable = false)
+    private String emailReferences;
+
     @OneToMany(mappedBy = "conversation", cascade = CascadeType.ALL, orphanRemoval = true)
     private List<Message> messages = new ArrayList<>();
 
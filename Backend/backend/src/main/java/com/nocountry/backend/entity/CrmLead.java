@@ -1,6 +1,7 @@
 package com.nocountry.backend.entity;
 import com.nocountry.backend.enums.Channel;
 import com.nocountry.backend.enums.Stage;
+import com.nocountry.backend.util.PhoneNumbers;
 import jakarta.persistence.*;
 import lombok.*;
 import java.time.LocalDateTime;
@@ -23,6 +24,10 @@ public class CrmLead {
 
     private String phone;
 
+    // Clave normalizada de phone para buscar leads por remitente de WhatsApp
+    @Column(name = "phone_e164", length = 20)
+    private String phoneE164;
+
     @Enumerated(EnumType.STRING)
     private Stage stage;
 
@@ -54,5 +59,10 @@ public class CrmLead {
     @JoinColumn(name = "account_id")
     private Account account;
 
+    @PrePersist
+    @PreUpdate
+    void syncPhoneE164() {
+        this.phoneE164 = PhoneNumbers.toE164(phone);
+    }
 
 }
\ No newline at end of file
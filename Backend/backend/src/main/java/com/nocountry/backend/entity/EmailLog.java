@@ -34,4 +34,20 @@ public class EmailLog {
     private EmailStatus status;
 
     private LocalDateTime createdAt;
+
+    // Contadores de aperturas y clics: solo los escribe EmailTrackingBuffer
+    @Column(name = "open_count", insertable = false, updatable = false)
+    private Integer openCount;
+
+    @Column(name = "click_count", insertable = false, updatable = false)
+    private Integer clickCount;
+
+    @Column(name = "first_opened_at", insertable = false, updatable = false)
+    private LocalDateTime firstOpenedAt;
+
+    @Column(name = "last_opened_at", insertable = false, updatable = false)
+    private LocalDateTime lastOpenedAt;
+
+    @Column(name = "last_clicked_at", insertable = false, updatable = false)
+    private LocalDateTime lastClickedAt;
 }
\ No newline at end of file
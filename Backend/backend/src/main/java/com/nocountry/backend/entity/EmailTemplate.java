@@ -36,4 +36,8 @@ public class EmailTemplate {
 
     @Builder.Default
     private Boolean isActive = true;
+
+    // Bumped on every update; compiled templates are cached by (id, version)
+    @Version
+    private Long version;
 }
@@ -0,0 +1,44 @@
+package com.nocountry.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "imap_sync_state")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class ImapSyncState {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(nullable = false)
+    private String host;
+
+    @Column(nullable = false)
+    private String username;
+
+    @Column(name = "folder_name", nullable = false)
+    private String folderName;
+
+    // last_uid only means something while the folder keeps this UIDVALIDITY
+    @Column(name = "uid_validity", nullable = false)
+    private Long uidValidity;
+
+    // Highest UID already imported
+    @Column(name = "last_uid", nullable = false)
+    private Long lastUid;
+
+    // Failed UIDs at or below last_uid still to retry, as "uid:attempts,uid:attempts"
+    @Column(name = "retry_uids", columnDefinition = "TEXT")
+    private String retryUids;
+
+    @Column(name = "updated_at", nullable = false)
+    private LocalDateTime updatedAt;
+}
@@ -0,0 +1,44 @@
+package com.nocountry.backend.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+
+import java.time.LocalDateTime;
+
+@Entity
+@Table(name = "media_object")
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Builder
+public class MediaObject {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "sha256", nullable = false, unique = true, length = 64, columnDefinition = "CHAR(64)")
+    private String sha256;
+
+    // Name used in /api/media/{storedFilename}: sha256 + extension
+    @Column(name = "stored_filename", nullable = false, unique = true, length = 100)
+    private String storedFilename;
+
+    @Column(name = "mime_type", nullable = false, length = 150)
+    private String mimeType;
+
+    @Column(name = "size_bytes", nullable = false)
+    private Long sizeBytes;
+
+    // Number of stores that resolved to this object; the file is deleted at 0
+    @Column(name = "ref_count", nullable = false)
+    @Builder.Default
+    private Integer refCount = 1;
+
+    @Column(name = "created_at", nullable = false)
+    private LocalDateTime createdAt;
+
+    @Column(name = "last_referenced_at", nullable = false)
+    private LocalDateTime lastReferencedAt;
+}
@@ -1,6 +1,8 @@
 package com.nocountry.backend.entity;
 
+import com.nocountry.backend.enums.DeliveryStatus;
 import com.nocountry.backend.enums.Direction;
+import com.nocountry.backend.enums.MediaStatus;
 import com.nocountry.backend.enums.MessageType;
 import com.nocountry.backend.enums.SenderType;
 import jakarta.persistence.*;
@@ -52,6 +54,23 @@ public class Message {
     @Column(columnDefinition = "TEXT")
     private String mediaCaption;
 
+    // Media INBOUND descargada en segundo plano (InboundMediaFetcher)
+    @Enumerated(EnumType.STRING)
+    @Column(name = "media_status", length = 20)
+    private MediaStatus mediaStatus;
+
+    @Column(name = "media_external_id")
+    private String mediaExternalId;
+
+    @Builder.Default
+    @Column(name = "media_attempts", nullable = false)
+    private Integer mediaAttempts = 0;
+
+    @Column(name = "media_next_attempt_at")
+    private LocalDateTime mediaNextAttemptAt;
+
+    // Único: evita guardar dos veces un mismo mensaje reenviado por el proveedor
+    @Column(name = "external_message_id", unique = true)
     private String externalMessageId;
 
     @ManyToOne(fetch = FetchType.LAZY)
@@ -60,6 +79,21 @@ public class Message {
 
     private LocalDateTime sentAt;
 
+    // Estado de entrega de mensajes OUTBOUND enviados desde el outbox
+    @Enumerated(EnumType.STRING)
+    @Column(name = "delivery_status", length = 20)
+    private DeliveryStatus deliveryStatus;
+
+    @Column(name = "delivery_error", columnDefinition = "TEXT")
+    private String deliveryError;
+
+    // Recibos de WhatsApp (delivered/read)
+    @Column(name = "delivered_at")
+    private LocalDateTime deliveredAt;
+
+    @Column(name = "read_at")
+    private LocalDateTime readAt;
+
     // Reply-to message support (WhatsApp quoted messages)
     @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(name = "reply_to_message_id")
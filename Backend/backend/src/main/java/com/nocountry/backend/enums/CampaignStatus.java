@@ -0,0 +1,9 @@
+package com.nocountry.backend.enums;
+
+public enum CampaignStatus {
+    RUNNING, // En ejecución
+    PAUSED, // Pausada
+    COMPLETED, // Completada
+    CANCELLED, // Cancelada
+    FAILED // Fallida
+}
@@ -0,0 +1,14 @@
+package com.nocountry.backend.enums;
+
+/**
+ * Declared in progression order: a status update is only applied when it
+ * ranks above the stored one, so late or re-sent receipts never move a
+ * message backwards.
+ */
+public enum DeliveryStatus {
+    QUEUED,
+    SENT,
+    FAILED,
+    DELIVERED,
+    READ
+}
@@ -0,0 +1,6 @@
+package com.nocountry.backend.enums;
+
+public enum EmailTrackingEventType {
+    OPEN,
+    CLICK
+}
@@ -0,0 +1,8 @@
+package com.nocountry.backend.enums;
+
+public enum InboundEventStatus {
+    PENDING, // Pendiente
+    PROCESSING, // Procesando
+    PROCESSED, // Procesado
+    FAILED // Fallido
+}
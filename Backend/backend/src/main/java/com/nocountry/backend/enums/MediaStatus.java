@@ -0,0 +1,7 @@
+package com.nocountry.backend.enums;
+
+public enum MediaStatus {
+    PENDING,
+    READY,
+    FAILED
+}
@@ -0,0 +1,8 @@
+package com.nocountry.backend.enums;
+
+// En orden de prioridad: se atiende primero INTERACTIVE
+public enum OutboundPriority {
+    INTERACTIVE, // Respuestas de agentes
+    AUTOMATION, // Reglas de automatización
+    BULK // Campañas masivas
+}
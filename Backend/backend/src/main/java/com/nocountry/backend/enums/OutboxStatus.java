@@ -0,0 +1,8 @@
+package com.nocountry.backend.enums;
+
+public enum OutboxStatus {
+    PENDING,
+    PROCESSING,
+    SENT,
+    FAILED
+}
@@ -0,0 +1,27 @@
+package com.nocountry.backend.exceptions;
+
+import com.nocountry.backend.enums.ActionType;
+
+/**
+ * Thrown when one action of an automation rule fails. Carries the action type
+ * (to pick its retry budget) and its position in the rule (to resume there).
+ */
+public class AutomationActionException extends RuntimeException {
+
+    private final ActionType actionType;
+    private final int actionIndex;
+
+    public AutomationActionException(ActionType actionType, int actionIndex, Throwable cause) {
+        super(cause.getMessage(), cause);
+        this.actionType = actionType;
+        this.actionIndex = actionIndex;
+    }
+
+    public ActionType getActionType() {
+        return actionType;
+    }
+
+    public int getActionIndex() {
+        return actionIndex;
+    }
+}
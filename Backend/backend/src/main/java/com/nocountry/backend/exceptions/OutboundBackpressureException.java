@@ -0,0 +1,28 @@
+package com.nocountry.backend.exceptions;
+
+import com.nocountry.backend.enums.Channel;
+import com.nocountry.backend.enums.OutboundPriority;
+
+/**
+ * Thrown when an outbound send cannot get a slot: its lane queue is full or
+ * it waited longer than the lane allows for the channel's rate limit.
+ */
+public class OutboundBackpressureException extends RuntimeException {
+
+    private final Channel channel;
+    private final OutboundPriority priority;
+
+    public OutboundBackpressureException(Channel channel, OutboundPriority priority, String message) {
+        super(message);
+        this.channel = channel;
+        this.priority = priority;
+    }
+
+    public Channel getChannel() {
+        return channel;
+    }
+
+    public OutboundPriority getPriority() {
+        return priority;
+    }
+}
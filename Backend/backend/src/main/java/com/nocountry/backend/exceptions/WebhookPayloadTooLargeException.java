@@ -0,0 +1,11 @@
+package com.nocountry.backend.exceptions;
+
+/**
+ * Thrown when a webhook body is larger than the configured maximum.
+ */
+public class WebhookPayloadTooLargeException extends RuntimeException {
+
+    public WebhookPayloadTooLargeException(String message) {
+        super(message);
+    }
+}
@@ -0,0 +1,11 @@
+package com.nocountry.backend.exceptions;
+
+/**
+ * Thrown when a webhook body does not match its X-Hub-Signature-256 header.
+ */
+public class WebhookSignatureException extends RuntimeException {
+
+    public WebhookSignatureException(String message) {
+        super(message);
+    }
+}
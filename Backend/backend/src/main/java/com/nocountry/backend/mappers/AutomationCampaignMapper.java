@@ -0,0 +1,13 @@
+package com.nocountry.backend.mappers;
+
+import com.nocountry.backend.dto.AutomationCampaignDTO;
+import com.nocountry.backend.entity.AutomationCampaign;
+import org.mapstruct.*;
+
+@Mapper(componentModel = "spring")
+public interface AutomationCampaignMapper {
+
+    @Mapping(target = "automationRuleId", source = "automationRule.id")
+    @Mapping(target = "automationRuleName", source = "automationRule.name")
+    AutomationCampaignDTO toDTO(AutomationCampaign entity);
+}
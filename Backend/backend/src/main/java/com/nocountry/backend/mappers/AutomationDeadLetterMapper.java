@@ -0,0 +1,15 @@
+package com.nocountry.backend.mappers;
+
+import com.nocountry.backend.dto.AutomationDeadLetterDTO;
+import com.nocountry.backend.entity.AutomationDeadLetter;
+import org.mapstruct.*;
+
+@Mapper(componentModel = "spring")
+public interface AutomationDeadLetterMapper {
+
+    @Mapping(target = "queueItemId", source = "queueItem.id")
+    @Mapping(target = "automationRuleId", source = "automationRule.id")
+    @Mapping(target = "automationRuleName", source = "automationRule.name")
+    @Mapping(target = "leadId", source = "lead.id")
+    AutomationDeadLetterDTO toDTO(AutomationDeadLetter entity);
+}
@@ -13,6 +13,11 @@ public interface EmailLogMapper {
     @Mapping(target = "lead", source = "lead")
     @Mapping(target = "status", source = "dto.status")
     @Mapping(target = "createdAt", expression = "java(java.time.LocalDateTime.now())")
+    @Mapping(target = "openCount", ignore = true)
+    @Mapping(target = "clickCount", ignore = true)
+    @Mapping(target = "firstOpenedAt", ignore = true)
+    @Mapping(target = "lastOpenedAt", ignore = true)
+    @Mapping(target = "lastClickedAt", ignore = true)
     EmailLog toEntity(CreateEmailLogDTO dto, CrmLead lead);
 
     @Mapping(target = "leadId", source = "lead.id")
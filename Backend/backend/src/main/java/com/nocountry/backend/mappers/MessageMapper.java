@@ -32,6 +32,14 @@ public interface MessageMapper {
     @Mapping(target = "mediaFileName", ignore = true)
     @Mapping(target = "mediaType", ignore = true)
     @Mapping(target = "mediaCaption", ignore = true)
+    @Mapping(target = "mediaStatus", ignore = true)
+    @Mapping(target = "mediaExternalId", ignore = true)
+    @Mapping(target = "mediaAttempts", ignore = true)
+    @Mapping(target = "mediaNextAttemptAt", ignore = true)
+    @Mapping(target = "deliveryStatus", ignore = true)
+    @Mapping(target = "deliveryError", ignore = true)
+    @Mapping(target = "deliveredAt", ignore = true)
+    @Mapping(target = "readAt", ignore = true)
     @Mapping(target = "replyToMessage", ignore = true)
     Message toEntity(CreateMessageDTO dto);
 
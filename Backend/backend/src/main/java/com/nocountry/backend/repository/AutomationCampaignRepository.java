@@ -0,0 +1,104 @@
+package com.nocountry.backend.repository;
+
+import com.nocountry.backend.entity.AutomationCampaign;
+import com.nocountry.backend.enums.CampaignStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface AutomationCampaignRepository extends JpaRepository<AutomationCampaign, Long> {
+
+    @Query("SELECT c FROM AutomationCampaign c JOIN FETCH c.automationRule ORDER BY c.createdAt DESC")
+    List<AutomationCampaign> findAllWithRule();
+
+    /**
+     * Bloquea una campaña RUNNING sin lease vigente. SKIP LOCKED evita que dos
+     * nodos tomen la misma campaña a la vez.
+     */
+    @Query(value = "SELECT id FROM automation_campaign " +
+            "WHERE status = 'RUNNING' AND (locked_until IS NULL OR locked_until < :now) " +
+            "ORDER BY id " +
+            "LIMIT 1 " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    Optional<Long> lockRunnable(@Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE AutomationCampaign c SET c.lockedBy = :workerId, c.lockedUntil = :lockedUntil, " +
+            "c.startedAt = COALESCE(c.startedAt, :now) WHERE c.id = :id")
+    int claim(
+            @Param("id") Long id,
+            @Param("workerId") String workerId,
+            @Param("lockedUntil") LocalDateTime lockedUntil,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Avanza el checkpoint y los contadores y renueva el lease. Devuelve 0 si
+     * el worker ya no tiene el lease (otro nodo tomó la campaña).
+     */
+    @Modifying
+    @Query("UPDATE AutomationCampaign c SET c.lastLeadId = :lastLeadId, " +
+            "c.processedLeads = c.processedLeads + :processed, " +
+            "c.sentCount = c.sentCount + :sent, " +
+            "c.failedCount = c.failedCount + :failed, " +
+            "c.lockedUntil = :lockedUntil " +
+            "WHERE c.id = :id AND c.lockedBy = :workerId")
+    int recordProgress(
+            @Param("id") Long id,
+            @Param("workerId") String workerId,
+            @Param("lastLeadId") Long lastLeadId,
+            @Param("processed") int processed,
+            @Param("sent") int sent,
+            @Param("failed") int failed,
+            @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    /**
+     * Extiende el lease entre lotes de envío de una misma página. Devuelve 0 si
+     * el worker ya no tiene el lease.
+     */
+    @Modifying
+    @Query("UPDATE AutomationCampaign c SET c.lockedUntil = :lockedUntil " +
+            "WHERE c.id = :id AND c.lockedBy = :workerId")
+    int renewLease(
+            @Param("id") Long id,
+            @Param("workerId") String workerId,
+            @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    @Modifying
+    @Query("UPDATE AutomationCampaign c SET c.status = :status, c.errorMessage = :error, " +
+            "c.finishedAt = :finishedAt, c.lockedBy = NULL, c.lockedUntil = NULL " +
+            "WHERE c.id = :id AND c.lockedBy = :workerId")
+    int finish(
+            @Param("id") Long id,
+            @Param("workerId") String workerId,
+            @Param("status") CampaignStatus status,
+            @Param("error") String error,
+            @Param("finishedAt") LocalDateTime finishedAt);
+
+    @Modifying
+    @Query("UPDATE AutomationCampaign c SET c.lockedBy = NULL, c.lockedUntil = NULL " +
+            "WHERE c.id = :id AND c.lockedBy = :workerId")
+    int releaseLease(@Param("id") Long id, @Param("workerId") String workerId);
+
+    /**
+     * Cambia el límite de envíos por minuto; el runner lo toma en la próxima página.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE AutomationCampaign c SET c.ratePerMinute = :rate WHERE c.id = :id")
+    int updateRate(@Param("id") Long id, @Param("rate") Integer ratePerMinute);
+
+    /**
+     * Cambia el estado solo si el actual está en {@code from}; no toca el progreso.
+     */
+    @Modifying(clearAutomatically = true)
+    @Query("UPDATE AutomationCampaign c SET c.status = :to WHERE c.id = :id AND c.status IN :from")
+    int transition(
+            @Param("id") Long id,
+            @Param("from") Collection<CampaignStatus> from,
+            @Param("to") CampaignStatus to);
+}
@@ -0,0 +1,23 @@
+package com.nocountry.backend.repository;
+
+import com.nocountry.backend.entity.AutomationDeadLetter;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
+
+public interface AutomationDeadLetterRepository extends JpaRepository<AutomationDeadLetter, Long> {
+
+    @Query("SELECT d FROM AutomationDeadLetter d JOIN FETCH d.automationRule JOIN FETCH d.lead " +
+            "WHERE d.replayedAt IS NULL ORDER BY d.failedAt DESC")
+    List<AutomationDeadLetter> findPending(Pageable pageable);
+
+    @Query("SELECT d FROM AutomationDeadLetter d WHERE d.replayedAt IS NULL AND d.id IN :ids")
+    List<AutomationDeadLetter> findPendingByIds(@Param("ids") Collection<Long> ids);
+
+    @Query("SELECT d FROM AutomationDeadLetter d WHERE d.replayedAt IS NULL ORDER BY d.id")
+    List<AutomationDeadLetter> findPendingBatch(Pageable pageable);
+}
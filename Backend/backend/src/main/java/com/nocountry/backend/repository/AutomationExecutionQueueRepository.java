@@ -3,13 +3,73 @@ package com.nocountry.backend.repository;
 import com.nocountry.backend.entity.AutomationExecutionQueue;
 import com.nocountry.backend.enums.ExecutionStatus;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 public interface AutomationExecutionQueueRepository extends JpaRepository<AutomationExecutionQueue, Long> {
 
     List<AutomationExecutionQueue> findByStatusAndScheduledAtLessThanEqual(
             ExecutionStatus status,
             LocalDateTime now);
+
+    /**
+     * Bloquea hasta {@code limit} filas PENDING vencidas usando idx_queue_status_scheduled.
+     * SKIP LOCKED hace que otros workers/nodos salteen las filas ya bloqueadas
+     * en vez de esperar, así cada fila la reclama un solo worker.
+     */
+    @Query(value = "SELECT id FROM automation_execution_queue " +
+            "WHERE status = 'PENDING' AND scheduled_at <= :now " +
+            "AND (next_attempt_at IS NULL OR next_attempt_at <= :now) " +
+            "ORDER BY scheduled_at " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockDueIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE AutomationExecutionQueue q SET q.status = :status, q.lockedBy = :workerId, " +
+            "q.lockedUntil = :lockedUntil WHERE q.id IN :ids")
+    int markClaimed(
+            @Param("ids") Collection<Long> ids,
+            @Param("status") ExecutionStatus status,
+            @Param("workerId") String workerId,
+            @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    /**
+     * Devuelve a PENDING las filas cuyo lease venció (worker caído a mitad de ejecución).
+     */
+    @Modifying
+    @Query("UPDATE AutomationExecutionQueue q SET q.status = :pending, q.lockedBy = null, q.lockedUntil = null " +
+            "WHERE q.status = :executing AND q.lockedUntil < :now")
+    int releaseExpiredLeases(
+            @Param("executing") ExecutionStatus executing,
+            @Param("pending") ExecutionStatus pending,
+            @Param("now") LocalDateTime now);
+
+    /**
+     * Filas PENDING que vencen antes de {@code until}, con el momento en que
+     * realmente pueden ejecutarse (scheduled_at o next_attempt_at si es posterior).
+     */
+    @Query(value = "SELECT id, GREATEST(scheduled_at, COALESCE(next_attempt_at, scheduled_at)) AS dueAt " +
+            "FROM automation_execution_queue " +
+            "WHERE status = 'PENDING' AND scheduled_at < :until " +
+            "AND (next_attempt_at IS NULL OR next_attempt_at < :until) " +
+            "ORDER BY dueAt " +
+            "LIMIT :limit", nativeQuery = true)
+    List<DueExecution> findDueBefore(@Param("until") LocalDateTime until, @Param("limit") int limit);
+
+    interface DueExecution {
+        Long getId();
+
+        LocalDateTime getDueAt();
+    }
+
+    @Query("SELECT q FROM AutomationExecutionQueue q " +
+            "JOIN FETCH q.automationRule JOIN FETCH q.lead WHERE q.id = :id")
+    Optional<AutomationExecutionQueue> findByIdWithRuleAndLead(@Param("id") Long id);
 }
@@ -3,6 +3,8 @@ package com.nocountry.backend.repository;
 import com.nocountry.backend.entity.AutomationRule;
 import com.nocountry.backend.enums.TriggerEvent;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
 import java.util.List;
@@ -11,4 +13,22 @@ import java.util.List;
 public interface AutomationRuleRepository extends JpaRepository<AutomationRule, Long> {
 
     List<AutomationRule> findByTriggerEventAndIsActiveTrue(TriggerEvent triggerEvent);
-}
\ No newline at end of file
+
+    List<AutomationRule> findByIsActiveTrue();
+
+    /**
+     * Página (keyset) de ids de leads asignados a la regla, posteriores a {@code afterLeadId}.
+     * Recorre la PK (automation_rule_id, lead_id) sin cargar la colección completa.
+     */
+    @Query(value = "SELECT lead_id FROM automation_rule_lead " +
+            "WHERE automation_rule_id = :ruleId AND lead_id > :afterLeadId " +
+            "ORDER BY lead_id " +
+            "LIMIT :limit", nativeQuery = true)
+    List<Long> findAssignedLeadIds(
+            @Param("ruleId") Long ruleId,
+            @Param("afterLeadId") Long afterLeadId,
+            @Param("limit") int limit);
+
+    @Query(value = "SELECT COUNT(*) FROM automation_rule_lead WHERE automation_rule_id = :ruleId", nativeQuery = true)
+    long countAssignedLeads(@Param("ruleId") Long ruleId);
+}
@@ -3,11 +3,14 @@ package com.nocountry.backend.repository;
 import com.nocountry.backend.entity.Conversation;
 import com.nocountry.backend.entity.CrmLead;
 import com.nocountry.backend.enums.Channel;
+import com.nocountry.backend.enums.Direction;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.Optional;
 
 @Repository
@@ -22,4 +25,52 @@ public interface ConversationRepository extends JpaRepository<Conversation, Long
      */
     @Query("SELECT c FROM Conversation c WHERE c.crm_lead.id = :leadId AND c.channel = :channel")
     Optional<Conversation> findByLeadIdAndChannel(@Param("leadId") Long leadId, @Param("channel") Channel channel);
+
+    /**
+     * Actualiza último mensaje y no leídos sin cargar la conversación.
+     * Devuelve 0 si la conversación ya no existe.
+     */
+    @Modifying
+    @Query("UPDATE Conversation c SET c.lastMessageText = :text, c.lastMessageAt = :at, " +
+            "c.lastMessageDirection = :direction, c.unreadCount = COALESCE(c.unreadCount, 0) + :unread " +
+            "WHERE c.id = :id")
+    int recordLastMessage(
+            @Param("id") Long id,
+            @Param("text") String text,
+            @Param("at") LocalDateTime at,
+            @Param("direction") Direction direction,
+            @Param("unread") int unread);
+
+    /**
+     * Máximo de Message-IDs en References: el primero del hilo y los más recientes.
+     */
+    int MAX_EMAIL_REFERENCES = 20;
+
+    /**
+     * Agrega un Message-ID al hilo de email de la conversación en un solo UPDATE
+     * (sin leer la fila). Si es entrante, pasa a ser el In-Reply-To de la próxima respuesta.
+     * Al superar el máximo se descarta el segundo id, conservando la raíz.
+     */
+    default int appendEmailMessageId(Long id, String messageId, boolean inbound) {
+        if (messageId == null || messageId.isBlank()) {
+            return 0;
+        }
+        return appendEmailReference(id, messageId, inbound ? messageId : null, MAX_EMAIL_REFERENCES);
+    }
+
+    @Modifying
+    @Query(value = "UPDATE conversation SET " +
+            "email_last_inbound_message_id = COALESCE(:lastInbound, email_last_inbound_message_id), " +
+            "email_references = CASE " +
+            "WHEN email_references IS NULL OR email_references = '' THEN :messageId " +
+            "WHEN LENGTH(email_references) - LENGTH(REPLACE(email_references, ' ', '')) + 1 >= :max " +
+            "THEN CONCAT(SUBSTRING_INDEX(email_references, ' ', 1), ' ', " +
+            "SUBSTRING_INDEX(email_references, ' ', 2 - :max), ' ', :messageId) " +
+            "ELSE CONCAT(email_references, ' ', :messageId) END " +
+            "WHERE id = :id", nativeQuery = true)
+    int appendEmailReference(
+            @Param("id") Long id,
+            @Param("messageId") String messageId,
+            @Param("lastInbound") String lastInbound,
+            @Param("max") int max);
 }
@@ -3,7 +3,10 @@ package com.nocountry.backend.repository;
 import com.nocountry.backend.entity.CrmLead;
 import com.nocountry.backend.enums.Stage;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -26,9 +29,22 @@ public interface CrmLeadRepository extends JpaRepository<CrmLead, Long> {
 
     Optional<CrmLead> findFirstByEmailIgnoreCase(String email);
 
+    /**
+     * Leads cuyo email (en minúsculas) está en la lista, del más antiguo al más nuevo.
+     * Utilizado para resolver los remitentes de un lote de correos en una sola consulta.
+     */
+    @Query("SELECT l FROM CrmLead l WHERE LOWER(l.email) IN :emails ORDER BY l.id")
+    List<CrmLead> findByLowerEmailIn(@Param("emails") Collection<String> emails);
+
     /**
      * Busca un Lead por número de teléfono.
      * Utilizado para identificar o crear Leads desde mensajes de WhatsApp.
      */
     Optional<CrmLead> findByPhone(String phone);
+
+    /**
+     * Busca el Lead más antiguo con ese teléfono normalizado (índice phone_e164).
+     * Utilizado por el webhook de WhatsApp.
+     */
+    Optional<CrmLead> findFirstByPhoneE164OrderByIdAsc(String phoneE164);
 }
@@ -0,0 +1,14 @@
+package com.nocountry.backend.repository;
+
+import com.nocountry.backend.entity.ImapSyncState;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.Optional;
+
+public interface ImapSyncStateRepository extends JpaRepository<ImapSyncState, Long> {
+
+    /**
+     * Checkpoint de sincronización de una carpeta IMAP.
+     */
+    Optional<ImapSyncState> findByHostAndUsernameAndFolderName(String host, String username, String folderName);
+}
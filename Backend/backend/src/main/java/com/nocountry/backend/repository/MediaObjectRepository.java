@@ -0,0 +1,45 @@
+package com.nocountry.backend.repository;
+
+import com.nocountry.backend.entity.MediaObject;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.stereotype.Repository;
+
+import java.time.LocalDateTime;
+import java.util.Optional;
+
+@Repository
+public interface MediaObjectRepository extends JpaRepository<MediaObject, Long> {
+
+    Optional<MediaObject> findBySha256(String sha256);
+
+    Optional<MediaObject> findByStoredFilename(String storedFilename);
+
+    /**
+     * Registra una referencia al contenido: inserta el objeto o, si el hash ya
+     * existe, solo incrementa ref_count (el archivo no se vuelve a escribir).
+     */
+    @Modifying
+    @Query(value = "INSERT INTO media_object " +
+            "(sha256, stored_filename, mime_type, size_bytes, ref_count, created_at, last_referenced_at) " +
+            "VALUES (:sha256, :storedFilename, :mimeType, :sizeBytes, 1, :now, :now) " +
+            "ON DUPLICATE KEY UPDATE ref_count = ref_count + 1, last_referenced_at = :now",
+            nativeQuery = true)
+    int upsertReference(
+            @Param("sha256") String sha256,
+            @Param("storedFilename") String storedFilename,
+            @Param("mimeType") String mimeType,
+            @Param("sizeBytes") long sizeBytes,
+            @Param("now") LocalDateTime now);
+
+    @Modifying
+    @Query("UPDATE MediaObject o SET o.refCount = o.refCount - 1 " +
+            "WHERE o.storedFilename = :storedFilename AND o.refCount > 0")
+    int releaseReference(@Param("storedFilename") String storedFilename);
+
+    @Modifying
+    @Query("DELETE FROM MediaObject o WHERE o.storedFilename = :storedFilename AND o.refCount = 0")
+    int deleteUnreferenced(@Param("storedFilename") String storedFilename);
+}
@@ -0,0 +1,64 @@
+package com.nocountry.backend.repository;
+
+import com.nocountry.backend.entity.MessageOutbox;
+import com.nocountry.backend.enums.OutboxStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface MessageOutboxRepository extends JpaRepository<MessageOutbox, Long> {
+
+    /**
+     * Bloquea hasta {@code limit} envíos PENDING en orden de creación.
+     * SKIP LOCKED permite que varios workers/nodos consuman el outbox sin esperarse.
+     */
+    @Query(value = "SELECT id FROM message_outbox " +
+            "WHERE status = 'PENDING' AND (next_attempt_at IS NULL OR next_attempt_at <= :now) " +
+            "ORDER BY id " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockPendingIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE MessageOutbox o SET o.status = :status, o.lockedBy = :workerId, " +
+            "o.lockedUntil = :lockedUntil, o.attempts = o.attempts + 1 WHERE o.id IN :ids")
+    int markClaimed(
+            @Param("ids") Collection<Long> ids,
+            @Param("status") OutboxStatus status,
+            @Param("workerId") String workerId,
+            @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    /**
+     * El envío con su mensaje y lead, solo si {@code workerId} todavía tiene el lease:
+     * un worker cuyo lease venció no pisa el resultado de quien lo reclamó después.
+     */
+    @Query("SELECT o FROM MessageOutbox o JOIN FETCH o.message m JOIN FETCH m.conversation c " +
+            "JOIN FETCH c.crm_lead WHERE o.id = :id AND o.status = :status AND o.lockedBy = :workerId")
+    Optional<MessageOutbox> findClaimedWithMessage(
+            @Param("id") Long id,
+            @Param("status") OutboxStatus status,
+            @Param("workerId") String workerId);
+
+    /**
+     * Devuelve a PENDING los envíos cuyo worker murió sin terminar.
+     */
+    @Modifying
+    @Query("UPDATE MessageOutbox o SET o.status = :pending, o.lockedBy = NULL, o.lockedUntil = NULL " +
+            "WHERE o.status = :processing AND o.lockedUntil < :now")
+    int releaseExpiredLeases(
+            @Param("processing") OutboxStatus processing,
+            @Param("pending") OutboxStatus pending,
+            @Param("now") LocalDateTime now);
+
+    long countByStatus(OutboxStatus status);
+
+    @Modifying
+    @Query("DELETE FROM MessageOutbox o WHERE o.status = :status AND o.sentAt < :before")
+    int deleteSentBefore(@Param("status") OutboxStatus status, @Param("before") LocalDateTime before);
+}
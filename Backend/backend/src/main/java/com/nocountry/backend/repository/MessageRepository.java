@@ -1,9 +1,17 @@
 package com.nocountry.backend.repository;
 
 import com.nocountry.backend.entity.Message;
+import com.nocountry.backend.enums.Direction;
+import com.nocountry.backend.enums.MediaStatus;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -28,4 +36,68 @@ public interface MessageRepository extends JpaRepository<Message, Long> {
      * Usado para encontrar mensajes citados en respuestas.
      */
     Optional<Message> findByExternalMessageId(String externalMessageId);
+
+    boolean existsByExternalMessageId(String externalMessageId);
+
+    /**
+     * Cuáles de los external ids ya están guardados (para lotes de webhooks).
+     */
+    @Query("SELECT m.externalMessageId FROM Message m WHERE m.externalMessageId IN :externalIds")
+    List<String> findExistingExternalIds(@Param("externalIds") Collection<String> externalIds);
+
+    /**
+     * External ids de los mensajes INBOUND más recientes, para precargar el
+     * filtro de duplicados de webhooks al arrancar.
+     */
+    @Query("SELECT m.externalMessageId FROM Message m " +
+            "WHERE m.externalMessageId IS NOT NULL AND m.messageDirection = :direction AND m.sentAt >= :since")
+    List<String> findRecentExternalIds(
+            @Param("direction") Direction direction,
+            @Param("since") LocalDateTime since,
+            Pageable pageable);
+
+    /**
+     * Mensajes con media INBOUND pendiente de descarga cuyo reintento ya venció.
+     */
+    @Query("SELECT m.id FROM Message m WHERE m.mediaStatus = :status " +
+            "AND (m.mediaNextAttemptAt IS NULL OR m.mediaNextAttemptAt <= :now) ORDER BY m.id")
+    List<Long> findMediaDue(@Param("status") MediaStatus status, @Param("now") LocalDateTime now, Pageable pageable);
+
+    @Query("SELECT m.id AS id, m.conversation.id AS conversationId, m.mediaExternalId AS mediaExternalId, " +
+            "m.mediaType AS mimeType, m.mediaAttempts AS attempts FROM Message m " +
+            "WHERE m.id = :id AND m.mediaStatus = :status")
+    Optional<MediaJob> findMediaJob(@Param("id") Long id, @Param("status") MediaStatus status);
+
+    interface MediaJob {
+        Long getId();
+
+        Long getConversationId();
+
+        String getMediaExternalId();
+
+        String getMimeType();
+
+        Integer getAttempts();
+    }
+
+    /**
+     * Completa la media descargada. Los documentos conservan el nombre original
+     * que vino en el webhook.
+     */
+    @Modifying
+    @Query("UPDATE Message m SET m.mediaUrl = :url, m.mediaFileName = COALESCE(m.mediaFileName, :fileName), " +
+            "m.mediaStatus = com.nocountry.backend.enums.MediaStatus.READY, m.mediaNextAttemptAt = NULL " +
+            "WHERE m.id = :id AND m.mediaStatus = com.nocountry.backend.enums.MediaStatus.PENDING")
+    int completeMedia(@Param("id") Long id, @Param("url") String url, @Param("fileName") String fileName);
+
+    @Modifying
+    @Query("UPDATE Message m SET m.mediaAttempts = m.mediaAttempts + 1, m.mediaNextAttemptAt = :nextAttemptAt " +
+            "WHERE m.id = :id AND m.mediaStatus = com.nocountry.backend.enums.MediaStatus.PENDING")
+    int scheduleMediaRetry(@Param("id") Long id, @Param("nextAttemptAt") LocalDateTime nextAttemptAt);
+
+    @Modifying
+    @Query("UPDATE Message m SET m.mediaAttempts = m.mediaAttempts + 1, " +
+            "m.mediaStatus = com.nocountry.backend.enums.MediaStatus.FAILED, m.mediaNextAttemptAt = NULL " +
+            "WHERE m.id = :id AND m.mediaStatus = com.nocountry.backend.enums.MediaStatus.PENDING")
+    int failMedia(@Param("id") Long id);
 }
@@ -0,0 +1,56 @@
+package com.nocountry.backend.repository;
+
+import com.nocountry.backend.entity.WhatsAppInboundEvent;
+import com.nocountry.backend.enums.InboundEventStatus;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
+public interface WhatsAppInboundEventRepository extends JpaRepository<WhatsAppInboundEvent, Long> {
+
+    /**
+     * Bloquea hasta {@code limit} eventos PENDING en orden de llegada.
+     * SKIP LOCKED permite que varios workers/nodos consuman la cola sin esperarse.
+     */
+    @Query(value = "SELECT id FROM whatsapp_inbound_event " +
+            "WHERE status = 'PENDING' AND (next_attempt_at IS NULL OR next_attempt_at <= :now) " +
+            "ORDER BY id " +
+            "LIMIT :limit " +
+            "FOR UPDATE SKIP LOCKED", nativeQuery = true)
+    List<Long> lockPendingIds(@Param("now") LocalDateTime now, @Param("limit") int limit);
+
+    @Modifying
+    @Query("UPDATE WhatsAppInboundEvent e SET e.status = :status, e.lockedBy = :workerId, " +
+            "e.lockedUntil = :lockedUntil, e.attempts = e.attempts + 1 WHERE e.id IN :ids")
+    int markClaimed(
+            @Param("ids") Collection<Long> ids,
+            @Param("status") InboundEventStatus status,
+            @Param("workerId") String workerId,
+            @Param("lockedUntil") LocalDateTime lockedUntil);
+
+    /**
+     * Devuelve a PENDING los eventos cuyo worker murió sin terminar.
+     */
+    @Modifying
+    @Query("UPDATE WhatsAppInboundEvent e SET e.status = :pending, e.lockedBy = NULL, e.lockedUntil = NULL " +
+            "WHERE e.status = :processing AND e.lockedUntil < :now")
+    int releaseExpiredLeases(
+            @Param("processing") InboundEventStatus processing,
+            @Param("pending") InboundEventStatus pending,
+            @Param("now") LocalDateTime now);
+
+    @Query("SELECT MIN(e.receivedAt) FROM WhatsAppInboundEvent e WHERE e.status IN :statuses")
+    Optional<LocalDateTime> findOldestReceivedAt(@Param("statuses") Collection<InboundEventStatus> statuses);
+
+    long countByStatus(InboundEventStatus status);
+
+    @Modifying
+    @Query("DELETE FROM WhatsAppInboundEvent e WHERE e.status = :status AND e.processedAt < :before")
+    int deleteProcessedBefore(@Param("status") InboundEventStatus status, @Param("before") LocalDateTime before);
+}
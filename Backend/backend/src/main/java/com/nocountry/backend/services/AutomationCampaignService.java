@@ -0,0 +1,100 @@
+package com.nocountry.backend.services;
+
+import com.nocountry.backend.dto.AutomationCampaignDTO;
+import com.nocountry.backend.dto.CreateAutomationCampaignDTO;
+import com.nocountry.backend.entity.AutomationCampaign;
+import com.nocountry.backend.entity.AutomationRule;
+import com.nocountry.backend.enums.CampaignStatus;
+import com.nocountry.backend.mappers.AutomationCampaignMapper;
+import com.nocountry.backend.repository.AutomationCampaignRepository;
+import com.nocountry.backend.repository.AutomationRuleRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.List;
+
+/**
+ * Starts and controls bulk campaigns; the sending itself is done by
+ * {@link com.nocountry.backend.services.automation.campaign.AutomationCampaignRunner}.
+ * Status changes only touch the status column, so they never overwrite the
+ * progress the runner is checkpointing concurrently.
+ */
+@Service
+@RequiredArgsConstructor
+public class AutomationCampaignService {
+
+    private final AutomationCampaignRepository campaignRepository;
+    private final AutomationRuleRepository ruleRepository;
+    private final AutomationCampaignMapper campaignMapper;
+
+    @Transactional
+    public AutomationCampaignDTO start(CreateAutomationCampaignDTO dto) {
+        AutomationRule rule = ruleRepository.findById(dto.automationRuleId())
+                .orElseThrow(() -> new RuntimeException("Regla de automatización no encontrada."));
+        if (!Boolean.TRUE.equals(rule.getIsActive())) {
+            throw new RuntimeException("La regla de automatización no está activa.");
+        }
+
+        AutomationCampaign campaign = AutomationCampaign.builder()
+                .automationRule(rule)
+                .status(CampaignStatus.RUNNING)
+                .ratePerMinute(dto.ratePerMinute())
+                .totalLeads((int) ruleRepository.countAssignedLeads(rule.getId()))
+                .createdAt(LocalDateTime.now())
+                .build();
+        return campaignMapper.toDTO(campaignRepository.save(campaign));
+    }
+
+    @Transactional
+    public List<AutomationCampaignDTO> findAll() {
+        return campaignRepository.findAllWithRule().stream()
+                .map(campaignMapper::toDTO)
+                .toList();
+    }
+
+    @Transactional
+    public AutomationCampaignDTO findById(Long id) {
+        return campaignMapper.toDTO(getCampaign(id));
+    }
+
+    @Transactional
+    public AutomationCampaignDTO pause(Long id) {
+        return transition(id, EnumSet.of(CampaignStatus.RUNNING), CampaignStatus.PAUSED);
+    }
+
+    @Transactional
+    public AutomationCampaignDTO resume(Long id) {
+        return transition(id, EnumSet.of(CampaignStatus.PAUSED, CampaignStatus.FAILED), CampaignStatus.RUNNING);
+    }
+
+    @Transactional
+    public AutomationCampaignDTO cancel(Long id) {
+        return transition(id, EnumSet.of(CampaignStatus.RUNNING, CampaignStatus.PAUSED, CampaignStatus.FAILED),
+                CampaignStatus.CANCELLED);
+    }
+
+    @Transactional
+    public AutomationCampaignDTO updateRate(Long id, Integer ratePerMinute) {
+        // El runner lee el rate al empezar cada página
+        if (campaignRepository.updateRate(id, ratePerMinute) == 0) {
+            throw new RuntimeException("Campaña no encontrada.");
+        }
+        return campaignMapper.toDTO(getCampaign(id));
+    }
+
+    private AutomationCampaignDTO transition(Long id, EnumSet<CampaignStatus> from, CampaignStatus to) {
+        if (campaignRepository.transition(id, from, to) == 0) {
+            AutomationCampaign campaign = getCampaign(id);
+            throw new RuntimeException("No se puede pasar la campaña de " + campaign.getStatus() + " a " + to + ".");
+        }
+        return campaignMapper.toDTO(getCampaign(id));
+    }
+
+    private AutomationCampaign getCampaign(Long id) {
+        return campaignRepository.findById(id)
+                .orElseThrow(() -> new RuntimeException("Campaña no encontrada."));
+    }
+}
@@ -0,0 +1,79 @@
+package com.nocountry.backend.services;
+
+import com.nocountry.backend.dto.AutomationDeadLetterDTO;
+import com.nocountry.backend.entity.AutomationDeadLetter;
+import com.nocountry.backend.entity.AutomationExecutionQueue;
+import com.nocountry.backend.enums.ExecutionStatus;
+import com.nocountry.backend.mappers.AutomationDeadLetterMapper;
+import com.nocountry.backend.repository.AutomationDeadLetterRepository;
+import com.nocountry.backend.repository.AutomationExecutionQueueRepository;
+import com.nocountry.backend.services.automation.AutomationTimer;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.LocalDateTime;
+import java.util.List;
+
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AutomationDeadLetterService {
+
+    private static final int REPLAY_BATCH_SIZE = 200;
+
+    private final AutomationDeadLetterRepository deadLetterRepository;
+    private final AutomationExecutionQueueRepository queueRepository;
+    private final AutomationDeadLetterMapper deadLetterMapper;
+    private final AutomationTimer automationTimer;
+
+    @Transactional(readOnly = true)
+    public List<AutomationDeadLetterDTO> getPending(int page, int size) {
+        return deadLetterRepository.findPending(PageRequest.of(page, size)).stream()
+                .map(deadLetterMapper::toDTO)
+                .toList();
+    }
+
+    /**
+     * Re-queues dead-lettered executions as fresh PENDING items that resume at
+     * the action that failed. With no ids, every pending entry is replayed.
+     */
+    @Transactional
+    public int replay(List<Long> ids) {
+        if (ids != null && !ids.isEmpty()) {
+            return replayEntries(deadLetterRepository.findPendingByIds(ids));
+        }
+
+        int replayed = 0;
+        List<AutomationDeadLetter> batch;
+        do {
+            // Las entradas reintentadas dejan de ser pendientes, por eso siempre se lee la primera página
+            batch = deadLetterRepository.findPendingBatch(PageRequest.of(0, REPLAY_BATCH_SIZE));
+            replayed += replayEntries(batch);
+            deadLetterRepository.flush();
+        } while (batch.size() == REPLAY_BATCH_SIZE);
+        return replayed;
+    }
+
+    private int replayEntries(List<AutomationDeadLetter> entries) {
+        LocalDateTime now = LocalDateTime.now();
+        for (AutomationDeadLetter entry : entries) {
+            AutomationExecutionQueue item = queueRepository.save(AutomationExecutionQueue.builder()
+                    .automationRule(entry.getAutomationRule())
+                    .lead(entry.getLead())
+                    .scheduledAt(now)
+                    .status(ExecutionStatus.PENDING)
+                    .actionsCompleted(entry.getActionsCompleted())
+                    .createdAt(now)
+                    .build());
+            automationTimer.scheduleAfterCommit(item.getId(), now);
+            entry.setReplayedAt(now);
+        }
+        if (!entries.isEmpty()) {
+            log.info("Replayed {} dead-lettered automation executions", entries.size());
+        }
+        return entries.size();
+    }
+}
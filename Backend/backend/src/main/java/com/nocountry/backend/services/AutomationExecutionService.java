@@ -1,12 +1,18 @@
 package com.nocountry.backend.services;
 
-import com.fasterxml.jackson.core.type.TypeReference;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.nocountry.backend.dto.ActionDTO;
 import com.nocountry.backend.entity.*;
 import com.nocountry.backend.enums.*;
 import com.nocountry.backend.events.LeadCreatedEvent;
+import com.nocountry.backend.exceptions.AutomationActionException;
 import com.nocountry.backend.repository.*;
+import com.nocountry.backend.services.automation.ActionPlan;
+import com.nocountry.backend.services.automation.AutomationMessageRenderer;
+import com.nocountry.backend.services.automation.AutomationRuleIndex;
+import com.nocountry.backend.services.automation.AutomationTimer;
+import com.nocountry.backend.services.automation.CompiledRule;
+import com.nocountry.backend.services.automation.OutboundMessageRecorder;
+import com.nocountry.backend.services.automation.RenderedMessage;
+import com.nocountry.backend.services.outbound.OutboundDispatcher;
 import com.nocountry.backend.services.whatsapp.WhatsAppApiService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
@@ -24,12 +30,13 @@ public class AutomationExecutionService {
 
     private final AutomationRuleRepository ruleRepository;
     private final AutomationExecutionQueueRepository queueRepository;
-    private final EmailTemplateRepository templateRepository;
-    private final ConversationRepository conversationRepository;
-    private final MessageRepository messageRepository;
+    private final AutomationMessageRenderer messageRenderer;
+    private final OutboundMessageRecorder messageRecorder;
     private final EmailService emailService;
     private final WhatsAppApiService whatsAppService;
-    private final ObjectMapper objectMapper;
+    private final OutboundDispatcher outboundDispatcher;
+    private final AutomationRuleIndex ruleIndex;
+    private final AutomationTimer automationTimer;
 
     @EventListener
     @Transactional
@@ -37,365 +44,106 @@ public class AutomationExecutionService {
         CrmLead lead = event.getLead();
         log.info("Lead created event received for lead: {} ({})", lead.getId(), lead.getName());
 
-        // Find all active rules with LEAD_CREATED trigger
-        List<AutomationRule> rules = ruleRepository
-                .findByTriggerEventAndIsActiveTrue(TriggerEvent.LEAD_CREATED);
+        // Active LEAD_CREATED rules come pre-parsed from the in-memory index
+        List<CompiledRule> rules = ruleIndex.rulesFor(TriggerEvent.LEAD_CREATED);
 
         log.info("Found {} active automation rules for LEAD_CREATED", rules.size());
 
-        for (AutomationRule rule : rules) {
+        for (CompiledRule rule : rules) {
             try {
                 executeOrSchedule(rule, lead);
             } catch (Exception e) {
                 log.error("Error processing rule {} for lead {}: {}",
-                        rule.getId(), lead.getId(), e.getMessage());
+                        rule.id(), lead.getId(), e.getMessage());
             }
         }
     }
 
-    private void executeOrSchedule(AutomationRule rule, CrmLead lead) {
-        Integer waitDays = rule.getWaitDays() != null ? rule.getWaitDays() : 0;
-        Integer waitHours = rule.getWaitHours() != null ? rule.getWaitHours() : 0;
-        int totalDelayMinutes = (waitDays * 24 * 60) + (waitHours * 60);
-
-        if (totalDelayMinutes > 0) {
+    private void executeOrSchedule(CompiledRule rule, CrmLead lead) {
+        if (rule.isDelayed()) {
             // Schedule for later execution
             LocalDateTime executeAt = LocalDateTime.now()
-                    .plusDays(waitDays)
-                    .plusHours(waitHours);
+                    .plusDays(rule.waitDays())
+                    .plusHours(rule.waitHours());
 
             AutomationExecutionQueue item = AutomationExecutionQueue.builder()
-                    .automationRule(rule)
+                    .automationRule(ruleRepository.getReferenceById(rule.id()))
                     .lead(lead)
                     .scheduledAt(executeAt)
                     .status(ExecutionStatus.PENDING)
                     .createdAt(LocalDateTime.now())
                     .build();
             queueRepository.save(item);
+            automationTimer.scheduleAfterCommit(item.getId(), executeAt);
             log.info("Scheduled automation rule '{}' for lead {} at {}",
-                    rule.getName(), lead.getId(), executeAt);
+                    rule.name(), lead.getId(), executeAt);
         } else {
             // Execute immediately
             log.info("Executing automation rule '{}' immediately for lead {}",
-                    rule.getName(), lead.getId());
+                    rule.name(), lead.getId());
             executeActions(rule, lead);
         }
     }
 
     public void executeActions(AutomationRule rule, CrmLead lead) {
-        try {
-            List<ActionDTO> actions = parseActions(rule.getActions());
-            log.info("Executing {} actions for rule '{}'", actions.size(), rule.getName());
-
-            for (ActionDTO action : actions) {
-                executeAction(action, lead);
-            }
-        } catch (Exception e) {
-            log.error("Error executing automation rule '{}': {}", rule.getName(), e.getMessage());
-            throw e;
-        }
+        executeActions(ruleIndex.resolve(rule), lead, 0);
     }
 
-    private List<ActionDTO> parseActions(String actionsJson) {
-        try {
-            if (actionsJson == null || actionsJson.isEmpty()) {
-                log.warn("Empty actions JSON");
-                return List.of();
-            }
-
-            String trimmed = actionsJson.trim();
-            log.debug("Parsing actions JSON: {}", trimmed.substring(0, Math.min(200, trimmed.length())));
-
-            // Check if it's an array (starts with '[') or an object (starts with '{')
-            if (trimmed.startsWith("[")) {
-                // Parse as array directly
-                return objectMapper.readValue(actionsJson,
-                        new TypeReference<List<ActionDTO>>() {
-                        });
-            } else if (trimmed.startsWith("{")) {
-                // Could be:
-                // 1. A wrapper object with "actions" field: {"waitDays":0, "actions":[...]}
-                // 2. A single ActionDTO: {"type":"send-email", ...}
+    public void executeActions(CompiledRule rule, CrmLead lead) {
+        executeActions(rule, lead, 0);
+    }
 
-                // Try to parse as JsonNode first to inspect structure
-                var jsonNode = objectMapper.readTree(actionsJson);
+    /**
+     * Runs the rule's actions starting at {@code firstAction}, so a retry does
+     * not repeat actions that already succeeded. A failure is reported as an
+     * {@link AutomationActionException} carrying the failed action's index and type.
+     */
+    public void executeActions(CompiledRule rule, CrmLead lead, int firstAction) {
+        List<ActionPlan> actions = rule.actions();
+        log.info("Executing {} actions for rule '{}'", actions.size() - firstAction, rule.name());
 
-                if (jsonNode.has("actions") && jsonNode.get("actions").isArray()) {
-                    // It's a wrapper object, extract the actions array
-                    var actionsNode = jsonNode.get("actions");
-                    return objectMapper.convertValue(actionsNode,
-                            new TypeReference<List<ActionDTO>>() {
-                            });
-                } else if (jsonNode.has("type")) {
-                    // It's a single action object
-                    ActionDTO singleAction = objectMapper.treeToValue(jsonNode, ActionDTO.class);
-                    return List.of(singleAction);
-                } else {
-                    log.warn("Unknown JSON object structure, no 'actions' or 'type' field found");
-                    return List.of();
-                }
-            } else {
-                log.warn("Invalid actions JSON format: {}",
-                        actionsJson.substring(0, Math.min(50, actionsJson.length())));
-                return List.of();
+        for (int i = firstAction; i < actions.size(); i++) {
+            ActionPlan action = actions.get(i);
+            try {
+                executeAction(action, lead);
+            } catch (Exception e) {
+                log.error("Error executing automation rule '{}': {}", rule.name(), e.getMessage());
+                throw new AutomationActionException(action.type(), i, e);
             }
-        } catch (Exception e) {
-            log.error("Error parsing actions JSON: {}", e.getMessage());
-            return List.of();
         }
     }
 
-    private void executeAction(ActionDTO action, CrmLead lead) {
-        ActionType actionType = action.getActionType();
-        if (actionType == null) {
-            log.warn("Action type is null or unrecognized: '{}', skipping", action.getType());
-            return;
-        }
-
-        switch (actionType) {
-            case SEND_EMAIL -> sendEmailAction(action, lead);
-            case SEND_WHATSAPP -> sendWhatsAppAction(action, lead);
+    private void executeAction(ActionPlan action, CrmLead lead) {
+        switch (action.type()) {
+            case SEND_EMAIL, SEND_WHATSAPP -> sendMessageAction(action, lead);
             case CREATE_TASK -> log.info("CREATE_TASK action not yet implemented");
             case MOVE_SEGMENT -> log.info("MOVE_SEGMENT action not yet implemented");
-            default -> log.warn("Unsupported action type: {}", actionType);
+            default -> log.warn("Unsupported action type: {}", action.type());
         }
     }
 
-    private void sendEmailAction(ActionDTO action, CrmLead lead) {
-        if (lead.getEmail() == null || lead.getEmail().isEmpty()) {
-            log.warn("Lead {} has no email, skipping email action", lead.getId());
+    private void sendMessageAction(ActionPlan action, CrmLead lead) {
+        RenderedMessage rendered = messageRenderer.prepare(action).render(lead);
+        if (rendered == null) {
             return;
         }
 
-        String subject, body;
-
-        if (action.getTemplateId() != null) {
-            EmailTemplate template = templateRepository.findById(action.getTemplateId())
-                    .orElse(null);
-
-            if (template != null) {
-                subject = renderTemplate(template.getSubject(), lead);
-                body = renderTemplate(template.getBody(), lead);
-            } else {
-                log.warn("Template {} not found, using default welcome email", action.getTemplateId());
-                String[] defaultEmail = getDefaultWelcomeEmail(lead);
-                subject = defaultEmail[0];
-                body = defaultEmail[1];
-            }
-        } else if (action.getCustomMessage() != null && !action.getCustomMessage().isEmpty()) {
-            subject = renderTemplate(action.getCustomSubject(), lead);
-            body = renderTemplate(action.getCustomMessage(), lead);
-        } else {
-            // No template or custom message - use default welcome email
-            log.info("No template or custom message configured, using default welcome email");
-            String[] defaultEmail = getDefaultWelcomeEmail(lead);
-            subject = defaultEmail[0];
-            body = defaultEmail[1];
-        }
-
-        // Ensure we have content
-        if (subject == null || subject.trim().isEmpty()) {
-            subject = "¡Bienvenido/a!";
-        }
-        if (body == null || body.trim().isEmpty()) {
-            String[] defaultEmail = getDefaultWelcomeEmail(lead);
-            body = defaultEmail[1];
-        }
-
-        final String finalSubject = subject;
-        final String finalBody = body;
-
         try {
-            emailService.sendHtmlEmail(lead.getEmail(), subject, body);
-            log.info("Email sent to {} via automation", lead.getEmail());
-
-            // Create or update EMAIL conversation (separate from WhatsApp)
-            Conversation conversation = conversationRepository.findByLeadIdAndChannel(lead.getId(), Channel.EMAIL)
-                    .orElseGet(() -> {
-                        Conversation c = Conversation.builder()
-                                .crm_lead(lead)
-                                .channel(Channel.EMAIL)
-                                .assignedUser(lead.getOwner())
-                                .startedAt(LocalDateTime.now())
-                                .lastMessageAt(LocalDateTime.now())
-                                .lastMessageText(truncateText(finalBody, 200))
-                                .lastMessageDirection(Direction.OUTBOUND)
-                                .status(ConversationStatus.OPEN)
-                                .unreadCount(0)
-                                .build();
-                        return conversationRepository.save(c);
-                    });
-
-            // Update conversation
-            conversation.setLastMessageAt(LocalDateTime.now());
-            conversation.setLastMessageText(truncateText(body, 200));
-            conversation.setLastMessageDirection(Direction.OUTBOUND);
-            conversationRepository.save(conversation);
-
-            // Save message
-            Message message = Message.builder()
-                    .conversation(conversation)
-                    .senderType(SenderType.USER)
-                    .senderLeadId(null)
-                    .messageDirection(Direction.OUTBOUND)
-                    .messageType(MessageType.EMAIL)
-                    .content(body)
-                    .sentAt(LocalDateTime.now())
-                    .build();
-            messageRepository.save(message);
-
-            log.info("Conversation {} updated with automation email", conversation.getId());
-        } catch (Exception e) {
-            log.error("Failed to send email to {}: {}", lead.getEmail(), e.getMessage());
-            throw e;
-        }
-    }
-
-    /**
-     * Get default welcome email [subject, body]
-     */
-    private String[] getDefaultWelcomeEmail(CrmLead lead) {
-        String name = lead.getName() != null && !lead.getName().isEmpty()
-                ? lead.getName()
-                : "estimado/a cliente";
-
-        String subject = "¡Bienvenido/a! Gracias por contactarnos";
-
-        String body = String.format(
-                "<html><body style='font-family: Arial, sans-serif;'>" +
-                        "<h2 style='color: #7c3aed;'>¡Bienvenido/a!</h2>" +
-                        "<p>Hola <strong>%s</strong>,</p>" +
-                        "<p>Gracias por ponerte en contacto con nosotros.</p>" +
-                        "<p>Hemos recibido tu información y nos pondremos en contacto contigo pronto.</p>" +
-                        "<p>Si tienes alguna pregunta, no dudes en responder a este correo.</p>" +
-                        "<br>" +
-                        "<p>¡Saludos cordiales!</p>" +
-                        "</body></html>",
-                name);
-
-        return new String[] { subject, body };
-    }
-
-    private void sendWhatsAppAction(ActionDTO action, CrmLead lead) {
-        if (lead.getPhone() == null || lead.getPhone().isEmpty()) {
-            log.warn("Lead {} has no phone number, skipping WhatsApp action", lead.getId());
-            return;
-        }
-
-        String message;
-
-        if (action.getTemplateId() != null) {
-            EmailTemplate template = templateRepository.findById(action.getTemplateId())
-                    .orElse(null);
-
-            if (template != null) {
-                // Prepend title as bold header for WhatsApp
-                String header = template.getSubject() != null && !template.getSubject().isEmpty()
-                        ? "*" + template.getSubject() + "*\n\n"
-                        : "";
-                message = header + renderTemplate(template.getBody(), lead);
+            if (rendered.type() == ActionType.SEND_EMAIL) {
+                outboundDispatcher.execute(Channel.EMAIL, OutboundPriority.AUTOMATION,
+                        () -> emailService.sendHtmlEmail(lead.getEmail(), rendered.subject(), rendered.body()));
+                log.info("Email sent to {} via automation", lead.getEmail());
             } else {
-                log.warn("Template {} not found, using default welcome message", action.getTemplateId());
-                message = getDefaultWelcomeMessage(lead);
+                outboundDispatcher.execute(Channel.WHATSAPP, OutboundPriority.AUTOMATION,
+                        () -> whatsAppService.sendTextMessage(lead.getPhone(), rendered.body()));
+                log.info("WhatsApp sent to {} via automation", lead.getPhone());
             }
-        } else if (action.getCustomMessage() != null && !action.getCustomMessage().isEmpty()) {
-            // Custom message
-            String header = action.getCustomSubject() != null && !action.getCustomSubject().isEmpty()
-                    ? "*" + action.getCustomSubject() + "*\n\n"
-                    : "";
-            message = header + renderTemplate(action.getCustomMessage(), lead);
-        } else {
-            // No template or custom message - use default welcome
-            log.info("No template or custom message configured, using default welcome message");
-            message = getDefaultWelcomeMessage(lead);
-        }
-
-        // Ensure message is not empty
-        if (message == null || message.trim().isEmpty()) {
-            message = getDefaultWelcomeMessage(lead);
-        }
-
-        final String finalMessage = message;
-
-        try {
-            whatsAppService.sendTextMessage(lead.getPhone(), message);
-            log.info("WhatsApp sent to {} via automation", lead.getPhone());
-
-            // Create or update WHATSAPP conversation (separate from Email)
-            Conversation conversation = conversationRepository.findByLeadIdAndChannel(lead.getId(), Channel.WHATSAPP)
-                    .orElseGet(() -> {
-                        Conversation c = Conversation.builder()
-                                .crm_lead(lead)
-                                .channel(Channel.WHATSAPP)
-                                .assignedUser(lead.getOwner())
-                                .startedAt(LocalDateTime.now())
-                                .lastMessageAt(LocalDateTime.now())
-                                .lastMessageText(truncateText(finalMessage, 200))
-                                .lastMessageDirection(Direction.OUTBOUND)
-                                .status(ConversationStatus.OPEN)
-                                .unreadCount(0)
-                                .build();
-                        return conversationRepository.save(c);
-                    });
-
-            // Update conversation
-            conversation.setLastMessageAt(LocalDateTime.now());
-            conversation.setLastMessageText(truncateText(message, 200));
-            conversation.setLastMessageDirection(Direction.OUTBOUND);
-            conversationRepository.save(conversation);
-
-            // Save message
-            Message msg = Message.builder()
-                    .conversation(conversation)
-                    .senderType(SenderType.USER)
-                    .senderLeadId(null)
-                    .messageDirection(Direction.OUTBOUND)
-                    .messageType(MessageType.TEXT)
-                    .content(message)
-                    .sentAt(LocalDateTime.now())
-                    .build();
-            messageRepository.save(msg);
-
-            log.info("Conversation {} updated with automation WhatsApp", conversation.getId());
         } catch (Exception e) {
-            log.error("Failed to send WhatsApp to {}: {}", lead.getPhone(), e.getMessage());
+            log.error("Failed to send {} to lead {}: {}", rendered.type(), lead.getId(), e.getMessage());
             throw e;
         }
-    }
-
-    private String renderTemplate(String template, CrmLead lead) {
-        if (template == null)
-            return "";
-
-        return template
-                .replace("{{name}}", lead.getName() != null ? lead.getName() : "")
-                .replace("{{email}}", lead.getEmail() != null ? lead.getEmail() : "")
-                .replace("{{phone}}", lead.getPhone() != null ? lead.getPhone() : "")
-                .replace("{{lead.name}}", lead.getName() != null ? lead.getName() : "")
-                .replace("{{lead.email}}", lead.getEmail() != null ? lead.getEmail() : "")
-                .replace("{{lead.phone}}", lead.getPhone() != null ? lead.getPhone() : "");
-    }
-
-    private String getDefaultWelcomeMessage(CrmLead lead) {
-        String name = lead.getName() != null && !lead.getName().isEmpty()
-                ? lead.getName()
-                : "estimado cliente";
-        return String.format(
-                "*¡Bienvenido/a!* 👋\n\n" +
-                        "Hola %s, gracias por contactarnos.\n\n" +
-                        "Nos pondremos en contacto contigo pronto. " +
-                        "Si tienes alguna pregunta, no dudes en escribirnos.\n\n" +
-                        "¡Saludos!",
-                name);
-    }
 
-    private String truncateText(String text, int maxLength) {
-        if (text == null)
-            return "";
-        // Strip HTML tags for preview
-        String plainText = text.replaceAll("<[^>]*>", "").trim();
-        if (plainText.length() <= maxLength)
-            return plainText;
-        return plainText.substring(0, maxLength - 3) + "...";
+        // Each channel keeps its own conversation (EMAIL separate from WHATSAPP)
+        messageRecorder.record(rendered);
     }
 }
@@ -9,6 +9,7 @@ import com.nocountry.backend.mappers.AutomationRuleMapper;
 import com.nocountry.backend.repository.AutomationRuleRepository;
 import com.nocountry.backend.repository.CrmLeadRepository;
 import com.nocountry.backend.repository.UserRepository;
+import com.nocountry.backend.services.automation.AutomationRuleIndex;
 
 import jakarta.transaction.Transactional;
 import lombok.RequiredArgsConstructor;
@@ -28,6 +29,7 @@ public class AutomationRuleService {
     private final UserRepository userRepository;
     private final CrmLeadRepository crmLeadRepository;
     private final AutomationRuleMapper ruleMapper;
+    private final AutomationRuleIndex ruleIndex;
 
     @Transactional
     public AutomationRuleDTO createRule(CreateUpdateAutomationRuleDTO dto, Long creatorId) {
@@ -39,6 +41,7 @@ public class AutomationRuleService {
         rule.setCreatedAt(LocalDateTime.now());
 
         rule = ruleRepository.save(rule);
+        ruleIndex.rebuildAfterCommit();
         return ruleMapper.toDTO(rule);
     }
 
@@ -62,6 +65,7 @@ public class AutomationRuleService {
         ruleMapper.updateEntityFromDto(dto, rule);
 
         rule = ruleRepository.save(rule);
+        ruleIndex.rebuildAfterCommit();
         return ruleMapper.toDTO(rule);
     }
 
@@ -71,6 +75,7 @@ public class AutomationRuleService {
             throw new RuntimeException("Regla de automatización a eliminar no encontrada.");
         }
         ruleRepository.deleteById(id);
+        ruleIndex.rebuildAfterCommit();
     }
 
     @Transactional
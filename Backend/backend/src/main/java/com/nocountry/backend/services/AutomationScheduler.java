@@ -1,61 +1,120 @@
 package com.nocountry.backend.services;
 
-import com.nocountry.backend.entity.AutomationExecutionQueue;
-import com.nocountry.backend.enums.ExecutionStatus;
-import com.nocountry.backend.repository.AutomationExecutionQueueRepository;
-import lombok.RequiredArgsConstructor;
+import com.nocountry.backend.services.automation.AutomationQueueService;
+import com.nocountry.backend.services.automation.AutomationTimer;
+import com.nocountry.backend.services.automation.WorkerId;
+import com.nocountry.backend.services.queue.LeasedQueueDispatcher;
+import jakarta.annotation.PreDestroy;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
 import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
 
-import java.time.LocalDateTime;
-import java.util.List;
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
+/**
+ * Claim-based executor for the automation queue. Rows are claimed in batches
+ * with SELECT ... FOR UPDATE SKIP LOCKED, so any number of nodes can poll the
+ * same table, and each claimed row runs on a bounded local pool in its own
+ * transaction, fed by a {@link LeasedQueueDispatcher}.
+ * <p>
+ * The dispatcher is woken when the {@link AutomationTimer} reports that an
+ * item became due, so delayed rules fire within a second of their scheduled
+ * time, and keeps draining while a backlog remains.
+ * The slower poll recovers expired leases and re-syncs the timer with the table.
+ * The timer ticks on its own thread: a tick may claim rows from the database,
+ * and Spring's shared scheduler thread must not wait on that.
+ */
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class AutomationScheduler {
 
-    private final AutomationExecutionQueueRepository queueRepository;
-    private final AutomationExecutionService executionService;
+    private final AutomationQueueService queueService;
+    private final AutomationTimer timer;
+    private final LeasedQueueDispatcher dispatcher;
+    private final String workerId = WorkerId.current();
+    private final long tickMs;
+    private final ScheduledExecutorService ticker;
 
-    @Scheduled(fixedRate = 60000) // Every minute
-    @Transactional
-    public void processQueue() {
-        List<AutomationExecutionQueue> pending = queueRepository
-                .findByStatusAndScheduledAtLessThanEqual(
-                        ExecutionStatus.PENDING,
-                        LocalDateTime.now());
+    public AutomationScheduler(
+            AutomationQueueService queueService,
+            AutomationTimer timer,
+            @Qualifier("automationTaskExecutor") ThreadPoolTaskExecutor executor,
+            @Value("${automation.queue.worker-threads:4}") int workerThreads,
+            @Value("${automation.queue.batch-size:20}") int batchSize,
+            @Value("${automation.queue.lease-minutes:10}") long leaseMinutes,
+            @Value("${automation.queue.poll-interval-ms:300000}") long pollIntervalMs,
+            @Value("${automation.timer.tick-ms:1000}") long tickMs) {
+        this.queueService = queueService;
+        this.timer = timer;
+        // El poll del dispatcher es solo un respaldo: el timer lo despierta
+        this.dispatcher = new LeasedQueueDispatcher("automation-queue", queueService::claimBatch, this::execute,
+                executor, workerThreads, batchSize, pollIntervalMs, Duration.ofMinutes(leaseMinutes));
+        this.tickMs = tickMs;
+        this.ticker = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "automation-timer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        dispatcher.start();
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        ticker.shutdownNow();
+        dispatcher.stop();
+    }
+
+    void tick() {
+        try {
+            if (timer.advance() > 0) {
+                dispatcher.wakeUp();
+            }
+        } catch (Exception e) {
+            // Una excepción cancelaría los siguientes ticks
+            log.error("Error on automation timer tick: {}", e.getMessage());
+        }
+    }
 
-        if (!pending.isEmpty()) {
-            log.info("Processing {} pending automation executions", pending.size());
+    @Scheduled(fixedDelayString = "${automation.queue.poll-interval-ms:300000}")
+    public void processQueue() {
+        try {
+            int recovered = queueService.recoverExpiredLeases();
+            if (recovered > 0) {
+                log.warn("Recovered {} automation executions with expired leases", recovered);
+            }
+        } catch (Exception e) {
+            log.error("Error recovering expired automation leases: {}", e.getMessage());
+        }
+        try {
+            timer.preload();
+        } catch (Exception e) {
+            log.error("Error preloading automation timer: {}", e.getMessage());
         }
+    }
 
-        for (AutomationExecutionQueue item : pending) {
+    private void execute(Long itemId) {
+        try {
+            queueService.executeClaimed(itemId, workerId);
+        } catch (Exception e) {
+            log.error("Automation queue item {} could not be committed: {}", itemId, e.getMessage());
             try {
-                item.setStatus(ExecutionStatus.EXECUTING);
-                queueRepository.save(item);
-
-                executionService.executeActions(
-                        item.getAutomationRule(),
-                        item.getLead());
-
-                item.setStatus(ExecutionStatus.COMPLETED);
-                item.setExecutedAt(LocalDateTime.now());
-                log.info("Automation '{}' completed for lead {}",
-                        item.getAutomationRule().getName(),
-                        item.getLead().getId());
-            } catch (Exception e) {
-                item.setStatus(ExecutionStatus.FAILED);
-                item.setErrorMessage(e.getMessage());
-                item.setRetryCount(item.getRetryCount() + 1);
-                log.error("Automation '{}' failed for lead {}: {}",
-                        item.getAutomationRule().getName(),
-                        item.getLead().getId(),
-                        e.getMessage());
+                queueService.markFailed(itemId, workerId, e);
+            } catch (Exception markError) {
+                log.error("Could not mark automation queue item {} as failed: {}", itemId, markError.getMessage());
             }
-            queueRepository.save(item);
         }
     }
 }
@@ -12,6 +12,7 @@ import com.nocountry.backend.repository.ConversationRepository;
 import com.nocountry.backend.repository.CrmLeadRepository;
 import com.nocountry.backend.repository.MessageRepository;
 import com.nocountry.backend.repository.UserRepository;
+import com.nocountry.backend.services.whatsapp.ContactRouteCache;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -29,6 +30,7 @@ public class ConversationService {
     private final ConversationMapper conversationMapper;
     private final MessageMapper messageMapper;
     private final UserRepository userRepository;
+    private final ContactRouteCache contactRouteCache;
 
     // --- Messages ---
     public List<MessageDTO> getConversationMessages(Long conversationId, Long userId) {
@@ -97,6 +99,7 @@ public class ConversationService {
             throw new RuntimeException("Conversación no encontrada: " + id);
         }
         conversationRepository.deleteById(id);
+        contactRouteCache.evictConversationAfterCommit(id);
     }
 
     // --- MARK AS READ (POST) ---
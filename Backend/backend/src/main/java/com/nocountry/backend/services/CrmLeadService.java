@@ -8,6 +8,8 @@ import com.nocountry.backend.enums.Stage;
 import com.nocountry.backend.events.LeadCreatedEvent;
 import com.nocountry.backend.repository.*;
 import com.nocountry.backend.mappers.*;
+import com.nocountry.backend.services.whatsapp.ContactRouteCache;
+import com.nocountry.backend.util.PhoneNumbers;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
@@ -17,6 +19,7 @@ import org.springframework.stereotype.Service;
 import java.time.LocalDateTime;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Objects;
 import java.util.Set;
 
 @Service
@@ -31,6 +34,7 @@ public class CrmLeadService {
     private final NotificationService notificationService;
     private final UserRepository userRepository;
     private final ApplicationEventPublisher eventPublisher;
+    private final ContactRouteCache contactRouteCache;
 
     public CrmLeadDTO create(CreateCrmLeadDTO dto) {
 
@@ -103,6 +107,12 @@ public class CrmLeadService {
 
         CrmLead saved = crmLeadRepository.save(crmLead);
 
+        // El remitente de WhatsApp se enruta por teléfono: invalidar la ruta cacheada
+        if (!Objects.equals(before.getPhone(), saved.getPhone())) {
+            contactRouteCache.evictLeadAfterCommit(saved.getId());
+            contactRouteCache.evictPhoneAfterCommit(PhoneNumbers.toE164(saved.getPhone()));
+        }
+
         detectChangesAndLog(before, saved);
 
         return crmLeadMapper.toDTO(saved);
@@ -2,102 +2,359 @@ package com.nocountry.backend.services;
 
 import com.nocountry.backend.entity.Conversation;
 import com.nocountry.backend.entity.CrmLead;
+import com.nocountry.backend.entity.ImapSyncState;
 import com.nocountry.backend.entity.Message;
 import com.nocountry.backend.enums.Direction;
 import com.nocountry.backend.enums.MessageType;
 import com.nocountry.backend.enums.SenderType;
 import com.nocountry.backend.repository.ConversationRepository;
 import com.nocountry.backend.repository.CrmLeadRepository;
+import com.nocountry.backend.repository.ImapSyncStateRepository;
 import com.nocountry.backend.repository.MessageRepository;
-import com.nocountry.backend.services.email.EmailConfigService;
 import com.nocountry.backend.services.email.EmailConfigService.EmailCredentials;
+import com.nocountry.backend.services.email.ImapInboxListener;
+import com.nocountry.backend.services.email.ReplyStripper;
+import io.micrometer.core.instrument.MeterRegistry;
 import jakarta.mail.*;
 import jakarta.mail.internet.InternetAddress;
-import jakarta.mail.search.FlagTerm;
-import lombok.RequiredArgsConstructor;
+import jakarta.mail.internet.MimeMessage;
+import jakarta.mail.search.ComparisonTerm;
+import jakarta.mail.search.ReceivedDateTerm;
 import lombok.extern.slf4j.Slf4j;
 import org.jsoup.Jsoup;
-import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.time.Duration;
+import java.time.Instant;
 import java.time.LocalDateTime;
-import java.util.Properties;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
 
 @Service
 @Slf4j
-@RequiredArgsConstructor
 public class EmailInboundService {
 
     private final CrmLeadRepository leadRepository;
     private final ConversationRepository conversationRepository;
     private final MessageRepository messageRepository;
-    private final EmailConfigService emailConfigService;
+    private final ImapSyncStateRepository syncStateRepository;
+    private final MeterRegistry meterRegistry;
+    private final ReplyStripper replyStripper;
+    private final ThreadPoolTaskExecutor parseExecutor;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${email.imap.initial-sync-days:3}")
+    private int initialSyncDays;
+
+    // Intentos por correo fallido antes de dejarlo atrás del checkpoint
+    @Value("${email.imap.max-retries:5}")
+    private int maxRetries;
+
+    // Correos hasta este tamaño se copian completos a memoria para parsearlos fuera de la conexión IMAP
+    @Value("${email.inbound.max-detached-bytes:10485760}")
+    private long maxDetachedBytes;
+
+    public EmailInboundService(
+            CrmLeadRepository leadRepository,
+            ConversationRepository conversationRepository,
+            MessageRepository messageRepository,
+            ImapSyncStateRepository syncStateRepository,
+            MeterRegistry meterRegistry,
+            ReplyStripper replyStripper,
+            @Qualifier("emailParseExecutor") ThreadPoolTaskExecutor parseExecutor,
+            PlatformTransactionManager transactionManager) {
+        this.leadRepository = leadRepository;
+        this.conversationRepository = conversationRepository;
+        this.messageRepository = messageRepository;
+        this.syncStateRepository = syncStateRepository;
+        this.meterRegistry = meterRegistry;
+        this.replyStripper = replyStripper;
+        this.parseExecutor = parseExecutor;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
 
     /**
-     * Corre cada 1 minuto. Lee correos nuevos y los guarda como Message.
+     * Importa los correos nuevos de {@code folder} desde el último UID guardado
+     * en imap_sync_state, sin tocar los flags del buzón. Lo llama
+     * {@link ImapInboxListener} al conectar y cada vez que IDLE (o el polling de
+     * respaldo) avisa de correo nuevo.
+     * <p>
+     * Sobres y UIDs se traen en un solo FETCH; el cuerpo solo se descarga para
+     * correos de un lead conocido que todavía no fueron importados. Si cambia
+     * UIDVALIDITY (o es la primera vez) se reimportan los últimos días y el
+     * Message-ID evita duplicados.
+     * <p>
+     * No hay una transacción envolvente: el checkpoint se guarda recién cuando
+     * todos los correos del lote terminaron de procesarse. Los que fallaron al
+     * bajarse, parsearse o guardarse quedan en retry_uids y se vuelven a pedir
+     * por UID en las siguientes sincronizaciones, hasta email.imap.max-retries.
+     *
+     * @return cantidad de correos importados
      */
-    @Scheduled(fixedDelay = 60000)
-    @Transactional
-    public void checkInbox() {
-        // Obtener credenciales dinámicamente
-        EmailCredentials credentials = emailConfigService.getEmailCredentials().orElse(null);
-        if (credentials == null || !credentials.isValid()) {
-            log.debug("Email not configured, skipping inbox check");
-            return;
+    public int syncFolder(Folder folder, EmailCredentials credentials) throws MessagingException {
+        UIDFolder uidFolder = (UIDFolder) folder;
+        long uidValidity = uidFolder.getUIDValidity();
+
+        ImapSyncState state = syncStateRepository
+                .findByHostAndUsernameAndFolderName(credentials.imapHost(), credentials.username(), folder.getFullName())
+                .orElseGet(() -> ImapSyncState.builder()
+                        .host(credentials.imapHost())
+                        .username(credentials.username())
+                        .folderName(folder.getFullName())
+                        .build());
+
+        boolean resync = state.getUidValidity() == null || state.getUidValidity() != uidValidity;
+        long checkpoint;
+        long baseline = 0;
+        // Con otro UIDVALIDITY los UIDs pendientes ya no identifican los mismos correos
+        Map<Long, Integer> retries = resync ? new HashMap<>() : parseRetries(state.getRetryUids());
+        List<jakarta.mail.Message> candidates = new ArrayList<>();
+        if (resync) {
+            log.info("📬 IMAP folder {} without a valid checkpoint, importing the last {} days",
+                    folder.getFullName(), initialSyncDays);
+            checkpoint = 0;
+            // Lo que no entre en la ventana inicial queda detrás del checkpoint
+            baseline = highestUid(folder, uidFolder);
+            Date since = Date.from(Instant.now().minus(Duration.ofDays(initialSyncDays)));
+            candidates.addAll(Arrays.asList(folder.search(new ReceivedDateTerm(ComparisonTerm.GE, since))));
+        } else {
+            checkpoint = state.getLastUid();
+            candidates.addAll(Arrays.asList(uidFolder.getMessagesByUID(checkpoint + 1, UIDFolder.LASTUID)));
+            if (!retries.isEmpty()) {
+                long[] retryUids = retries.keySet().stream().mapToLong(Long::longValue).toArray();
+                // Los UIDs ya expurgados vuelven como null
+                Arrays.stream(uidFolder.getMessagesByUID(retryUids))
+                        .filter(Objects::nonNull)
+                        .forEach(candidates::add);
+            }
         }
 
-        try {
-            Properties props = new Properties();
-            props.put("mail.store.protocol", "imap");
-            props.put("mail.imap.ssl.enable", "true");
+        // Un solo round trip para UID, remitente, Message-ID y fecha de todos los candidatos
+        FetchProfile profile = new FetchProfile();
+        profile.add(UIDFolder.FetchProfileItem.UID);
+        profile.add(FetchProfile.Item.ENVELOPE);
+        folder.fetch(candidates.toArray(jakarta.mail.Message[]::new), profile);
+
+        Map<Long, InboundEnvelope> envelopes = new TreeMap<>();
+        long lastUid = checkpoint;
+        for (jakarta.mail.Message mail : candidates) {
+            long uid = uidFolder.getUID(mail);
+            // "UID n:*" siempre devuelve el último mensaje aunque su UID sea menor que n
+            if (uid <= checkpoint && !retries.containsKey(uid)) {
+                continue;
+            }
+            lastUid = Math.max(lastUid, uid);
+            Address[] from = mail.getFrom();
+            if (from == null || from.length == 0 || !(from[0] instanceof InternetAddress address)) {
+                continue;
+            }
+            envelopes.putIfAbsent(uid, new InboundEnvelope(mail, uid, address.getAddress().toLowerCase(Locale.ROOT),
+                    ((MimeMessage) mail).getMessageID()));
+        }
+        lastUid = Math.max(lastUid, baseline);
+
+        Set<Long> failed = ConcurrentHashMap.newKeySet();
+        int imported = importEnvelopes(new ArrayList<>(envelopes.values()), failed);
+
+        // El checkpoint avanza igual; lo fallido se reintenta por UID
+        Map<Long, Integer> pending = new TreeMap<>();
+        for (Long uid : failed) {
+            int attempts = retries.getOrDefault(uid, 0) + 1;
+            if (attempts < maxRetries) {
+                pending.put(uid, attempts);
+            } else {
+                log.error("Giving up on inbound email uid={} in {} after {} attempts",
+                        uid, folder.getFullName(), attempts);
+            }
+        }
+
+        state.setUidValidity(uidValidity);
+        state.setLastUid(lastUid);
+        state.setRetryUids(formatRetries(pending));
+        state.setUpdatedAt(LocalDateTime.now());
+        syncStateRepository.save(state);
+        return imported;
+    }
+
+    /**
+     * "uid:attempts,uid:attempts" a mapa; entradas mal formadas se ignoran.
+     */
+    static Map<Long, Integer> parseRetries(String value) {
+        Map<Long, Integer> retries = new HashMap<>();
+        if (value == null || value.isBlank()) {
+            return retries;
+        }
+        for (String entry : value.split(",")) {
+            String[] parts = entry.trim().split(":");
+            try {
+                retries.put(Long.parseLong(parts[0]), parts.length > 1 ? Integer.parseInt(parts[1]) : 0);
+            } catch (NumberFormatException e) {
+                log.warn("Ignoring malformed IMAP retry entry: {}", entry);
+            }
+        }
+        return retries;
+    }
 
-            Session session = Session.getInstance(props);
-            Store store = session.getStore();
-            store.connect(credentials.imapHost(), credentials.imapPort(), credentials.username(),
-                    credentials.password());
+    static String formatRetries(Map<Long, Integer> retries) {
+        if (retries.isEmpty()) {
+            return null;
+        }
+        return retries.entrySet().stream()
+                .map(entry -> entry.getKey() + ":" + entry.getValue())
+                .collect(Collectors.joining(","));
+    }
 
-            String folderName = credentials.folderName() != null ? credentials.folderName() : "INBOX";
-            Folder folder = store.getFolder(folderName);
-            folder.open(Folder.READ_WRITE);
+    /**
+     * Resuelve leads y duplicados del lote en dos consultas. Los cuerpos se
+     * descargan en este hilo (hay una sola conexión IMAP); el parseo corre en
+     * paralelo en emailParseExecutor y cada correo se guarda en su propia
+     * transacción, en orden de UID dentro de cada lead.
+     */
+    private int importEnvelopes(List<InboundEnvelope> envelopes, Set<Long> failed) throws MessagingException {
+        if (envelopes.isEmpty()) {
+            return 0;
+        }
 
-            jakarta.mail.Message[] messages = folder.search(new FlagTerm(new Flags(Flags.Flag.SEEN), false));
+        Set<String> senders = envelopes.stream().map(InboundEnvelope::from).collect(Collectors.toSet());
+        Map<String, CrmLead> leadsByEmail = new HashMap<>();
+        for (CrmLead lead : leadRepository.findByLowerEmailIn(senders)) {
+            leadsByEmail.putIfAbsent(lead.getEmail().toLowerCase(Locale.ROOT), lead);
+        }
 
-            for (jakarta.mail.Message mail : messages) {
-                processInboundEmail(mail);
-                mail.setFlag(Flags.Flag.SEEN, true);
+        List<String> messageIds = envelopes.stream()
+                .map(InboundEnvelope::messageId)
+                .filter(Objects::nonNull)
+                .toList();
+        // El Message-ID es único en la tabla message: no reimportar el mismo email
+        Set<String> existing = messageIds.isEmpty()
+                ? Set.of()
+                : new HashSet<>(messageRepository.findExistingExternalIds(messageIds));
+
+        // 1. Descargar y encolar el parseo
+        Map<Long, List<CompletableFuture<ParsedEmail>>> parsesByLead = new LinkedHashMap<>();
+        for (InboundEnvelope envelope : envelopes) {
+            CrmLead lead = leadsByEmail.get(envelope.from());
+            if (lead == null) {
+                log.debug("Inbound email ignored, does not match any lead: {}", envelope.from());
+                continue;
+            }
+            if (envelope.messageId() != null && !existing.add(envelope.messageId())) {
+                continue;
             }
 
-            folder.close(false);
-            store.close();
+            FetchedEmail fetched;
+            try {
+                fetched = download(envelope, lead.getId());
+            } catch (FolderClosedException | StoreClosedException e) {
+                // Conexión perdida: el listener reconecta y vuelve a sincronizar
+                throw e;
+            } catch (Exception e) {
+                log.error("ERROR downloading inbound email uid={} ({}): {}",
+                        envelope.uid(), envelope.messageId(), e.getMessage());
+                failed.add(envelope.uid());
+                continue;
+            }
+            parsesByLead.computeIfAbsent(lead.getId(), id -> new ArrayList<>())
+                    .add(CompletableFuture.supplyAsync(() -> parse(fetched), parseExecutor));
+        }
 
-        } catch (Exception e) {
-            log.error("ERROR reading IMAP: {}", e.getMessage());
+        // 2. Guardar: una transacción por correo, en serie dentro de cada lead
+        // para no crear dos conversaciones para el mismo lead
+        AtomicInteger imported = new AtomicInteger();
+        List<CompletableFuture<Void>> persisted = new ArrayList<>();
+        for (List<CompletableFuture<ParsedEmail>> parses : parsesByLead.values()) {
+            persisted.add(CompletableFuture.allOf(parses.toArray(CompletableFuture[]::new))
+                    .thenRunAsync(() -> parses.forEach(parse -> persist(parse.join(), imported, failed)),
+                            parseExecutor));
+        }
+        CompletableFuture.allOf(persisted.toArray(CompletableFuture[]::new)).join();
+        return imported.get();
+    }
+
+    /**
+     * Baja el correo por la conexión IMAP. Los correos normales se copian
+     * completos a memoria; de los muy grandes (adjuntos) solo se baja el texto.
+     */
+    private FetchedEmail download(InboundEnvelope envelope, Long leadId) throws Exception {
+        jakarta.mail.Message mail = envelope.mail();
+        Date receivedAt = mail.getReceivedDate();
+        if (mail.getSize() <= maxDetachedBytes) {
+            return new FetchedEmail(envelope.uid(), envelope.messageId(), leadId, receivedAt,
+                    new MimeMessage((MimeMessage) mail), null);
         }
+        return new FetchedEmail(envelope.uid(), envelope.messageId(), leadId, receivedAt,
+                null, extractContent(mail));
     }
 
-    private void processInboundEmail(jakarta.mail.Message mail) throws Exception {
-        String from = ((InternetAddress) mail.getFrom()[0]).getAddress();
-        String subject = mail.getSubject();
-        String rawContent = extractContent(mail);
+    /**
+     * Corre en emailParseExecutor. Si el correo no se pudo parsear devuelve un
+     * ParsedEmail sin contenido, que persist cuenta como fallido.
+     */
+    private ParsedEmail parse(FetchedEmail fetched) {
+        try {
+            String rawContent = fetched.rawContent() != null
+                    ? fetched.rawContent()
+                    : extractContent(fetched.message());
+
+            String cleanedContent = cleanHtml(rawContent);
 
-        String cleanedContent = cleanHtml(rawContent);
+            String content = cleanReply(cleanedContent);
 
-        String content = cleanReply(cleanedContent);
+            return new ParsedEmail(fetched.uid(), fetched.messageId(), fetched.leadId(), fetched.receivedAt(),
+                    content);
+        } catch (Exception e) {
+            log.error("ERROR parsing inbound email uid={} ({}): {}", fetched.uid(), fetched.messageId(),
+                    e.getMessage());
+            return new ParsedEmail(fetched.uid(), fetched.messageId(), fetched.leadId(), fetched.receivedAt(),
+                    null);
+        }
+    }
 
-        // Extraer el Message-ID para threading
-        String[] messageIdHeaders = mail.getHeader("Message-ID");
-        String messageId = (messageIdHeaders != null && messageIdHeaders.length > 0)
-                ? messageIdHeaders[0]
-                : null;
+    private void persist(ParsedEmail parsed, AtomicInteger imported, Set<Long> failed) {
+        if (parsed.content() == null) {
+            failed.add(parsed.uid());
+            return;
+        }
+        try {
+            transactionTemplate.executeWithoutResult(status -> saveInboundEmail(parsed));
+            recordLag(parsed.receivedAt());
+            imported.incrementAndGet();
+        } catch (Exception e) {
+            log.error("ERROR processing inbound email uid={} ({}): {}", parsed.uid(), parsed.messageId(),
+                    e.getMessage());
+            failed.add(parsed.uid());
+        }
+    }
+
+    private long highestUid(Folder folder, UIDFolder uidFolder) throws MessagingException {
+        int count = folder.getMessageCount();
+        return count > 0 ? uidFolder.getUID(folder.getMessage(count)) : 0;
+    }
 
-        CrmLead lead = leadRepository.findFirstByEmailIgnoreCase(from)
-                .orElse(null);
+    /**
+     * Demora entre la llegada al buzón y la importación.
+     */
+    private void recordLag(Date receivedAt) {
+        if (receivedAt != null) {
+            Duration lag = Duration.between(receivedAt.toInstant(), Instant.now());
+            meterRegistry.timer("email.inbound.lag").record(lag.isNegative() ? Duration.ZERO : lag);
+        }
+    }
 
+    private void saveInboundEmail(ParsedEmail parsed) {
+        CrmLead lead = leadRepository.findById(parsed.leadId()).orElse(null);
         if (lead == null) {
-            System.out.println("Inbound email ignored, does not match any lead: " + from);
             return;
         }
+        String content = parsed.content();
 
         Conversation conversation = conversationRepository.findFirstByCrmLead(lead)
                 .orElseGet(() -> conversationRepository.save(
@@ -116,11 +373,12 @@ public class EmailInboundService {
                 .messageDirection(Direction.INBOUND)
                 .messageType(MessageType.EMAIL)
                 .content(content)
-                .externalMessageId(messageId) // Guardar Message-ID para threading
+                .externalMessageId(parsed.messageId()) // Guardar Message-ID para threading
                 .sentAt(LocalDateTime.now())
                 .build();
 
         messageRepository.save(inbound);
+        conversationRepository.appendEmailMessageId(conversation.getId(), parsed.messageId(), true);
 
         conversation.setLastMessageAt(LocalDateTime.now());
         conversation.setLastMessageText(content.substring(0, Math.min(content.length(), 200)));
@@ -128,6 +386,17 @@ public class EmailInboundService {
         conversationRepository.save(conversation);
     }
 
+    private record InboundEnvelope(jakarta.mail.Message mail, long uid, String from, String messageId) {
+    }
+
+    // message es una copia desconectada del folder; rawContent solo para correos grandes
+    private record FetchedEmail(long uid, String messageId, Long leadId, Date receivedAt,
+            MimeMessage message, String rawContent) {
+    }
+
+    private record ParsedEmail(long uid, String messageId, Long leadId, Date receivedAt, String content) {
+    }
+
     private String extractContent(Part part) throws Exception {
         if (part.isMimeType("text/plain")) {
             return (String) part.getContent();
@@ -155,32 +424,6 @@ public class EmailInboundService {
     }
 
     private String cleanReply(String raw) {
-        if (raw == null)
-            return "";
-
-        String cleaned = raw.replaceAll("[\\u00A0\\u2007\\u202F]+", " ").trim();
-
-        String[] simpleSplitters = {
-                "escribió:",
-                "wrote:",
-                "Sent from my iPhone",
-                "Enviado desde mi iPhone",
-                "Enviado desde mi Android"
-        };
-
-        for (String splitter : simpleSplitters) {
-            int idx = cleaned.lastIndexOf(splitter);
-            if (idx > 0) {
-                cleaned = cleaned.substring(0, idx).trim();
-            }
-        }
-
-        String regexGmail = "(?i)(?:El|On)\\s+.+?\\d{4}.*?(?:a\\s+la\\(s\\)|at)\\s+\\d{1,2}:\\d{2}.*";
-
-        cleaned = cleaned.replaceAll("(?s)" + regexGmail, "").trim();
-
-        cleaned = cleaned.replaceAll("(?i)el\\s+\\w{3},?\\s+\\d{1,2}\\s+\\w{3}.*$", "").trim();
-
-        return cleaned;
+        return replyStripper.strip(raw);
     }
 }
\ No newline at end of file
@@ -4,22 +4,32 @@ import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.nocountry.backend.dto.SendEmailRequest;
 import com.nocountry.backend.entity.*;
+import com.nocountry.backend.enums.Channel;
 import com.nocountry.backend.enums.IntegrationType;
+import com.nocountry.backend.enums.OutboundPriority;
 import com.nocountry.backend.repository.*;
+import com.nocountry.backend.services.email.EmailTrackingService;
+import com.nocountry.backend.services.email.SmtpTransportPool;
+import com.nocountry.backend.services.outbound.OutboundDispatcher;
+import com.nocountry.backend.services.template.CompiledTemplate;
+import com.nocountry.backend.services.template.TemplateCompiler;
+import com.nocountry.backend.services.template.TemplateCompiler.CompiledEmailTemplate;
+import com.nocountry.backend.services.template.VariableResolver;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.mail.MailSendException;
 import org.springframework.mail.javamail.JavaMailSender;
 import org.springframework.mail.javamail.JavaMailSenderImpl;
 import org.springframework.mail.javamail.MimeMessageHelper;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import jakarta.mail.internet.MimeMessage;
 
 import java.time.LocalDateTime;
-import java.util.Map;
-import java.util.Properties;
+import java.util.*;
 
 @Service
 @RequiredArgsConstructor
@@ -31,8 +41,13 @@ public class EmailService {
     private final ConversationRepository conversationRepository;
     private final MessageRepository messageRepository;
     private final UserRepository userRepository;
-    private final IntegrationConfigRepository integrationConfigRepository;
+    private final IntegrationConfigCache configCache;
     private final ObjectMapper objectMapper;
+    private final TemplateCompiler templateCompiler;
+    private final OutboundDispatcher outboundDispatcher;
+    private final SmtpTransportPool smtpTransportPool;
+    private final EmailTrackingService emailTrackingService;
+    private final PlatformTransactionManager transactionManager;
 
     // JavaMailSender es opcional - puede venir de Spring o crearse dinámicamente
     @Autowired(required = false)
@@ -41,38 +56,62 @@ public class EmailService {
     /**
      * Enviar email; si viene templateId usa esa plantilla (sino usa subject/body).
      * Luego registra un Message y actualiza o crea Conversation.
+     * <p>
+     * La espera del dispatcher y el envío SMTP quedan fuera de toda transacción:
+     * se renderiza y crea el EmailLog en una, se envía, y el Message se guarda en otra.
      */
-    @Transactional
     public void sendEmail(SendEmailRequest request) {
+        TransactionTemplate transactionTemplate = new TransactionTemplate(transactionManager);
+        PreparedEmail prepared = transactionTemplate.execute(status -> prepareEmail(request));
 
+        String providerMessageId = outboundDispatcher.execute(Channel.EMAIL, OutboundPriority.INTERACTIVE,
+                () -> sendHtmlEmail(prepared.lead().getEmail(), prepared.subject(), prepared.trackedBody(),
+                        null, null));
+
+        transactionTemplate.executeWithoutResult(status -> recordSentEmail(prepared, providerMessageId));
+    }
+
+    private PreparedEmail prepareEmail(SendEmailRequest request) {
         CrmLead lead = crmLeadRepository.findById(request.leadId())
                 .orElseThrow(() -> new RuntimeException("Lead not found: " + request.leadId()));
 
         String authName = SecurityContextHolder.getContext().getAuthentication().getName();
-        User sender = userRepository.findByEmail(authName)
+        userRepository.findByEmail(authName)
                 .orElseThrow(() -> new RuntimeException("Authenticated user not found: " + authName));
 
-        String subject;
-        String body;
+        CompiledTemplate subject;
+        CompiledTemplate body;
         EmailTemplate template = null;
 
         if (request.templateId() != null) {
             template = emailTemplateRepository.findById(request.templateId())
                     .orElseThrow(() -> new RuntimeException("Template not found: " + request.templateId()));
-            subject = template.getSubject() != null ? template.getSubject() : request.subject();
-            body = template.getBody();
+            CompiledEmailTemplate compiled = templateCompiler.compile(template);
+            subject = template.getSubject() != null ? compiled.subject() : CompiledTemplate.parse(request.subject());
+            body = compiled.body();
         } else {
-            subject = request.subject();
-            body = request.body();
-            if (body == null)
+            if (request.body() == null)
                 throw new RuntimeException("Either templateId or body must be provided");
+            subject = CompiledTemplate.parse(request.subject());
+            body = CompiledTemplate.parse(request.body());
         }
 
-        Map<String, String> vars = request.templateVars() == null ? Map.of() : request.templateVars();
-        String renderedBody = renderTemplate(body, lead, vars);
-        String renderedSubject = subject != null ? renderTemplate(subject, lead, vars) : "";
+        // Atajos del lead primero, luego variables custom
+        VariableResolver variables = VariableResolver.lead(lead)
+                .then(VariableResolver.map(request.templateVars()));
+        String renderedBody = body.render(variables);
+        String renderedSubject = subject.render(variables);
 
-        sendHtmlEmail(lead.getEmail(), renderedSubject, renderedBody);
+        // El log da el id para el pixel y los links de seguimiento
+        EmailLog emailLog = emailTrackingService.createLog(lead, renderedSubject, renderedBody);
+        String trackedBody = emailTrackingService.instrument(renderedBody, emailLog.getId());
+        return new PreparedEmail(lead, template, emailLog, renderedSubject, renderedBody, trackedBody);
+    }
+
+    private void recordSentEmail(PreparedEmail prepared, String providerMessageId) {
+        CrmLead lead = prepared.lead();
+        String renderedBody = prepared.body();
+        emailTrackingService.markSent(prepared.emailLog(), providerMessageId);
 
         Conversation conversation = conversationRepository.findFirstByCrmLead(lead)
                 .orElseGet(() -> {
@@ -104,12 +143,17 @@ public class EmailService {
                 .content(renderedBody)
                 .externalMessageId(null)
                 .sentAt(LocalDateTime.now())
-                .emailTemplate(template)
+                .emailTemplate(prepared.template())
                 .build();
 
         messageRepository.save(message);
     }
 
+    // Email renderizado y con su EmailLog, listo para enviar fuera de la transacción
+    private record PreparedEmail(CrmLead lead, EmailTemplate template, EmailLog emailLog, String subject,
+            String body, String trackedBody) {
+    }
+
     /**
      * Envía un email HTML a la dirección especificada.
      * Método público para uso desde otros servicios como MessageService.
@@ -126,8 +170,9 @@ public class EmailService {
      * @param htmlBody   Contenido HTML
      * @param inReplyTo  Message-ID del email al que se responde (puede ser null)
      * @param references Lista de Message-IDs del thread (puede ser null)
+     * @return Message-ID con el que salió el email
      */
-    public void sendHtmlEmail(String to, String subject, String htmlBody, String inReplyTo, String references) {
+    public String sendHtmlEmail(String to, String subject, String htmlBody, String inReplyTo, String references) {
         JavaMailSender mailSender = getMailSender();
 
         if (mailSender == null) {
@@ -151,24 +196,100 @@ public class EmailService {
             helper.setTo(to);
             helper.setSubject(subject == null ? "" : subject);
             helper.setText(htmlBody == null ? "" : htmlBody, true);
-            mailSender.send(mime);
+            send(mailSender, mime);
+            return mime.getMessageID();
         } catch (Exception e) {
             throw new RuntimeException("Failed to send email: " + e.getMessage(), e);
         }
     }
 
+    /**
+     * Envía varios emails HTML uno tras otro por una conexión SMTP del pool,
+     * sin reconectar ni autenticar entre mensajes.
+     * Devuelve los fallos por posición en la lista; los que no aparecen se enviaron.
+     */
+    public Map<Integer, Exception> sendBatch(List<OutgoingEmail> emails) {
+        Map<Integer, Exception> failures = new HashMap<>();
+        if (emails.isEmpty()) {
+            return failures;
+        }
+
+        JavaMailSender mailSender = getMailSender();
+        if (mailSender == null) {
+            RuntimeException notConfigured = new RuntimeException("Email service is not configured.");
+            for (int i = 0; i < emails.size(); i++) {
+                failures.put(i, notConfigured);
+            }
+            return failures;
+        }
+
+        List<MimeMessage> mimes = new ArrayList<>(emails.size());
+        List<Integer> positions = new ArrayList<>(emails.size());
+        for (int i = 0; i < emails.size(); i++) {
+            OutgoingEmail email = emails.get(i);
+            try {
+                MimeMessage mime = mailSender.createMimeMessage();
+                MimeMessageHelper helper = new MimeMessageHelper(mime, true, "UTF-8");
+                helper.setTo(email.to());
+                helper.setSubject(email.subject() == null ? "" : email.subject());
+                helper.setText(email.htmlBody() == null ? "" : email.htmlBody(), true);
+                mimes.add(mime);
+                positions.add(i);
+            } catch (Exception e) {
+                failures.put(i, e);
+            }
+        }
+
+        if (mailSender instanceof JavaMailSenderImpl pooled) {
+            smtpTransportPool.sendBatch(pooled, mimes)
+                    .forEach((index, error) -> failures.put(positions.get(index), error));
+            return failures;
+        }
+
+        // Sender que no es JavaMailSenderImpl: sin pool, un solo send para todo el lote
+        try {
+            mailSender.send(mimes.toArray(new MimeMessage[0]));
+        } catch (MailSendException e) {
+            // Solo los mensajes listados fallaron; el resto se envió
+            e.getFailedMessages().forEach((mime, error) -> {
+                int index = mimes.indexOf(mime);
+                if (index >= 0) {
+                    failures.put(positions.get(index), error);
+                }
+            });
+            if (e.getFailedMessages().isEmpty()) {
+                positions.forEach(position -> failures.put(position, e));
+            }
+        } catch (Exception e) {
+            positions.forEach(position -> failures.put(position, e));
+        }
+        return failures;
+    }
+
+    public record OutgoingEmail(String to, String subject, String htmlBody) {
+    }
+
+    /**
+     * Envía por una conexión del pool cuando el sender expone su endpoint SMTP.
+     */
+    private void send(JavaMailSender mailSender, MimeMessage mime) throws Exception {
+        if (mailSender instanceof JavaMailSenderImpl pooled) {
+            smtpTransportPool.send(pooled, mime);
+        } else {
+            mailSender.send(mime);
+        }
+    }
+
     /**
      * Get JavaMailSender - first try from DB config, then from Spring config
      */
     private JavaMailSender getMailSender() {
-        // Try to get config from database first
+        // Try the DB config first; the sender is built once per config version
         try {
-            IntegrationConfig emailConfig = integrationConfigRepository
-                    .findByIntegrationType(IntegrationType.EMAIL)
-                    .orElse(null);
-
-            if (emailConfig != null && emailConfig.isConnected() && emailConfig.getCredentials() != null) {
-                return createMailSenderFromConfig(emailConfig);
+            Optional<JavaMailSender> configured = configCache.resolve(
+                    IntegrationType.EMAIL, "mailSender", this::createMailSenderFromConfig);
+            if (configured.isPresent()) {
+                return configured.get();
             }
         } catch (Exception e) {
             log.warn("Error loading email config from DB: {}", e.getMessage());
@@ -181,9 +302,9 @@ public class EmailService {
     /**
      * Create JavaMailSender from IntegrationConfig credentials
      */
-    private JavaMailSender createMailSenderFromConfig(IntegrationConfig config) {
+    private JavaMailSender createMailSenderFromConfig(String credentialsJson) {
         try {
-            JsonNode credentials = objectMapper.readTree(config.getCredentials());
+            JsonNode credentials = objectMapper.readTree(credentialsJson);
 
             String username = credentials.has("username") ? credentials.get("username").asText() : null;
             String password = credentials.has("password") ? credentials.get("password").asText() : null;
@@ -216,31 +337,4 @@ public class EmailService {
             return null;
         }
     }
-
-    private String renderTemplate(String template, CrmLead lead, Map<String, String> vars) {
-        if (template == null)
-            return "";
-
-        String out = template;
-
-        // Atajos del lead
-        if (lead != null) {
-            out = out.replace("{{name}}", safe(lead.getName()));
-            out = out.replace("{{lead.name}}", safe(lead.getName()));
-            out = out.replace("{{email}}", safe(lead.getEmail()));
-            out = out.replace("{{lead.email}}", safe(lead.getEmail()));
-            out = out.replace("{{phone}}", safe(lead.getPhone()));
-        }
-
-        // Variables custom
-        for (Map.Entry<String, String> e : vars.entrySet()) {
-            out = out.replace("{{" + e.getKey() + "}}", safe(e.getValue()));
-        }
-
-        return out;
-    }
-
-    private String safe(Object o) {
-        return o == null ? "" : String.valueOf(o);
-    }
 }
@@ -5,6 +5,7 @@ import com.nocountry.backend.entity.EmailTemplate;
 import com.nocountry.backend.enums.EmailTemplateType;
 import com.nocountry.backend.mappers.EmailTemplateMapper;
 import com.nocountry.backend.repository.EmailTemplateRepository;
+import com.nocountry.backend.services.template.TemplateCompiler;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 
@@ -16,6 +17,7 @@ public class EmailTemplateService {
 
     private final EmailTemplateRepository repository;
     private final EmailTemplateMapper mapper;
+    private final TemplateCompiler templateCompiler;
 
     public EmailTemplateDTO create(CreateEmailTemplateDTO dto) {
 
@@ -56,6 +58,7 @@ public class EmailTemplateService {
                 .orElseThrow(() -> new RuntimeException("EmailTemplate not found"));
 
         repository.delete(entity);
+        templateCompiler.evict(id);
     }
     public EmailTemplateDTO findByType(EmailTemplateType type) {
         return repository.findByType(type)
@@ -0,0 +1,111 @@
+package com.nocountry.backend.services;
+
+import com.nocountry.backend.entity.IntegrationConfig;
+import com.nocountry.backend.enums.IntegrationType;
+import com.nocountry.backend.repository.IntegrationConfigRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Function;
+
+/**
+ * In-memory cache of connected {@link IntegrationConfig}s and everything
+ * derived from their credentials JSON (parsed credential records, mail
+ * senders...), so send and webhook paths do no configuration I/O.
+ *
+ * <p>Entries are tagged with a global version. {@link IntegrationConfigService}
+ * bumps it after committing a create/update/delete, which makes the next read
+ * reload from the database and rebuild derived objects lazily. A TTL bounds
+ * staleness when the config is changed from another node.</p>
+ */
+@Component
+@Slf4j
+public class IntegrationConfigCache {
+
+    private final IntegrationConfigRepository configRepository;
+    private final long ttlNanos;
+    private final AtomicLong version = new AtomicLong();
+    private final ConcurrentMap<IntegrationType, Entry> entries = new ConcurrentHashMap<>();
+
+    public IntegrationConfigCache(
+            IntegrationConfigRepository configRepository,
+            @Value("${integration.config.cache-ttl-seconds:300}") long ttlSeconds) {
+        this.configRepository = configRepository;
+        this.ttlNanos = Duration.ofSeconds(ttlSeconds).toNanos();
+    }
+
+    /**
+     * Returns the object derived from the connected config of {@code type},
+     * building it with {@code factory} on first use for the current version.
+     * A null result from the factory is cached as absent too.
+     *
+     * @param key identifies the derived object within the integration type
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Optional<T> resolve(IntegrationType type, String key, Function<String, T> factory) {
+        Entry entry = entry(type);
+        if (entry.credentials() == null) {
+            return Optional.empty();
+        }
+        return (Optional<T>) entry.derived()
+                .computeIfAbsent(key, k -> Optional.ofNullable(factory.apply(entry.credentials())));
+    }
+
+    /**
+     * Bumps the version once the surrounding transaction commits, so the reload
+     * reads committed data. Without a transaction it bumps at once.
+     */
+    public void invalidateAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    invalidate();
+                }
+            });
+        } else {
+            invalidate();
+        }
+    }
+
+    public void invalidate() {
+        long newVersion = version.incrementAndGet();
+        entries.clear();
+        log.debug("Integration config cache invalidated (version {})", newVersion);
+    }
+
+    private Entry entry(IntegrationType type) {
+        // Read the version before loading: a bump during the load leaves the
+        // entry one version behind, so the next read reloads it
+        long currentVersion = version.get();
+        Entry entry = entries.get(type);
+        if (entry != null && entry.version() == currentVersion
+                && System.nanoTime() - entry.loadedAt() < ttlNanos) {
+            return entry;
+        }
+
+        String credentials = configRepository.findByIntegrationType(type)
+                .filter(IntegrationConfig::isConnected)
+                .map(IntegrationConfig::getCredentials)
+                .filter(json -> !json.isBlank())
+                .orElse(null);
+        Entry fresh = new Entry(currentVersion, System.nanoTime(), credentials, new ConcurrentHashMap<>());
+        entries.put(type, fresh);
+        return fresh;
+    }
+
+    private record Entry(
+            long version,
+            long loadedAt,
+            String credentials,
+            ConcurrentMap<String, Optional<?>> derived) {
+    }
+}
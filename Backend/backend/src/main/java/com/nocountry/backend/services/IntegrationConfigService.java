@@ -22,6 +22,7 @@ public class IntegrationConfigService {
     private final IntegrationConfigRepository configRepository;
     private final AccountRepository accountRepository;
     private final IntegrationConfigMapper integrationConfigMapper;
+    private final IntegrationConfigCache configCache;
 
     @Transactional
     public IntegrationConfigDTO createConfig(CreateUpdateIntegrationConfigDTO dto) {
@@ -37,6 +38,7 @@ public class IntegrationConfigService {
                 .build();
 
         config = configRepository.save(config);
+        configCache.invalidateAfterCommit();
 
          return integrationConfigMapper.toDTO(config);
     }
@@ -59,6 +61,7 @@ public class IntegrationConfigService {
         config.setIntegrationType(dto.integrationType());
         config.setCredentials(dto.credentials());
         config = configRepository.save(config);
+        configCache.invalidateAfterCommit();
         return integrationConfigMapper.toDTO(config);
     }
 
@@ -68,5 +71,6 @@ public class IntegrationConfigService {
             throw new RuntimeException("Configuración a eliminar no encontrada.");
         }
         configRepository.deleteById(id);
+        configCache.invalidateAfterCommit();
     }
 }
@@ -1,43 +1,96 @@
 package com.nocountry.backend.services;
 
+import com.nocountry.backend.entity.MediaObject;
+import com.nocountry.backend.repository.MediaObjectRepository;
+import com.nocountry.backend.services.whatsapp.WhatsAppGraphClient;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaTypeFactory;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.web.multipart.MultipartFile;
 
 import java.io.IOException;
 import java.io.InputStream;
-import java.net.URI;
-import java.net.http.HttpClient;
-import java.net.http.HttpRequest;
-import java.net.http.HttpResponse;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardCopyOption;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.HexFormat;
 import java.util.Map;
-import java.util.UUID;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
 
 /**
  * Service for storing and retrieving media files locally.
- * Files are stored in a configurable directory with UUID-based filenames.
+ * <p>
+ * Files are content-addressed: the SHA-256 is computed while the upload or
+ * download streams to a temp file, and the object is stored once as
+ * {@code <sha[0:2]>/<sha[2:4]>/<sha><ext>}. The {@code media_object} table
+ * keeps mime type, size and a reference count, so storing the same sticker or
+ * forwarded image again only bumps the count and serving never has to probe
+ * the file for its type. Files stored before this scheme (UUID names in the
+ * root directory) are still served and deleted as before.
+ * <p>
+ * A hash keeps the file name it was first stored with, whatever extension
+ * later copies arrive with. Storing a hash and unlinking its last reference
+ * take the same per-hash lock, and the unlink re-checks the table after the
+ * delete commits, so a concurrent store never ends up referencing a removed file.
  */
 @Service
 @Slf4j
 public class MediaStorageService {
 
+    private static final Pattern CONTENT_ADDRESSED = Pattern.compile("^[0-9a-f]{64}(\\.[A-Za-z0-9]{1,10})?$");
+    private static final Pattern SAFE_EXTENSION = Pattern.compile("^\\.[A-Za-z0-9]{1,10}$");
+    private static final String DEFAULT_MIME_TYPE = "application/octet-stream";
+    private static final int MIME_CACHE_LIMIT = 10_000;
+    private static final int HASH_LOCK_STRIPES = 64;
+
     private final Path mediaStoragePath;
+    private final Path tempPath;
     private final String baseUrl;
+    private final WhatsAppGraphClient graphClient;
+    private final MediaObjectRepository mediaObjectRepository;
+    private final TransactionTemplate transactionTemplate;
+    // Objects are immutable, so their mime type can be cached for good
+    private final ConcurrentMap<String, String> mimeTypes = new ConcurrentHashMap<>();
+    private final Counter deduplicated;
+    private final Object[] hashLocks = new Object[HASH_LOCK_STRIPES];
 
     public MediaStorageService(
+            WhatsAppGraphClient graphClient,
+            MediaObjectRepository mediaObjectRepository,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
             @Value("${media.storage.location:./media-storage}") String storagePath,
             @Value("${APP_BASE_URL:${app.base-url:http://localhost:8080}}") String baseUrl) {
+        this.graphClient = graphClient;
+        this.mediaObjectRepository = mediaObjectRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
         this.mediaStoragePath = Paths.get(storagePath).toAbsolutePath().normalize();
+        this.tempPath = this.mediaStoragePath.resolve("tmp");
         // Remove trailing slash if present
         this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.deduplicated = Counter.builder("media.store.deduplicated")
+                .description("Stores that matched an existing media object and wrote nothing")
+                .register(meterRegistry);
+        for (int i = 0; i < hashLocks.length; i++) {
+            hashLocks[i] = new Object();
+        }
 
         try {
             Files.createDirectories(this.mediaStoragePath);
+            Files.createDirectories(this.tempPath);
             log.info("📁 Media storage initialized at: {}", this.mediaStoragePath);
             log.info("📁 Media base URL: {}", this.baseUrl);
         } catch (IOException e) {
@@ -57,34 +110,30 @@ public class MediaStorageService {
         String originalFilename = file.getOriginalFilename();
         String extension = getFileExtension(originalFilename);
         String contentType = file.getContentType();
-        String storedFilename = UUID.randomUUID().toString() + extension;
-
-        Path targetPath = mediaStoragePath.resolve(storedFilename);
-        Files.copy(file.getInputStream(), targetPath, StandardCopyOption.REPLACE_EXISTING);
-
-        log.info("📤 File stored: {} -> {} (type: {})", originalFilename, storedFilename, contentType);
 
         // Convert WebM audio to OGG for WhatsApp compatibility
         if (isWebmAudio(contentType, extension)) {
             log.info("🔄 Converting WebM audio to OGG for WhatsApp compatibility...");
             try {
-                Map<String, String> converted = convertWebmToOgg(targetPath, storedFilename);
-                // Delete the original WebM file
-                Files.deleteIfExists(targetPath);
-                return converted;
+                return convertWebmToOgg(file);
             } catch (Exception e) {
                 log.error("❌ Failed to convert audio, using original WebM: {}", e.getMessage());
-                // Fall through to return original file
+                // Fall through to store the original file
             }
         }
 
-        String publicUrl = baseUrl + "/api/media/" + storedFilename;
+        MediaObject object;
+        try (InputStream inputStream = file.getInputStream()) {
+            object = store(inputStream, contentType, extension);
+        }
+
+        log.info("📤 File stored: {} -> {} (type: {})", originalFilename, object.getStoredFilename(), contentType);
 
         return Map.of(
-                "url", publicUrl,
-                "filename", originalFilename != null ? originalFilename : storedFilename,
-                "storedFilename", storedFilename,
-                "mimeType", contentType != null ? contentType : "application/octet-stream");
+                "url", publicUrl(object),
+                "filename", originalFilename != null ? originalFilename : object.getStoredFilename(),
+                "storedFilename", object.getStoredFilename(),
+                "mimeType", object.getMimeType());
     }
 
     /**
@@ -105,47 +154,58 @@ public class MediaStorageService {
      * Converts a WebM audio file to OGG/Opus format using FFmpeg.
      * This is required for WhatsApp voice message compatibility.
      */
-    private Map<String, String> convertWebmToOgg(Path webmPath, String originalFilename)
+    private Map<String, String> convertWebmToOgg(MultipartFile file)
             throws IOException, InterruptedException {
 
-        String baseName = originalFilename.replaceFirst("\\.[^.]+$", "");
-        String oggFilename = baseName + ".ogg";
-        Path oggPath = mediaStoragePath.resolve(oggFilename);
-
-        // FFmpeg command to convert WebM/Opus to OGG/Opus
-        // -y: overwrite output, -i: input, -c:a copy: copy audio codec (no re-encoding)
-        // -f ogg: force OGG output format
-        ProcessBuilder pb = new ProcessBuilder(
-                "ffmpeg", "-y",
-                "-i", webmPath.toString(),
-                "-c:a", "libopus", // Use Opus codec
-                "-b:a", "64k", // Bitrate for voice
-                "-ar", "48000", // Sample rate
-                "-ac", "1", // Mono (required for WhatsApp voice messages)
-                "-f", "ogg",
-                oggPath.toString());
-
-        pb.redirectErrorStream(true);
-        Process process = pb.start();
-
-        // Read output for debugging
-        String output = new String(process.getInputStream().readAllBytes());
-        int exitCode = process.waitFor();
-
-        if (exitCode != 0) {
-            log.error("FFmpeg conversion failed (exit code {}): {}", exitCode, output);
-            throw new IOException("FFmpeg conversion failed with exit code: " + exitCode);
-        }
+        Path webmPath = Files.createTempFile(tempPath, "convert-", ".webm");
+        Path oggPath = Files.createTempFile(tempPath, "convert-", ".ogg");
+        try {
+            try (InputStream inputStream = file.getInputStream()) {
+                Files.copy(inputStream, webmPath, StandardCopyOption.REPLACE_EXISTING);
+            }
 
-        log.info("✅ Audio converted successfully: {} -> {}", originalFilename, oggFilename);
+            // FFmpeg command to convert WebM/Opus to OGG/Opus
+            // -y: overwrite output, -i: input, -c:a copy: copy audio codec (no re-encoding)
+            // -f ogg: force OGG output format
+            ProcessBuilder pb = new ProcessBuilder(
+                    "ffmpeg", "-y",
+                    "-i", webmPath.toString(),
+                    "-c:a", "libopus", // Use Opus codec
+                    "-b:a", "64k", // Bitrate for voice
+                    "-ar", "48000", // Sample rate
+                    "-ac", "1", // Mono (required for WhatsApp voice messages)
+                    "-f", "ogg",
+                    oggPath.toString());
+
+            pb.redirectErrorStream(true);
+            Process process = pb.start();
+
+            // Read output for debugging
+            String output = new String(process.getInputStream().readAllBytes());
+            int exitCode = process.waitFor();
+
+            if (exitCode != 0) {
+                log.error("FFmpeg conversion failed (exit code {}): {}", exitCode, output);
+                throw new IOException("FFmpeg conversion failed with exit code: " + exitCode);
+            }
 
-        String publicUrl = baseUrl + "/api/media/" + oggFilename;
+            MediaObject object;
+            try (InputStream converted = Files.newInputStream(oggPath)) {
+                object = store(converted, "audio/ogg", ".ogg");
+            }
 
-        return Map.of(
-                "url", publicUrl,
-                "filename", oggFilename,
-                "storedFilename", oggFilename,
-                "mimeType", "audio/ogg");
+            log.info("✅ Audio converted successfully: {} -> {}", file.getOriginalFilename(),
+                    object.getStoredFilename());
+
+            return Map.of(
+                    "url", publicUrl(object),
+                    "filename", object.getStoredFilename(),
+                    "storedFilename", object.getStoredFilename(),
+                    "mimeType", "audio/ogg");
+        } finally {
+            Files.deleteIfExists(webmPath);
+            Files.deleteIfExists(oggPath);
+        }
     }
 
     /**
@@ -161,74 +221,98 @@ public class MediaStorageService {
             String mimeType,
             String accessToken) throws IOException, InterruptedException {
 
-        HttpClient httpClient = HttpClient.newHttpClient();
-
         // Step 1: Get the download URL from WhatsApp
-        String graphApiUrl = "https://graph.facebook.com/v18.0/" + mediaId;
-
-        HttpRequest urlRequest = HttpRequest.newBuilder()
-                .uri(URI.create(graphApiUrl))
-                .header("Authorization", "Bearer " + accessToken)
-                .GET()
-                .build();
-
-        HttpResponse<String> urlResponse = httpClient.send(urlRequest, HttpResponse.BodyHandlers.ofString());
-
-        if (urlResponse.statusCode() != 200) {
-            log.error("Failed to get media URL from WhatsApp: {}", urlResponse.body());
-            throw new IOException("Failed to get media URL: " + urlResponse.statusCode());
-        }
-
-        // Parse the response to get the URL
-        String responseBody = urlResponse.body();
-        String downloadUrl = extractUrlFromResponse(responseBody);
-
-        if (downloadUrl == null) {
-            throw new IOException("Could not extract download URL from WhatsApp response");
-        }
+        String downloadUrl = graphClient.fetchMediaUrl(mediaId, accessToken);
 
         log.info("📥 Downloading media from WhatsApp: {}", mediaId);
 
-        // Step 2: Download the actual file
-        HttpRequest downloadRequest = HttpRequest.newBuilder()
-                .uri(URI.create(downloadUrl))
-                .header("Authorization", "Bearer " + accessToken)
-                .GET()
-                .build();
-
-        HttpResponse<InputStream> downloadResponse = httpClient.send(
-                downloadRequest,
-                HttpResponse.BodyHandlers.ofInputStream());
-
-        if (downloadResponse.statusCode() != 200) {
-            throw new IOException("Failed to download media: " + downloadResponse.statusCode());
-        }
-
-        // Step 3: Store the file locally
-        String extension = getExtensionFromMimeType(mimeType);
-        String storedFilename = UUID.randomUUID().toString() + extension;
-        Path targetPath = mediaStoragePath.resolve(storedFilename);
-
-        try (InputStream inputStream = downloadResponse.body()) {
-            Files.copy(inputStream, targetPath, StandardCopyOption.REPLACE_EXISTING);
+        // Step 2: Stream the file to local storage over the shared connection pool
+        MediaObject object;
+        try (InputStream inputStream = graphClient.openMedia(downloadUrl, accessToken)) {
+            object = store(inputStream, mimeType, getExtensionFromMimeType(mimeType));
         }
 
-        String publicUrl = baseUrl + "/api/media/" + storedFilename;
-
-        log.info("📥 WhatsApp media stored: {} -> {}", mediaId, storedFilename);
+        log.info("📥 WhatsApp media stored: {} -> {}", mediaId, object.getStoredFilename());
 
         return Map.of(
-                "url", publicUrl,
-                "filename", storedFilename,
-                "storedFilename", storedFilename,
-                "mimeType", mimeType != null ? mimeType : "application/octet-stream");
+                "url", publicUrl(object),
+                "filename", object.getStoredFilename(),
+                "storedFilename", object.getStoredFilename(),
+                "mimeType", object.getMimeType());
+    }
+
+    /**
+     * Streams {@code content} to a temp file while hashing it, then either
+     * moves it into its content address or, if that object already exists,
+     * drops the temp file and only adds a reference.
+     */
+    private MediaObject store(InputStream content, String mimeType, String extension) throws IOException {
+        Path temp = Files.createTempFile(tempPath, "upload-", ".part");
+        try {
+            MessageDigest digest = sha256();
+            long size;
+            try (InputStream hashing = new DigestInputStream(content, digest)) {
+                size = Files.copy(hashing, temp, StandardCopyOption.REPLACE_EXISTING);
+            }
+            String sha256 = HexFormat.of().formatHex(digest.digest());
+            String resolvedMime = mimeType != null && !mimeType.isBlank() ? mimeType : DEFAULT_MIME_TYPE;
+
+            MediaObject object;
+            synchronized (lockFor(sha256)) {
+                // Un hash ya guardado conserva su nombre: .jpg y .jpeg no generan dos archivos
+                String storedFilename = mediaObjectRepository.findBySha256(sha256)
+                        .map(MediaObject::getStoredFilename)
+                        .orElse(sha256 + safeExtension(extension));
+
+                Path target = objectPath(storedFilename);
+                if (Files.exists(target)) {
+                    deduplicated.increment();
+                } else {
+                    Files.createDirectories(target.getParent());
+                    Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+                }
+
+                object = transactionTemplate.execute(status -> {
+                    mediaObjectRepository.upsertReference(sha256, storedFilename, resolvedMime, size,
+                            LocalDateTime.now());
+                    return mediaObjectRepository.findBySha256(sha256).orElseThrow();
+                });
+            }
+            rememberMimeType(object.getStoredFilename(), object.getMimeType());
+            return object;
+        } finally {
+            Files.deleteIfExists(temp);
+        }
     }
 
     /**
      * Retrieves a stored file's path by filename.
      */
     public Path getFilePath(String filename) {
-        return mediaStoragePath.resolve(filename).normalize();
+        return CONTENT_ADDRESSED.matcher(filename).matches()
+                ? objectPath(filename)
+                : mediaStoragePath.resolve(filename).normalize();
+    }
+
+    /**
+     * Mime type to serve a file with: from media_object for content-addressed
+     * files, from the extension for legacy ones. Never touches the file.
+     */
+    public String getContentType(String filename) {
+        String cached = mimeTypes.get(filename);
+        if (cached != null) {
+            return cached;
+        }
+        if (CONTENT_ADDRESSED.matcher(filename).matches()) {
+            Optional<MediaObject> object = mediaObjectRepository.findByStoredFilename(filename);
+            if (object.isPresent()) {
+                rememberMimeType(filename, object.get().getMimeType());
+                return object.get().getMimeType();
+            }
+        }
+        return MediaTypeFactory.getMediaType(filename)
+                .map(Object::toString)
+                .orElse(DEFAULT_MIME_TYPE);
     }
 
     /**
@@ -239,17 +323,76 @@ public class MediaStorageService {
     }
 
     /**
-     * Deletes a file from storage.
+     * Deletes a file from storage. Content-addressed files only lose one
+     * reference; the file goes away when nothing references it anymore.
      */
     public boolean deleteFile(String filename) {
         try {
-            return Files.deleteIfExists(getFilePath(filename));
+            if (!CONTENT_ADDRESSED.matcher(filename).matches()) {
+                return Files.deleteIfExists(getFilePath(filename));
+            }
+
+            // null: no reference to release; true: last reference, remove the file
+            Boolean lastReference = transactionTemplate.execute(status -> {
+                if (mediaObjectRepository.releaseReference(filename) == 0) {
+                    return null;
+                }
+                return mediaObjectRepository.deleteUnreferenced(filename) > 0;
+            });
+            if (lastReference == null) {
+                return false;
+            }
+            if (lastReference) {
+                synchronized (lockFor(filename.substring(0, 64))) {
+                    // Un store concurrente pudo volver a crear el objeto después del commit
+                    if (mediaObjectRepository.findByStoredFilename(filename).isEmpty()) {
+                        mimeTypes.remove(filename);
+                        Files.deleteIfExists(getFilePath(filename));
+                    }
+                }
+            }
+            return true;
         } catch (IOException e) {
             log.error("Failed to delete file: {}", filename, e);
             return false;
         }
     }
 
+    private Object lockFor(String sha256) {
+        return hashLocks[Math.floorMod(sha256.hashCode(), hashLocks.length)];
+    }
+
+    private Path objectPath(String storedFilename) {
+        return mediaStoragePath
+                .resolve(storedFilename.substring(0, 2))
+                .resolve(storedFilename.substring(2, 4))
+                .resolve(storedFilename);
+    }
+
+    private String publicUrl(MediaObject object) {
+        return baseUrl + "/api/media/" + object.getStoredFilename();
+    }
+
+    private void rememberMimeType(String filename, String mimeType) {
+        if (mimeTypes.size() < MIME_CACHE_LIMIT) {
+            mimeTypes.put(filename, mimeType);
+        }
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private static String safeExtension(String extension) {
+        return extension != null && SAFE_EXTENSION.matcher(extension).matches()
+                ? extension.toLowerCase()
+                : "";
+    }
+
     private String getFileExtension(String filename) {
         if (filename == null || !filename.contains(".")) {
             return "";
@@ -283,23 +426,4 @@ public class MediaStorageService {
             default -> "";
         };
     }
-
-    private String extractUrlFromResponse(String jsonResponse) {
-        // Simple extraction - in production use a proper JSON parser
-        int urlIndex = jsonResponse.indexOf("\"url\"");
-        if (urlIndex == -1)
-            return null;
-
-        int colonIndex = jsonResponse.indexOf(":", urlIndex);
-        int startQuote = jsonResponse.indexOf("\"", colonIndex + 1);
-        int endQuote = jsonResponse.indexOf("\"", startQuote + 1);
-
-        if (startQuote == -1 || endQuote == -1)
-            return null;
-
-        String url = jsonResponse.substring(startQuote + 1, endQuote);
-        // Unescape unicode characters
-        return url.replace("\\u0025", "%")
-                .replace("\\/", "/");
-    }
 }
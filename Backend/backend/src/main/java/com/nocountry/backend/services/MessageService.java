@@ -5,18 +5,18 @@ import com.nocountry.backend.dto.CreateMessageDTO;
 import com.nocountry.backend.entity.Conversation;
 import com.nocountry.backend.entity.Message;
 import com.nocountry.backend.enums.Channel;
-import com.nocountry.backend.enums.Direction;
+import com.nocountry.backend.enums.MessageType;
 import com.nocountry.backend.mappers.MessageMapper;
 import com.nocountry.backend.repository.ConversationRepository;
 import com.nocountry.backend.repository.MessageRepository;
-import com.nocountry.backend.services.whatsapp.WhatsAppApiService; // Asegúrate de tener esta clase
+import com.nocountry.backend.services.outbound.MessageOutboxQueue;
+import com.nocountry.backend.services.outbound.MessageOutboxSender;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Map;
 import java.util.stream.Collectors;
 
 @Service
@@ -26,9 +26,9 @@ public class MessageService {
 
     private final MessageRepository messageRepository;
     private final ConversationRepository conversationRepository;
-    private final WhatsAppApiService whatsAppApiService;
-    private final EmailService emailService;
     private final MessageMapper messageMapper;
+    private final MessageOutboxQueue messageOutboxQueue;
+    private final MessageOutboxSender messageOutboxSender;
 
     // --- CREATE OUTBOUND MESSAGE (POST) ---
     @Transactional
@@ -39,7 +39,7 @@ public class MessageService {
         Conversation conversation = conversationRepository.findById(dto.conversationId())
                 .orElseThrow(() -> new RuntimeException("Conversación no encontrada"));
 
-        // 1. Guardar el mensaje en la DB con estado inicial
+        // 1. Preparar el mensaje; se guarda como QUEUED junto con su fila de outbox
         Message message = messageMapper.toEntity(dto);
         message.setConversation(conversation);
         message.setSentAt(LocalDateTime.now());
@@ -67,84 +67,28 @@ public class MessageService {
             }
         }
 
-        Message savedMessage = messageRepository.save(message);
-
-        // 2. Si el canal es WhatsApp, llamar a la API externa
-        if (conversation.getChannel() == Channel.WHATSAPP) {
-
-            String recipientPhoneNumber = conversation.getCrm_lead().getPhone();
-            Map<String, String> metaResponse;
-
-            // Send based on message type
-            if (dto.messageType() == com.nocountry.backend.enums.MessageType.TEXT) {
-                metaResponse = whatsAppApiService.sendTextMessage(
-                        recipientPhoneNumber,
-                        dto.content(),
-                        replyToExternalId);
-            } else if (dto.mediaUrl() != null) {
-                // Send media message (IMAGE, VIDEO, AUDIO, DOCUMENT)
-                log.info("📎 Sending media to WhatsApp: type={}, url={}", dto.messageType(), dto.mediaUrl());
-                metaResponse = whatsAppApiService.sendMediaMessage(
-                        recipientPhoneNumber,
-                        dto.mediaUrl(),
-                        dto.messageType(),
-                        dto.mediaCaption(),
-                        dto.mediaFileName(),
-                        replyToExternalId);
-            } else {
-                metaResponse = java.util.Collections.emptyMap();
-            }
-
-            // Update with external message ID if available
-            String externalId = metaResponse.get("external_message_id");
-            if (externalId != null) {
-                savedMessage.setExternalMessageId(externalId);
-                messageRepository.save(savedMessage);
-            }
-        } else if (conversation.getChannel() == Channel.EMAIL) {
-            // 2b. Si el canal es Email, enviar el correo real
+        // 2. Validar antes de encolar: el correo necesita destinatario
+        Channel channel = conversation.getChannel();
+        if (channel == Channel.EMAIL) {
             String recipientEmail = conversation.getCrm_lead().getEmail();
-            if (recipientEmail != null && !recipientEmail.isBlank()) {
-                String subject = dto.subject() != null ? dto.subject() : "Mensaje del CRM";
-                String htmlBody = dto.content();
-
-                // Buscar el último mensaje INBOUND para obtener el Message-ID para threading
-                String inReplyTo = null;
-                String references = null;
-
-                java.util.List<Message> conversationMessages = messageRepository
-                        .findByConversationIdOrderBySentAtAsc(dto.conversationId());
-
-                // Buscar el último mensaje entrante (del lead)
-                for (int i = conversationMessages.size() - 1; i >= 0; i--) {
-                    Message msg = conversationMessages.get(i);
-                    if (msg.getMessageDirection() == Direction.INBOUND
-                            && msg.getExternalMessageId() != null) {
-                        inReplyTo = msg.getExternalMessageId();
-                        // Construir References (todos los Message-IDs del thread)
-                        StringBuilder refs = new StringBuilder();
-                        for (Message m : conversationMessages) {
-                            if (m.getExternalMessageId() != null && !m.getExternalMessageId().isBlank()) {
-                                if (refs.length() > 0)
-                                    refs.append(" ");
-                                refs.append(m.getExternalMessageId());
-                            }
-                        }
-                        references = refs.toString();
-                        break;
-                    }
-                }
-
-                try {
-                    emailService.sendHtmlEmail(recipientEmail, subject, htmlBody, inReplyTo, references);
-                } catch (Exception e) {
-                    throw new RuntimeException("Error al enviar email: " + e.getMessage(), e);
-                }
-            } else {
+            if (recipientEmail == null || recipientEmail.isBlank()) {
                 throw new RuntimeException("El lead no tiene email configurado");
             }
         }
 
+        Message savedMessage = messageRepository.save(message);
+
+        // El envío real lo hace MessageOutboxSender después del commit; aquí solo
+        // se encola para no mantener la conexión abierta durante la llamada al proveedor
+        boolean deliverable = channel == Channel.EMAIL
+                || (channel == Channel.WHATSAPP
+                        && (dto.messageType() == MessageType.TEXT || dto.mediaUrl() != null));
+        if (deliverable) {
+            String subject = dto.subject() != null ? dto.subject() : "Mensaje del CRM";
+            messageOutboxQueue.enqueue(savedMessage, channel, subject, replyToExternalId);
+            messageOutboxSender.wakeUpAfterCommit();
+        }
+
         // 3. Actualizar la conversación (último mensaje)
         conversation.setLastMessageText(dto.content());
         conversation.setLastMessageAt(savedMessage.getSentAt());
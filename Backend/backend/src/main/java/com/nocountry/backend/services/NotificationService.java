@@ -199,16 +199,21 @@ public class NotificationService {
                     .filter(email -> email.getStatus() == EmailStatus.OPENED)
                     .collect(Collectors.toList());
 
-            if (openedEmails.size() >= 3) {
+            // Aperturas registradas por el pixel (EmailTrackingBuffer); un log OPENED cuenta al menos una
+            int opens = openedEmails.stream()
+                    .mapToInt(email -> email.getOpenCount() != null ? Math.max(1, email.getOpenCount()) : 1)
+                    .sum();
+
+            if (opens >= 3) {
                 LocalDateTime lastOpen = openedEmails.stream()
-                        .map(EmailLog::getCreatedAt)
+                        .map(email -> email.getLastOpenedAt() != null ? email.getLastOpenedAt() : email.getCreatedAt())
                         .max(LocalDateTime::compareTo)
                         .orElse(now);
 
                 String timeAgo = formatTimeAgo(lastOpen, now);
                 Map<String, Object> reminder = new HashMap<>();
                 reminder.put("id", lead.getId() + 10000L); // Unique ID
-                reminder.put("text", lead.getName() + " opened your email " + openedEmails.size() + " times");
+                reminder.put("text", lead.getName() + " opened your email " + opens + " times");
                 reminder.put("time", timeAgo);
                 reminder.put("type", "EMAIL_OPENED");
                 reminder.put("leadId", lead.getId());
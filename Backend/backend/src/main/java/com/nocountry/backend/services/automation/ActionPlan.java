@@ -0,0 +1,33 @@
+package com.nocountry.backend.services.automation;
+
+import com.nocountry.backend.dto.ActionDTO;
+import com.nocountry.backend.enums.ActionType;
+import com.nocountry.backend.services.template.CompiledTemplate;
+
+/**
+ * Immutable, pre-resolved form of an {@link ActionDTO}. The action type is
+ * normalized and the custom subject/message are compiled once when the rule
+ * is compiled instead of on every execution.
+ */
+public record ActionPlan(
+        ActionType type,
+        Long templateId,
+        String customSubject,
+        String customMessage,
+        CompiledTemplate subjectTemplate,
+        CompiledTemplate messageTemplate) {
+
+    static ActionPlan from(ActionDTO dto) {
+        return new ActionPlan(
+                dto.getActionType(),
+                dto.getTemplateId(),
+                dto.getCustomSubject(),
+                dto.getCustomMessage(),
+                CompiledTemplate.parse(dto.getCustomSubject()),
+                CompiledTemplate.parse(dto.getCustomMessage()));
+    }
+
+    public boolean hasCustomMessage() {
+        return customMessage != null && !customMessage.isEmpty();
+    }
+}
@@ -0,0 +1,159 @@
+package com.nocountry.backend.services.automation;
+
+import com.nocountry.backend.entity.CrmLead;
+import com.nocountry.backend.entity.EmailTemplate;
+import com.nocountry.backend.enums.ActionType;
+import com.nocountry.backend.repository.EmailTemplateRepository;
+import com.nocountry.backend.services.template.TemplateCompiler;
+import com.nocountry.backend.services.template.TemplateCompiler.CompiledEmailTemplate;
+import com.nocountry.backend.services.template.VariableResolver;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+/**
+ * Renders SEND_EMAIL and SEND_WHATSAPP actions for a lead. {@link #prepare}
+ * resolves the action's template once; the returned {@link PreparedAction}
+ * is immutable and can render many leads concurrently.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class AutomationMessageRenderer {
+
+    private static final String DEFAULT_EMAIL_SUBJECT = "¡Bienvenido/a! Gracias por contactarnos";
+
+    private final EmailTemplateRepository templateRepository;
+    private final TemplateCompiler templateCompiler;
+
+    @FunctionalInterface
+    public interface PreparedAction {
+        /**
+         * @return the rendered message, or null if the lead cannot be reached on this channel
+         */
+        RenderedMessage render(CrmLead lead);
+    }
+
+    public PreparedAction prepare(ActionPlan action) {
+        CompiledEmailTemplate template = null;
+        String templateSubject = null;
+        if (action.templateId() != null) {
+            EmailTemplate entity = templateRepository.findById(action.templateId()).orElse(null);
+            if (entity != null) {
+                template = templateCompiler.compile(entity);
+                templateSubject = entity.getSubject();
+            } else {
+                log.warn("Template {} not found, using default welcome message", action.templateId());
+            }
+        }
+
+        return switch (action.type()) {
+            case SEND_EMAIL -> emailRenderer(action, template);
+            case SEND_WHATSAPP -> whatsAppRenderer(action, template, templateSubject);
+            default -> throw new IllegalArgumentException("Action " + action.type() + " does not send messages");
+        };
+    }
+
+    private PreparedAction emailRenderer(ActionPlan action, CompiledEmailTemplate template) {
+        return lead -> {
+            if (lead.getEmail() == null || lead.getEmail().isEmpty()) {
+                log.warn("Lead {} has no email, skipping email action", lead.getId());
+                return null;
+            }
+
+            VariableResolver variables = VariableResolver.lead(lead);
+            String subject;
+            String body;
+
+            if (template != null) {
+                subject = template.subject().render(variables);
+                body = template.body().render(variables);
+            } else if (action.templateId() == null && action.hasCustomMessage()) {
+                subject = action.subjectTemplate().render(variables);
+                body = action.messageTemplate().render(variables);
+            } else {
+                subject = DEFAULT_EMAIL_SUBJECT;
+                body = defaultWelcomeEmail(lead);
+            }
+
+            // Ensure we have content
+            if (subject == null || subject.trim().isEmpty()) {
+                subject = "¡Bienvenido/a!";
+            }
+            if (body == null || body.trim().isEmpty()) {
+                body = defaultWelcomeEmail(lead);
+            }
+            return new RenderedMessage(ActionType.SEND_EMAIL, lead, subject, body);
+        };
+    }
+
+    private PreparedAction whatsAppRenderer(ActionPlan action, CompiledEmailTemplate template,
+            String templateSubject) {
+        // Title is prepended as a bold header for WhatsApp
+        String header;
+        if (template != null) {
+            header = boldHeader(templateSubject);
+        } else if (action.templateId() == null && action.hasCustomMessage()) {
+            header = boldHeader(action.customSubject());
+        } else {
+            header = "";
+        }
+
+        return lead -> {
+            if (lead.getPhone() == null || lead.getPhone().isEmpty()) {
+                log.warn("Lead {} has no phone number, skipping WhatsApp action", lead.getId());
+                return null;
+            }
+
+            String message;
+            if (template != null) {
+                message = header + template.body().render(VariableResolver.lead(lead));
+            } else if (action.templateId() == null && action.hasCustomMessage()) {
+                message = header + action.messageTemplate().render(VariableResolver.lead(lead));
+            } else {
+                message = defaultWelcomeMessage(lead);
+            }
+
+            // Ensure message is not empty
+            if (message == null || message.trim().isEmpty()) {
+                message = defaultWelcomeMessage(lead);
+            }
+            return new RenderedMessage(ActionType.SEND_WHATSAPP, lead, null, message);
+        };
+    }
+
+    private static String boldHeader(String title) {
+        return title != null && !title.isEmpty() ? "*" + title + "*\n\n" : "";
+    }
+
+    private static String defaultWelcomeEmail(CrmLead lead) {
+        String name = lead.getName() != null && !lead.getName().isEmpty()
+                ? lead.getName()
+                : "estimado/a cliente";
+
+        return String.format(
+                "<html><body style='font-family: Arial, sans-serif;'>" +
+                        "<h2 style='color: #7c3aed;'>¡Bienvenido/a!</h2>" +
+                        "<p>Hola <strong>%s</strong>,</p>" +
+                        "<p>Gracias por ponerte en contacto con nosotros.</p>" +
+                        "<p>Hemos recibido tu información y nos pondremos en contacto contigo pronto.</p>" +
+                        "<p>Si tienes alguna pregunta, no dudes en responder a este correo.</p>" +
+                        "<br>" +
+                        "<p>¡Saludos cordiales!</p>" +
+                        "</body></html>",
+                name);
+    }
+
+    private static String defaultWelcomeMessage(CrmLead lead) {
+        String name = lead.getName() != null && !lead.getName().isEmpty()
+                ? lead.getName()
+                : "estimado cliente";
+        return String.format(
+                "*¡Bienvenido/a!* 👋\n\n" +
+                        "Hola %s, gracias por contactarnos.\n\n" +
+                        "Nos pondremos en contacto contigo pronto. " +
+                        "Si tienes alguna pregunta, no dudes en escribirnos.\n\n" +
+                        "¡Saludos!",
+                name);
+    }
+}
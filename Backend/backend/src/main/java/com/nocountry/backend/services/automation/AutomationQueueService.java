@@ -0,0 +1,188 @@
+package com.nocountry.backend.services.automation;
+
+import com.nocountry.backend.entity.AutomationDeadLetter;
+import com.nocountry.backend.entity.AutomationExecutionQueue;
+import com.nocountry.backend.enums.ActionType;
+import com.nocountry.backend.enums.ExecutionStatus;
+import com.nocountry.backend.exceptions.AutomationActionException;
+import com.nocountry.backend.repository.AutomationDeadLetterRepository;
+import com.nocountry.backend.repository.AutomationExecutionQueueRepository;
+import com.nocountry.backend.services.AutomationExecutionService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.interceptor.TransactionAspectSupport;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Transactional building blocks for the automation queue workers. Each method
+ * runs in its own short transaction: claiming a batch, executing one item and
+ * recording a failure never share a connection.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AutomationQueueService {
+
+    private final AutomationExecutionQueueRepository queueRepository;
+    private final AutomationDeadLetterRepository deadLetterRepository;
+    private final AutomationExecutionService executionService;
+    private final AutomationRuleIndex ruleIndex;
+    private final AutomationRetryPolicy retryPolicy;
+    private final AutomationTimer timer;
+
+    /**
+     * Claims up to {@code limit} due rows for {@code workerId}. The rows are
+     * locked with SKIP LOCKED and flipped to EXECUTING with a lease before the
+     * transaction commits, so no other node can pick them up.
+     */
+    @Transactional
+    public List<Long> claimBatch(String workerId, int limit, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = queueRepository.lockDueIds(now, limit);
+        if (!ids.isEmpty()) {
+            queueRepository.markClaimed(ids, ExecutionStatus.EXECUTING, workerId, now.plus(lease));
+        }
+        return ids;
+    }
+
+    /**
+     * Puts rows whose lease expired back to PENDING so a live worker retries them.
+     */
+    @Transactional
+    public int recoverExpiredLeases() {
+        return queueRepository.releaseExpiredLeases(
+                ExecutionStatus.EXECUTING,
+                ExecutionStatus.PENDING,
+                LocalDateTime.now());
+    }
+
+    /**
+     * Runs the actions of a claimed item and records the outcome in the same
+     * transaction. Items whose lease was lost to another worker are skipped,
+     * and items whose rule was deactivated or whose lead was deleted are cancelled.
+     * A failed action is retried later with backoff, resuming at that action.
+     * If the failure left the transaction rollback-only the exception is
+     * rethrown instead, so the caller records it through {@link #markFailed}.
+     */
+    @Transactional
+    public void executeClaimed(Long itemId, String workerId) {
+        AutomationExecutionQueue item = queueRepository.findByIdWithRuleAndLead(itemId).orElse(null);
+        if (item == null || !ownsLease(item, workerId)) {
+            log.warn("Skipping automation queue item {}: lease no longer held by {}", itemId, workerId);
+            return;
+        }
+
+        if (!Boolean.TRUE.equals(item.getAutomationRule().getIsActive()) || item.getLead().isDeleted()) {
+            item.setStatus(ExecutionStatus.CANCELLED);
+            log.info("Automation '{}' cancelled for lead {}: rule inactive or lead deleted",
+                    item.getAutomationRule().getName(),
+                    item.getLead().getId());
+        } else {
+            try {
+                CompiledRule rule = ruleIndex.resolve(item.getAutomationRule());
+                executionService.executeActions(rule, item.getLead(), item.getActionsCompleted());
+
+                item.setStatus(ExecutionStatus.COMPLETED);
+                item.setActionsCompleted(rule.actions().size());
+                item.setExecutedAt(LocalDateTime.now());
+                log.info("Automation '{}' completed for lead {}",
+                        item.getAutomationRule().getName(),
+                        item.getLead().getId());
+            } catch (AutomationActionException e) {
+                rethrowIfRollbackOnly(e);
+                item.setActionsCompleted(e.getActionIndex());
+                recordFailure(item, e.getActionType(), e.getMessage());
+            } catch (RuntimeException e) {
+                rethrowIfRollbackOnly(e);
+                recordFailure(item, null, e.getMessage());
+            }
+        }
+        item.setLockedBy(null);
+        item.setLockedUntil(null);
+        queueRepository.save(item);
+    }
+
+    /**
+     * Records a failure when {@link #executeClaimed} could not commit (for
+     * example because the execution transaction was marked rollback-only).
+     * An {@link AutomationActionException} keeps the failed action's index and
+     * type, so the retry resumes there with that action's retry budget.
+     */
+    @Transactional
+    public void markFailed(Long itemId, String workerId, Exception failure) {
+        queueRepository.findByIdWithRuleAndLead(itemId)
+                .filter(item -> ownsLease(item, workerId))
+                .ifPresent(item -> {
+                    ActionType actionType = null;
+                    if (failure instanceof AutomationActionException actionFailure) {
+                        item.setActionsCompleted(actionFailure.getActionIndex());
+                        actionType = actionFailure.getActionType();
+                    }
+                    recordFailure(item, actionType, failure.getMessage());
+                    item.setLockedBy(null);
+                    item.setLockedUntil(null);
+                    queueRepository.save(item);
+                });
+    }
+
+    /**
+     * Schedules the next attempt while the action's retry budget lasts;
+     * otherwise marks the item FAILED and moves it to the dead-letter table.
+     */
+    private void recordFailure(AutomationExecutionQueue item, ActionType actionType, String errorMessage) {
+        int attempts = item.getRetryCount() + 1;
+        item.setRetryCount(attempts);
+        item.setErrorMessage(errorMessage);
+
+        if (retryPolicy.canRetry(actionType, attempts)) {
+            Duration delay = retryPolicy.backoff(attempts);
+            item.setStatus(ExecutionStatus.PENDING);
+            item.setNextAttemptAt(LocalDateTime.now().plus(delay));
+            timer.scheduleAfterCommit(item.getId(), item.getNextAttemptAt());
+            log.warn("Automation '{}' failed for lead {} (attempt {}), retrying in {}s: {}",
+                    item.getAutomationRule().getName(),
+                    item.getLead().getId(),
+                    attempts,
+                    delay.toSeconds(),
+                    errorMessage);
+            return;
+        }
+
+        item.setStatus(ExecutionStatus.FAILED);
+        item.setNextAttemptAt(null);
+        deadLetterRepository.save(AutomationDeadLetter.builder()
+                .queueItem(item)
+                .automationRule(item.getAutomationRule())
+                .lead(item.getLead())
+                .actionType(actionType)
+                .actionsCompleted(item.getActionsCompleted())
+                .retryCount(attempts)
+                .errorMessage(errorMessage)
+                .failedAt(LocalDateTime.now())
+                .build());
+        log.error("Automation '{}' failed for lead {} after {} attempts, moved to dead letter: {}",
+                item.getAutomationRule().getName(),
+                item.getLead().getId(),
+                attempts,
+                errorMessage);
+    }
+
+    /**
+     * Nothing written in a rollback-only transaction survives, so the failure
+     * has to be recorded in a new one.
+     */
+    private static void rethrowIfRollbackOnly(RuntimeException e) {
+        if (TransactionAspectSupport.currentTransactionStatus().isRollbackOnly()) {
+            throw e;
+        }
+    }
+
+    private boolean ownsLease(AutomationExecutionQueue item, String workerId) {
+        return item.getStatus() == ExecutionStatus.EXECUTING && workerId.equals(item.getLockedBy());
+    }
+}
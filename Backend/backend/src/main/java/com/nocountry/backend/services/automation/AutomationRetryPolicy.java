@@ -0,0 +1,66 @@
+package com.nocountry.backend.services.automation;
+
+import com.nocountry.backend.enums.ActionType;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Retry budget and backoff for failed automation executions. The delay grows
+ * exponentially from the base delay up to a cap, and half of it is randomised
+ * so retries of a burst of failures do not hit the provider at the same time.
+ */
+@Component
+public class AutomationRetryPolicy {
+
+    private final Duration baseDelay;
+    private final Duration maxDelay;
+    private final int emailMaxAttempts;
+    private final int whatsAppMaxAttempts;
+    private final int defaultMaxAttempts;
+
+    public AutomationRetryPolicy(
+            @Value("${automation.retry.base-delay-seconds:30}") long baseDelaySeconds,
+            @Value("${automation.retry.max-delay-minutes:60}") long maxDelayMinutes,
+            @Value("${automation.retry.max-attempts.send-email:5}") int emailMaxAttempts,
+            @Value("${automation.retry.max-attempts.send-whatsapp:3}") int whatsAppMaxAttempts,
+            @Value("${automation.retry.max-attempts.default:3}") int defaultMaxAttempts) {
+        this.baseDelay = Duration.ofSeconds(baseDelaySeconds);
+        this.maxDelay = Duration.ofMinutes(maxDelayMinutes);
+        this.emailMaxAttempts = emailMaxAttempts;
+        this.whatsAppMaxAttempts = whatsAppMaxAttempts;
+        this.defaultMaxAttempts = defaultMaxAttempts;
+    }
+
+    /**
+     * Whether another attempt is allowed after {@code attempts} failed ones.
+     */
+    public boolean canRetry(ActionType actionType, int attempts) {
+        return attempts < maxAttempts(actionType);
+    }
+
+    public int maxAttempts(ActionType actionType) {
+        if (actionType == null) {
+            return defaultMaxAttempts;
+        }
+        return switch (actionType) {
+            case SEND_EMAIL -> emailMaxAttempts;
+            case SEND_WHATSAPP -> whatsAppMaxAttempts;
+            default -> defaultMaxAttempts;
+        };
+    }
+
+    /**
+     * Delay before the next attempt, given the number of failed attempts so far
+     * (1 for the first retry). Uses "equal jitter": half the exponential delay
+     * is fixed, the other half random.
+     */
+    public Duration backoff(int attempts) {
+        int exponent = Math.min(Math.max(attempts - 1, 0), 20);
+        long delayMs = Math.min(baseDelay.toMillis() << exponent, maxDelay.toMillis());
+        long half = delayMs / 2;
+        return Duration.ofMillis(half + ThreadLocalRandom.current().nextLong(half + 1));
+    }
+}
@@ -0,0 +1,257 @@
+package com.nocountry.backend.services.automation;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocountry.backend.dto.ActionDTO;
+import com.nocountry.backend.entity.AutomationRule;
+import com.nocountry.backend.enums.TriggerEvent;
+import com.nocountry.backend.repository.AutomationRuleRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+
+/**
+ * In-memory index of the active automation rules, keyed by trigger event and
+ * trigger value, with every rule's actions already parsed. Dispatching an
+ * event reads the current snapshot only: no queries and no JSON parsing.
+ *
+ * The snapshot is replaced as a whole, so readers always see a consistent
+ * set of rules. {@link #rebuildAfterCommit()} is called by rule writes; the
+ * periodic refresh picks up changes made by other nodes.
+ */
+@Component
+@Slf4j
+public class AutomationRuleIndex {
+
+    private final AutomationRuleRepository ruleRepository;
+    private final ObjectMapper objectMapper;
+    private final TransactionTemplate readTransaction;
+
+    private volatile Snapshot snapshot;
+
+    public AutomationRuleIndex(
+            AutomationRuleRepository ruleRepository,
+            ObjectMapper objectMapper,
+            PlatformTransactionManager transactionManager) {
+        this.ruleRepository = ruleRepository;
+        this.objectMapper = objectMapper;
+        this.readTransaction = new TransactionTemplate(transactionManager);
+        this.readTransaction.setPropagationBehavior(TransactionDefinition.PROPAGATION_REQUIRES_NEW);
+        this.readTransaction.setReadOnly(true);
+    }
+
+    /**
+     * All active rules for an event, whatever their trigger value.
+     */
+    public List<CompiledRule> rulesFor(TriggerEvent event) {
+        return current().byEvent().getOrDefault(event, List.of());
+    }
+
+    /**
+     * Active rules for an event that either have no trigger value or match
+     * {@code triggerValue} exactly.
+     */
+    public List<CompiledRule> rulesFor(TriggerEvent event, String triggerValue) {
+        Map<String, List<CompiledRule>> byValue = current().byEventAndValue().get(event);
+        if (byValue == null) {
+            return List.of();
+        }
+        List<CompiledRule> wildcard = byValue.getOrDefault(Snapshot.ANY_VALUE, List.of());
+        List<CompiledRule> exact = triggerValue != null ? byValue.getOrDefault(triggerValue, List.of()) : List.of();
+        if (exact.isEmpty()) {
+            return wildcard;
+        }
+        if (wildcard.isEmpty()) {
+            return exact;
+        }
+        List<CompiledRule> merged = new ArrayList<>(wildcard.size() + exact.size());
+        merged.addAll(wildcard);
+        merged.addAll(exact);
+        return merged;
+    }
+
+    /**
+     * Active rule by id, if present in the index.
+     */
+    public Optional<CompiledRule> find(Long ruleId) {
+        return Optional.ofNullable(current().byId().get(ruleId));
+    }
+
+    /**
+     * Returns the indexed plan for the rule, or compiles it on the spot when the
+     * rule is not indexed (e.g. it was deactivated after an execution was queued).
+     */
+    public CompiledRule resolve(AutomationRule rule) {
+        return find(rule.getId()).orElseGet(() -> compile(rule));
+    }
+
+    /**
+     * Rebuilds the index once the surrounding transaction commits, so the new
+     * snapshot reads committed data. Without a transaction it rebuilds at once.
+     */
+    public void rebuildAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rebuild();
+                }
+            });
+        } else {
+            rebuild();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        rebuild();
+    }
+
+    @Scheduled(fixedDelayString = "${automation.rule-index.refresh-ms:300000}",
+            initialDelayString = "${automation.rule-index.refresh-ms:300000}")
+    public void refresh() {
+        rebuild();
+    }
+
+    public synchronized void rebuild() {
+        try {
+            List<AutomationRule> rules = readTransaction.execute(status -> ruleRepository.findByIsActiveTrue());
+            snapshot = Snapshot.of(Objects.requireNonNull(rules).stream().map(this::compile).toList());
+            log.info("Automation rule index rebuilt with {} active rules", snapshot.byId().size());
+        } catch (Exception e) {
+            log.error("Error rebuilding automation rule index: {}", e.getMessage());
+        }
+    }
+
+    private Snapshot current() {
+        Snapshot current = snapshot;
+        if (current == null) {
+            synchronized (this) {
+                if (snapshot == null) {
+                    rebuild();
+                }
+                current = snapshot != null ? snapshot : Snapshot.EMPTY;
+            }
+        }
+        return current;
+    }
+
+    public CompiledRule compile(AutomationRule rule) {
+        return new CompiledRule(
+                rule.getId(),
+                rule.getName(),
+                rule.getTriggerEvent(),
+                rule.getTriggerValue(),
+                rule.getWaitDays() != null ? rule.getWaitDays() : 0,
+                rule.getWaitHours() != null ? rule.getWaitHours() : 0,
+                parseActions(rule));
+    }
+
+    private List<ActionPlan> parseActions(AutomationRule rule) {
+        List<ActionPlan> plans = new ArrayList<>();
+        for (ActionDTO action : parseActionsJson(rule.getActions())) {
+            ActionPlan plan = ActionPlan.from(action);
+            if (plan.type() == null) {
+                log.warn("Rule '{}' has a null or unrecognized action type '{}', skipping",
+                        rule.getName(), action.getType());
+                continue;
+            }
+            plans.add(plan);
+        }
+        return plans;
+    }
+
+    private List<ActionDTO> parseActionsJson(String actionsJson) {
+        try {
+            if (actionsJson == null || actionsJson.isEmpty()) {
+                log.warn("Empty actions JSON");
+                return List.of();
+            }
+
+            String trimmed = actionsJson.trim();
+
+            // Check if it's an array (starts with '[') or an object (starts with '{')
+            if (trimmed.startsWith("[")) {
+                return objectMapper.readValue(trimmed, new TypeReference<List<ActionDTO>>() {
+                });
+            } else if (trimmed.startsWith("{")) {
+                // Could be:
+                // 1. A wrapper object with "actions" field: {"waitDays":0, "actions":[...]}
+                // 2. A single ActionDTO: {"type":"send-email", ...}
+                JsonNode jsonNode = objectMapper.readTree(trimmed);
+
+                if (jsonNode.has("actions") && jsonNode.get("actions").isArray()) {
+                    return objectMapper.convertValue(jsonNode.get("actions"),
+                            new TypeReference<List<ActionDTO>>() {
+                            });
+                } else if (jsonNode.has("type")) {
+                    return List.of(objectMapper.treeToValue(jsonNode, ActionDTO.class));
+                } else {
+                    log.warn("Unknown JSON object structure, no 'actions' or 'type' field found");
+                    return List.of();
+                }
+            } else {
+                log.warn("Invalid actions JSON format: {}",
+                        actionsJson.substring(0, Math.min(50, actionsJson.length())));
+                return List.of();
+            }
+        } catch (Exception e) {
+            log.error("Error parsing actions JSON: {}", e.getMessage());
+            return List.of();
+        }
+    }
+
+    private record Snapshot(
+            Map<Long, CompiledRule> byId,
+            Map<TriggerEvent, List<CompiledRule>> byEvent,
+            Map<TriggerEvent, Map<String, List<CompiledRule>>> byEventAndValue) {
+
+        static final String ANY_VALUE = "";
+        static final Snapshot EMPTY = new Snapshot(Map.of(), Map.of(), Map.of());
+
+        static Snapshot of(List<CompiledRule> rules) {
+            Map<Long, CompiledRule> byId = new HashMap<>();
+            Map<TriggerEvent, List<CompiledRule>> byEvent = new EnumMap<>(TriggerEvent.class);
+            Map<TriggerEvent, Map<String, List<CompiledRule>>> byEventAndValue = new EnumMap<>(TriggerEvent.class);
+
+            for (CompiledRule rule : rules) {
+                byId.put(rule.id(), rule);
+                byEvent.computeIfAbsent(rule.triggerEvent(), e -> new ArrayList<>()).add(rule);
+                String value = rule.triggerValue() == null || rule.triggerValue().isBlank()
+                        ? ANY_VALUE
+                        : rule.triggerValue();
+                byEventAndValue.computeIfAbsent(rule.triggerEvent(), e -> new HashMap<>())
+                        .computeIfAbsent(value, v -> new ArrayList<>())
+                        .add(rule);
+            }
+
+            Map<TriggerEvent, List<CompiledRule>> frozenByEvent = new EnumMap<>(TriggerEvent.class);
+            byEvent.forEach((event, list) -> frozenByEvent.put(event, List.copyOf(list)));
+
+            Map<TriggerEvent, Map<String, List<CompiledRule>>> frozenByValue = new EnumMap<>(TriggerEvent.class);
+            byEventAndValue.forEach((event, values) -> {
+                Map<String, List<CompiledRule>> frozen = new HashMap<>();
+                values.forEach((value, list) -> frozen.put(value, List.copyOf(list)));
+                frozenByValue.put(event, Map.copyOf(frozen));
+            });
+
+            return new Snapshot(Map.copyOf(byId), frozenByEvent, frozenByValue);
+        }
+    }
+}
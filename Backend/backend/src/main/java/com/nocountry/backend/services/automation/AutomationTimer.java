@@ -0,0 +1,153 @@
+package com.nocountry.backend.services.automation;
+
+import com.nocountry.backend.repository.AutomationExecutionQueueRepository;
+import com.nocountry.backend.repository.AutomationExecutionQueueRepository.DueExecution;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.LongSupplier;
+
+/**
+ * In-memory index of when PENDING automation executions become due, kept in a
+ * {@link TimingWheel} with one-second ticks. It only decides <em>when</em> to
+ * look at the queue: the rows themselves are still claimed from the database,
+ * which stays the source of truth, so the wheel is rebuilt from the table on
+ * restart and periodically re-synced with it.
+ * <p>
+ * Rescheduling an item leaves its old wheel entry in place; only the entry
+ * matching the item's latest deadline counts as due when it expires.
+ */
+@Component
+@Slf4j
+public class AutomationTimer {
+
+    private static final long TICK_MS = 1000;
+
+    private final AutomationExecutionQueueRepository queueRepository;
+    private final Duration window;
+    private final int preloadLimit;
+    private final ZoneId zone = ZoneId.systemDefault();
+
+    private final LongSupplier clockMs;
+
+    // Guarded by this
+    private final TimingWheel<Scheduled> wheel;
+    private final Map<Long, Long> deadlines = new HashMap<>();
+
+    private record Scheduled(Long itemId, long deadlineMs) {}
+
+    @Autowired
+    public AutomationTimer(
+            AutomationExecutionQueueRepository queueRepository,
+            @Value("${automation.timer.window-minutes:15}") long windowMinutes,
+            @Value("${automation.timer.preload-limit:10000}") int preloadLimit) {
+        this(queueRepository, windowMinutes, preloadLimit, System::currentTimeMillis);
+    }
+
+    AutomationTimer(AutomationExecutionQueueRepository queueRepository, long windowMinutes, int preloadLimit,
+            LongSupplier clockMs) {
+        this.queueRepository = queueRepository;
+        this.window = Duration.ofMinutes(windowMinutes);
+        this.preloadLimit = preloadLimit;
+        this.clockMs = clockMs;
+        // 60 x 1s, 60 x 1min, 24 x 1h: anything due within a day fits
+        this.wheel = new TimingWheel<>(TICK_MS, clockMs.getAsLong(), 60, 60, 24);
+    }
+
+    /**
+     * Registers a queue item so it fires as soon as {@code dueAt} is reached.
+     * Items outside the preload window are left to a later {@link #preload()}.
+     */
+    public synchronized void schedule(Long itemId, LocalDateTime dueAt) {
+        long deadline = dueAt.atZone(zone).toInstant().toEpochMilli();
+        if (deadline >= clockMs.getAsLong() + window.toMillis()) {
+            return;
+        }
+        Long previous = deadlines.put(itemId, deadline);
+        if (previous != null && previous == deadline) {
+            return;
+        }
+        if (!wheel.add(new Scheduled(itemId, deadline), deadline)) {
+            deadlines.remove(itemId);
+        }
+    }
+
+    /**
+     * Same as {@link #schedule} but waits for the surrounding transaction to
+     * commit, so the tick never fires for a row other nodes cannot see yet.
+     */
+    public void scheduleAfterCommit(Long itemId, LocalDateTime dueAt) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    schedule(itemId, dueAt);
+                }
+            });
+        } else {
+            schedule(itemId, dueAt);
+        }
+    }
+
+    /**
+     * Advances the wheel to the current time.
+     *
+     * @return number of items that became due since the last call
+     */
+    public synchronized int advance() {
+        int[] due = {0};
+        wheel.advance(clockMs.getAsLong(), scheduled -> {
+            if (expire(scheduled)) {
+                due[0]++;
+            }
+        });
+        return due[0];
+    }
+
+    /**
+     * Loads every PENDING row due within the window. Called on startup and
+     * periodically, which also picks up rows scheduled by other nodes.
+     */
+    public void preload() {
+        List<DueExecution> due = queueRepository.findDueBefore(LocalDateTime.now().plus(window), preloadLimit);
+        for (DueExecution execution : due) {
+            schedule(execution.getId(), execution.getDueAt());
+        }
+        if (due.size() == preloadLimit) {
+            log.warn("Automation timer preload hit its limit of {} rows", preloadLimit);
+        }
+        log.debug("Automation timer preloaded {} executions, {} pending in memory", due.size(), pendingCount());
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            preload();
+        } catch (Exception e) {
+            log.error("Could not preload automation timer: {}", e.getMessage());
+        }
+    }
+
+    public synchronized int pendingCount() {
+        return deadlines.size();
+    }
+
+    /**
+     * @return false for an entry left behind by a later reschedule
+     */
+    private boolean expire(Scheduled scheduled) {
+        return deadlines.remove(scheduled.itemId(), scheduled.deadlineMs());
+    }
+}
@@ -0,0 +1,28 @@
+package com.nocountry.backend.services.automation;
+
+import com.nocountry.backend.enums.TriggerEvent;
+
+import java.util.List;
+
+/**
+ * Snapshot of an {@link com.nocountry.backend.entity.AutomationRule} with its
+ * actions JSON already parsed. Instances are shared between threads and never
+ * modified.
+ */
+public record CompiledRule(
+        Long id,
+        String name,
+        TriggerEvent triggerEvent,
+        String triggerValue,
+        int waitDays,
+        int waitHours,
+        List<ActionPlan> actions) {
+
+    public CompiledRule {
+        actions = List.copyOf(actions);
+    }
+
+    public boolean isDelayed() {
+        return waitDays > 0 || waitHours > 0;
+    }
+}
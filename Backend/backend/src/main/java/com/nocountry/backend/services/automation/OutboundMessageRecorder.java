@@ -0,0 +1,74 @@
+package com.nocountry.backend.services.automation;
+
+import com.nocountry.backend.entity.Conversation;
+import com.nocountry.backend.entity.CrmLead;
+import com.nocountry.backend.entity.Message;
+import com.nocountry.backend.enums.*;
+import com.nocountry.backend.repository.ConversationRepository;
+import com.nocountry.backend.repository.MessageRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+
+/**
+ * Records a message sent by an automation in the lead's conversation for the
+ * channel (one EMAIL and one WHATSAPP conversation per lead), creating the
+ * conversation if needed. Must run inside a transaction.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class OutboundMessageRecorder {
+
+    private final ConversationRepository conversationRepository;
+    private final MessageRepository messageRepository;
+
+    public Message record(RenderedMessage rendered) {
+        CrmLead lead = rendered.lead();
+        Channel channel = rendered.type() == ActionType.SEND_EMAIL ? Channel.EMAIL : Channel.WHATSAPP;
+        MessageType messageType = channel == Channel.EMAIL ? MessageType.EMAIL : MessageType.TEXT;
+        String preview = truncateText(rendered.body(), 200);
+        LocalDateTime now = LocalDateTime.now();
+
+        Conversation conversation = conversationRepository.findByLeadIdAndChannel(lead.getId(), channel)
+                .orElseGet(() -> Conversation.builder()
+                        .crm_lead(lead)
+                        .channel(channel)
+                        .assignedUser(lead.getOwner())
+                        .startedAt(now)
+                        .status(ConversationStatus.OPEN)
+                        .unreadCount(0)
+                        .build());
+
+        conversation.setLastMessageAt(now);
+        conversation.setLastMessageText(preview);
+        conversation.setLastMessageDirection(Direction.OUTBOUND);
+        conversation = conversationRepository.save(conversation);
+
+        Message message = Message.builder()
+                .conversation(conversation)
+                .senderType(SenderType.USER)
+                .senderLeadId(null)
+                .messageDirection(Direction.OUTBOUND)
+                .messageType(messageType)
+                .content(rendered.body())
+                .sentAt(now)
+                .build();
+        message = messageRepository.save(message);
+
+        log.info("Conversation {} updated with automation {}", conversation.getId(), channel);
+        return message;
+    }
+
+    private static String truncateText(String text, int maxLength) {
+        if (text == null)
+            return "";
+        // Strip HTML tags for preview
+        String plainText = text.replaceAll("<[^>]*>", "").trim();
+        if (plainText.length() <= maxLength)
+            return plainText;
+        return plainText.substring(0, maxLength - 3) + "...";
+    }
+}
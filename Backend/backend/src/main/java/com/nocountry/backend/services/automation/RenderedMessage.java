@@ -0,0 +1,15 @@
+package com.nocountry.backend.services.automation;
+
+import com.nocountry.backend.entity.CrmLead;
+import com.nocountry.backend.enums.ActionType;
+
+/**
+ * A message rendered for one lead, ready to be handed to a channel.
+ * {@code subject} is only used by email.
+ */
+public record RenderedMessage(
+        ActionType type,
+        CrmLead lead,
+        String subject,
+        String body) {
+}
@@ -0,0 +1,126 @@
+package com.nocountry.backend.services.automation;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * Hierarchical timing wheel. Level 0 has one slot per tick; each higher level
+ * has slots as wide as the whole level below it. Entries go into the finest
+ * level whose span covers their deadline and cascade down as time advances,
+ * so adding and expiring an entry is O(1) regardless of how many are pending.
+ * <p>
+ * Deadlines past the top level's span are rejected; the caller keeps them
+ * elsewhere and adds them once they are close enough. Not thread-safe.
+ */
+final class TimingWheel<T> {
+
+    private record Entry<T>(T value, long deadlineMs) {}
+
+    private final Level<T>[] levels;
+
+    /**
+     * @param tickMs     width of a level-0 slot
+     * @param levelSizes number of slots per level, finest first
+     */
+    @SuppressWarnings("unchecked")
+    TimingWheel(long tickMs, long startMs, int... levelSizes) {
+        this.levels = new Level[levelSizes.length];
+        long levelTick = tickMs;
+        for (int i = 0; i < levelSizes.length; i++) {
+            levels[i] = new Level<>(levelTick, levelSizes[i], startMs);
+            levelTick *= levelSizes[i];
+        }
+    }
+
+    /**
+     * Latest deadline (exclusive) the wheel currently accepts.
+     */
+    long horizonMs() {
+        Level<T> top = levels[levels.length - 1];
+        return top.currentMs + top.spanMs;
+    }
+
+    /**
+     * Adds an entry. Deadlines already in the past fire on the next tick.
+     *
+     * @return false if the deadline is beyond {@link #horizonMs()}
+     */
+    boolean add(T value, long deadlineMs) {
+        return add(new Entry<>(value, deadlineMs));
+    }
+
+    private boolean add(Entry<T> entry) {
+        Level<T> finest = levels[0];
+        if (entry.deadlineMs() < finest.currentMs + finest.tickMs) {
+            finest.slotAt(finest.currentMs).add(entry);
+            return true;
+        }
+        for (Level<T> level : levels) {
+            if (entry.deadlineMs() < level.currentMs + level.spanMs) {
+                level.slotAt(entry.deadlineMs()).add(entry);
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Moves the wheel forward to {@code nowMs}, passing every entry whose
+     * deadline has been reached to {@code expired}.
+     *
+     * @return number of expired entries
+     */
+    int advance(long nowMs, Consumer<T> expired) {
+        Level<T> finest = levels[0];
+        int count = 0;
+        while (finest.currentMs + finest.tickMs <= nowMs) {
+            List<Entry<T>> due = finest.slotAt(finest.currentMs);
+            for (Entry<T> entry : due) {
+                expired.accept(entry.value());
+            }
+            count += due.size();
+            due.clear();
+
+            finest.currentMs += finest.tickMs;
+
+            // Move every level that crossed a slot boundary before cascading,
+            // so re-added entries are checked against up-to-date spans
+            int crossed = 0;
+            for (int i = 1; i < levels.length && finest.currentMs % levels[i].tickMs == 0; i++) {
+                levels[i].currentMs = finest.currentMs;
+                crossed = i;
+            }
+            // Cascade top level first so entries can fall through every level below
+            for (int i = crossed; i > 0; i--) {
+                List<Entry<T>> slot = levels[i].slotAt(levels[i].currentMs);
+                List<Entry<T>> moved = new ArrayList<>(slot);
+                slot.clear();
+                moved.forEach(this::add);
+            }
+        }
+        return count;
+    }
+
+    private static final class Level<T> {
+        final long tickMs;
+        final long spanMs;
+        final List<Entry<T>>[] slots;
+        long currentMs;
+
+        @SuppressWarnings("unchecked")
+        Level(long tickMs, int size, long startMs) {
+            this.tickMs = tickMs;
+            this.spanMs = tickMs * size;
+            this.slots = new List[size];
+            for (int i = 0; i < size; i++) {
+                slots[i] = new ArrayList<>();
+            }
+            this.currentMs = startMs - Math.floorMod(startMs, tickMs);
+        }
+
+        List<Entry<T>> slotAt(long timeMs) {
+            return slots[(int) Math.floorMod(Math.floorDiv(timeMs, tickMs), (long) slots.length)];
+        }
+    }
+}
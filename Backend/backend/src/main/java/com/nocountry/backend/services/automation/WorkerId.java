@@ -0,0 +1,29 @@
+package com.nocountry.backend.services.automation;
+
+import java.net.InetAddress;
+
+/**
+ * Identifies this node in lease columns ({@code locked_by}), as host-pid.
+ */
+public final class WorkerId {
+
+    private static final String CURRENT = resolve();
+
+    private WorkerId() {
+    }
+
+    public static String current() {
+        return CURRENT;
+    }
+
+    private static String resolve() {
+        String host;
+        try {
+            host = InetAddress.getLocalHost().getHostName();
+        } catch (Exception e) {
+            host = "unknown";
+        }
+        String id = host + "-" + ProcessHandle.current().pid();
+        return id.length() > 100 ? id.substring(id.length() - 100) : id;
+    }
+}
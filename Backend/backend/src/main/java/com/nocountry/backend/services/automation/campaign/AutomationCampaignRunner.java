@@ -0,0 +1,305 @@
+package com.nocountry.backend.services.automation.campaign;
+
+import com.nocountry.backend.entity.AutomationCampaign;
+import com.nocountry.backend.entity.AutomationRule;
+import com.nocountry.backend.entity.CrmLead;
+import com.nocountry.backend.enums.ActionType;
+import com.nocountry.backend.enums.CampaignStatus;
+import com.nocountry.backend.repository.AutomationCampaignRepository;
+import com.nocountry.backend.repository.AutomationRuleRepository;
+import com.nocountry.backend.repository.CrmLeadRepository;
+import com.nocountry.backend.services.automation.ActionPlan;
+import com.nocountry.backend.services.automation.AutomationMessageRenderer;
+import com.nocountry.backend.services.automation.AutomationMessageRenderer.PreparedAction;
+import com.nocountry.backend.services.automation.AutomationRuleIndex;
+import com.nocountry.backend.services.automation.CompiledRule;
+import com.nocountry.backend.services.automation.OutboundMessageRecorder;
+import com.nocountry.backend.services.automation.RenderedMessage;
+import com.nocountry.backend.services.automation.WorkerId;
+import com.nocountry.backend.services.automation.campaign.CampaignChannelAdapter.DeliveryResult;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Runs RUNNING campaigns: walks the rule's assigned leads in keyset pages
+ * (never loading the whole {@code leads} collection), renders each page in
+ * parallel, sends it through the channel adapters in batches and checkpoints
+ * {@code last_lead_id} after every page. Pausing or cancelling takes effect
+ * at the next page boundary; resuming continues from the checkpoint.
+ * <p>
+ * A campaign is held with a lease like the execution queue, so only one node
+ * runs it at a time; the lease is renewed after every send batch, so a slow
+ * page never outlives it. Delivery is at-least-once per page: a crash between
+ * sending and checkpointing resends that page. Sent messages are recorded
+ * after the checkpoint commits, each in its own transaction, so a message
+ * that cannot be recorded never rolls back the campaign's progress.
+ */
+@Service
+@Slf4j
+public class AutomationCampaignRunner {
+
+    private final AutomationCampaignRepository campaignRepository;
+    private final AutomationRuleRepository ruleRepository;
+    private final CrmLeadRepository leadRepository;
+    private final AutomationRuleIndex ruleIndex;
+    private final AutomationMessageRenderer messageRenderer;
+    private final OutboundMessageRecorder messageRecorder;
+    private final Map<ActionType, CampaignChannelAdapter> adapters;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor executor;
+    private final int pageSize;
+    private final int sendBatchSize;
+    private final Duration lease;
+    private final String workerId = WorkerId.current();
+    private final AtomicBoolean busy = new AtomicBoolean(false);
+
+    public AutomationCampaignRunner(
+            AutomationCampaignRepository campaignRepository,
+            AutomationRuleRepository ruleRepository,
+            CrmLeadRepository leadRepository,
+            AutomationRuleIndex ruleIndex,
+            AutomationMessageRenderer messageRenderer,
+            OutboundMessageRecorder messageRecorder,
+            List<CampaignChannelAdapter> adapters,
+            PlatformTransactionManager transactionManager,
+            @Qualifier("campaignTaskExecutor") ThreadPoolTaskExecutor executor,
+            @Value("${automation.campaign.page-size:500}") int pageSize,
+            @Value("${automation.campaign.send-batch-size:50}") int sendBatchSize,
+            @Value("${automation.campaign.lease-minutes:5}") long leaseMinutes) {
+        this.campaignRepository = campaignRepository;
+        this.ruleRepository = ruleRepository;
+        this.leadRepository = leadRepository;
+        this.ruleIndex = ruleIndex;
+        this.messageRenderer = messageRenderer;
+        this.messageRecorder = messageRecorder;
+        this.adapters = adapters.stream()
+                .collect(Collectors.toMap(CampaignChannelAdapter::actionType, Function.identity()));
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = executor;
+        this.pageSize = pageSize;
+        this.sendBatchSize = sendBatchSize;
+        this.lease = Duration.ofMinutes(leaseMinutes);
+    }
+
+    private record Page(Long campaignId, CompiledRule rule, Integer ratePerMinute,
+            int leadCount, Long lastLeadId, List<CrmLead> leads) {
+    }
+
+    /**
+     * Picks up one runnable campaign if this node is idle. Runs on the
+     * dedicated campaign executor so the scheduler thread is never blocked.
+     */
+    @Scheduled(fixedDelayString = "${automation.campaign.poll-interval-ms:5000}")
+    public void pollCampaigns() {
+        if (!busy.compareAndSet(false, true)) {
+            return;
+        }
+
+        Long campaignId;
+        try {
+            campaignId = transactionTemplate.execute(status -> claim());
+        } catch (Exception e) {
+            busy.set(false);
+            log.error("Error claiming automation campaign: {}", e.getMessage());
+            return;
+        }
+        if (campaignId == null) {
+            busy.set(false);
+            return;
+        }
+
+        try {
+            executor.execute(() -> {
+                try {
+                    run(campaignId);
+                } finally {
+                    busy.set(false);
+                }
+            });
+        } catch (TaskRejectedException e) {
+            // The lease expires and the campaign is picked up again
+            busy.set(false);
+            log.error("Campaign executor rejected campaign {}: {}", campaignId, e.getMessage());
+        }
+    }
+
+    private Long claim() {
+        LocalDateTime now = LocalDateTime.now();
+        return campaignRepository.lockRunnable(now)
+                .filter(id -> campaignRepository.claim(id, workerId, now.plus(lease), now) > 0)
+                .orElse(null);
+    }
+
+    private void run(Long campaignId) {
+        log.info("Running automation campaign {} on {}", campaignId, workerId);
+        try {
+            while (true) {
+                Page page = transactionTemplate.execute(status -> nextPage(campaignId));
+                if (page == null) {
+                    return;
+                }
+
+                long startedAt = System.nanoTime();
+                List<DeliveryResult> results = deliver(page);
+
+                Boolean stillOwned = transactionTemplate.execute(status -> checkpoint(page, results));
+                recordSent(page, results);
+                if (!Boolean.TRUE.equals(stillOwned)) {
+                    log.warn("Lost lease on automation campaign {}, stopping", campaignId);
+                    return;
+                }
+                throttle(page, results.size(), startedAt);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            transactionTemplate.executeWithoutResult(status -> campaignRepository.releaseLease(campaignId, workerId));
+        } catch (Exception e) {
+            log.error("Automation campaign {} failed: {}", campaignId, e.getMessage());
+            transactionTemplate.executeWithoutResult(status -> campaignRepository.finish(
+                    campaignId, workerId, CampaignStatus.FAILED, e.getMessage(), LocalDateTime.now()));
+        }
+    }
+
+    /**
+     * Loads the next keyset page, or returns null (releasing or finishing the
+     * campaign) when it was paused, cancelled, lost or has no leads left.
+     */
+    private Page nextPage(Long campaignId) {
+        AutomationCampaign campaign = campaignRepository.findById(campaignId).orElse(null);
+        if (campaign == null || !workerId.equals(campaign.getLockedBy())) {
+            return null;
+        }
+        if (campaign.getStatus() != CampaignStatus.RUNNING) {
+            campaignRepository.releaseLease(campaignId, workerId);
+            log.info("Automation campaign {} is {}, stopping", campaignId, campaign.getStatus());
+            return null;
+        }
+
+        // La base decide si la regla sigue activa: el índice de este nodo puede no tenerla todavía
+        AutomationRule automationRule = campaign.getAutomationRule();
+        if (automationRule == null || !Boolean.TRUE.equals(automationRule.getIsActive())) {
+            campaignRepository.finish(campaignId, workerId, CampaignStatus.CANCELLED,
+                    "Automation rule is inactive or was deleted", LocalDateTime.now());
+            return null;
+        }
+        Long ruleId = automationRule.getId();
+        CompiledRule rule = ruleIndex.resolve(automationRule);
+
+        // Throttled campaigns use smaller pages so each one takes about a minute
+        int limit = campaign.getRatePerMinute() != null && campaign.getRatePerMinute() > 0
+                ? Math.min(pageSize, campaign.getRatePerMinute())
+                : pageSize;
+        List<Long> leadIds = ruleRepository.findAssignedLeadIds(ruleId, campaign.getLastLeadId(), limit);
+        if (leadIds.isEmpty()) {
+            campaignRepository.finish(campaignId, workerId, CampaignStatus.COMPLETED, null, LocalDateTime.now());
+            log.info("Automation campaign {} completed: {} sent, {} failed",
+                    campaignId, campaign.getSentCount(), campaign.getFailedCount());
+            return null;
+        }
+
+        List<CrmLead> leads = leadRepository.findAllById(leadIds).stream()
+                .filter(lead -> !lead.isDeleted())
+                .sorted(Comparator.comparing(CrmLead::getId))
+                .toList();
+
+        return new Page(campaignId, rule, campaign.getRatePerMinute(),
+                leadIds.size(), leadIds.get(leadIds.size() - 1), leads);
+    }
+
+    private List<DeliveryResult> deliver(Page page) {
+        List<DeliveryResult> results = new ArrayList<>();
+        for (ActionPlan action : page.rule().actions()) {
+            CampaignChannelAdapter adapter = adapters.get(action.type());
+            if (adapter == null) {
+                log.debug("Campaign {} skips {} action: no channel adapter", page.campaignId(), action.type());
+                continue;
+            }
+
+            // Rendering is pure CPU work on immutable compiled templates
+            PreparedAction prepared = messageRenderer.prepare(action);
+            List<RenderedMessage> rendered = page.leads().parallelStream()
+                    .map(prepared::render)
+                    .filter(Objects::nonNull)
+                    .toList();
+
+            for (int from = 0; from < rendered.size(); from += sendBatchSize) {
+                List<RenderedMessage> batch = rendered.subList(from, Math.min(from + sendBatchSize, rendered.size()));
+                results.addAll(adapter.sendBatch(batch));
+                if (!renewLease(page.campaignId())) {
+                    // Otro nodo tomó la campaña: el checkpoint falla y el runner se detiene
+                    log.warn("Lost lease on automation campaign {} mid-page", page.campaignId());
+                    return results;
+                }
+            }
+        }
+        return results;
+    }
+
+    private boolean renewLease(Long campaignId) {
+        Integer renewed = transactionTemplate.execute(status ->
+                campaignRepository.renewLease(campaignId, workerId, LocalDateTime.now().plus(lease)));
+        return renewed != null && renewed > 0;
+    }
+
+    private Boolean checkpoint(Page page, List<DeliveryResult> results) {
+        int sent = 0;
+        int failed = 0;
+        for (DeliveryResult result : results) {
+            if (result.isSent()) {
+                sent++;
+            } else {
+                failed++;
+                log.warn("Campaign {} could not send {} to lead {}: {}",
+                        page.campaignId(), result.message().type(), result.message().lead().getId(), result.error());
+            }
+        }
+
+        int updated = campaignRepository.recordProgress(page.campaignId(), workerId, page.lastLeadId(),
+                page.leadCount(), sent, failed, LocalDateTime.now().plus(lease));
+        return updated > 0;
+    }
+
+    /**
+     * Records every sent message in its own transaction, even if the lease was
+     * lost: the messages did go out.
+     */
+    private void recordSent(Page page, List<DeliveryResult> results) {
+        for (DeliveryResult result : results) {
+            if (!result.isSent()) {
+                continue;
+            }
+            try {
+                transactionTemplate.executeWithoutResult(status -> messageRecorder.record(result.message()));
+            } catch (Exception e) {
+                log.error("Campaign {} could not record message for lead {}: {}",
+                        page.campaignId(), result.message().lead().getId(), e.getMessage());
+            }
+        }
+    }
+
+    private void throttle(Page page, int messages, long startedAtNanos) throws InterruptedException {
+        Integer rate = page.ratePerMinute();
+        if (rate == null || rate <= 0 || messages == 0) {
+            return;
+        }
+        long targetMs = messages * 60_000L / rate;
+        long elapsedMs = (System.nanoTime() - startedAtNanos) / 1_000_000;
+        if (targetMs > elapsedMs) {
+            Thread.sleep(targetMs - elapsedMs);
+        }
+    }
+}
@@ -0,0 +1,36 @@
+package com.nocountry.backend.services.automation.campaign;
+
+import com.nocountry.backend.enums.ActionType;
+import com.nocountry.backend.services.automation.RenderedMessage;
+
+import java.util.List;
+
+/**
+ * Sends a batch of rendered campaign messages over one channel. Adapters
+ * report failures per message instead of throwing, so one bad address does
+ * not abort the rest of the batch.
+ */
+public interface CampaignChannelAdapter {
+
+    ActionType actionType();
+
+    /**
+     * @return one result per message, in the same order
+     */
+    List<DeliveryResult> sendBatch(List<RenderedMessage> messages);
+
+    record DeliveryResult(RenderedMessage message, String error) {
+
+        public static DeliveryResult sent(RenderedMessage message) {
+            return new DeliveryResult(message, null);
+        }
+
+        public static DeliveryResult failed(RenderedMessage message, String error) {
+            return new DeliveryResult(message, error != null ? error : "unknown error");
+        }
+
+        public boolean isSent() {
+            return error == null;
+        }
+    }
+}
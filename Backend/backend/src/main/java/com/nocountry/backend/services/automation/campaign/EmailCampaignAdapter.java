@@ -0,0 +1,67 @@
+package com.nocountry.backend.services.automation.campaign;
+
+import com.nocountry.backend.entity.EmailLog;
+import com.nocountry.backend.enums.ActionType;
+import com.nocountry.backend.enums.Channel;
+import com.nocountry.backend.enums.OutboundPriority;
+import com.nocountry.backend.services.EmailService;
+import com.nocountry.backend.services.EmailService.OutgoingEmail;
+import com.nocountry.backend.services.automation.RenderedMessage;
+import com.nocountry.backend.services.email.EmailTrackingService;
+import com.nocountry.backend.services.outbound.OutboundDispatcher;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Sends a whole batch over one pooled SMTP connection.
+ */
+@Component
+@RequiredArgsConstructor
+public class EmailCampaignAdapter implements CampaignChannelAdapter {
+
+    private final EmailService emailService;
+    private final OutboundDispatcher outboundDispatcher;
+    private final EmailTrackingService emailTrackingService;
+
+    @Override
+    public ActionType actionType() {
+        return ActionType.SEND_EMAIL;
+    }
+
+    @Override
+    public List<DeliveryResult> sendBatch(List<RenderedMessage> messages) {
+        // Un EmailLog por mensaje para seguir aperturas y clics de la campaña
+        List<EmailLog> logs = emailTrackingService.createLogs(messages.stream()
+                .map(m -> EmailLog.builder().lead(m.lead()).subject(m.subject()).body(m.body()).build())
+                .toList());
+
+        List<OutgoingEmail> emails = new ArrayList<>(messages.size());
+        for (int i = 0; i < messages.size(); i++) {
+            RenderedMessage m = messages.get(i);
+            emails.add(new OutgoingEmail(m.lead().getEmail(), m.subject(),
+                    emailTrackingService.instrument(m.body(), logs.get(i).getId())));
+        }
+
+        // One token per message; the dispatcher grants them in burst-sized slices
+        outboundDispatcher.acquire(Channel.EMAIL, OutboundPriority.BULK, emails.size());
+        Map<Integer, Exception> failures = emailService.sendBatch(emails);
+
+        List<DeliveryResult> results = new ArrayList<>(messages.size());
+        List<EmailLog> failedLogs = new ArrayList<>();
+        for (int i = 0; i < messages.size(); i++) {
+            Exception failure = failures.get(i);
+            results.add(failure == null
+                    ? DeliveryResult.sent(messages.get(i))
+                    : DeliveryResult.failed(messages.get(i), failure.getMessage()));
+            if (failure != null) {
+                failedLogs.add(logs.get(i));
+            }
+        }
+        emailTrackingService.markFailed(failedLogs);
+        return results;
+    }
+}
@@ -0,0 +1,45 @@
+package com.nocountry.backend.services.automation.campaign;
+
+import com.nocountry.backend.enums.ActionType;
+import com.nocountry.backend.enums.Channel;
+import com.nocountry.backend.enums.OutboundPriority;
+import com.nocountry.backend.services.automation.RenderedMessage;
+import com.nocountry.backend.services.outbound.OutboundDispatcher;
+import com.nocountry.backend.services.whatsapp.WhatsAppApiService;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The Cloud API has no batch endpoint, so the batch is sent message by
+ * message; failures are still collected per message.
+ */
+@Component
+@RequiredArgsConstructor
+public class WhatsAppCampaignAdapter implements CampaignChannelAdapter {
+
+    private final WhatsAppApiService whatsAppService;
+    private final OutboundDispatcher outboundDispatcher;
+
+    @Override
+    public ActionType actionType() {
+        return ActionType.SEND_WHATSAPP;
+    }
+
+    @Override
+    public List<DeliveryResult> sendBatch(List<RenderedMessage> messages) {
+        List<DeliveryResult> results = new ArrayList<>(messages.size());
+        for (RenderedMessage message : messages) {
+            try {
+                outboundDispatcher.execute(Channel.WHATSAPP, OutboundPriority.BULK,
+                        () -> whatsAppService.sendTextMessage(message.lead().getPhone(), message.body()));
+                results.add(DeliveryResult.sent(message));
+            } catch (Exception e) {
+                results.add(DeliveryResult.failed(message, e.getMessage()));
+            }
+        }
+        return results;
+    }
+}
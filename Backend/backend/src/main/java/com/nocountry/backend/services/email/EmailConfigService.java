@@ -2,9 +2,8 @@ package com.nocountry.backend.services.email;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.nocountry.backend.entity.IntegrationConfig;
 import com.nocountry.backend.enums.IntegrationType;
-import com.nocountry.backend.repository.IntegrationConfigRepository;
+import com.nocountry.backend.services.IntegrationConfigCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Value;
@@ -22,7 +21,7 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class EmailConfigService {
 
-    private final IntegrationConfigRepository configRepository;
+    private final IntegrationConfigCache configCache;
     private final ObjectMapper objectMapper;
 
     // Fallback a variables de entorno
@@ -73,10 +72,7 @@ public class EmailConfigService {
      */
     public Optional<EmailCredentials> getEmailCredentials() {
         // Intentar desde DB primero
-        Optional<EmailCredentials> dbCredentials = configRepository.findByIntegrationType(IntegrationType.EMAIL)
-                .filter(IntegrationConfig::isConnected)
-                .map(this::parseCredentials)
-                .filter(EmailCredentials::isValid);
+        Optional<EmailCredentials> dbCredentials = databaseCredentials();
 
         if (dbCredentials.isPresent()) {
             log.debug("Using email credentials from database");
@@ -113,21 +109,21 @@ public class EmailConfigService {
      * Verifica si las credenciales vienen de la base de datos.
      */
     public boolean isUsingDatabaseConfig() {
-        return configRepository.findByIntegrationType(IntegrationType.EMAIL)
-                .filter(IntegrationConfig::isConnected)
-                .map(this::parseCredentials)
-                .filter(EmailCredentials::isValid)
-                .isPresent();
+        return databaseCredentials().isPresent();
     }
 
-    private EmailCredentials parseCredentials(IntegrationConfig config) {
-        if (config.getCredentials() == null || config.getCredentials().isBlank()) {
-            log.warn("Email credentials JSON is empty");
-            return new EmailCredentials(null, null, null, null, null, null, null);
-        }
+    /**
+     * Credenciales parseadas desde la DB, cacheadas hasta que se modifique la
+     * configuración (IntegrationConfigCache).
+     */
+    private Optional<EmailCredentials> databaseCredentials() {
+        return configCache.resolve(IntegrationType.EMAIL, "credentials", this::parseCredentials)
+                .filter(EmailCredentials::isValid);
+    }
 
+    private EmailCredentials parseCredentials(String credentialsJson) {
         try {
-            return objectMapper.readValue(config.getCredentials(), EmailCredentials.class);
+            return objectMapper.readValue(credentialsJson, EmailCredentials.class);
         } catch (JsonProcessingException e) {
             log.error("Error parsing Email credentials JSON: {}", e.getMessage());
             return new EmailCredentials(null, null, null, null, null, null, null);
@@ -0,0 +1,228 @@
+package com.nocountry.backend.services.email;
+
+import com.nocountry.backend.enums.EmailTrackingEventType;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Collects email open/click hits from the tracking endpoints and writes them
+ * in the background, so a mass send whose pixels all load at once costs one
+ * queue offer per hit instead of a transaction.
+ * <p>
+ * Every flush interval the queue is drained in chunks. Each chunk is one
+ * transaction: a JDBC batch INSERT into email_tracking_event plus one UPDATE
+ * per email_log touched, adding that chunk's open and click counts and moving
+ * the status to OPENED. A chunk that fails to write is queued again. The queue
+ * is bounded; when it is full new hits are dropped (and counted) rather than
+ * slowing the endpoint down. Hits still queued when the process dies are
+ * lost, which is acceptable for analytics.
+ */
+@Service
+@Slf4j
+public class EmailTrackingBuffer {
+
+    private static final String INSERT_SQL = "INSERT INTO email_tracking_event "
+            + "(email_log_id, event_type, url, ip_address, user_agent, occurred_at) VALUES (?, ?, ?, ?, ?, ?)";
+
+    private static final String UPDATE_SQL = "UPDATE email_log SET "
+            + "open_count = open_count + ?, "
+            + "click_count = click_count + ?, "
+            + "first_opened_at = COALESCE(first_opened_at, ?), "
+            + "last_opened_at = COALESCE(GREATEST(last_opened_at, ?), last_opened_at, ?), "
+            + "last_clicked_at = COALESCE(GREATEST(last_clicked_at, ?), last_clicked_at, ?), "
+            // Un clic implica que el email se abrió aunque el pixel estuviera bloqueado
+            + "status = CASE WHEN status IN ('SENT', 'DELIVERED') THEN 'OPENED' ELSE status END "
+            + "WHERE id = ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final BlockingQueue<TrackingEvent> queue;
+    private final int batchSize;
+
+    private final Timer flushTimer;
+    private final Counter dropped;
+    private final MeterRegistry meterRegistry;
+
+    public EmailTrackingBuffer(
+            JdbcTemplate jdbcTemplate,
+            PlatformTransactionManager transactionManager,
+            MeterRegistry meterRegistry,
+            @Value("${email.tracking.buffer-capacity:50000}") int capacity,
+            @Value("${email.tracking.batch-size:1000}") int batchSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.batchSize = batchSize;
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("email.tracking.pending", queue, BlockingQueue::size)
+                .description("Tracking hits waiting for the next flush")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("email.tracking.flush")
+                .description("Time to write one batch of tracking hits")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("email.tracking.dropped")
+                .description("Tracking hits dropped because the buffer was full")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues one hit; never blocks.
+     */
+    public void record(EmailTrackingEventType type, Long emailLogId, String url, String ipAddress,
+            String userAgent) {
+        TrackingEvent event = new TrackingEvent(emailLogId, type, truncate(url, 2048),
+                truncate(ipAddress, 45), truncate(userAgent, 512), LocalDateTime.now());
+        if (queue.offer(event)) {
+            Counter.builder("email.tracking.received")
+                    .description("Email tracking hits received")
+                    .tag("type", type.name())
+                    .register(meterRegistry)
+                    .increment();
+        } else {
+            dropped.increment();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${email.tracking.flush-interval-ms:2000}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Error guardando eventos de tracking de email: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        scheduledFlush();
+    }
+
+    /**
+     * Drains the queue, one transaction per chunk of {@code batch-size} hits.
+     */
+    public synchronized void flush() {
+        List<TrackingEvent> chunk = new ArrayList<>(batchSize);
+        while (queue.drainTo(chunk, batchSize) > 0) {
+            write(chunk);
+            chunk.clear();
+        }
+    }
+
+    private void write(List<TrackingEvent> chunk) {
+        List<Object[]> inserts = new ArrayList<>(chunk.size());
+        Map<Long, Counts> counts = new LinkedHashMap<>();
+        for (TrackingEvent event : chunk) {
+            inserts.add(new Object[] {
+                    event.emailLogId(),
+                    event.type().name(),
+                    event.url(),
+                    event.ipAddress(),
+                    event.userAgent(),
+                    Timestamp.valueOf(event.occurredAt())
+            });
+            counts.computeIfAbsent(event.emailLogId(), id -> new Counts()).add(event);
+        }
+
+        List<Object[]> updates = new ArrayList<>(counts.size());
+        counts.forEach((emailLogId, c) -> updates.add(new Object[] {
+                c.opens,
+                c.clicks,
+                toTimestamp(c.firstOpen),
+                toTimestamp(c.lastOpen), toTimestamp(c.lastOpen),
+                toTimestamp(c.lastClick), toTimestamp(c.lastClick),
+                emailLogId
+        }));
+
+        int[] insertTypes = { Types.BIGINT, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR, Types.VARCHAR,
+                Types.TIMESTAMP };
+        int[] updateTypes = { Types.INTEGER, Types.INTEGER, Types.TIMESTAMP, Types.TIMESTAMP, Types.TIMESTAMP,
+                Types.TIMESTAMP, Types.TIMESTAMP, Types.BIGINT };
+
+        long start = System.nanoTime();
+        try {
+            transactionTemplate.executeWithoutResult(status -> {
+                jdbcTemplate.batchUpdate(INSERT_SQL, inserts, insertTypes);
+                jdbcTemplate.batchUpdate(UPDATE_SQL, updates, updateTypes);
+            });
+        } catch (RuntimeException e) {
+            // Se reintentan en el próximo flush mientras haya lugar en la cola
+            chunk.forEach(event -> {
+                if (!queue.offer(event)) {
+                    dropped.increment();
+                }
+            });
+            throw e;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        log.debug("📈 Eventos de tracking guardados: {} ({} emails)", chunk.size(), counts.size());
+    }
+
+    private static String truncate(String value, int max) {
+        return value == null || value.length() <= max ? value : value.substring(0, max);
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime value) {
+        return value != null ? Timestamp.valueOf(value) : null;
+    }
+
+    private record TrackingEvent(
+            Long emailLogId,
+            EmailTrackingEventType type,
+            String url,
+            String ipAddress,
+            String userAgent,
+            LocalDateTime occurredAt) {
+    }
+
+    /**
+     * Aggregated hits of one email_log within a chunk.
+     */
+    private static final class Counts {
+        private int opens;
+        private int clicks;
+        private LocalDateTime firstOpen;
+        private LocalDateTime lastOpen;
+        private LocalDateTime lastClick;
+
+        void add(TrackingEvent event) {
+            LocalDateTime at = event.occurredAt();
+            if (event.type() == EmailTrackingEventType.OPEN) {
+                opens++;
+                if (firstOpen == null || at.isBefore(firstOpen)) {
+                    firstOpen = at;
+                }
+                if (lastOpen == null || at.isAfter(lastOpen)) {
+                    lastOpen = at;
+                }
+            } else {
+                clicks++;
+                if (lastClick == null || at.isAfter(lastClick)) {
+                    lastClick = at;
+                }
+            }
+        }
+    }
+}
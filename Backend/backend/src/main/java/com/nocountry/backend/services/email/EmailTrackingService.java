@@ -0,0 +1,183 @@
+package com.nocountry.backend.services.email;
+
+import com.nocountry.backend.entity.CrmLead;
+import com.nocountry.backend.entity.EmailLog;
+import com.nocountry.backend.enums.EmailStatus;
+import com.nocountry.backend.repository.EmailLogRepository;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Document;
+import org.jsoup.nodes.Element;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.web.util.UriComponentsBuilder;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Creates the {@link EmailLog} of a tracked email and rewrites its HTML so
+ * opens and clicks reach {@code EmailTrackingController}: links go through a
+ * redirect and a 1x1 pixel is appended.
+ * <p>
+ * Tracking URLs carry an HMAC of the log id (and of the target for clicks),
+ * so the public endpoints cannot be used to forge opens for other emails or
+ * as an open redirect. The key is {@code email.tracking.secret}; when it is
+ * not set, a subkey HMAC(jwt key, "email-tracking") is derived, so the JWT
+ * signing key itself is never used for tracking URLs.
+ */
+@Service
+public class EmailTrackingService {
+
+    private static final String HMAC = "HmacSHA256";
+    // 128 bits of the HMAC are plenty for a URL token
+    private static final int SIGNATURE_BYTES = 16;
+    private static final String SUBKEY_LABEL = "email-tracking";
+
+    private final EmailLogRepository emailLogRepository;
+    private final boolean enabled;
+    private final String baseUrl;
+    private final SecretKeySpec key;
+
+    public EmailTrackingService(
+            EmailLogRepository emailLogRepository,
+            @Value("${email.tracking.enabled:true}") boolean enabled,
+            @Value("${APP_BASE_URL:${app.base-url:http://localhost:8080}}") String baseUrl,
+            @Value("${email.tracking.secret:}") String secret,
+            @Value("${jwt.secret-key}") String jwtSecretKey) {
+        this.emailLogRepository = emailLogRepository;
+        this.enabled = enabled;
+        this.baseUrl = baseUrl.endsWith("/") ? baseUrl.substring(0, baseUrl.length() - 1) : baseUrl;
+        this.key = secret != null && !secret.isBlank()
+                ? new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), HMAC)
+                : new SecretKeySpec(hmac(new SecretKeySpec(jwtSecretKey.getBytes(StandardCharsets.UTF_8), HMAC),
+                        SUBKEY_LABEL), HMAC);
+    }
+
+    /**
+     * Registra el envío de un email a un lead (status SENT) para poder seguir sus aperturas.
+     */
+    public EmailLog createLog(CrmLead lead, String subject, String body) {
+        return emailLogRepository.save(EmailLog.builder()
+                .lead(lead)
+                .subject(subject)
+                .body(body)
+                .status(EmailStatus.SENT)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * Same as {@link #createLog} for a batch, in a single saveAll.
+     */
+    public List<EmailLog> createLogs(List<EmailLog> logs) {
+        LocalDateTime now = LocalDateTime.now();
+        logs.forEach(emailLog -> {
+            emailLog.setStatus(EmailStatus.SENT);
+            emailLog.setCreatedAt(now);
+        });
+        return emailLogRepository.saveAll(logs);
+    }
+
+    public void markSent(EmailLog emailLog, String providerMessageId) {
+        if (providerMessageId != null) {
+            emailLog.setProviderMessageId(providerMessageId);
+            emailLogRepository.save(emailLog);
+        }
+    }
+
+    public void markFailed(Collection<EmailLog> logs) {
+        if (logs.isEmpty()) {
+            return;
+        }
+        logs.forEach(emailLog -> emailLog.setStatus(EmailStatus.FAILED));
+        emailLogRepository.saveAll(logs);
+    }
+
+    /**
+     * Routes every http(s) link of {@code html} through the click redirect and
+     * appends the open pixel. Returns {@code html} unchanged when tracking is
+     * disabled.
+     */
+    public String instrument(String html, Long emailLogId) {
+        if (!enabled || html == null || emailLogId == null) {
+            return html;
+        }
+        Document document = Jsoup.parse(html);
+        // Sin reindentar: el espaciado del email queda como estaba
+        document.outputSettings().prettyPrint(false);
+        for (Element link : document.select("a[href]")) {
+            String href = link.attr("href").trim();
+            if (isTrackable(href)) {
+                link.attr("href", clickUrl(emailLogId, href));
+            }
+        }
+        document.body().appendElement("img")
+                .attr("src", pixelUrl(emailLogId))
+                .attr("width", "1")
+                .attr("height", "1")
+                .attr("alt", "")
+                .attr("style", "display:block;border:0;width:1px;height:1px;");
+        return document.outerHtml();
+    }
+
+    public String pixelUrl(Long emailLogId) {
+        return baseUrl + "/api/track/open/" + emailLogId + "/" + sign(emailLogId.toString()) + ".gif";
+    }
+
+    public String clickUrl(Long emailLogId, String target) {
+        return UriComponentsBuilder.fromUriString(baseUrl)
+                .path("/api/track/click/{id}/{signature}")
+                .queryParam("u", "{target}")
+                // encode() antes de expandir: la URL destino se codifica entera (incluidos & y =)
+                .encode()
+                .buildAndExpand(emailLogId, sign(emailLogId + "\n" + target), target)
+                .toUriString();
+    }
+
+    public boolean isValidOpen(Long emailLogId, String signature) {
+        return verify(emailLogId.toString(), signature);
+    }
+
+    public boolean isValidClick(Long emailLogId, String target, String signature) {
+        return isTrackable(target) && verify(emailLogId + "\n" + target, signature);
+    }
+
+    private static boolean isTrackable(String url) {
+        String lower = url.toLowerCase(Locale.ROOT);
+        return lower.startsWith("http://") || lower.startsWith("https://");
+    }
+
+    private boolean verify(String payload, String signature) {
+        if (signature == null) {
+            return false;
+        }
+        // Comparación en tiempo constante
+        return MessageDigest.isEqual(
+                sign(payload).getBytes(StandardCharsets.US_ASCII),
+                signature.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private String sign(String payload) {
+        byte[] truncated = new byte[SIGNATURE_BYTES];
+        System.arraycopy(hmac(key, payload), 0, truncated, 0, SIGNATURE_BYTES);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(truncated);
+    }
+
+    private static byte[] hmac(SecretKeySpec key, String payload) {
+        try {
+            Mac mac = Mac.getInstance(HMAC);
+            mac.init(key);
+            return mac.doFinal(payload.getBytes(StandardCharsets.UTF_8));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("Cannot sign tracking URL", e);
+        }
+    }
+}
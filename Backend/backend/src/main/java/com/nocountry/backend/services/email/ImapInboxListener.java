@@ -0,0 +1,262 @@
+package com.nocountry.backend.services.email;
+
+import com.nocountry.backend.services.EmailInboundService;
+import com.nocountry.backend.services.email.EmailConfigService.EmailCredentials;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.Folder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.Session;
+import jakarta.mail.Store;
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.angus.mail.imap.IMAPFolder;
+import org.eclipse.angus.mail.imap.IMAPStore;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Service;
+
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Keeps one authenticated IMAP connection open and imports new mail as soon as
+ * the server announces it, instead of a TLS handshake and login per poll.
+ * <p>
+ * With IDLE the listener thread blocks until the server pushes a change, then
+ * syncs the folder through {@link EmailInboundService#syncFolder}. A keepalive
+ * on the listener's own timer thread periodically interrupts IDLE (servers
+ * drop it after ~30 minutes) and detects dead connections; it can block for
+ * the whole read timeout on a dead socket, so it stays off Spring's shared
+ * scheduler. Servers without IDLE are polled on the same connection.
+ * Connection errors reconnect with exponential backoff; credential changes
+ * are picked up on the next wake-up.
+ * <p>
+ * Publishes {@code email.imap.state} (0 disconnected, 1 polling, 2 idle),
+ * {@code email.imap.reconnects} and, from the inbound service,
+ * {@code email.inbound.lag}.
+ */
+@Service
+@Slf4j
+public class ImapInboxListener {
+
+    private static final int STATE_DISCONNECTED = 0;
+    private static final int STATE_POLLING = 1;
+    private static final int STATE_IDLE = 2;
+
+    private final EmailConfigService emailConfigService;
+    private final EmailInboundService emailInboundService;
+    private final boolean idleEnabled;
+    private final long pollIntervalMs;
+    private final long keepaliveMs;
+    private final long connectTimeoutMs;
+    private final long initialBackoffMs;
+    private final long maxBackoffMs;
+    private final Thread listener;
+    private final ScheduledExecutorService keepaliveTimer;
+    private volatile boolean running = true;
+
+    private volatile Folder openFolder;
+    private final AtomicInteger state = new AtomicInteger(STATE_DISCONNECTED);
+    private final AtomicLong lastSyncAt = new AtomicLong();
+    private final Counter reconnects;
+
+    public ImapInboxListener(
+            EmailConfigService emailConfigService,
+            EmailInboundService emailInboundService,
+            MeterRegistry meterRegistry,
+            @Value("${email.imap.idle-enabled:true}") boolean idleEnabled,
+            @Value("${email.imap.poll-interval-ms:60000}") long pollIntervalMs,
+            @Value("${email.imap.keepalive-ms:540000}") long keepaliveMs,
+            @Value("${email.imap.connect-timeout-ms:15000}") long connectTimeoutMs,
+            @Value("${email.imap.reconnect.initial-backoff-ms:2000}") long initialBackoffMs,
+            @Value("${email.imap.reconnect.max-backoff-ms:300000}") long maxBackoffMs) {
+        this.emailConfigService = emailConfigService;
+        this.emailInboundService = emailInboundService;
+        this.idleEnabled = idleEnabled;
+        this.pollIntervalMs = pollIntervalMs;
+        this.keepaliveMs = keepaliveMs;
+        this.connectTimeoutMs = connectTimeoutMs;
+        this.initialBackoffMs = initialBackoffMs;
+        this.maxBackoffMs = maxBackoffMs;
+
+        Gauge.builder("email.imap.state", state, AtomicInteger::get)
+                .description("IMAP listener state: 0 disconnected, 1 polling, 2 idle")
+                .register(meterRegistry);
+        Gauge.builder("email.imap.sync.age", lastSyncAt,
+                        last -> last.get() == 0 ? 0 : (System.currentTimeMillis() - last.get()) / 1000.0)
+                .description("Seconds since the inbox was last synced")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.reconnects = Counter.builder("email.imap.reconnects")
+                .description("IMAP connections lost or refused")
+                .register(meterRegistry);
+
+        this.listener = new Thread(this::listenLoop, "imap-inbox-listener");
+        this.listener.setDaemon(true);
+        this.keepaliveTimer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "imap-keepalive");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        listener.start();
+        keepaliveTimer.scheduleWithFixedDelay(this::keepAlive, keepaliveMs, keepaliveMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        keepaliveTimer.shutdownNow();
+        listener.interrupt();
+        Folder folder = openFolder;
+        if (folder != null) {
+            try {
+                // Unblocks a pending IDLE
+                folder.getStore().close();
+            } catch (MessagingException ignored) {
+            }
+        }
+    }
+
+    /**
+     * Ends the current IDLE so a silently dropped connection is noticed, and
+     * re-issues it before the server's IDLE timeout.
+     */
+    void keepAlive() {
+        Folder folder = openFolder;
+        if (folder == null || state.get() != STATE_IDLE) {
+            return;
+        }
+        try {
+            // Any command on the folder terminates IDLE (DONE + NOOP)
+            folder.getMessageCount();
+        } catch (Exception e) {
+            // Una excepción cancelaría las siguientes ejecuciones del timer
+            log.warn("IMAP keepalive failed: {}", e.getMessage());
+        }
+    }
+
+    private void listenLoop() {
+        long backoffMs = initialBackoffMs;
+        while (running) {
+            EmailCredentials credentials = emailConfigService.getEmailCredentials()
+                    .filter(EmailCredentials::isValid)
+                    .orElse(null);
+            if (credentials == null || credentials.imapHost() == null) {
+                log.debug("Email not configured, IMAP listener waiting");
+                if (!sleep(pollIntervalMs)) {
+                    return;
+                }
+                continue;
+            }
+
+            try {
+                listen(credentials);
+                backoffMs = initialBackoffMs;
+            } catch (Exception e) {
+                if (!running) {
+                    return;
+                }
+                reconnects.increment();
+                log.error("ERROR reading IMAP ({}), reconnecting in {} ms", e.getMessage(), backoffMs);
+                if (!sleep(backoffMs)) {
+                    return;
+                }
+                backoffMs = Math.min(maxBackoffMs, backoffMs * 2);
+            } finally {
+                state.set(STATE_DISCONNECTED);
+            }
+        }
+    }
+
+    /**
+     * Runs one connection until it fails or the credentials change.
+     */
+    private void listen(EmailCredentials credentials) throws MessagingException {
+        Store store = Session.getInstance(sessionProperties()).getStore();
+        try {
+            int port = credentials.imapPort() != null ? credentials.imapPort() : -1;
+            store.connect(credentials.imapHost(), port, credentials.username(), credentials.password());
+
+            String folderName = credentials.folderName() != null ? credentials.folderName() : "INBOX";
+            Folder folder = store.getFolder(folderName);
+            // Read-only: sync is driven by UID checkpoints and never changes the user's flags
+            folder.open(Folder.READ_ONLY);
+            openFolder = folder;
+
+            boolean idle = idleEnabled
+                    && store instanceof IMAPStore imapStore
+                    && imapStore.hasCapability("IDLE")
+                    && folder instanceof IMAPFolder;
+            log.info("📬 IMAP listener connected to {} ({})", folderName, idle ? "IDLE" : "polling");
+
+            while (running && credentials.equals(currentCredentials())) {
+                sync(folder, credentials);
+                if (idle) {
+                    state.set(STATE_IDLE);
+                    // Returns on the first server notification or when keepAlive() issues a command
+                    ((IMAPFolder) folder).idle(true);
+                } else {
+                    state.set(STATE_POLLING);
+                    if (!sleep(pollIntervalMs)) {
+                        return;
+                    }
+                }
+                if (!folder.isOpen()) {
+                    throw new MessagingException("IMAP folder closed by server");
+                }
+            }
+        } finally {
+            openFolder = null;
+            try {
+                store.close();
+            } catch (MessagingException ignored) {
+            }
+        }
+    }
+
+    private void sync(Folder folder, EmailCredentials credentials) throws MessagingException {
+        int imported = emailInboundService.syncFolder(folder, credentials);
+        lastSyncAt.set(System.currentTimeMillis());
+        if (imported > 0) {
+            log.info("📥 Imported {} inbound emails", imported);
+        }
+    }
+
+    private EmailCredentials currentCredentials() {
+        return emailConfigService.getEmailCredentials().orElse(null);
+    }
+
+    private Properties sessionProperties() {
+        Properties props = new Properties();
+        props.put("mail.store.protocol", "imap");
+        props.put("mail.imap.ssl.enable", "true");
+        props.put("mail.imap.peek", "true");
+        // Pin the Angus provider so IDLE is available through IMAPFolder
+        props.put("mail.imap.class", IMAPStore.class.getName());
+        props.put("mail.imap.connectiontimeout", String.valueOf(connectTimeoutMs));
+        // Reads (including IDLE) may block until the next keepalive, not forever
+        props.put("mail.imap.timeout", String.valueOf(keepaliveMs + TimeUnit.MINUTES.toMillis(1)));
+        return props;
+    }
+
+    private boolean sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+            return running;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
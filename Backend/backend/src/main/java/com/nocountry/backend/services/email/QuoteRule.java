@@ -0,0 +1,74 @@
+package com.nocountry.backend.services.email;
+
+import java.util.List;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Finds where the quoted part (or signature) of an email reply starts.
+ * <p>
+ * Implementations must run in time linear in the text length: literal
+ * searches, or precompiled patterns whose quantifiers are bounded so a match
+ * attempt costs a constant number of steps. Extra rules for a specific client
+ * can be registered as Spring beans and are picked up by {@link ReplyStripper}.
+ */
+@FunctionalInterface
+public interface QuoteRule {
+
+    /**
+     * @return index where the quote starts, or -1 if the rule does not apply
+     */
+    int find(String text);
+
+    /**
+     * Earliest occurrence of any of the markers.
+     */
+    static QuoteRule literal(String... markers) {
+        List<String> list = List.of(markers);
+        return text -> {
+            int earliest = -1;
+            for (String marker : list) {
+                int idx = text.indexOf(marker);
+                if (idx >= 0 && (earliest < 0 || idx < earliest)) {
+                    earliest = idx;
+                }
+            }
+            return earliest;
+        };
+    }
+
+    /**
+     * Start of the first match of {@code pattern}, which must only use bounded
+     * quantifiers.
+     */
+    static QuoteRule pattern(Pattern pattern) {
+        return text -> {
+            Matcher matcher = pattern.matcher(text);
+            return matcher.find() ? matcher.start() : -1;
+        };
+    }
+
+    /**
+     * Attribution lines such as "On Mon, Jan 1, 2024 at 10:00 John &lt;j@x&gt; wrote:".
+     * Finds the earliest marker ("wrote:") and looks back at most
+     * {@code maxHeaderLength} characters for the last match of {@code headerStart}
+     * ("On Mon, Jan 1"); the quote starts there, or at the marker if no header
+     * start is found. Only the bounded window is scanned with the pattern.
+     */
+    static QuoteRule attribution(Pattern headerStart, int maxHeaderLength, String... markers) {
+        QuoteRule marker = literal(markers);
+        return text -> {
+            int markerIdx = marker.find(text);
+            if (markerIdx < 0) {
+                return -1;
+            }
+            Matcher matcher = headerStart.matcher(text);
+            matcher.region(Math.max(0, markerIdx - maxHeaderLength), markerIdx);
+            int start = -1;
+            while (matcher.find()) {
+                start = matcher.start();
+            }
+            return start >= 0 ? start : markerIdx;
+        };
+    }
+}
@@ -0,0 +1,110 @@
+package com.nocountry.backend.services.email;
+
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.regex.Pattern;
+
+/**
+ * Removes quoted history and mobile signatures from the text of an inbound
+ * reply, keeping only what the lead wrote.
+ * <p>
+ * Every rule runs once over the text and the reply is cut at the earliest
+ * match, so the cost is linear in the text length whatever the thread depth.
+ * All patterns are compiled once and use bounded quantifiers only; see
+ * {@code ReplyStripperBenchmark} for the measured worst case.
+ */
+@Component
+public class ReplyStripper {
+
+    // Comienzo de la línea de atribución: "El lun, 1 ene 2024", "On Mon, Jan 1, 2024", "Le 1 janv."
+    private static final Pattern ATTRIBUTION_START = Pattern.compile(
+            "(?iu)\\b(?:el|on|le|am)\\s+(?=(?:\\p{L}{2,10}\\.?,?\\s+){0,3}\\d{1,4}\\b)");
+
+    // Gmail sin "escribió:" (ej: cortado por el cliente): "El lun, 1 ene 2024" / "On Mon, Jan 1, 2024"
+    private static final Pattern GMAIL_DATE_HEADER = Pattern.compile(
+            "(?iu)\\b(?:el\\s+\\p{L}{3}\\.?,?\\s+\\d{1,2}\\s+(?:de\\s+)?\\p{L}{3,10}\\.?\\s+(?:de\\s+)?\\d{4}"
+                    + "|on\\s+\\p{L}{3},?\\s+\\p{L}{3,9}\\.?\\s+\\d{1,2},?\\s+\\d{4})");
+
+    // Outlook: "-----Original Message-----" o encabezado "From: ... Sent:" / "De: ... Enviado:"
+    private static final Pattern OUTLOOK_HEADER = Pattern.compile(
+            "(?iu)-{3,}\\s?(?:original message|mensaje original)\\s?-{3,}"
+                    + "|\\b(?:from|de):\\s[^\\n]{1,200}?\\s(?:sent|enviado(?:\\s+el)?):\\s");
+
+    private static final int MAX_ATTRIBUTION_LENGTH = 250;
+
+    private final List<QuoteRule> rules;
+
+    @Autowired
+    public ReplyStripper(ObjectProvider<QuoteRule> extraRules) {
+        this(extraRules.orderedStream().toList());
+    }
+
+    /**
+     * Default rules followed by {@code extraRules}.
+     */
+    public ReplyStripper(List<QuoteRule> extraRules) {
+        List<QuoteRule> all = new ArrayList<>(defaultRules());
+        all.addAll(extraRules);
+        this.rules = List.copyOf(all);
+    }
+
+    public static List<QuoteRule> defaultRules() {
+        return List.of(
+                QuoteRule.attribution(ATTRIBUTION_START, MAX_ATTRIBUTION_LENGTH,
+                        "escribió:", "wrote:", "a écrit :", "schrieb:"),
+                QuoteRule.pattern(GMAIL_DATE_HEADER),
+                QuoteRule.pattern(OUTLOOK_HEADER),
+                QuoteRule.literal(
+                        "Sent from my iPhone",
+                        "Enviado desde mi iPhone",
+                        "Enviado desde mi Android",
+                        "Sent from my Android",
+                        "Get Outlook for"));
+    }
+
+    /**
+     * @return the reply without quoted history, trimmed; "" for null
+     */
+    public String strip(String text) {
+        if (text == null) {
+            return "";
+        }
+        String normalized = normalizeSpaces(text).trim();
+
+        int cut = normalized.length();
+        for (QuoteRule rule : rules) {
+            int idx = rule.find(normalized);
+            // Un encabezado al principio significa que no hay texto propio: se conserva todo
+            if (idx > 0 && idx < cut) {
+                cut = idx;
+            }
+        }
+        // El ">" que precede a una atribución citada queda pegado al final del corte
+        int end = cut;
+        while (end > 0 && (normalized.charAt(end - 1) == '>' || Character.isWhitespace(normalized.charAt(end - 1)))) {
+            end--;
+        }
+        return normalized.substring(0, end).trim();
+    }
+
+    /**
+     * Non-breaking and figure spaces (common in HTML mail) to plain spaces.
+     */
+    private static String normalizeSpaces(String text) {
+        char[] chars = null;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c == '\u00A0' || c == '\u2007' || c == '\u202F') {
+                if (chars == null) {
+                    chars = text.toCharArray();
+                }
+                chars[i] = ' ';
+            }
+        }
+        return chars == null ? text : new String(chars);
+    }
+}
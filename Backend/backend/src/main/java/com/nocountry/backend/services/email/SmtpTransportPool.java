@@ -0,0 +1,388 @@
+package com.nocountry.backend.services.email;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import jakarta.mail.MessagingException;
+import jakarta.mail.SendFailedException;
+import jakarta.mail.Transport;
+import jakarta.mail.internet.MimeMessage;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.mail.javamail.JavaMailSenderImpl;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps authenticated SMTP connections open between sends, so an email does
+ * not pay TCP + STARTTLS + AUTH each time as {@code JavaMailSender.send} does.
+ * <p>
+ * Connections belong to one endpoint (host, port, credentials). When the
+ * email integration is reconfigured the idle ones are closed and new ones are
+ * opened against the new endpoint. A connection is recycled (closed, and
+ * replaced on the next borrow) after any failure that may have left the SMTP
+ * session broken, after {@code max-messages-per-connection} sends (providers
+ * cap messages per session), and after sitting idle longer than
+ * {@code idle-timeout-ms} (providers drop idle sessions anyway).
+ * <p>
+ * Publishes {@code email.smtp.pool.active}/{@code idle}, {@code email.smtp.send},
+ * {@code email.smtp.connections.opened}/{@code closed} (by reason) and, per
+ * closed connection, {@code email.smtp.connection.messages} and
+ * {@code email.smtp.connection.throughput} (messages per second of send time).
+ */
+@Component
+@Slf4j
+public class SmtpTransportPool {
+
+    private final int maxMessagesPerConnection;
+    private final long idleTimeoutMs;
+    private final long validateAfterIdleMs;
+    private final long borrowTimeoutMs;
+    private final Semaphore leases;
+
+    // Guarded by "this"
+    private final Deque<PooledTransport> idle = new ArrayDeque<>();
+    private Endpoint endpoint;
+    private int active;
+
+    private final MeterRegistry meterRegistry;
+    private final Timer connectTimer;
+    private final Timer sendTimer;
+    private final Counter opened;
+    private final DistributionSummary messagesPerConnection;
+    private final DistributionSummary throughput;
+
+    public SmtpTransportPool(
+            MeterRegistry meterRegistry,
+            @Value("${email.smtp.pool.max-connections:4}") int maxConnections,
+            @Value("${email.smtp.pool.max-messages-per-connection:100}") int maxMessagesPerConnection,
+            @Value("${email.smtp.pool.idle-timeout-ms:60000}") long idleTimeoutMs,
+            @Value("${email.smtp.pool.validate-after-idle-ms:5000}") long validateAfterIdleMs,
+            @Value("${email.smtp.pool.borrow-timeout-ms:30000}") long borrowTimeoutMs) {
+        this.maxMessagesPerConnection = maxMessagesPerConnection;
+        this.idleTimeoutMs = idleTimeoutMs;
+        this.validateAfterIdleMs = validateAfterIdleMs;
+        this.borrowTimeoutMs = borrowTimeoutMs;
+        this.leases = new Semaphore(maxConnections, true);
+        this.meterRegistry = meterRegistry;
+
+        Gauge.builder("email.smtp.pool.active", this, pool -> pool.count(true))
+                .description("SMTP connections currently sending")
+                .register(meterRegistry);
+        Gauge.builder("email.smtp.pool.idle", this, pool -> pool.count(false))
+                .description("Authenticated SMTP connections waiting for the next send")
+                .register(meterRegistry);
+        this.connectTimer = Timer.builder("email.smtp.connect")
+                .description("Time to connect, STARTTLS and authenticate a new SMTP connection")
+                .register(meterRegistry);
+        this.sendTimer = Timer.builder("email.smtp.send")
+                .description("Time to transmit one message on an open SMTP connection")
+                .register(meterRegistry);
+        this.opened = Counter.builder("email.smtp.connections.opened")
+                .description("SMTP connections opened by the pool")
+                .register(meterRegistry);
+        this.messagesPerConnection = DistributionSummary.builder("email.smtp.connection.messages")
+                .description("Messages sent over one SMTP connection before it was closed")
+                .register(meterRegistry);
+        this.throughput = DistributionSummary.builder("email.smtp.connection.throughput")
+                .description("Messages per second of send time over one SMTP connection")
+                .baseUnit("messages/s")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Sends one message on a pooled connection of {@code sender}'s endpoint.
+     */
+    public void send(JavaMailSenderImpl sender, MimeMessage message) throws MessagingException {
+        Map<Integer, Exception> failures = sendBatch(sender, List.of(message));
+        Exception failure = failures.get(0);
+        if (failure instanceof MessagingException messagingException) {
+            throw messagingException;
+        }
+        if (failure != null) {
+            throw new MessagingException(failure.getMessage(), failure);
+        }
+    }
+
+    /**
+     * Sends {@code messages} back to back over one leased connection. When
+     * the connection breaks it is recycled and the remaining messages continue
+     * on a fresh one; the message being sent at that moment is reported as
+     * failed, not retried, since the server may already have accepted it.
+     *
+     * @return failures by position in {@code messages}; absent positions were sent
+     */
+    public Map<Integer, Exception> sendBatch(JavaMailSenderImpl sender, List<MimeMessage> messages) {
+        Map<Integer, Exception> failures = new HashMap<>();
+        Endpoint target = Endpoint.of(sender);
+        PooledTransport transport = null;
+        try {
+            for (int i = 0; i < messages.size(); i++) {
+                if (transport == null) {
+                    try {
+                        transport = borrow(sender, target);
+                    } catch (Exception e) {
+                        // Sin conexión no tiene sentido intentar el resto del lote
+                        for (int j = i; j < messages.size(); j++) {
+                            failures.put(j, e);
+                        }
+                        return failures;
+                    }
+                }
+
+                try {
+                    transport.send(prepare(messages.get(i)));
+                } catch (SendFailedException e) {
+                    // Destinatario rechazado: la sesión suele seguir usable, se verifica con NOOP
+                    failures.put(i, e);
+                    if (!transport.transport.isConnected()) {
+                        release(transport, "failure");
+                        transport = null;
+                        continue;
+                    }
+                } catch (Exception e) {
+                    failures.put(i, e);
+                    release(transport, "failure");
+                    transport = null;
+                    continue;
+                }
+
+                if (transport.messages >= maxMessagesPerConnection) {
+                    release(transport, "max-messages");
+                    transport = null;
+                }
+            }
+        } finally {
+            if (transport != null) {
+                release(transport, null);
+            }
+        }
+        return failures;
+    }
+
+    /**
+     * Closes connections that have been idle longer than the idle timeout.
+     */
+    @Scheduled(fixedDelayString = "${email.smtp.pool.evict-interval-ms:30000}")
+    public void evictIdle() {
+        List<PooledTransport> expired = new ArrayList<>();
+        long cutoff = System.currentTimeMillis() - idleTimeoutMs;
+        synchronized (this) {
+            Iterator<PooledTransport> it = idle.iterator();
+            while (it.hasNext()) {
+                PooledTransport transport = it.next();
+                if (transport.lastUsedAt < cutoff) {
+                    it.remove();
+                    expired.add(transport);
+                }
+            }
+        }
+        expired.forEach(transport -> close(transport, "idle"));
+    }
+
+    @PreDestroy
+    public void closeAll() {
+        List<PooledTransport> all;
+        synchronized (this) {
+            all = new ArrayList<>(idle);
+            idle.clear();
+        }
+        all.forEach(transport -> close(transport, "shutdown"));
+    }
+
+    private PooledTransport borrow(JavaMailSenderImpl sender, Endpoint target) throws MessagingException {
+        try {
+            if (!leases.tryAcquire(borrowTimeoutMs, TimeUnit.MILLISECONDS)) {
+                throw new MessagingException("No SMTP connection available after " + borrowTimeoutMs + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new MessagingException("Interrupted waiting for an SMTP connection", e);
+        }
+
+        try {
+            PooledTransport reusable = takeIdle(target);
+            if (reusable != null) {
+                return reusable;
+            }
+            PooledTransport created = connect(sender, target);
+            synchronized (this) {
+                active++;
+            }
+            return created;
+        } catch (MessagingException | RuntimeException e) {
+            leases.release();
+            throw e;
+        }
+    }
+
+    /**
+     * Most recently used idle connection of {@code target} that still answers,
+     * or null. Connections of a previous endpoint are closed.
+     */
+    private PooledTransport takeIdle(Endpoint target) {
+        List<PooledTransport> stale = new ArrayList<>();
+        List<PooledTransport> dead = new ArrayList<>();
+        PooledTransport found = null;
+        try {
+            while (found == null) {
+                PooledTransport candidate;
+                synchronized (this) {
+                    if (!target.equals(endpoint)) {
+                        stale.addAll(idle);
+                        idle.clear();
+                        endpoint = target;
+                    }
+                    candidate = idle.pollFirst();
+                    if (candidate == null) {
+                        return null;
+                    }
+                    active++;
+                }
+                // Recently used connections are trusted; older ones get a NOOP first
+                boolean alive = System.currentTimeMillis() - candidate.lastUsedAt < validateAfterIdleMs
+                        || candidate.transport.isConnected();
+                if (alive) {
+                    found = candidate;
+                } else {
+                    synchronized (this) {
+                        active--;
+                    }
+                    dead.add(candidate);
+                }
+            }
+            return found;
+        } finally {
+            stale.forEach(transport -> close(transport, "config-changed"));
+            dead.forEach(transport -> close(transport, "stale"));
+        }
+    }
+
+    private PooledTransport connect(JavaMailSenderImpl sender, Endpoint target) throws MessagingException {
+        Transport transport = sender.getSession().getTransport(target.protocol());
+        long start = System.nanoTime();
+        try {
+            transport.connect(target.host(), target.port(), target.username(), target.password());
+        } finally {
+            connectTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+        opened.increment();
+        log.debug("SMTP connection opened to {}:{}", target.host(), target.port());
+        return new PooledTransport(transport, target);
+    }
+
+    /**
+     * Returns a leased connection. With a {@code closeReason} it is closed
+     * instead of going back to the idle set.
+     */
+    private void release(PooledTransport transport, String closeReason) {
+        transport.lastUsedAt = System.currentTimeMillis();
+        String reason = closeReason;
+        synchronized (this) {
+            active--;
+            if (reason == null && !transport.endpoint.equals(endpoint)) {
+                reason = "config-changed";
+            }
+            if (reason == null) {
+                idle.addFirst(transport);
+            }
+        }
+        leases.release();
+        if (reason != null) {
+            close(transport, reason);
+        }
+    }
+
+    private void close(PooledTransport transport, String reason) {
+        try {
+            transport.transport.close();
+        } catch (MessagingException e) {
+            log.debug("Error closing SMTP connection: {}", e.getMessage());
+        }
+        Counter.builder("email.smtp.connections.closed")
+                .description("SMTP connections closed by the pool")
+                .tag("reason", reason)
+                .register(meterRegistry)
+                .increment();
+        messagesPerConnection.record(transport.messages);
+        if (transport.messages > 0 && transport.sendNanos > 0) {
+            throughput.record(transport.messages / (transport.sendNanos / 1_000_000_000.0));
+        }
+        log.debug("SMTP connection closed ({}) after {} messages", reason, transport.messages);
+    }
+
+    private synchronized int count(boolean leased) {
+        return leased ? active : idle.size();
+    }
+
+    /**
+     * What {@code JavaMailSenderImpl.send} does before handing the message to
+     * the transport: sent date, headers, and keeping an explicit Message-ID.
+     */
+    private static MimeMessage prepare(MimeMessage message) throws MessagingException {
+        if (message.getSentDate() == null) {
+            message.setSentDate(new Date());
+        }
+        String messageId = message.getMessageID();
+        message.saveChanges();
+        if (messageId != null) {
+            message.setHeader("Message-ID", messageId);
+        }
+        return message;
+    }
+
+    private record Endpoint(String protocol, String host, int port, String username, String password) {
+
+        static Endpoint of(JavaMailSenderImpl sender) {
+            String protocol = sender.getProtocol() != null ? sender.getProtocol() : "smtp";
+            return new Endpoint(protocol, sender.getHost(), sender.getPort(), sender.getUsername(),
+                    sender.getPassword());
+        }
+
+        @Override
+        public String toString() {
+            // Sin la contraseña
+            return protocol + "://" + username + "@" + host + ":" + port;
+        }
+    }
+
+    private final class PooledTransport {
+
+        private final Transport transport;
+        private final Endpoint endpoint;
+        private volatile long lastUsedAt = System.currentTimeMillis();
+        private int messages;
+        private long sendNanos;
+
+        private PooledTransport(Transport transport, Endpoint endpoint) {
+            this.transport = transport;
+            this.endpoint = endpoint;
+        }
+
+        void send(MimeMessage message) throws MessagingException {
+            long start = System.nanoTime();
+            try {
+                transport.sendMessage(message, message.getAllRecipients());
+                messages++;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                sendNanos += elapsed;
+                sendTimer.record(elapsed, TimeUnit.NANOSECONDS);
+            }
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package com.nocountry.backend.services.outbound;
+
+import com.nocountry.backend.entity.Conversation;
+import com.nocountry.backend.entity.Message;
+import com.nocountry.backend.entity.MessageOutbox;
+import com.nocountry.backend.enums.Channel;
+import com.nocountry.backend.enums.DeliveryStatus;
+import com.nocountry.backend.enums.OutboxStatus;
+import com.nocountry.backend.repository.ConversationRepository;
+import com.nocountry.backend.repository.MessageOutboxRepository;
+import com.nocountry.backend.services.queue.RetryBackoff;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Transactional outbox for agent-sent messages backed by message_outbox.
+ * {@link #enqueue} joins the caller's transaction, so the message and its
+ * outbox row commit together; every other method is one short transaction.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class MessageOutboxQueue {
+
+    // 2s, 4s, 8s... hasta 5 minutos: el agente está esperando el envío
+    private static final RetryBackoff BACKOFF = new RetryBackoff(2, 8, 300);
+
+    private final MessageOutboxRepository outboxRepository;
+    private final ConversationRepository conversationRepository;
+
+    @Value("${outbound.outbox.max-attempts:5}")
+    private int maxAttempts;
+
+    @Transactional
+    public void enqueue(Message message, Channel channel, String subject, String replyToExternalId) {
+        message.setDeliveryStatus(DeliveryStatus.QUEUED);
+        outboxRepository.save(MessageOutbox.builder()
+                .message(message)
+                .channel(channel)
+                .status(OutboxStatus.PENDING)
+                .subject(subject)
+                .replyToExternalId(replyToExternalId)
+                .createdAt(LocalDateTime.now())
+                .build());
+    }
+
+    /**
+     * Claims up to {@code limit} pending deliveries for {@code workerId}.
+     */
+    @Transactional
+    public List<Long> claimBatch(String workerId, int limit, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = outboxRepository.lockPendingIds(now, limit);
+        if (!ids.isEmpty()) {
+            outboxRepository.markClaimed(ids, OutboxStatus.PROCESSING, workerId, now.plus(lease));
+        }
+        return ids;
+    }
+
+    /**
+     * Loads a delivery claimed by {@code workerId}; empty if its lease was lost.
+     */
+    @Transactional(readOnly = true)
+    public Optional<OutboxDelivery> loadDelivery(Long id, String workerId) {
+        return findClaimed(id, workerId, null).map(outbox -> {
+            Message message = outbox.getMessage();
+            String recipient = outbox.getChannel() == Channel.EMAIL
+                    ? message.getConversation().getCrm_lead().getEmail()
+                    : message.getConversation().getCrm_lead().getPhone();
+
+            String inReplyTo = null;
+            String references = null;
+            if (outbox.getChannel() == Channel.EMAIL) {
+                // Estado del hilo mantenido en la conversación: sin recorrer sus mensajes
+                Conversation conversation = message.getConversation();
+                inReplyTo = conversation.getEmailLastInboundMessageId();
+                if (inReplyTo != null) {
+                    references = conversation.getEmailReferences();
+                }
+            }
+
+            return new OutboxDelivery(
+                    outbox.getId(),
+                    outbox.getAttempts(),
+                    message.getId(),
+                    message.getConversation().getId(),
+                    outbox.getChannel(),
+                    recipient,
+                    message.getMessageType(),
+                    message.getContent(),
+                    message.getMediaUrl(),
+                    message.getMediaFileName(),
+                    message.getMediaCaption(),
+                    outbox.getSubject(),
+                    outbox.getReplyToExternalId(),
+                    inReplyTo,
+                    references);
+        });
+    }
+
+    /**
+     * Records a delivery as sent; ignored if {@code workerId} no longer holds
+     * the lease of that {@code attempt}.
+     */
+    @Transactional
+    public void markSent(Long id, String workerId, int attempt, String externalMessageId) {
+        findClaimed(id, workerId, attempt).ifPresent(outbox -> {
+            outbox.setStatus(OutboxStatus.SENT);
+            outbox.setSentAt(LocalDateTime.now());
+            outbox.setLastError(null);
+            outbox.setLockedBy(null);
+            outbox.setLockedUntil(null);
+
+            Message message = outbox.getMessage();
+            // Un recibo de WhatsApp puede haber llegado antes que este commit
+            if (message.getDeliveryStatus() == null || message.getDeliveryStatus() == DeliveryStatus.QUEUED) {
+                message.setDeliveryStatus(DeliveryStatus.SENT);
+            }
+            message.setDeliveryError(null);
+            if (externalMessageId != null) {
+                message.setExternalMessageId(externalMessageId);
+                if (outbox.getChannel() == Channel.EMAIL) {
+                    // Nuestra respuesta también forma parte de References
+                    conversationRepository.appendEmailMessageId(
+                            message.getConversation().getId(), externalMessageId, false);
+                }
+            }
+        });
+    }
+
+    /**
+     * Schedules a retry with exponential backoff, or marks the delivery and
+     * its message FAILED once all attempts are used. Ignored if
+     * {@code workerId} no longer holds the lease of that {@code attempt}.
+     *
+     * @return true if the failure is final
+     */
+    @Transactional
+    public boolean markFailed(Long id, String workerId, int attempt, String errorMessage) {
+        MessageOutbox outbox = findClaimed(id, workerId, attempt).orElse(null);
+        if (outbox == null) {
+            return false;
+        }
+        outbox.setLastError(errorMessage);
+        outbox.setLockedBy(null);
+        outbox.setLockedUntil(null);
+        if (outbox.getAttempts() >= maxAttempts) {
+            outbox.setStatus(OutboxStatus.FAILED);
+            outbox.getMessage().setDeliveryStatus(DeliveryStatus.FAILED);
+            outbox.getMessage().setDeliveryError(errorMessage);
+            log.error("Outbox delivery {} failed after {} attempts: {}", id, outbox.getAttempts(), errorMessage);
+            return true;
+        }
+        long delaySeconds = BACKOFF.delaySeconds(outbox.getAttempts());
+        outbox.setStatus(OutboxStatus.PENDING);
+        outbox.setNextAttemptAt(LocalDateTime.now().plusSeconds(delaySeconds));
+        log.warn("Outbox delivery {} failed (attempt {}), retrying in {}s: {}",
+                id, outbox.getAttempts(), delaySeconds, errorMessage);
+        return false;
+    }
+
+    /**
+     * The delivery if {@code workerId} holds its lease. With an {@code attempt},
+     * also that it was not reclaimed since: a worker id is per node, so a lease
+     * that expired and was claimed again on this same node keeps the same
+     * locked_by but a higher attempt count.
+     */
+    private Optional<MessageOutbox> findClaimed(Long id, String workerId, Integer attempt) {
+        Optional<MessageOutbox> outbox = outboxRepository.findClaimedWithMessage(id, OutboxStatus.PROCESSING, workerId)
+                .filter(claimed -> attempt == null || attempt.equals(claimed.getAttempts()));
+        if (outbox.isEmpty()) {
+            log.warn("Skipping outbox delivery {}: lease no longer held by {}", id, workerId);
+        }
+        return outbox;
+    }
+
+    @Transactional
+    public int recoverExpiredLeases() {
+        return outboxRepository.releaseExpiredLeases(
+                OutboxStatus.PROCESSING,
+                OutboxStatus.PENDING,
+                LocalDateTime.now());
+    }
+
+    @Transactional
+    public int purgeSentBefore(LocalDateTime before) {
+        return outboxRepository.deleteSentBefore(OutboxStatus.SENT, before);
+    }
+}
@@ -0,0 +1,225 @@
+package com.nocountry.backend.services.outbound;
+
+import com.nocountry.backend.dto.WebSocketMessageDTO;
+import com.nocountry.backend.enums.Channel;
+import com.nocountry.backend.enums.MessageType;
+import com.nocountry.backend.enums.OutboundPriority;
+import com.nocountry.backend.enums.OutboxStatus;
+import com.nocountry.backend.repository.MessageOutboxRepository;
+import com.nocountry.backend.services.EmailService;
+import com.nocountry.backend.services.automation.WorkerId;
+import com.nocountry.backend.services.queue.LeasedQueueDispatcher;
+import com.nocountry.backend.services.whatsapp.WhatsAppApiService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Delivers messages queued in message_outbox through the same
+ * {@link LeasedQueueDispatcher} as the webhook worker: deliveries are claimed
+ * when woken after a commit (or every poll interval), never more than there
+ * are idle sender threads.
+ * <p>
+ * The provider call runs outside any transaction; the result is recorded in a
+ * short one afterwards and the open chat is told to reload with a
+ * {@code MESSAGE_UPDATED} notification.
+ */
+@Service
+@Slf4j
+public class MessageOutboxSender {
+
+    private final MessageOutboxQueue queue;
+    private final MessageOutboxRepository outboxRepository;
+    private final WhatsAppApiService whatsAppApiService;
+    private final EmailService emailService;
+    private final OutboundDispatcher outboundDispatcher;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final LeasedQueueDispatcher dispatcher;
+    private final String workerId = WorkerId.current();
+    private final int retentionDays;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final Timer sendTimer;
+    private final Counter failures;
+
+    public MessageOutboxSender(
+            MessageOutboxQueue queue,
+            MessageOutboxRepository outboxRepository,
+            WhatsAppApiService whatsAppApiService,
+            EmailService emailService,
+            OutboundDispatcher outboundDispatcher,
+            SimpMessagingTemplate messagingTemplate,
+            @Qualifier("outboxSenderExecutor") ThreadPoolTaskExecutor executor,
+            MeterRegistry meterRegistry,
+            @Value("${outbound.outbox.worker-threads:4}") int workerThreads,
+            @Value("${outbound.outbox.batch-size:20}") int batchSize,
+            @Value("${outbound.outbox.poll-interval-ms:2000}") long pollIntervalMs,
+            @Value("${outbound.outbox.lease-minutes:2}") long leaseMinutes,
+            @Value("${outbound.outbox.retention-days:7}") int retentionDays) {
+        this.queue = queue;
+        this.outboxRepository = outboxRepository;
+        this.whatsAppApiService = whatsAppApiService;
+        this.emailService = emailService;
+        this.outboundDispatcher = outboundDispatcher;
+        this.messagingTemplate = messagingTemplate;
+        this.retentionDays = retentionDays;
+
+        Gauge.builder("message.outbox.pending", pending, AtomicLong::get)
+                .description("Agent messages waiting to be delivered")
+                .register(meterRegistry);
+        this.sendTimer = Timer.builder("message.outbox.send")
+                .description("Time to deliver one queued message to the provider")
+                .register(meterRegistry);
+        this.failures = Counter.builder("message.outbox.failures")
+                .description("Failed outbox delivery attempts")
+                .register(meterRegistry);
+
+        this.dispatcher = new LeasedQueueDispatcher("message-outbox", queue::claimBatch, this::process, executor,
+                workerThreads, batchSize, pollIntervalMs, Duration.ofMinutes(leaseMinutes));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.stop();
+    }
+
+    public void wakeUp() {
+        dispatcher.wakeUp();
+    }
+
+    /**
+     * Wakes the dispatcher once the caller's transaction commits, so the new
+     * outbox row is visible when it is claimed.
+     */
+    public void wakeUpAfterCommit() {
+        dispatcher.wakeUpAfterCommit();
+    }
+
+    @Scheduled(fixedDelayString = "${outbound.outbox.stats-interval-ms:15000}")
+    public void refreshStats() {
+        try {
+            pending.set(outboxRepository.countByStatus(OutboxStatus.PENDING));
+        } catch (Exception e) {
+            log.warn("Could not refresh outbox stats: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${outbound.outbox.recovery-interval-ms:60000}")
+    public void recoverExpiredLeases() {
+        try {
+            int recovered = queue.recoverExpiredLeases();
+            if (recovered > 0) {
+                log.warn("Recovered {} outbox deliveries with expired leases", recovered);
+                wakeUp();
+            }
+        } catch (Exception e) {
+            log.error("Error recovering outbox leases: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${outbound.outbox.purge-cron:0 45 3 * * *}")
+    public void purgeSent() {
+        try {
+            int purged = queue.purgeSentBefore(LocalDateTime.now().minusDays(retentionDays));
+            log.info("Purged {} delivered outbox rows older than {} days", purged, retentionDays);
+        } catch (Exception e) {
+            log.error("Error purging delivered outbox rows: {}", e.getMessage());
+        }
+    }
+
+    private void process(Long outboxId) {
+        OutboxDelivery delivery = queue.loadDelivery(outboxId, workerId).orElse(null);
+        if (delivery == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            String externalId = send(delivery);
+            queue.markSent(outboxId, workerId, delivery.attempt(), externalId);
+            notifyUpdated(delivery.conversationId());
+        } catch (Exception e) {
+            failures.increment();
+            try {
+                if (queue.markFailed(outboxId, workerId, delivery.attempt(), e.getMessage())) {
+                    notifyUpdated(delivery.conversationId());
+                }
+            } catch (Exception markError) {
+                log.error("Could not record failure of outbox delivery {}: {}", outboxId, markError.getMessage());
+            }
+        } finally {
+            sendTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+
+    /**
+     * Calls the provider and returns its message id, if it gives one.
+     */
+    private String send(OutboxDelivery delivery) {
+        if (delivery.channel() == Channel.WHATSAPP) {
+            // Respuestas de agentes: lane prioritaria del rate limiter
+            Map<String, String> metaResponse;
+            if (delivery.messageType() == MessageType.TEXT) {
+                metaResponse = outboundDispatcher.execute(Channel.WHATSAPP, OutboundPriority.INTERACTIVE,
+                        () -> whatsAppApiService.sendTextMessage(
+                                delivery.recipient(),
+                                delivery.content(),
+                                delivery.replyToExternalId()));
+            } else {
+                metaResponse = outboundDispatcher.execute(Channel.WHATSAPP, OutboundPriority.INTERACTIVE,
+                        () -> whatsAppApiService.sendMediaMessage(
+                                delivery.recipient(),
+                                delivery.mediaUrl(),
+                                delivery.messageType(),
+                                delivery.mediaCaption(),
+                                delivery.mediaFileName(),
+                                delivery.replyToExternalId()));
+            }
+            return metaResponse.get("external_message_id");
+        }
+
+        if (delivery.channel() == Channel.EMAIL) {
+            if (delivery.recipient() == null || delivery.recipient().isBlank()) {
+                throw new RuntimeException("El lead no tiene email configurado");
+            }
+            outboundDispatcher.acquire(Channel.EMAIL, OutboundPriority.INTERACTIVE, 1);
+            // Message-ID enviado: se guarda para el threading de las próximas respuestas
+            return emailService.sendHtmlEmail(delivery.recipient(), delivery.subject(), delivery.content(),
+                    delivery.inReplyTo(), delivery.references());
+        }
+
+        throw new IllegalStateException("Unsupported outbox channel: " + delivery.channel());
+    }
+
+    private void notifyUpdated(Long conversationId) {
+        try {
+            WebSocketMessageDTO notification = new WebSocketMessageDTO("MESSAGE_UPDATED", conversationId, null, null);
+            messagingTemplate.convertAndSend("/topic/conversations/" + conversationId, notification);
+            messagingTemplate.convertAndSend("/topic/conversations", notification);
+        } catch (Exception wsError) {
+            log.warn("⚠️ Error al enviar notificación WebSocket: {}", wsError.getMessage());
+        }
+    }
+}
@@ -0,0 +1,251 @@
+package com.nocountry.backend.services.outbound;
+
+import com.nocountry.backend.enums.Channel;
+import com.nocountry.backend.enums.OutboundPriority;
+import com.nocountry.backend.exceptions.OutboundBackpressureException;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.function.Supplier;
+
+/**
+ * Shared admission control for every outbound WhatsApp and email send.
+ * <p>
+ * Each {@link Channel} has a token bucket sized to the provider quota and one
+ * bounded queue per {@link OutboundPriority} lane. A dispatcher thread per
+ * channel hands out tokens, always to the highest-priority waiting send, so a
+ * large automation or campaign run can never starve agents' live replies.
+ * The send itself still runs on the caller's thread (keeping its transaction
+ * and security context); the dispatcher only decides when it may start.
+ * <p>
+ * Backpressure: a caller blocks while its lane queue is full and fails with
+ * {@link OutboundBackpressureException} once it has waited longer than the
+ * lane's maximum wait. Batches larger than the channel burst are granted in
+ * burst-sized slices, so a bulk batch can never run the bucket into a debt
+ * that higher-priority sends would have to wait out.
+ */
+@Component
+@Slf4j
+public class OutboundDispatcher {
+
+    private final Map<Channel, ChannelLane> channels = new EnumMap<>(Channel.class);
+    private final Map<OutboundPriority, Long> maxWaitNanos = new EnumMap<>(OutboundPriority.class);
+
+    public OutboundDispatcher(
+            MeterRegistry meterRegistry,
+            @Value("${outbound.whatsapp.rate-per-second:20}") double whatsAppRate,
+            @Value("${outbound.whatsapp.burst:20}") double whatsAppBurst,
+            @Value("${outbound.email.rate-per-second:5}") double emailRate,
+            @Value("${outbound.email.burst:10}") double emailBurst,
+            @Value("${outbound.queue-capacity.interactive:200}") int interactiveCapacity,
+            @Value("${outbound.queue-capacity.automation:500}") int automationCapacity,
+            @Value("${outbound.queue-capacity.bulk:1000}") int bulkCapacity,
+            @Value("${outbound.max-wait-ms.interactive:10000}") long interactiveMaxWaitMs,
+            @Value("${outbound.max-wait-ms.automation:120000}") long automationMaxWaitMs,
+            @Value("${outbound.max-wait-ms.bulk:600000}") long bulkMaxWaitMs) {
+
+        Map<OutboundPriority, Integer> capacities = new EnumMap<>(OutboundPriority.class);
+        capacities.put(OutboundPriority.INTERACTIVE, interactiveCapacity);
+        capacities.put(OutboundPriority.AUTOMATION, automationCapacity);
+        capacities.put(OutboundPriority.BULK, bulkCapacity);
+
+        maxWaitNanos.put(OutboundPriority.INTERACTIVE, TimeUnit.MILLISECONDS.toNanos(interactiveMaxWaitMs));
+        maxWaitNanos.put(OutboundPriority.AUTOMATION, TimeUnit.MILLISECONDS.toNanos(automationMaxWaitMs));
+        maxWaitNanos.put(OutboundPriority.BULK, TimeUnit.MILLISECONDS.toNanos(bulkMaxWaitMs));
+
+        channels.put(Channel.WHATSAPP, new ChannelLane(Channel.WHATSAPP,
+                new TokenBucket(whatsAppRate, whatsAppBurst), capacities, meterRegistry));
+        channels.put(Channel.EMAIL, new ChannelLane(Channel.EMAIL,
+                new TokenBucket(emailRate, emailBurst), capacities, meterRegistry));
+        channels.values().forEach(ChannelLane::start);
+    }
+
+    /**
+     * Waits for a slot on {@code channel}, then runs {@code send} on the calling thread.
+     */
+    public <T> T execute(Channel channel, OutboundPriority priority, Supplier<T> send) {
+        acquire(channel, priority, 1);
+        return send.get();
+    }
+
+    public void execute(Channel channel, OutboundPriority priority, Runnable send) {
+        acquire(channel, priority, 1);
+        send.run();
+    }
+
+    /**
+     * Waits until {@code permits} sends may start on {@code channel}; used
+     * directly by batch senders that push several messages at once. The
+     * maximum wait of {@code priority} applies to the whole batch.
+     */
+    public void acquire(Channel channel, OutboundPriority priority, int permits) {
+        channels.get(channel).acquire(priority, permits, maxWaitNanos.get(priority));
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        channels.values().forEach(ChannelLane::stop);
+    }
+
+    private static final class Ticket {
+        final int permits;
+        final CompletableFuture<Void> granted = new CompletableFuture<>();
+
+        Ticket(int permits) {
+            this.permits = permits;
+        }
+    }
+
+    private static final class ChannelLane implements Runnable {
+
+        private final Channel channel;
+        private final TokenBucket bucket;
+        // Largest grant the bucket can pay without going into debt
+        private final int maxPermits;
+        private final Map<OutboundPriority, BlockingQueue<Ticket>> lanes = new EnumMap<>(OutboundPriority.class);
+        private final Map<OutboundPriority, Timer> waitTimers = new EnumMap<>(OutboundPriority.class);
+        private final Map<OutboundPriority, Counter> rejections = new EnumMap<>(OutboundPriority.class);
+        // One permit per enqueued ticket, so the dispatcher sleeps while all lanes are empty
+        private final Semaphore enqueued = new Semaphore(0);
+        private final Thread thread;
+        private volatile boolean running = true;
+
+        ChannelLane(Channel channel, TokenBucket bucket, Map<OutboundPriority, Integer> capacities,
+                MeterRegistry registry) {
+            this.channel = channel;
+            this.bucket = bucket;
+            this.maxPermits = Math.max(1, (int) bucket.capacity());
+            for (OutboundPriority priority : OutboundPriority.values()) {
+                BlockingQueue<Ticket> queue = new ArrayBlockingQueue<>(capacities.get(priority));
+                lanes.put(priority, queue);
+                String lane = priority.name().toLowerCase();
+                Gauge.builder("outbound.queue.depth", queue, BlockingQueue::size)
+                        .description("Sends waiting for a rate-limit slot")
+                        .tag("channel", channel.name().toLowerCase())
+                        .tag("lane", lane)
+                        .register(registry);
+                waitTimers.put(priority, Timer.builder("outbound.wait")
+                        .description("Time a send waited for its rate-limit slot")
+                        .tag("channel", channel.name().toLowerCase())
+                        .tag("lane", lane)
+                        .register(registry));
+                rejections.put(priority, Counter.builder("outbound.rejected")
+                        .description("Sends rejected by backpressure")
+                        .tag("channel", channel.name().toLowerCase())
+                        .tag("lane", lane)
+                        .register(registry));
+            }
+            this.thread = new Thread(this, "outbound-" + channel.name().toLowerCase());
+            this.thread.setDaemon(true);
+        }
+
+        void start() {
+            thread.start();
+        }
+
+        void stop() {
+            running = false;
+            thread.interrupt();
+        }
+
+        void acquire(OutboundPriority priority, int permits, long maxWaitNanos) {
+            long start = System.nanoTime();
+            long deadline = start + maxWaitNanos;
+            // Each slice queues again, behind any higher-priority send that arrived meanwhile
+            for (int remaining = permits; remaining > 0; remaining -= maxPermits) {
+                await(priority, Math.min(remaining, maxPermits), deadline);
+            }
+            waitTimers.get(priority).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        private void await(OutboundPriority priority, int permits, long deadline) {
+            Ticket ticket = new Ticket(permits);
+            BlockingQueue<Ticket> queue = lanes.get(priority);
+
+            try {
+                if (!queue.offer(ticket, Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS)) {
+                    throw reject(priority, "queue is full");
+                }
+                enqueued.release();
+                ticket.granted.get(Math.max(0, deadline - System.nanoTime()), TimeUnit.NANOSECONDS);
+            } catch (TimeoutException e) {
+                // The dispatcher may grant the ticket right as we give up; then just use it
+                if (ticket.granted.cancel(false)) {
+                    queue.remove(ticket);
+                    throw reject(priority, "timed out waiting for a slot");
+                }
+            } catch (InterruptedException e) {
+                ticket.granted.cancel(false);
+                queue.remove(ticket);
+                Thread.currentThread().interrupt();
+                throw reject(priority, "interrupted while waiting for a slot");
+            } catch (ExecutionException e) {
+                throw reject(priority, "dispatcher stopped");
+            }
+        }
+
+        private OutboundBackpressureException reject(OutboundPriority priority, String reason) {
+            rejections.get(priority).increment();
+            log.warn("Outbound {} send rejected in {} lane: {}", channel, priority, reason);
+            return new OutboundBackpressureException(channel, priority,
+                    "Outbound " + channel + " is saturated (" + reason + "), try again later");
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    enqueued.acquire();
+                    // Wait for a token before choosing, so a send that arrives
+                    // meanwhile with higher priority still goes first
+                    sleepNanos(bucket.nanosUntilAvailable(1));
+                    Ticket ticket = nextTicket();
+                    if (ticket == null) {
+                        continue;
+                    }
+                    sleepNanos(bucket.nanosUntilAvailable(ticket.permits));
+                    bucket.consume(ticket.permits);
+                    if (!ticket.granted.complete(null)) {
+                        // The caller gave up while we waited for its tokens; they are simply spent
+                        log.debug("Outbound {} ticket cancelled after token wait", channel);
+                    }
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    break;
+                } catch (Exception e) {
+                    log.error("Outbound {} dispatcher error: {}", channel, e.getMessage());
+                }
+            }
+            lanes.values().forEach(queue -> queue.forEach(ticket ->
+                    ticket.granted.completeExceptionally(new IllegalStateException("dispatcher stopped"))));
+        }
+
+        private Ticket nextTicket() {
+            for (OutboundPriority priority : OutboundPriority.values()) {
+                BlockingQueue<Ticket> queue = lanes.get(priority);
+                Ticket ticket;
+                while ((ticket = queue.poll()) != null) {
+                    if (!ticket.granted.isDone()) {
+                        return ticket;
+                    }
+                }
+            }
+            return null;
+        }
+
+        private static void sleepNanos(long nanos) throws InterruptedException {
+            if (nanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(nanos);
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.nocountry.backend.services.outbound;
+
+import com.nocountry.backend.enums.Channel;
+import com.nocountry.backend.enums.MessageType;
+
+/**
+ * Everything the outbox sender needs to deliver one message, read in a short
+ * transaction so no connection is held while the provider is called.
+ * {@code attempt} identifies the claim it was loaded under.
+ */
+public record OutboxDelivery(
+        Long outboxId,
+        int attempt,
+        Long messageId,
+        Long conversationId,
+        Channel channel,
+        String recipient,
+        MessageType messageType,
+        String content,
+        String mediaUrl,
+        String mediaFileName,
+        String mediaCaption,
+        String subject,
+        String replyToExternalId,
+        String inReplyTo,
+        String references) {
+}
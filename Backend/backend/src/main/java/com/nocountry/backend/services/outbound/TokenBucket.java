@@ -0,0 +1,58 @@
+package com.nocountry.backend.services.outbound;
+
+import java.util.function.LongSupplier;
+
+/**
+ * Token bucket refilled continuously at {@code ratePerSecond} up to
+ * {@code capacity} tokens (the allowed burst). Not thread-safe: each bucket
+ * is only touched by its channel's dispatcher thread.
+ */
+final class TokenBucket {
+
+    private final double capacity;
+    private final double tokensPerNano;
+    private final LongSupplier nanoClock;
+    private double tokens;
+    private long lastRefillNanos;
+
+    TokenBucket(double ratePerSecond, double capacity) {
+        this(ratePerSecond, capacity, System::nanoTime);
+    }
+
+    TokenBucket(double ratePerSecond, double capacity, LongSupplier nanoClock) {
+        this.capacity = capacity;
+        this.tokensPerNano = ratePerSecond / 1_000_000_000d;
+        this.nanoClock = nanoClock;
+        this.tokens = capacity;
+        this.lastRefillNanos = nanoClock.getAsLong();
+    }
+
+    double capacity() {
+        return capacity;
+    }
+
+    /**
+     * @return nanoseconds until {@code permits} tokens are available (0 if they are now)
+     */
+    long nanosUntilAvailable(int permits) {
+        refill();
+        double missing = Math.min(permits, capacity) - tokens;
+        return missing <= 0 ? 0 : (long) Math.ceil(missing / tokensPerNano);
+    }
+
+    /**
+     * Takes {@code permits} tokens. Taking more than are available leaves the
+     * bucket in debt, paid back before the next send; the dispatcher never asks
+     * for more than the capacity at once.
+     */
+    void consume(int permits) {
+        refill();
+        tokens -= permits;
+    }
+
+    private void refill() {
+        long now = nanoClock.getAsLong();
+        tokens = Math.min(capacity, tokens + (now - lastRefillNanos) * tokensPerNano);
+        lastRefillNanos = now;
+    }
+}
@@ -0,0 +1,166 @@
+package com.nocountry.backend.services.queue;
+
+import com.nocountry.backend.services.automation.WorkerId;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Feeds rows of a leased table queue to a bounded pool. A dispatcher thread
+ * claims rows when woken (or every poll interval as a fallback) and never
+ * claims more than there are idle workers, so nothing sits leased in the
+ * executor's queue. While there is a backlog, each worker that finishes wakes
+ * the dispatcher again.
+ * <p>
+ * A row whose task is rejected stays leased; the owner's lease recovery puts
+ * it back once the lease expires.
+ */
+@Slf4j
+public class LeasedQueueDispatcher {
+
+    /**
+     * Leases up to {@code limit} rows for {@code workerId} and returns their ids.
+     */
+    @FunctionalInterface
+    public interface Claimer {
+        List<Long> claim(String workerId, int limit, Duration lease);
+    }
+
+    private final String name;
+    private final Claimer claimer;
+    private final Consumer<Long> processor;
+    private final Executor executor;
+    private final Semaphore freeWorkers;
+    private final Semaphore wakeUps = new Semaphore(0);
+    private final AtomicBoolean backlog = new AtomicBoolean(false);
+    private final int batchSize;
+    private final long pollIntervalMs;
+    private final Duration lease;
+    private final String workerId = WorkerId.current();
+    private final Thread dispatcher;
+    private volatile boolean running = true;
+
+    public LeasedQueueDispatcher(String name, Claimer claimer, Consumer<Long> processor, Executor executor,
+            int workerThreads, int batchSize, long pollIntervalMs, Duration lease) {
+        this.name = name;
+        this.claimer = claimer;
+        this.processor = processor;
+        this.executor = executor;
+        this.freeWorkers = new Semaphore(workerThreads);
+        this.batchSize = batchSize;
+        this.pollIntervalMs = pollIntervalMs;
+        this.lease = lease;
+
+        this.dispatcher = new Thread(this::dispatchLoop, name + "-dispatcher");
+        this.dispatcher.setDaemon(true);
+    }
+
+    public void start() {
+        dispatcher.start();
+    }
+
+    public void stop() {
+        running = false;
+        dispatcher.interrupt();
+    }
+
+    public void wakeUp() {
+        wakeUps.release();
+    }
+
+    /**
+     * Wakes the dispatcher once the caller's transaction commits, so the new
+     * row is visible when it is claimed.
+     */
+    public void wakeUpAfterCommit() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    wakeUp();
+                }
+            });
+        } else {
+            wakeUp();
+        }
+    }
+
+    private void dispatchLoop() {
+        while (running) {
+            try {
+                wakeUps.tryAcquire(pollIntervalMs, TimeUnit.MILLISECONDS);
+                wakeUps.drainPermits();
+                drain();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                log.error("{} dispatcher error: {}", name, e.getMessage());
+            }
+        }
+    }
+
+    void drain() {
+        while (true) {
+            int permits = acquireUpTo(batchSize);
+            if (permits == 0) {
+                // Workers signal when they free up while there is a backlog
+                backlog.set(true);
+                return;
+            }
+
+            List<Long> claimed;
+            try {
+                claimed = claimer.claim(workerId, permits, lease);
+            } catch (Exception e) {
+                freeWorkers.release(permits);
+                log.error("Error claiming {} rows: {}", name, e.getMessage());
+                return;
+            }
+
+            freeWorkers.release(permits - claimed.size());
+            backlog.set(claimed.size() == permits);
+            claimed.forEach(this::submit);
+
+            if (!backlog.get()) {
+                return;
+            }
+        }
+    }
+
+    private void submit(Long id) {
+        try {
+            executor.execute(() -> {
+                try {
+                    processor.accept(id);
+                } finally {
+                    freeWorkers.release();
+                    if (backlog.get()) {
+                        wakeUp();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // The lease expires and the row is claimed again later
+            freeWorkers.release();
+            log.error("{} executor rejected row {}: {}", name, id, e.getMessage());
+        }
+    }
+
+    private int acquireUpTo(int max) {
+        int acquired = 0;
+        while (acquired < max && freeWorkers.tryAcquire()) {
+            acquired++;
+        }
+        return acquired;
+    }
+}
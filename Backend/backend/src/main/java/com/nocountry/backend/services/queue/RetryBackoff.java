@@ -0,0 +1,12 @@
+package com.nocountry.backend.services.queue;
+
+/**
+ * Exponential retry delay of a leased table queue: {@code base << attempts},
+ * with the shift capped at {@code maxShift} and the result at {@code maxSeconds}.
+ */
+public record RetryBackoff(long baseSeconds, int maxShift, long maxSeconds) {
+
+    public long delaySeconds(int attempts) {
+        return Math.min(maxSeconds, baseSeconds << Math.min(Math.max(attempts, 0), maxShift));
+    }
+}
@@ -0,0 +1,87 @@
+package com.nocountry.backend.services.template;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A template parsed once into alternating literal and variable segments.
+ * Rendering walks the segments a single time and writes into a buffer sized
+ * from the literal length, instead of scanning the whole text once per
+ * variable. Instances are immutable and safe to share between threads.
+ */
+public final class CompiledTemplate {
+
+    private static final String OPEN = "{{";
+    private static final String CLOSE = "}}";
+    private static final int ESTIMATED_VALUE_LENGTH = 16;
+
+    public static final CompiledTemplate EMPTY = new CompiledTemplate(new String[] { "" }, new String[0], 0);
+
+    // literals.length == variables.length + 1: literal, var, literal, ..., literal
+    private final String[] literals;
+    private final String[] variables;
+    private final int literalLength;
+
+    private CompiledTemplate(String[] literals, String[] variables, int literalLength) {
+        this.literals = literals;
+        this.variables = variables;
+        this.literalLength = literalLength;
+    }
+
+    public static CompiledTemplate parse(String source) {
+        if (source == null || source.isEmpty()) {
+            return EMPTY;
+        }
+
+        List<String> literals = new ArrayList<>();
+        List<String> variables = new ArrayList<>();
+        int literalLength = 0;
+        int cursor = 0;
+
+        while (true) {
+            int open = source.indexOf(OPEN, cursor);
+            int close = open < 0 ? -1 : source.indexOf(CLOSE, open + OPEN.length());
+            if (close < 0) {
+                break;
+            }
+            String literal = source.substring(cursor, open);
+            literals.add(literal);
+            literalLength += literal.length();
+            variables.add(source.substring(open + OPEN.length(), close));
+            cursor = close + CLOSE.length();
+        }
+
+        String tail = source.substring(cursor);
+        literals.add(tail);
+        literalLength += tail.length();
+
+        return new CompiledTemplate(
+                literals.toArray(String[]::new),
+                variables.toArray(String[]::new),
+                literalLength);
+    }
+
+    public String render(VariableResolver resolver) {
+        if (variables.length == 0) {
+            return literals[0];
+        }
+
+        StringBuilder out = new StringBuilder(literalLength + variables.length * ESTIMATED_VALUE_LENGTH);
+        for (int i = 0; i < variables.length; i++) {
+            out.append(literals[i]);
+            String value = resolver.resolve(variables[i]);
+            if (value != null) {
+                out.append(value);
+            } else {
+                // Unknown variables are left untouched, as the old String.replace chain did
+                out.append(OPEN).append(variables[i]).append(CLOSE);
+            }
+        }
+        out.append(literals[variables.length]);
+        return out.toString();
+    }
+
+    public boolean isEmpty() {
+        return variables.length == 0 && literals[0].isEmpty();
+    }
+}
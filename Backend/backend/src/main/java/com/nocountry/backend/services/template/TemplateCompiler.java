@@ -0,0 +1,48 @@
+package com.nocountry.backend.services.template;
+
+import com.nocountry.backend.entity.EmailTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Compiles {@link EmailTemplate} subject and body once and caches them by
+ * template id and version. Editing a template bumps its version, so stale
+ * entries are simply replaced on the next lookup.
+ */
+@Component
+public class TemplateCompiler {
+
+    private final ConcurrentMap<Long, CompiledEmailTemplate> cache = new ConcurrentHashMap<>();
+
+    public CompiledEmailTemplate compile(EmailTemplate template) {
+        if (template.getId() == null) {
+            return CompiledEmailTemplate.of(template);
+        }
+
+        CompiledEmailTemplate cached = cache.get(template.getId());
+        if (cached != null && Objects.equals(cached.version(), template.getVersion())) {
+            return cached;
+        }
+
+        CompiledEmailTemplate compiled = CompiledEmailTemplate.of(template);
+        cache.put(template.getId(), compiled);
+        return compiled;
+    }
+
+    public void evict(Long templateId) {
+        cache.remove(templateId);
+    }
+
+    public record CompiledEmailTemplate(Long version, CompiledTemplate subject, CompiledTemplate body) {
+
+        static CompiledEmailTemplate of(EmailTemplate template) {
+            return new CompiledEmailTemplate(
+                    template.getVersion(),
+                    CompiledTemplate.parse(template.getSubject()),
+                    CompiledTemplate.parse(template.getBody()));
+        }
+    }
+}
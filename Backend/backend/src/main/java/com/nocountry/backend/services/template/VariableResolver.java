@@ -0,0 +1,52 @@
+package com.nocountry.backend.services.template;
+
+import com.nocountry.backend.entity.CrmLead;
+
+import java.util.Map;
+
+/**
+ * Resolves the value of a {{variable}} while a {@link CompiledTemplate} renders.
+ * Returning {@code null} means "unknown here": the next resolver in a chain is
+ * asked and, if none knows the variable, the placeholder is kept as written.
+ */
+@FunctionalInterface
+public interface VariableResolver {
+
+    String resolve(String name);
+
+    default VariableResolver then(VariableResolver next) {
+        return name -> {
+            String value = resolve(name);
+            return value != null ? value : next.resolve(name);
+        };
+    }
+
+    /**
+     * Lead shortcuts: {{name}}, {{email}}, {{phone}} and their {{lead.*}} forms.
+     */
+    static VariableResolver lead(CrmLead lead) {
+        if (lead == null) {
+            return name -> null;
+        }
+        return name -> switch (name) {
+            case "name", "lead.name" -> safe(lead.getName());
+            case "email", "lead.email" -> safe(lead.getEmail());
+            case "phone", "lead.phone" -> safe(lead.getPhone());
+            default -> null;
+        };
+    }
+
+    /**
+     * Custom variables supplied by the caller.
+     */
+    static VariableResolver map(Map<String, String> vars) {
+        if (vars == null || vars.isEmpty()) {
+            return name -> null;
+        }
+        return name -> vars.containsKey(name) ? safe(vars.get(name)) : null;
+    }
+
+    private static String safe(Object o) {
+        return o == null ? "" : String.valueOf(o);
+    }
+}
@@ -0,0 +1,117 @@
+package com.nocountry.backend.services.whatsapp;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Bounded LRU from a sender's E.164 phone to its lead and WhatsApp
+ * conversation, so a repeat contact is routed without querying crm_lead or
+ * conversation.
+ * <p>
+ * Entries are only added after the transaction that read or created them
+ * commits, and are evicted after commit by writes that could make them wrong:
+ * a lead's phone changing or a conversation being deleted.
+ */
+@Component
+public class ContactRouteCache {
+
+    public record ContactRoute(Long leadId, Long conversationId) {
+    }
+
+    private final Map<String, ContactRoute> routes;
+    private final Counter hits;
+    private final Counter misses;
+
+    public ContactRouteCache(
+            MeterRegistry meterRegistry,
+            @Value("${whatsapp.contact-cache.size:10000}") int maxSize) {
+        this.routes = new LinkedHashMap<>(Math.min(maxSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, ContactRoute> eldest) {
+                return size() > maxSize;
+            }
+        };
+        this.hits = lookups(meterRegistry, "hit");
+        this.misses = lookups(meterRegistry, "miss");
+    }
+
+    public ContactRoute get(String phoneE164) {
+        if (phoneE164 == null) {
+            return null;
+        }
+        ContactRoute route;
+        synchronized (routes) {
+            route = routes.get(phoneE164);
+        }
+        (route != null ? hits : misses).increment();
+        return route;
+    }
+
+    public void putAfterCommit(String phoneE164, Long leadId, Long conversationId) {
+        if (phoneE164 == null || leadId == null || conversationId == null) {
+            return;
+        }
+        ContactRoute route = new ContactRoute(leadId, conversationId);
+        afterCommit(() -> {
+            synchronized (routes) {
+                routes.put(phoneE164, route);
+            }
+        });
+    }
+
+    public void evictLeadAfterCommit(Long leadId) {
+        afterCommit(() -> {
+            synchronized (routes) {
+                routes.values().removeIf(route -> route.leadId().equals(leadId));
+            }
+        });
+    }
+
+    public void evictPhoneAfterCommit(String phoneE164) {
+        if (phoneE164 == null) {
+            return;
+        }
+        afterCommit(() -> {
+            synchronized (routes) {
+                routes.remove(phoneE164);
+            }
+        });
+    }
+
+    public void evictConversationAfterCommit(Long conversationId) {
+        afterCommit(() -> evictConversation(conversationId));
+    }
+
+    public void evictConversation(Long conversationId) {
+        synchronized (routes) {
+            routes.values().removeIf(route -> route.conversationId().equals(conversationId));
+        }
+    }
+
+    private static void afterCommit(Runnable action) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static Counter lookups(MeterRegistry registry, String result) {
+        return Counter.builder("whatsapp.contact.cache")
+                .description("Inbound sender lookups served by the phone route cache")
+                .tag("result", result)
+                .register(registry);
+    }
+}
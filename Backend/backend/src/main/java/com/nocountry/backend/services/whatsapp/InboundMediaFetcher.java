@@ -0,0 +1,185 @@
+package com.nocountry.backend.services.whatsapp;
+
+import com.nocountry.backend.dto.WebSocketMessageDTO;
+import com.nocountry.backend.enums.MediaStatus;
+import com.nocountry.backend.repository.MessageRepository;
+import com.nocountry.backend.repository.MessageRepository.MediaJob;
+import com.nocountry.backend.services.MediaStorageService;
+import com.nocountry.backend.services.whatsapp.WhatsAppConfigService.WhatsAppCredentials;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.task.TaskRejectedException;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.messaging.simp.SimpMessagingTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Downloads inbound WhatsApp media after the message has been saved with
+ * {@link MediaStatus#PENDING}, so a large video never blocks webhook ingestion.
+ *
+ * <p>Downloads run on the bounded {@code mediaFetchExecutor}. On success the
+ * message gets its {@code mediaUrl}/{@code mediaFileName} and goes READY; on
+ * failure it is retried with exponential backoff until
+ * {@code whatsapp.media.max-attempts}, then marked FAILED. Either way a
+ * {@code MESSAGE_UPDATED} STOMP notification tells the open chat to reload.
+ * A periodic sweep resubmits messages whose retry is due or that did not fit
+ * in the executor queue.</p>
+ *
+ * <p>Metrics: {@code whatsapp.media.fetch} timer tagged by outcome and
+ * {@code whatsapp.media.failures} for downloads that gave up.</p>
+ */
+@Component
+@Slf4j
+public class InboundMediaFetcher {
+
+    private final MessageRepository messageRepository;
+    private final MediaStorageService mediaStorageService;
+    private final WhatsAppConfigService configService;
+    private final SimpMessagingTemplate messagingTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolTaskExecutor executor;
+    private final int maxAttempts;
+    private final int sweepBatchSize;
+    private final Set<Long> inFlight = ConcurrentHashMap.newKeySet();
+
+    private final Timer successTimer;
+    private final Timer retryTimer;
+    private final Counter failures;
+
+    public InboundMediaFetcher(
+            MessageRepository messageRepository,
+            MediaStorageService mediaStorageService,
+            WhatsAppConfigService configService,
+            SimpMessagingTemplate messagingTemplate,
+            PlatformTransactionManager transactionManager,
+            @Qualifier("mediaFetchExecutor") ThreadPoolTaskExecutor executor,
+            MeterRegistry meterRegistry,
+            @Value("${whatsapp.media.max-attempts:5}") int maxAttempts,
+            @Value("${whatsapp.media.sweep-batch-size:50}") int sweepBatchSize) {
+        this.messageRepository = messageRepository;
+        this.mediaStorageService = mediaStorageService;
+        this.configService = configService;
+        this.messagingTemplate = messagingTemplate;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.executor = executor;
+        this.maxAttempts = maxAttempts;
+        this.sweepBatchSize = sweepBatchSize;
+
+        this.successTimer = Timer.builder("whatsapp.media.fetch")
+                .tag("outcome", "success")
+                .description("Inbound media download time")
+                .register(meterRegistry);
+        this.retryTimer = Timer.builder("whatsapp.media.fetch")
+                .tag("outcome", "error")
+                .description("Inbound media download time")
+                .register(meterRegistry);
+        this.failures = Counter.builder("whatsapp.media.failures")
+                .description("Inbound media downloads that exhausted their retries")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Queues downloads for freshly saved messages. Ids that do not fit in the
+     * executor stay PENDING for the next sweep.
+     */
+    public void submit(Collection<Long> messageIds) {
+        for (Long messageId : messageIds) {
+            if (!inFlight.add(messageId)) {
+                continue;
+            }
+            try {
+                executor.execute(() -> fetch(messageId));
+            } catch (TaskRejectedException e) {
+                inFlight.remove(messageId);
+                log.debug("Media fetch queue full; message {} left for the next sweep", messageId);
+            }
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${whatsapp.media.sweep-ms:30000}")
+    public void sweep() {
+        try {
+            submit(messageRepository.findMediaDue(MediaStatus.PENDING, LocalDateTime.now(),
+                    PageRequest.of(0, sweepBatchSize)));
+        } catch (Exception e) {
+            log.error("Error sweeping pending inbound media: {}", e.getMessage(), e);
+        }
+    }
+
+    private void fetch(Long messageId) {
+        try {
+            MediaJob job = messageRepository.findMediaJob(messageId, MediaStatus.PENDING).orElse(null);
+            if (job == null) {
+                return;
+            }
+            download(job);
+        } catch (Exception e) {
+            log.error("Unexpected error fetching media for message {}: {}", messageId, e.getMessage(), e);
+        } finally {
+            inFlight.remove(messageId);
+        }
+    }
+
+    private void download(MediaJob job) {
+        long start = System.nanoTime();
+        try {
+            WhatsAppCredentials credentials = configService.getWhatsAppCredentials()
+                    .filter(WhatsAppCredentials::isValid)
+                    .orElseThrow(() -> new IllegalStateException("WhatsApp Cloud API no está configurada"));
+
+            Map<String, String> stored = mediaStorageService.downloadAndStoreWhatsAppMedia(
+                    job.getMediaExternalId(), job.getMimeType(), credentials.apiToken());
+
+            transactionTemplate.executeWithoutResult(status -> messageRepository.completeMedia(
+                    job.getId(), stored.get("url"), stored.get("filename")));
+            successTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            log.info("📥 Media del mensaje {} lista: {}", job.getId(), stored.get("filename"));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            retryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return;
+        } catch (Exception e) {
+            retryTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            int attempts = (job.getAttempts() != null ? job.getAttempts() : 0) + 1;
+            if (attempts >= maxAttempts) {
+                transactionTemplate.executeWithoutResult(status -> messageRepository.failMedia(job.getId()));
+                failures.increment();
+                log.error("❌ Media del mensaje {} falló tras {} intentos: {}", job.getId(), attempts, e.getMessage());
+            } else {
+                long delaySeconds = Math.min(300, 5L << attempts);
+                transactionTemplate.executeWithoutResult(status -> messageRepository.scheduleMediaRetry(
+                        job.getId(), LocalDateTime.now().plusSeconds(delaySeconds)));
+                log.warn("⚠️ Error descargando media del mensaje {} (intento {}), reintento en {}s: {}",
+                        job.getId(), attempts, delaySeconds, e.getMessage());
+                return;
+            }
+        }
+
+        notifyUpdated(job.getConversationId());
+    }
+
+    private void notifyUpdated(Long conversationId) {
+        try {
+            WebSocketMessageDTO notification = new WebSocketMessageDTO("MESSAGE_UPDATED", conversationId, null, null);
+            messagingTemplate.convertAndSend("/topic/conversations/" + conversationId, notification);
+            messagingTemplate.convertAndSend("/topic/conversations", notification);
+        } catch (Exception wsError) {
+            log.warn("⚠️ Error al enviar notificación WebSocket: {}", wsError.getMessage());
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package com.nocountry.backend.services.whatsapp;
+
+import com.nocountry.backend.enums.Direction;
+import com.nocountry.backend.repository.MessageRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Rejects webhook redeliveries by external message id before any database or
+ * media work. Three layers, cheapest first:
+ * <ul>
+ * <li>an LRU of recently processed ids answers most redeliveries in microseconds;</li>
+ * <li>an in-flight set catches two deliveries of the same message processed concurrently;</li>
+ * <li>a Bloom filter of every id seen lets genuinely new ids skip the database;
+ * only its (rare) positives are confirmed with a query.</li>
+ * </ul>
+ * The unique index on {@code message.external_message_id} remains the final
+ * guard, e.g. for ids processed by another node.
+ */
+@Component
+@Slf4j
+public class InboundMessageDeduplicator {
+
+    private final MessageRepository messageRepository;
+    private final int expectedIds;
+    private final double falsePositiveRate;
+    private final int warmDays;
+    private final Map<String, Boolean> recent;
+    private final Set<String> inFlight = ConcurrentHashMap.newKeySet();
+    private final Counter lruHits;
+    private final Counter dbHits;
+    private final Counter filterMisses;
+
+    // Two generations: when the current filter is full it becomes the previous one
+    private volatile BloomFilter current;
+    private volatile BloomFilter previous;
+    private final AtomicInteger currentInsertions = new AtomicInteger();
+
+    public InboundMessageDeduplicator(
+            MessageRepository messageRepository,
+            MeterRegistry meterRegistry,
+            @Value("${whatsapp.dedup.lru-size:50000}") int lruSize,
+            @Value("${whatsapp.dedup.expected-ids:1000000}") int expectedIds,
+            @Value("${whatsapp.dedup.false-positive-rate:0.01}") double falsePositiveRate,
+            @Value("${whatsapp.dedup.warm-days:7}") int warmDays) {
+        this.messageRepository = messageRepository;
+        this.expectedIds = expectedIds;
+        this.falsePositiveRate = falsePositiveRate;
+        this.warmDays = warmDays;
+        this.recent = new LinkedHashMap<>(lruSize, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > lruSize;
+            }
+        };
+        this.current = new BloomFilter(expectedIds, falsePositiveRate);
+        this.previous = new BloomFilter(expectedIds, falsePositiveRate);
+        this.lruHits = duplicates(meterRegistry, "lru");
+        this.dbHits = duplicates(meterRegistry, "database");
+        this.filterMisses = Counter.builder("whatsapp.webhook.dedup.filter.negative")
+                .description("Webhook messages accepted by the Bloom filter without a database lookup")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Claims {@code externalMessageId} for processing.
+     *
+     * @return false if it was already processed or is being processed right now
+     */
+    public boolean tryBegin(String externalMessageId) {
+        if (externalMessageId == null || externalMessageId.isEmpty()) {
+            return true;
+        }
+        if (isRecent(externalMessageId)) {
+            lruHits.increment();
+            return false;
+        }
+        if (!inFlight.add(externalMessageId)) {
+            lruHits.increment();
+            return false;
+        }
+
+        if (!mightHaveSeen(externalMessageId)) {
+            filterMisses.increment();
+            return true;
+        }
+        if (messageRepository.existsByExternalMessageId(externalMessageId)) {
+            remember(externalMessageId);
+            inFlight.remove(externalMessageId);
+            dbHits.increment();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Marks a claimed id as stored; later deliveries are rejected from memory.
+     */
+    public void complete(String externalMessageId) {
+        if (externalMessageId == null || externalMessageId.isEmpty()) {
+            return;
+        }
+        remember(externalMessageId);
+        inFlight.remove(externalMessageId);
+    }
+
+    /**
+     * Releases a claimed id whose processing failed, so a redelivery can retry it.
+     */
+    public void abandon(String externalMessageId) {
+        if (externalMessageId != null) {
+            inFlight.remove(externalMessageId);
+        }
+    }
+
+    /**
+     * Loads the ids of recent inbound messages so redeliveries right after a
+     * restart are still caught without touching the database.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void warmUp() {
+        try {
+            List<String> ids = messageRepository.findRecentExternalIds(
+                    Direction.INBOUND,
+                    LocalDateTime.now().minusDays(warmDays),
+                    PageRequest.of(0, expectedIds));
+            ids.forEach(this::remember);
+            log.info("Webhook dedup filter warmed with {} recent message ids", ids.size());
+        } catch (Exception e) {
+            log.error("Could not warm webhook dedup filter: {}", e.getMessage());
+        }
+    }
+
+    private void remember(String externalMessageId) {
+        synchronized (recent) {
+            recent.put(externalMessageId, Boolean.TRUE);
+        }
+        current.add(externalMessageId);
+        if (currentInsertions.incrementAndGet() >= expectedIds) {
+            rotate();
+        }
+    }
+
+    private synchronized void rotate() {
+        if (currentInsertions.get() < expectedIds) {
+            return;
+        }
+        previous = current;
+        current = new BloomFilter(expectedIds, falsePositiveRate);
+        currentInsertions.set(0);
+    }
+
+    private boolean isRecent(String externalMessageId) {
+        synchronized (recent) {
+            return recent.get(externalMessageId) != null;
+        }
+    }
+
+    private boolean mightHaveSeen(String externalMessageId) {
+        return current.mightContain(externalMessageId) || previous.mightContain(externalMessageId);
+    }
+
+    private static Counter duplicates(MeterRegistry registry, String source) {
+        return Counter.builder("whatsapp.webhook.duplicates")
+                .description("Webhook redeliveries rejected before processing")
+                .tag("source", source)
+                .register(registry);
+    }
+}
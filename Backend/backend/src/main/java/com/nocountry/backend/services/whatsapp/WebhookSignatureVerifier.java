@@ -0,0 +1,137 @@
+package com.nocountry.backend.services.whatsapp;
+
+import com.nocountry.backend.exceptions.WebhookPayloadTooLargeException;
+import com.nocountry.backend.exceptions.WebhookSignatureException;
+import com.nocountry.backend.services.whatsapp.WhatsAppConfigService.WhatsAppCredentials;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.util.HexFormat;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Reads a webhook body once and verifies Meta's {@code X-Hub-Signature-256}
+ * header (HMAC-SHA256 of the raw bytes with the app secret) while streaming,
+ * so the payload is never buffered twice.
+ *
+ * <p>The app secret comes from the WhatsApp integration credentials
+ * ({@code appSecret}), falling back to {@code whatsapp.webhook.app-secret}.
+ * When neither is set the body is accepted unsigned, unless
+ * {@code whatsapp.webhook.require-signature} is true.</p>
+ *
+ * <p>Bodies are capped at {@code whatsapp.webhook.max-body-bytes}: a larger
+ * Content-Length is refused before reading, and reading stops as soon as the
+ * cap is crossed, so an unsigned endpoint cannot be made to buffer an
+ * arbitrarily large payload.</p>
+ */
+@Component
+@Slf4j
+public class WebhookSignatureVerifier {
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final String PREFIX = "sha256=";
+    private static final int BUFFER_SIZE = 8192;
+
+    private final WhatsAppConfigService configService;
+    private final String fallbackSecret;
+    private final boolean requireSignature;
+    private final int maxBodyBytes;
+    private final AtomicBoolean unsignedWarned = new AtomicBoolean(false);
+
+    public WebhookSignatureVerifier(
+            WhatsAppConfigService configService,
+            @Value("${whatsapp.webhook.app-secret:}") String fallbackSecret,
+            @Value("${whatsapp.webhook.require-signature:false}") boolean requireSignature,
+            @Value("${whatsapp.webhook.max-body-bytes:1048576}") int maxBodyBytes) {
+        this.configService = configService;
+        this.fallbackSecret = fallbackSecret;
+        this.requireSignature = requireSignature;
+        this.maxBodyBytes = maxBodyBytes;
+    }
+
+    /**
+     * Reads {@code body} to the end, updating the HMAC chunk by chunk.
+     *
+     * @return the raw body bytes
+     * @throws WebhookSignatureException if the signature is missing or wrong
+     * @throws WebhookPayloadTooLargeException if the body exceeds the maximum size
+     */
+    public byte[] readVerified(InputStream body, String signatureHeader, int contentLength) throws IOException {
+        if (contentLength > maxBodyBytes) {
+            throw tooLarge();
+        }
+        String secret = appSecret();
+        if (secret == null) {
+            if (requireSignature) {
+                throw new WebhookSignatureException("Webhook app secret is not configured");
+            }
+            if (unsignedWarned.compareAndSet(false, true)) {
+                log.warn("WhatsApp app secret not configured; accepting webhooks without signature verification");
+            }
+        }
+
+        Mac mac = secret != null ? newMac(secret) : null;
+        ByteArrayOutputStream out = new ByteArrayOutputStream(contentLength > 0 ? contentLength : BUFFER_SIZE);
+        byte[] buffer = new byte[BUFFER_SIZE];
+        int read;
+        // Content-Length puede faltar (chunked) o mentir: el límite se controla leyendo
+        while ((read = body.read(buffer)) != -1) {
+            if (out.size() + read > maxBodyBytes) {
+                throw tooLarge();
+            }
+            out.write(buffer, 0, read);
+            if (mac != null) {
+                mac.update(buffer, 0, read);
+            }
+        }
+
+        if (mac != null && !matches(mac.doFinal(), signatureHeader)) {
+            throw new WebhookSignatureException("Invalid X-Hub-Signature-256");
+        }
+        return out.toByteArray();
+    }
+
+    private WebhookPayloadTooLargeException tooLarge() {
+        return new WebhookPayloadTooLargeException("Webhook body exceeds " + maxBodyBytes + " bytes");
+    }
+
+    private String appSecret() {
+        String secret = configService.getWhatsAppCredentials()
+                .map(WhatsAppCredentials::appSecret)
+                .filter(s -> !s.isBlank())
+                .orElse(fallbackSecret);
+        return secret == null || secret.isBlank() ? null : secret;
+    }
+
+    private static Mac newMac(String secret) {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), ALGORITHM));
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("HMAC-SHA256 not available", e);
+        }
+    }
+
+    private static boolean matches(byte[] expected, String signatureHeader) {
+        if (signatureHeader == null || !signatureHeader.startsWith(PREFIX)) {
+            return false;
+        }
+        byte[] provided;
+        try {
+            provided = HexFormat.of().parseHex(signatureHeader.substring(PREFIX.length()).trim());
+        } catch (IllegalArgumentException e) {
+            return false;
+        }
+        return MessageDigest.isEqual(expected, provided);
+    }
+}
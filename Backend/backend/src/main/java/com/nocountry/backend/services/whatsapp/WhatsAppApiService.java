@@ -1,27 +1,35 @@
 package com.nocountry.backend.services.whatsapp;
 
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import com.nocountry.backend.dto.whatsapp.*;
 import com.nocountry.backend.entity.Conversation;
 import com.nocountry.backend.entity.CrmLead;
+import com.nocountry.backend.entity.Message;
 import com.nocountry.backend.enums.*;
 import com.nocountry.backend.events.LeadCreatedEvent;
 import com.nocountry.backend.repository.ConversationRepository;
 import com.nocountry.backend.repository.CrmLeadRepository;
-import com.nocountry.backend.services.MediaStorageService;
+import com.nocountry.backend.repository.MessageRepository;
 import com.nocountry.backend.services.MessageService;
 import com.nocountry.backend.services.whatsapp.WhatsAppConfigService.WhatsAppCredentials;
+import com.nocountry.backend.util.PhoneNumbers;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.context.ApplicationEventPublisher;
 import org.springframework.context.annotation.Lazy;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.messaging.simp.SimpMessagingTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.web.client.RestClient;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.ZoneOffset;
-import java.util.Collections;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 
 @Service
 @Slf4j
@@ -32,8 +40,16 @@ public class WhatsAppApiService {
     private final ConversationRepository conversationRepository;
     private final MessageService messageService;
     private final SimpMessagingTemplate messagingTemplate;
-    private final MediaStorageService mediaStorageService;
+    private final InboundMediaFetcher mediaFetcher;
     private final ApplicationEventPublisher eventPublisher;
+    private final InboundMessageDeduplicator deduplicator;
+    private final ContactRouteCache contactRouteCache;
+    private final WhatsAppStatusCoalescer statusCoalescer;
+    private final WhatsAppGraphClient graphClient;
+    private final MessageRepository messageRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectReader webhookReader;
+    private final Counter rejectedMessages;
 
     public WhatsAppApiService(
             WhatsAppConfigService configService,
@@ -41,25 +57,36 @@ public class WhatsAppApiService {
             ConversationRepository conversationRepository,
             @Lazy MessageService messageService,
             SimpMessagingTemplate messagingTemplate,
-            MediaStorageService mediaStorageService,
-            ApplicationEventPublisher eventPublisher) {
+            InboundMediaFetcher mediaFetcher,
+            ApplicationEventPublisher eventPublisher,
+            InboundMessageDeduplicator deduplicator,
+            ContactRouteCache contactRouteCache,
+            WhatsAppStatusCoalescer statusCoalescer,
+            WhatsAppGraphClient graphClient,
+            MessageRepository messageRepository,
+            PlatformTransactionManager transactionManager,
+            ObjectMapper objectMapper,
+            MeterRegistry meterRegistry) {
 
         this.configService = configService;
         this.crmLeadRepository = crmLeadRepository;
         this.conversationRepository = conversationRepository;
         this.messageService = messageService;
         this.messagingTemplate = messagingTemplate;
-        this.mediaStorageService = mediaStorageService;
+        this.mediaFetcher = mediaFetcher;
         this.eventPublisher = eventPublisher;
-    }
-
-    /**
-     * Crea un RestClient dinámico con la configuración actual de WhatsApp.
-     */
-    private RestClient createRestClient(WhatsAppCredentials credentials) {
-        return RestClient.builder()
-                .baseUrl(credentials.baseUrl())
-                .build();
+        this.deduplicator = deduplicator;
+        this.contactRouteCache = contactRouteCache;
+        this.statusCoalescer = statusCoalescer;
+        this.graphClient = graphClient;
+        this.messageRepository = messageRepository;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        // Reader compartido e inmutable: thread-safe y sin re-resolver el tipo en cada webhook
+        this.webhookReader = objectMapper.readerFor(WhatsAppWebhookPayloadDTO.class)
+                .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES);
+        this.rejectedMessages = Counter.builder("whatsapp.inbound.rejected")
+                .description("Inbound WhatsApp messages dropped because their payload was invalid")
+                .register(meterRegistry);
     }
 
     /**
@@ -85,7 +112,6 @@ public class WhatsAppApiService {
     public Map<String, String> sendTextMessage(String recipientPhoneNumber, String message, String replyToExternalId) {
 
         WhatsAppCredentials credentials = getCredentialsOrThrow();
-        RestClient restClient = createRestClient(credentials);
 
         // Build request body
         java.util.Map<String, Object> requestBody = new java.util.HashMap<>();
@@ -103,15 +129,7 @@ public class WhatsAppApiService {
         log.info("Enviando mensaje de WhatsApp a: {}", recipientPhoneNumber);
 
         try {
-            Map<String, Object> response = restClient.post()
-                    .uri("/messages")
-                    .header("Authorization", "Bearer " + credentials.apiToken())
-                    .header("Content-Type", "application/json")
-                    .header("Accept", "application/json")
-                    .body(requestBody)
-                    .retrieve()
-                    .body(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {
-                    });
+            Map<String, Object> response = graphClient.postMessage(credentials, requestBody);
 
             if (response != null && response.containsKey("messages")) {
                 @SuppressWarnings("unchecked")
@@ -158,7 +176,6 @@ public class WhatsAppApiService {
             String replyToExternalId) {
 
         WhatsAppCredentials credentials = getCredentialsOrThrow();
-        RestClient restClient = createRestClient(credentials);
 
         // Determine the media type for WhatsApp API
         String waMediaType = switch (messageType) {
@@ -199,15 +216,7 @@ public class WhatsAppApiService {
         log.info("📤 Enviando {} a WhatsApp: {} -> {}", waMediaType, recipientPhoneNumber, mediaUrl);
 
         try {
-            Map<String, Object> response = restClient.post()
-                    .uri("/messages")
-                    .header("Authorization", "Bearer " + credentials.apiToken())
-                    .header("Content-Type", "application/json")
-                    .header("Accept", "application/json")
-                    .body(requestBody)
-                    .retrieve()
-                    .body(new org.springframework.core.ParameterizedTypeReference<Map<String, Object>>() {
-                    });
+            Map<String, Object> response = graphClient.postMessage(credentials, requestBody);
 
             if (response != null && response.containsKey("messages")) {
                 @SuppressWarnings("unchecked")
@@ -228,310 +237,454 @@ public class WhatsAppApiService {
         }
     }
 
-    public void processInboundWebhook(Map<String, Object> payload) {
-
-        log.info("📢 Webhook recibido. Iniciando procesamiento de mensaje INBOUND...");
-
-        try {
-            // 1. Parse payload
-            com.fasterxml.jackson.databind.ObjectMapper objectMapper = new com.fasterxml.jackson.databind.ObjectMapper();
-            String payloadJson = objectMapper.writeValueAsString(payload);
-            WhatsAppWebhookPayloadDTO webhookPayload = objectMapper.readValue(payloadJson,
-                    WhatsAppWebhookPayloadDTO.class);
-
-            // 2. Validate entries
-            if (webhookPayload.entry() == null || webhookPayload.entry().isEmpty()) {
-                log.warn("Webhook sin entries. Ignorando.");
-                return;
-            }
+    /**
+     * Procesa un webhook encolado. Meta agrupa varios mensajes y contactos en
+     * una misma entrega, así que se recorren todos los entries, changes y
+     * messages. El lote completo se persiste de una vez (ver
+     * {@link #saveInboundBatch}) y la media se descarga en segundo plano.
+     * Un mensaje con datos inválidos se descarta solo (queda en el log y en
+     * whatsapp.inbound.rejected); el resto de los errores se propagan para que
+     * {@link WhatsAppInboundWorker} reintente el evento.
+     */
+    public void processInboundWebhook(String payloadJson) throws IOException {
 
-            WhatsAppEntryDTO entry = webhookPayload.entry().get(0);
-            if (entry.changes() == null || entry.changes().isEmpty()) {
-                log.warn("Entry sin changes. Ignorando.");
-                return;
-            }
+        log.info("📢 Webhook recibido. Iniciando procesamiento de mensajes INBOUND...");
 
-            WhatsAppChangeDTO change = entry.changes().get(0);
-            WhatsAppValueDTO value = change.value();
+        // 1. Bind the raw body straight into the DTO records
+        WhatsAppWebhookPayloadDTO webhookPayload = webhookReader.readValue(payloadJson);
 
-            if (value.messages() == null || value.messages().isEmpty()) {
-                log.debug("Webhook sin mensajes (posiblemente status update). Ignorando.");
-                return;
-            }
+        if (webhookPayload.entry() == null || webhookPayload.entry().isEmpty()) {
+            log.warn("Webhook sin entries. Ignorando.");
+            return;
+        }
 
-            // 3. Extract message info
-            WhatsAppInboundMessageDTO inboundMessage = value.messages().get(0);
-            String fromPhone = inboundMessage.from();
-            String externalMessageId = inboundMessage.id();
-            String timestamp = inboundMessage.timestamp();
-            String messageTypeStr = inboundMessage.type();
-
-            log.info("📨 Mensaje recibido de: {} | Tipo: {}", fromPhone, messageTypeStr);
-
-            // 4. Process message based on type
-            MessageType messageType;
-            String messageContent;
-            String mediaUrl = null;
-            String mediaFileName = null;
-            String mimeType = null;
-            String mediaCaption = null;
-
-            WhatsAppCredentials credentials = null;
-
-            switch (messageTypeStr) {
-                case "text":
-                    messageType = MessageType.TEXT;
-                    messageContent = inboundMessage.text() != null ? inboundMessage.text().body() : "";
-                    break;
-
-                case "image":
-                    messageType = MessageType.IMAGE;
-                    if (inboundMessage.image() != null) {
-                        credentials = getCredentialsOrThrow();
-                        Map<String, String> imageResult = downloadAndStoreMedia(
-                                inboundMessage.image().id(),
-                                inboundMessage.image().mimeType(),
-                                credentials.apiToken());
-                        mediaUrl = imageResult.get("url");
-                        mediaFileName = imageResult.get("filename");
-                        mimeType = inboundMessage.image().mimeType();
-                        mediaCaption = inboundMessage.image().caption();
-                        messageContent = mediaCaption != null ? mediaCaption : "[Imagen]";
-                    } else {
-                        messageContent = "[Imagen no disponible]";
-                    }
-                    break;
-
-                case "video":
-                    messageType = MessageType.VIDEO;
-                    if (inboundMessage.video() != null) {
-                        credentials = getCredentialsOrThrow();
-                        Map<String, String> videoResult = downloadAndStoreMedia(
-                                inboundMessage.video().id(),
-                                inboundMessage.video().mimeType(),
-                                credentials.apiToken());
-                        mediaUrl = videoResult.get("url");
-                        mediaFileName = videoResult.get("filename");
-                        mimeType = inboundMessage.video().mimeType();
-                        mediaCaption = inboundMessage.video().caption();
-                        messageContent = mediaCaption != null ? mediaCaption : "[Video]";
-                    } else {
-                        messageContent = "[Video no disponible]";
-                    }
-                    break;
-
-                case "audio":
-                    messageType = MessageType.AUDIO;
-                    if (inboundMessage.audio() != null) {
-                        credentials = getCredentialsOrThrow();
-                        Map<String, String> audioResult = downloadAndStoreMedia(
-                                inboundMessage.audio().id(),
-                                inboundMessage.audio().mimeType(),
-                                credentials.apiToken());
-                        mediaUrl = audioResult.get("url");
-                        mediaFileName = audioResult.get("filename");
-                        mimeType = inboundMessage.audio().mimeType();
-                        messageContent = "[Audio]";
-                    } else {
-                        messageContent = "[Audio no disponible]";
+        List<String> claimedIds = new ArrayList<>();
+        try {
+            // 2. Walk every entry/change/message and prepare them outside the transaction
+            List<PreparedInbound> batch = new ArrayList<>();
+            for (WhatsAppEntryDTO entry : webhookPayload.entry()) {
+                if (entry.changes() == null) {
+                    continue;
+                }
+                for (WhatsAppChangeDTO change : entry.changes()) {
+                    WhatsAppValueDTO value = change.value();
+                    if (value == null) {
+                        continue;
                     }
-                    break;
-
-                case "document":
-                    messageType = MessageType.DOCUMENT;
-                    if (inboundMessage.document() != null) {
-                        credentials = getCredentialsOrThrow();
-                        Map<String, String> docResult = downloadAndStoreMedia(
-                                inboundMessage.document().id(),
-                                inboundMessage.document().mimeType(),
-                                credentials.apiToken());
-                        mediaUrl = docResult.get("url");
-                        mediaFileName = inboundMessage.document().filename();
-                        mimeType = inboundMessage.document().mimeType();
-                        mediaCaption = inboundMessage.document().caption();
-                        messageContent = mediaFileName != null ? mediaFileName : "[Documento]";
-                    } else {
-                        messageContent = "[Documento no disponible]";
+                    // Recibos sent/delivered/read/failed: se agrupan y se escriben en lote
+                    if (value.statuses() != null) {
+                        value.statuses().forEach(statusCoalescer::record);
                     }
-                    break;
-
-                case "sticker":
-                    messageType = MessageType.STICKER;
-                    if (inboundMessage.sticker() != null) {
-                        credentials = getCredentialsOrThrow();
-                        Map<String, String> stickerResult = downloadAndStoreMedia(
-                                inboundMessage.sticker().id(),
-                                inboundMessage.sticker().mimeType(),
-                                credentials.apiToken());
-                        mediaUrl = stickerResult.get("url");
-                        mediaFileName = stickerResult.get("filename");
-                        mimeType = inboundMessage.sticker().mimeType();
-                        messageContent = "[Sticker]";
-                    } else {
-                        messageContent = "[Sticker no disponible]";
+                    if (value.messages() == null || value.messages().isEmpty()) {
+                        continue;
                     }
-                    break;
 
-                default:
-                    log.info("Tipo de mensaje no soportado: {}. Ignorando.", messageTypeStr);
-                    return;
+                    Map<String, String> contactNames = contactNames(value);
+                    for (WhatsAppInboundMessageDTO inboundMessage : value.messages()) {
+                        String externalMessageId = inboundMessage.id();
+
+                        // Meta reenvía webhooks: descartar duplicados antes de tocar la DB o descargar media
+                        if (!deduplicator.tryBegin(externalMessageId)) {
+                            log.info("♻️ Mensaje {} ya procesado. Ignorando reenvío.", externalMessageId);
+                            continue;
+                        }
+                        if (externalMessageId != null) {
+                            claimedIds.add(externalMessageId);
+                        }
+
+                        PreparedInbound prepared;
+                        try {
+                            prepared = prepareInboundMessage(inboundMessage, contactNames);
+                        } catch (RuntimeException e) {
+                            // Reintentar no lo arregla: se descarta sin frenar al resto de la entrega
+                            rejectedMessages.increment();
+                            log.error("❌ Mensaje {} descartado por datos inválidos: {} | {}",
+                                    externalMessageId, e.getMessage(), inboundMessage);
+                            continue;
+                        }
+                        if (prepared != null) {
+                            batch.add(prepared);
+                        }
+                    }
+                }
             }
 
-            log.info("📝 Contenido procesado: {} | Media URL: {}", messageContent, mediaUrl);
-
-            // 5. Normalize phone number
-            String normalizedPhone = normalizeArgentinePhone(fromPhone);
-            log.info("Número normalizado: {} -> {}", fromPhone, normalizedPhone);
+            // 3. Persist the whole delivery in a single transaction
+            if (!batch.isEmpty()) {
+                InboundBatchResult result = transactionTemplate.execute(status -> saveInboundBatch(batch));
 
-            // 6. Get contact name
-            final String contactName;
-            if (value.contacts() != null && !value.contacts().isEmpty()) {
-                WhatsAppContactDTO contact = value.contacts().get(0);
-                if (contact.profile() != null && contact.profile().name() != null) {
-                    contactName = contact.profile().name();
-                } else {
-                    contactName = "Lead desde WhatsApp";
+                // 4. Side effects only after commit
+                for (CrmLead lead : result.newLeads()) {
+                    log.info("🚀 Publishing LeadCreatedEvent for new lead: {} ({})", lead.getId(), lead.getName());
+                    eventPublisher.publishEvent(new LeadCreatedEvent(this, lead));
                 }
-            } else {
-                contactName = "Lead desde WhatsApp";
-            }
+                result.conversationIds().forEach(this::notifyNewMessage);
+                mediaFetcher.submit(result.pendingMediaIds());
 
-            // 7. Find or create Lead
-            boolean isNewLead = false;
-            CrmLead leadTemp = crmLeadRepository.findByPhone(normalizedPhone).orElse(null);
-
-            if (leadTemp == null) {
-                log.info("Lead no encontrado. Creando nuevo Lead para: {}", normalizedPhone);
-                String placeholderEmail = normalizedPhone + "@whatsapp.generated";
-                leadTemp = CrmLead.builder()
-                        .phone(normalizedPhone)
-                        .name(contactName)
-                        .email(placeholderEmail)
-                        .channel(Channel.WHATSAPP)
-                        .stage(Stage.ACTIVE_LEAD)
-                        .status("active")
-                        .createdAt(LocalDateTime.now())
-                        .updatedAt(LocalDateTime.now())
-                        .deleted(false)
-                        .build();
-                leadTemp = crmLeadRepository.save(leadTemp);
-                isNewLead = true;
+                log.info("✅ Webhook procesado. Mensajes guardados: {} | Conversaciones: {}",
+                        result.savedMessages(), result.conversationIds().size());
             }
 
-            // Make effectively final for use in lambda
-            final CrmLead lead = leadTemp;
+            claimedIds.forEach(deduplicator::complete);
+        } catch (Exception e) {
+            claimedIds.forEach(deduplicator::abandon);
+            throw e;
+        }
+    }
 
-            // Publish event for automation engine if this is a new lead
-            if (isNewLead) {
-                log.info("🚀 Publishing LeadCreatedEvent for new lead: {} ({})", lead.getId(), lead.getName());
-                eventPublisher.publishEvent(new LeadCreatedEvent(this, lead));
+    /**
+     * Nombre de perfil por wa_id. Si el change trae un único contacto se usa
+     * también para mensajes cuyo "from" no coincide exactamente (ej: prefijo 9).
+     */
+    private Map<String, String> contactNames(WhatsAppValueDTO value) {
+        Map<String, String> names = new HashMap<>();
+        if (value.contacts() == null) {
+            return names;
+        }
+        for (WhatsAppContactDTO contact : value.contacts()) {
+            if (contact.profile() != null && contact.profile().name() != null) {
+                names.put(contact.waId(), contact.profile().name());
             }
+        }
+        if (value.contacts().size() == 1 && names.size() == 1) {
+            names.put(null, names.values().iterator().next());
+        }
+        return names;
+    }
 
-            // 8. Find or create Conversation
-            Conversation conversation = conversationRepository
-                    .findByLeadIdAndChannel(lead.getId(), Channel.WHATSAPP)
-                    .orElseGet(() -> {
-                        log.info("Conversación no encontrada. Creando nueva conversación para Lead ID: {}",
-                                lead.getId());
-                        Conversation newConversation = Conversation.builder()
-                                .crm_lead(lead)
-                                .channel(Channel.WHATSAPP)
-                                .status(ConversationStatus.OPEN)
-                                .startedAt(LocalDateTime.now())
-                                .firstInboundAt(LocalDateTime.now())
-                                .unreadCount(0)
-                                .build();
-                        return conversationRepository.save(newConversation);
-                    });
-
-            // 9. Extract context (quoted message) if present
-            com.nocountry.backend.entity.Message replyToMessage = null;
-            if (inboundMessage.context() != null && inboundMessage.context().id() != null) {
-                String quotedMessageId = inboundMessage.context().id();
-                log.info("📝 Mensaje cita a: {}", quotedMessageId);
-                replyToMessage = messageService.findByExternalMessageId(quotedMessageId);
-                if (replyToMessage != null) {
-                    log.info("✅ Mensaje citado encontrado: ID {}", replyToMessage.getId());
+    /**
+     * Convierte un mensaje INBOUND ya deduplicado en un {@link PreparedInbound}
+     * y normaliza el teléfono. La media no se descarga acá: el mensaje se guarda
+     * con media PENDING y {@link InboundMediaFetcher} la completa después.
+     * Devuelve null para tipos no soportados y lanza IllegalArgumentException
+     * si falta el remitente o el tipo.
+     */
+    private PreparedInbound prepareInboundMessage(WhatsAppInboundMessageDTO inboundMessage,
+            Map<String, String> contactNames) {
+        String fromPhone = inboundMessage.from();
+        String messageTypeStr = inboundMessage.type();
+        if (fromPhone == null || fromPhone.isBlank()) {
+            throw new IllegalArgumentException("mensaje sin remitente");
+        }
+        if (messageTypeStr == null) {
+            throw new IllegalArgumentException("mensaje sin tipo");
+        }
+
+        log.info("📨 Mensaje recibido de: {} | Tipo: {}", fromPhone, messageTypeStr);
+
+        // Process message based on type
+        MessageType messageType;
+        String messageContent;
+        String mediaId = null;
+        String mediaFileName = null;
+        String mimeType = null;
+        String mediaCaption = null;
+
+        switch (messageTypeStr) {
+            case "text":
+                messageType = MessageType.TEXT;
+                messageContent = inboundMessage.text() != null ? inboundMessage.text().body() : "";
+                break;
+
+            case "image":
+                messageType = MessageType.IMAGE;
+                if (inboundMessage.image() != null) {
+                    mediaId = inboundMessage.image().id();
+                    mimeType = inboundMessage.image().mimeType();
+                    mediaCaption = inboundMessage.image().caption();
+                    messageContent = mediaCaption != null ? mediaCaption : "[Imagen]";
+                } else {
+                    messageContent = "[Imagen no disponible]";
+                }
+                break;
+
+            case "video":
+                messageType = MessageType.VIDEO;
+                if (inboundMessage.video() != null) {
+                    mediaId = inboundMessage.video().id();
+                    mimeType = inboundMessage.video().mimeType();
+                    mediaCaption = inboundMessage.video().caption();
+                    messageContent = mediaCaption != null ? mediaCaption : "[Video]";
+                } else {
+                    messageContent = "[Video no disponible]";
+                }
+                break;
+
+            case "audio":
+                messageType = MessageType.AUDIO;
+                if (inboundMessage.audio() != null) {
+                    mediaId = inboundMessage.audio().id();
+                    mimeType = inboundMessage.audio().mimeType();
+                    messageContent = "[Audio]";
+                } else {
+                    messageContent = "[Audio no disponible]";
+                }
+                break;
+
+            case "document":
+                messageType = MessageType.DOCUMENT;
+                if (inboundMessage.document() != null) {
+                    mediaId = inboundMessage.document().id();
+                    mediaFileName = inboundMessage.document().filename();
+                    mimeType = inboundMessage.document().mimeType();
+                    mediaCaption = inboundMessage.document().caption();
+                    messageContent = mediaFileName != null ? mediaFileName : "[Documento]";
+                } else {
+                    messageContent = "[Documento no disponible]";
+                }
+                break;
+
+            case "sticker":
+                messageType = MessageType.STICKER;
+                if (inboundMessage.sticker() != null) {
+                    mediaId = inboundMessage.sticker().id();
+                    mimeType = inboundMessage.sticker().mimeType();
+                    messageContent = "[Sticker]";
                 } else {
-                    log.warn("⚠️ Mensaje citado no encontrado en DB: {}", quotedMessageId);
+                    messageContent = "[Sticker no disponible]";
                 }
+                break;
+
+            default:
+                log.info("Tipo de mensaje no soportado: {}. Ignorando.", messageTypeStr);
+                return null;
+        }
+
+        log.info("📝 Contenido procesado: {} | Media ID: {}", messageContent, mediaId);
+
+        // Normalize phone number
+        String normalizedPhone = normalizeArgentinePhone(fromPhone);
+        log.info("Número normalizado: {} -> {}", fromPhone, normalizedPhone);
+
+        // Get contact name
+        String contactName = contactNames.getOrDefault(fromPhone, contactNames.get(null));
+        if (contactName == null) {
+            contactName = "Lead desde WhatsApp";
+        }
+
+        String quotedMessageId = inboundMessage.context() != null ? inboundMessage.context().id() : null;
+
+        return new PreparedInbound(
+                normalizedPhone,
+                contactName,
+                inboundMessage.id(),
+                parseTimestamp(inboundMessage),
+                messageType,
+                messageContent,
+                mediaId,
+                mediaFileName,
+                mimeType,
+                mediaCaption,
+                quotedMessageId);
+    }
+
+    /**
+     * Timestamp de Meta en segundos epoch (UTC). Si falta o no es numérico se
+     * usa la hora de recepción en lugar de perder el mensaje.
+     */
+    private static LocalDateTime parseTimestamp(WhatsAppInboundMessageDTO inboundMessage) {
+        try {
+            return LocalDateTime.ofEpochSecond(Long.parseLong(inboundMessage.timestamp()), 0, ZoneOffset.UTC);
+        } catch (NumberFormatException e) {
+            log.warn("⚠️ Timestamp inválido en mensaje {}: {}. Se usa la hora de recepción.",
+                    inboundMessage.id(), inboundMessage.timestamp());
+            return LocalDateTime.now(ZoneOffset.UTC);
+        }
+    }
+
+    /**
+     * Persiste un lote de mensajes INBOUND en la transacción actual. Lead y
+     * Conversation se resuelven una sola vez por teléfono y todos los mensajes
+     * se insertan con un único saveAll. Si otro proceso guardó alguno de los
+     * mensajes en paralelo, el índice único hace fallar el lote completo y el
+     * worker lo reintenta; en el reintento ya se filtran como existentes.
+     */
+    private InboundBatchResult saveInboundBatch(List<PreparedInbound> batch) {
+        List<String> externalIds = batch.stream()
+                .map(PreparedInbound::externalMessageId)
+                .filter(Objects::nonNull)
+                .toList();
+        Set<String> existing = externalIds.isEmpty()
+                ? Set.of()
+                : new HashSet<>(messageRepository.findExistingExternalIds(externalIds));
+
+        Map<String, List<PreparedInbound>> byPhone = new LinkedHashMap<>();
+        for (PreparedInbound prepared : batch) {
+            if (prepared.externalMessageId() != null && existing.contains(prepared.externalMessageId())) {
+                log.info("♻️ Mensaje {} ya guardado por otro proceso. Ignorando.", prepared.externalMessageId());
+                continue;
             }
+            byPhone.computeIfAbsent(prepared.phone(), phone -> new ArrayList<>()).add(prepared);
+        }
 
-            // 10. Save inbound message with media and reply context
-            LocalDateTime messageSentAt = LocalDateTime.ofEpochSecond(
-                    Long.parseLong(timestamp), 0, ZoneOffset.UTC);
-
-            messageService.saveInboundMediaMessage(
-                    conversation,
-                    messageContent,
-                    externalMessageId,
-                    messageSentAt,
-                    messageType,
-                    mediaUrl,
-                    mediaFileName,
-                    mimeType,
-                    mediaCaption,
-                    replyToMessage);
-
-            // 10. Update conversation
-            conversation.setLastMessageText(messageContent);
-            conversation.setLastMessageAt(messageSentAt);
-            conversation.setLastMessageDirection(Direction.INBOUND);
-            int currentUnread = conversation.getUnreadCount() != null ? conversation.getUnreadCount() : 0;
-            conversation.setUnreadCount(currentUnread + 1);
-            conversationRepository.save(conversation);
-
-            // 11. Send WebSocket notification
-            try {
-                com.nocountry.backend.dto.WebSocketMessageDTO notification = new com.nocountry.backend.dto.WebSocketMessageDTO(
-                        "NEW_MESSAGE",
-                        conversation.getId(),
-                        null,
-                        null);
-                messagingTemplate.convertAndSend(
-                        "/topic/conversations/" + conversation.getId(),
-                        notification);
-                messagingTemplate.convertAndSend(
-                        "/topic/conversations",
-                        notification);
-                log.info("📡 Notificación WebSocket enviada para conversación {}", conversation.getId());
-            } catch (Exception wsError) {
-                log.warn("⚠️ Error al enviar notificación WebSocket: {}", wsError.getMessage());
+        List<CrmLead> newLeads = new ArrayList<>();
+        Set<Long> conversationIds = new LinkedHashSet<>();
+        List<Message> messages = new ArrayList<>();
+        Map<String, Message> batchByExternalId = new HashMap<>();
+
+        for (List<PreparedInbound> group : byPhone.values()) {
+            group.sort(Comparator.comparing(PreparedInbound::sentAt));
+            PreparedInbound first = group.get(0);
+            PreparedInbound last = group.get(group.size() - 1);
+
+            // Resolve Lead + Conversation: cache first, then phone_e164 index
+            String phoneE164 = PhoneNumbers.toE164(first.phone());
+            ContactRouteCache.ContactRoute route = contactRouteCache.get(phoneE164);
+            Long leadId;
+            Conversation conversation;
+            if (route != null) {
+                leadId = route.leadId();
+                conversation = conversationRepository.getReferenceById(route.conversationId());
+            } else {
+                CrmLead lead = crmLeadRepository.findFirstByPhoneE164OrderByIdAsc(phoneE164).orElse(null);
+                if (lead == null) {
+                    log.info("Lead no encontrado. Creando nuevo Lead para: {}", first.phone());
+                    lead = crmLeadRepository.save(CrmLead.builder()
+                            .phone(first.phone())
+                            .name(first.contactName())
+                            .email(first.phone() + "@whatsapp.generated")
+                            .channel(Channel.WHATSAPP)
+                            .stage(Stage.ACTIVE_LEAD)
+                            .status("active")
+                            .createdAt(LocalDateTime.now())
+                            .updatedAt(LocalDateTime.now())
+                            .deleted(false)
+                            .build());
+                    newLeads.add(lead);
+                }
+                leadId = lead.getId();
+                conversation = findOrCreateConversation(lead);
+                contactRouteCache.putAfterCommit(phoneE164, leadId, conversation.getId());
             }
 
-            log.info("✅ Mensaje INBOUND procesado exitosamente. Lead ID: {} | Conversation ID: {} | Type: {}",
-                    lead.getId(), conversation.getId(), messageType);
+            for (PreparedInbound prepared : group) {
+                Message message = Message.builder()
+                        .conversation(conversation)
+                        .senderType(SenderType.LEAD)
+                        .senderLeadId(leadId)
+                        .messageDirection(Direction.INBOUND)
+                        .messageType(prepared.type())
+                        .content(prepared.content())
+                        .mediaExternalId(prepared.mediaId())
+                        .mediaStatus(prepared.mediaId() != null ? MediaStatus.PENDING : null)
+                        .mediaFileName(prepared.mediaFileName())
+                        .mediaType(prepared.mimeType())
+                        .mediaCaption(prepared.mediaCaption())
+                        .externalMessageId(prepared.externalMessageId())
+                        .sentAt(prepared.sentAt())
+                        .replyToMessage(resolveQuotedMessage(prepared.quotedMessageId(), batchByExternalId))
+                        .build();
+                messages.add(message);
+                if (prepared.externalMessageId() != null) {
+                    batchByExternalId.put(prepared.externalMessageId(), message);
+                }
+            }
 
-        } catch (Exception e) {
-            log.error("❌ Error al procesar mensaje INBOUND del webhook: {}", e.getMessage(), e);
+            // Update conversation once per phone, without loading it
+            int updated = conversationRepository.recordLastMessage(
+                    conversation.getId(), last.content(), last.sentAt(), Direction.INBOUND, group.size());
+            if (updated == 0) {
+                // Ruta cacheada a una conversación borrada: el worker reintenta sin caché
+                contactRouteCache.evictConversation(conversation.getId());
+                throw new IllegalStateException("Conversación " + conversation.getId() + " no existe");
+            }
+            conversationIds.add(conversation.getId());
         }
+
+        messageRepository.saveAll(messages);
+
+        List<Long> pendingMediaIds = messages.stream()
+                .filter(message -> message.getMediaStatus() == MediaStatus.PENDING)
+                .map(Message::getId)
+                .toList();
+
+        return new InboundBatchResult(newLeads, conversationIds, pendingMediaIds, messages.size());
+    }
+
+    private Conversation findOrCreateConversation(CrmLead lead) {
+        return conversationRepository
+                .findByLeadIdAndChannel(lead.getId(), Channel.WHATSAPP)
+                .orElseGet(() -> {
+                    log.info("Conversación no encontrada. Creando nueva conversación para Lead ID: {}",
+                            lead.getId());
+                    Conversation newConversation = Conversation.builder()
+                            .crm_lead(lead)
+                            .channel(Channel.WHATSAPP)
+                            .status(ConversationStatus.OPEN)
+                            .startedAt(LocalDateTime.now())
+                            .firstInboundAt(LocalDateTime.now())
+                            .unreadCount(0)
+                            .build();
+                    return conversationRepository.save(newConversation);
+                });
     }
 
     /**
-     * Downloads media from WhatsApp and stores it locally.
+     * Mensaje citado: primero dentro del mismo lote (ya agregado antes en la
+     * lista, así se inserta primero), luego en la DB.
      */
-    private Map<String, String> downloadAndStoreMedia(String mediaId, String mimeType, String accessToken) {
+    private Message resolveQuotedMessage(String quotedMessageId, Map<String, Message> batchByExternalId) {
+        if (quotedMessageId == null) {
+            return null;
+        }
+        log.info("📝 Mensaje cita a: {}", quotedMessageId);
+        Message replyToMessage = batchByExternalId.get(quotedMessageId);
+        if (replyToMessage == null) {
+            replyToMessage = messageService.findByExternalMessageId(quotedMessageId);
+        }
+        if (replyToMessage == null) {
+            log.warn("⚠️ Mensaje citado no encontrado en DB: {}", quotedMessageId);
+        }
+        return replyToMessage;
+    }
+
+    private void notifyNewMessage(Long conversationId) {
         try {
-            return mediaStorageService.downloadAndStoreWhatsAppMedia(mediaId, mimeType, accessToken);
-        } catch (Exception e) {
-            log.error("Error descargando media de WhatsApp: {} - {}", mediaId, e.getMessage());
-            return Map.of(
-                    "url", "",
-                    "filename", "error_" + mediaId,
-                    "mimeType", mimeType != null ? mimeType : "application/octet-stream");
+            com.nocountry.backend.dto.WebSocketMessageDTO notification = new com.nocountry.backend.dto.WebSocketMessageDTO(
+                    "NEW_MESSAGE",
+                    conversationId,
+                    null,
+                    null);
+            messagingTemplate.convertAndSend(
+                    "/topic/conversations/" + conversationId,
+                    notification);
+            messagingTemplate.convertAndSend(
+                    "/topic/conversations",
+                    notification);
+            log.info("📡 Notificación WebSocket enviada para conversación {}", conversationId);
+        } catch (Exception wsError) {
+            log.warn("⚠️ Error al enviar notificación WebSocket: {}", wsError.getMessage());
         }
     }
 
+    /**
+     * Mensaje INBOUND ya descargado y normalizado, listo para persistir en lote.
+     */
+    private record PreparedInbound(
+            String phone,
+            String contactName,
+            String externalMessageId,
+            LocalDateTime sentAt,
+            MessageType type,
+            String content,
+            String mediaId,
+            String mediaFileName,
+            String mimeType,
+            String mediaCaption,
+            String quotedMessageId) {
+    }
+
+    private record InboundBatchResult(
+            List<CrmLead> newLeads,
+            Set<Long> conversationIds,
+            List<Long> pendingMediaIds,
+            int savedMessages) {
+    }
+
     /**
      * Normaliza números de teléfono argentinos quitando el "9" de celular.
      */
     private String normalizeArgentinePhone(String phone) {
-        if (phone == null) {
-            return null;
-        }
-        if (phone.startsWith("549") && phone.length() >= 13) {
-            return "54" + phone.substring(3);
-        }
-        return phone;
+        return PhoneNumbers.normalizeArgentineMobile(phone);
     }
 }
\ No newline at end of file
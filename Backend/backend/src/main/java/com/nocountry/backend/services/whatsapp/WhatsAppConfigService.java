@@ -2,9 +2,8 @@ package com.nocountry.backend.services.whatsapp;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
-import com.nocountry.backend.entity.IntegrationConfig;
 import com.nocountry.backend.enums.IntegrationType;
-import com.nocountry.backend.repository.IntegrationConfigRepository;
+import com.nocountry.backend.services.IntegrationConfigCache;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
@@ -20,7 +19,7 @@ import java.util.Optional;
 @RequiredArgsConstructor
 public class WhatsAppConfigService {
 
-    private final IntegrationConfigRepository configRepository;
+    private final IntegrationConfigCache configCache;
     private final ObjectMapper objectMapper;
 
     /**
@@ -29,7 +28,8 @@ public class WhatsAppConfigService {
     public record WhatsAppCredentials(
             String apiToken,
             String baseUrl,
-            String verifyToken) {
+            String verifyToken,
+            String appSecret) {
         public boolean isValid() {
             return apiToken != null && !apiToken.isBlank()
                     && baseUrl != null && !baseUrl.isBlank();
@@ -42,9 +42,8 @@ public class WhatsAppConfigService {
      * @return Optional con las credenciales, vacío si no existe configuración
      */
     public Optional<WhatsAppCredentials> getWhatsAppCredentials() {
-        return configRepository.findByIntegrationType(IntegrationType.WHATSAPP)
-                .filter(IntegrationConfig::isConnected)
-                .map(this::parseCredentials);
+        // Cacheado hasta que se modifique la configuración (IntegrationConfigCache)
+        return configCache.resolve(IntegrationType.WHATSAPP, "credentials", this::parseCredentials);
     }
 
     /**
@@ -56,17 +55,12 @@ public class WhatsAppConfigService {
                 .orElse(false);
     }
 
-    private WhatsAppCredentials parseCredentials(IntegrationConfig config) {
-        if (config.getCredentials() == null || config.getCredentials().isBlank()) {
-            log.warn("WhatsApp credentials JSON is empty");
-            return new WhatsAppCredentials(null, null, null);
-        }
-
+    private WhatsAppCredentials parseCredentials(String credentialsJson) {
         try {
-            return objectMapper.readValue(config.getCredentials(), WhatsAppCredentials.class);
+            return objectMapper.readValue(credentialsJson, WhatsAppCredentials.class);
         } catch (JsonProcessingException e) {
             log.error("Error parsing WhatsApp credentials JSON: {}", e.getMessage());
-            return new WhatsAppCredentials(null, null, null);
+            return new WhatsAppCredentials(null, null, null, null);
         }
     }
 }
@@ -0,0 +1,205 @@
+package com.nocountry.backend.services.whatsapp;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocountry.backend.exceptions.WhatsAppApiException;
+import com.nocountry.backend.services.whatsapp.WhatsAppConfigService.WhatsAppCredentials;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.JdkClientHttpRequestFactory;
+import org.springframework.stereotype.Component;
+import org.springframework.web.client.RestClient;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Shared client for the WhatsApp Cloud (Graph) API.
+ *
+ * <p>All calls go through one JDK {@link HttpClient} (HTTP/2, keep-alive
+ * connection pool, connect timeout), so sends stop paying a TLS handshake
+ * each time. One {@link RestClient} is cached per credential base URL. Every
+ * endpoint has its own {@link CircuitBreaker}: when Meta keeps timing out or
+ * answering 5xx/429, calls fail fast instead of holding request and worker
+ * threads for the full read timeout.</p>
+ */
+@Component
+@Slf4j
+public class WhatsAppGraphClient {
+
+    private static final ParameterizedTypeReference<Map<String, Object>> JSON_MAP = new ParameterizedTypeReference<>() {
+    };
+
+    private final HttpClient httpClient;
+    private final ObjectMapper objectMapper;
+    private final String graphBaseUrl;
+    private final Duration readTimeout;
+    private final Duration mediaTimeout;
+    private final int failureThreshold;
+    private final Duration openDuration;
+    private final ConcurrentMap<String, RestClient> restClients = new ConcurrentHashMap<>();
+    private final ConcurrentMap<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+
+    public WhatsAppGraphClient(
+            ObjectMapper objectMapper,
+            @Value("${whatsapp.api.graph-base-url:https://graph.facebook.com/v18.0}") String graphBaseUrl,
+            @Value("${whatsapp.api.connect-timeout-ms:5000}") long connectTimeoutMs,
+            @Value("${whatsapp.api.read-timeout-ms:15000}") long readTimeoutMs,
+            @Value("${whatsapp.api.media-timeout-ms:60000}") long mediaTimeoutMs,
+            @Value("${whatsapp.api.circuit.failure-threshold:5}") int failureThreshold,
+            @Value("${whatsapp.api.circuit.open-seconds:30}") long openSeconds) {
+        this.objectMapper = objectMapper;
+        this.graphBaseUrl = stripTrailingSlash(graphBaseUrl);
+        this.readTimeout = Duration.ofMillis(readTimeoutMs);
+        this.mediaTimeout = Duration.ofMillis(mediaTimeoutMs);
+        this.failureThreshold = failureThreshold;
+        this.openDuration = Duration.ofSeconds(openSeconds);
+        this.httpClient = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_2)
+                .connectTimeout(Duration.ofMillis(connectTimeoutMs))
+                .followRedirects(HttpClient.Redirect.NORMAL)
+                .build();
+    }
+
+    /**
+     * POSTs a message to {@code {baseUrl}/messages} and returns the parsed JSON response.
+     */
+    public Map<String, Object> postMessage(WhatsAppCredentials credentials, Map<String, Object> body) {
+        String baseUrl = stripTrailingSlash(credentials.baseUrl());
+        CircuitBreaker breaker = acquire(baseUrl);
+        try {
+            Map<String, Object> response = restClientFor(baseUrl).post()
+                    .uri("/messages")
+                    .header("Authorization", "Bearer " + credentials.apiToken())
+                    .contentType(MediaType.APPLICATION_JSON)
+                    .accept(MediaType.APPLICATION_JSON)
+                    .body(body)
+                    .retrieve()
+                    .body(JSON_MAP);
+            breaker.onSuccess();
+            return response;
+        } catch (RestClientResponseException e) {
+            record(breaker, e.getStatusCode().value());
+            throw e;
+        } catch (RuntimeException e) {
+            breaker.onFailure();
+            throw e;
+        }
+    }
+
+    /**
+     * Resolves a media id to its temporary download URL.
+     */
+    public String fetchMediaUrl(String mediaId, String accessToken) throws IOException, InterruptedException {
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(URI.create(graphBaseUrl + "/" + mediaId))
+                .header("Authorization", "Bearer " + accessToken)
+                .timeout(readTimeout)
+                .GET()
+                .build();
+
+        HttpResponse<String> response = send(graphBaseUrl, request, HttpResponse.BodyHandlers.ofString());
+        if (response.statusCode() != 200) {
+            log.error("Failed to get media URL from WhatsApp: {}", response.body());
+            throw new IOException("Failed to get media URL: " + response.statusCode());
+        }
+
+        JsonNode url = objectMapper.readTree(response.body()).get("url");
+        if (url == null || url.isNull()) {
+            throw new IOException("Could not extract download URL from WhatsApp response");
+        }
+        return url.asText();
+    }
+
+    /**
+     * Opens a streaming download of a media URL returned by {@link #fetchMediaUrl}.
+     * The caller must close the stream.
+     */
+    public InputStream openMedia(String downloadUrl, String accessToken) throws IOException, InterruptedException {
+        URI uri = URI.create(downloadUrl);
+        HttpRequest request = HttpRequest.newBuilder()
+                .uri(uri)
+                .header("Authorization", "Bearer " + accessToken)
+                .timeout(mediaTimeout)
+                .GET()
+                .build();
+
+        HttpResponse<InputStream> response = send(uri.getScheme() + "://" + uri.getAuthority(), request,
+                HttpResponse.BodyHandlers.ofInputStream());
+        if (response.statusCode() != 200) {
+            response.body().close();
+            throw new IOException("Failed to download media: " + response.statusCode());
+        }
+        return response.body();
+    }
+
+    private <T> HttpResponse<T> send(String endpoint, HttpRequest request, HttpResponse.BodyHandler<T> handler)
+            throws IOException, InterruptedException {
+        CircuitBreaker breaker = acquire(endpoint);
+        boolean recorded = false;
+        try {
+            HttpResponse<T> response = httpClient.send(request, handler);
+            record(breaker, response.statusCode());
+            recorded = true;
+            return response;
+        } finally {
+            // Interrupted or any other exception: count it as a failure so a
+            // half-open probe never stays in flight forever
+            if (!recorded) {
+                breaker.onFailure();
+            }
+        }
+    }
+
+    private CircuitBreaker acquire(String endpoint) {
+        CircuitBreaker breaker = breakers.computeIfAbsent(endpoint,
+                key -> new CircuitBreaker(failureThreshold, openDuration));
+        if (!breaker.tryAcquire()) {
+            throw new WhatsAppApiException("WhatsApp API circuit open for " + endpoint + "; failing fast");
+        }
+        return breaker;
+    }
+
+    /**
+     * Only server-side trouble trips the breaker; 4xx like an invalid recipient
+     * says nothing about the endpoint's health.
+     */
+    private static void record(CircuitBreaker breaker, int status) {
+        if (status >= 500 || status == 429) {
+            breaker.onFailure();
+        } else {
+            breaker.onSuccess();
+        }
+    }
+
+    private RestClient restClientFor(String baseUrl) {
+        return restClients.computeIfAbsent(baseUrl, url -> {
+            JdkClientHttpRequestFactory requestFactory = new JdkClientHttpRequestFactory(httpClient);
+            requestFactory.setReadTimeout(readTimeout);
+            return RestClient.builder()
+                    .baseUrl(url)
+                    .requestFactory(requestFactory)
+                    .build();
+        });
+    }
+
+    CircuitBreaker.State circuitState(String endpoint) {
+        CircuitBreaker breaker = breakers.get(stripTrailingSlash(endpoint));
+        return breaker != null ? breaker.state() : CircuitBreaker.State.CLOSED;
+    }
+
+    private static String stripTrailingSlash(String url) {
+        return url != null && url.endsWith("/") ? url.substring(0, url.length() - 1) : url;
+    }
+}
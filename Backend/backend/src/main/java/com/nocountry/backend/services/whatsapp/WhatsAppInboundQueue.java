@@ -0,0 +1,110 @@
+package com.nocountry.backend.services.whatsapp;
+
+import com.nocountry.backend.entity.WhatsAppInboundEvent;
+import com.nocountry.backend.enums.InboundEventStatus;
+import com.nocountry.backend.repository.WhatsAppInboundEventRepository;
+import com.nocountry.backend.services.queue.RetryBackoff;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Durable queue of raw webhook deliveries backed by whatsapp_inbound_event.
+ * Every method is one short transaction, so the webhook request only pays
+ * for a single insert.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class WhatsAppInboundQueue {
+
+    // 5s, 10s, 20s... hasta 10 minutos
+    private static final RetryBackoff BACKOFF = new RetryBackoff(5, 7, 600);
+
+    private final WhatsAppInboundEventRepository eventRepository;
+
+    @Value("${whatsapp.inbound.max-attempts:5}")
+    private int maxAttempts;
+
+    @Transactional
+    public Long enqueue(String payload) {
+        WhatsAppInboundEvent event = WhatsAppInboundEvent.builder()
+                .payload(payload)
+                .status(InboundEventStatus.PENDING)
+                .receivedAt(LocalDateTime.now())
+                .build();
+        return eventRepository.save(event).getId();
+    }
+
+    /**
+     * Claims up to {@code limit} pending events for {@code workerId}.
+     */
+    @Transactional
+    public List<Long> claimBatch(String workerId, int limit, Duration lease) {
+        LocalDateTime now = LocalDateTime.now();
+        List<Long> ids = eventRepository.lockPendingIds(now, limit);
+        if (!ids.isEmpty()) {
+            eventRepository.markClaimed(ids, InboundEventStatus.PROCESSING, workerId, now.plus(lease));
+        }
+        return ids;
+    }
+
+    @Transactional(readOnly = true)
+    public Optional<WhatsAppInboundEvent> find(Long id) {
+        return eventRepository.findById(id);
+    }
+
+    @Transactional
+    public void markProcessed(Long id) {
+        eventRepository.findById(id).ifPresent(event -> {
+            event.setStatus(InboundEventStatus.PROCESSED);
+            event.setProcessedAt(LocalDateTime.now());
+            event.setErrorMessage(null);
+            event.setLockedBy(null);
+            event.setLockedUntil(null);
+        });
+    }
+
+    /**
+     * Schedules a retry with exponential backoff, or marks the event FAILED
+     * once it has used all its attempts.
+     */
+    @Transactional
+    public void markFailed(Long id, String errorMessage) {
+        eventRepository.findById(id).ifPresent(event -> {
+            event.setErrorMessage(errorMessage);
+            event.setLockedBy(null);
+            event.setLockedUntil(null);
+            if (event.getAttempts() >= maxAttempts) {
+                event.setStatus(InboundEventStatus.FAILED);
+                log.error("Webhook event {} failed after {} attempts: {}", id, event.getAttempts(), errorMessage);
+            } else {
+                long delaySeconds = BACKOFF.delaySeconds(event.getAttempts());
+                event.setStatus(InboundEventStatus.PENDING);
+                event.setNextAttemptAt(LocalDateTime.now().plusSeconds(delaySeconds));
+                log.warn("Webhook event {} failed (attempt {}), retrying in {}s: {}",
+                        id, event.getAttempts(), delaySeconds, errorMessage);
+            }
+        });
+    }
+
+    @Transactional
+    public int recoverExpiredLeases() {
+        return eventRepository.releaseExpiredLeases(
+                InboundEventStatus.PROCESSING,
+                InboundEventStatus.PENDING,
+                LocalDateTime.now());
+    }
+
+    @Transactional
+    public int purgeProcessedBefore(LocalDateTime before) {
+        return eventRepository.deleteProcessedBefore(InboundEventStatus.PROCESSED, before);
+    }
+}
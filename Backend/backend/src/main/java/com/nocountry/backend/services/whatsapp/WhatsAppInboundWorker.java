@@ -0,0 +1,164 @@
+package com.nocountry.backend.services.whatsapp;
+
+import com.nocountry.backend.entity.WhatsAppInboundEvent;
+import com.nocountry.backend.enums.InboundEventStatus;
+import com.nocountry.backend.repository.WhatsAppInboundEventRepository;
+import com.nocountry.backend.services.queue.LeasedQueueDispatcher;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.stereotype.Service;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.EnumSet;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Consumes whatsapp_inbound_event on a bounded pool through a
+ * {@link LeasedQueueDispatcher}: events are claimed as soon as the webhook
+ * signals a new one (or every poll interval as a fallback), never more than
+ * there are idle workers.
+ * <p>
+ * Publishes {@code whatsapp.inbound.pending} and {@code whatsapp.inbound.lag}
+ * (age of the oldest unprocessed event) plus processing and end-to-end timers.
+ */
+@Service
+@Slf4j
+public class WhatsAppInboundWorker {
+
+    private final WhatsAppInboundQueue queue;
+    private final WhatsAppInboundEventRepository eventRepository;
+    private final WhatsAppApiService whatsAppApiService;
+    private final LeasedQueueDispatcher dispatcher;
+    private final int retentionDays;
+
+    private final AtomicLong pending = new AtomicLong();
+    private final AtomicLong lagSeconds = new AtomicLong();
+    private final Timer processingTimer;
+    private final Timer endToEndTimer;
+    private final Counter failures;
+
+    public WhatsAppInboundWorker(
+            WhatsAppInboundQueue queue,
+            WhatsAppInboundEventRepository eventRepository,
+            WhatsAppApiService whatsAppApiService,
+            @Qualifier("whatsappInboundExecutor") ThreadPoolTaskExecutor executor,
+            MeterRegistry meterRegistry,
+            @Value("${whatsapp.inbound.worker-threads:4}") int workerThreads,
+            @Value("${whatsapp.inbound.batch-size:20}") int batchSize,
+            @Value("${whatsapp.inbound.poll-interval-ms:2000}") long pollIntervalMs,
+            @Value("${whatsapp.inbound.lease-minutes:5}") long leaseMinutes,
+            @Value("${whatsapp.inbound.retention-days:7}") int retentionDays) {
+        this.queue = queue;
+        this.eventRepository = eventRepository;
+        this.whatsAppApiService = whatsAppApiService;
+        this.retentionDays = retentionDays;
+
+        Gauge.builder("whatsapp.inbound.pending", pending, AtomicLong::get)
+                .description("Webhook events waiting to be processed")
+                .register(meterRegistry);
+        Gauge.builder("whatsapp.inbound.lag", lagSeconds, AtomicLong::get)
+                .description("Age of the oldest unprocessed webhook event")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+        this.processingTimer = Timer.builder("whatsapp.inbound.processing")
+                .description("Time to process one webhook event")
+                .register(meterRegistry);
+        this.endToEndTimer = Timer.builder("whatsapp.inbound.latency")
+                .description("Time from webhook receipt to processed event")
+                .register(meterRegistry);
+        this.failures = Counter.builder("whatsapp.inbound.failures")
+                .description("Webhook event processing failures")
+                .register(meterRegistry);
+
+        this.dispatcher = new LeasedQueueDispatcher("whatsapp-inbound", queue::claimBatch, this::process, executor,
+                workerThreads, batchSize, pollIntervalMs, Duration.ofMinutes(leaseMinutes));
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        dispatcher.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        dispatcher.stop();
+    }
+
+    /**
+     * Called after an event is committed, so it is picked up immediately.
+     */
+    public void wakeUp() {
+        dispatcher.wakeUp();
+    }
+
+    @Scheduled(fixedDelayString = "${whatsapp.inbound.stats-interval-ms:15000}")
+    public void refreshStats() {
+        try {
+            pending.set(eventRepository.countByStatus(InboundEventStatus.PENDING));
+            lagSeconds.set(eventRepository
+                    .findOldestReceivedAt(EnumSet.of(InboundEventStatus.PENDING, InboundEventStatus.PROCESSING))
+                    .map(oldest -> Math.max(0, Duration.between(oldest, LocalDateTime.now()).toSeconds()))
+                    .orElse(0L));
+        } catch (Exception e) {
+            log.warn("Could not refresh webhook queue stats: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${whatsapp.inbound.recovery-interval-ms:60000}")
+    public void recoverExpiredLeases() {
+        try {
+            int recovered = queue.recoverExpiredLeases();
+            if (recovered > 0) {
+                log.warn("Recovered {} webhook events with expired leases", recovered);
+                wakeUp();
+            }
+        } catch (Exception e) {
+            log.error("Error recovering webhook event leases: {}", e.getMessage());
+        }
+    }
+
+    @Scheduled(cron = "${whatsapp.inbound.purge-cron:0 30 3 * * *}")
+    public void purgeProcessed() {
+        try {
+            int purged = queue.purgeProcessedBefore(LocalDateTime.now().minusDays(retentionDays));
+            log.info("Purged {} processed webhook events older than {} days", purged, retentionDays);
+        } catch (Exception e) {
+            log.error("Error purging processed webhook events: {}", e.getMessage());
+        }
+    }
+
+    private void process(Long eventId) {
+        WhatsAppInboundEvent event = queue.find(eventId).orElse(null);
+        if (event == null) {
+            return;
+        }
+
+        long start = System.nanoTime();
+        try {
+            whatsAppApiService.processInboundWebhook(event.getPayload());
+            queue.markProcessed(eventId);
+            endToEndTimer.record(Duration.between(event.getReceivedAt(), LocalDateTime.now()));
+        } catch (Exception e) {
+            failures.increment();
+            try {
+                queue.markFailed(eventId, e.getMessage());
+            } catch (Exception markError) {
+                log.error("Could not record failure of webhook event {}: {}", eventId, markError.getMessage());
+            }
+        } finally {
+            processingTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+    }
+}
@@ -0,0 +1,314 @@
+package com.nocountry.backend.services.whatsapp;
+
+import com.nocountry.backend.dto.whatsapp.WhatsAppErrorDTO;
+import com.nocountry.backend.dto.whatsapp.WhatsAppStatusDTO;
+import com.nocountry.backend.enums.DeliveryStatus;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Applies WhatsApp sent/delivered/read/failed receipts to {@code message}.
+ * <p>
+ * Receipts outnumber messages several times over, so they are not written one
+ * transaction per callback. Each one is merged in memory per external message
+ * id (keeping the highest-ranked {@link DeliveryStatus}) and every flush
+ * interval the window is written as a single JDBC batch of UPDATEs keyed by the
+ * unique index on external_message_id. The UPDATE only moves a message forward,
+ * so receipts arriving out of order are harmless. A bounded LRU of the last
+ * status written per id drops a receipt that arrives after a higher-ranked one
+ * was already flushed (e.g. "sent" after "read") without a database round trip.
+ * <p>
+ * Receipts that match no row yet (the outbox has not stored the id returned by
+ * Meta) are retried on later flushes until they are older than the unmatched
+ * retention. Receipts are best effort: a window still in memory when the
+ * process dies is lost, as Meta does not resend them.
+ */
+@Service
+@Slf4j
+public class WhatsAppStatusCoalescer {
+
+    private static final String UPDATE_SQL = "UPDATE message SET "
+            + "delivery_status = ?, "
+            + "delivery_error = COALESCE(?, delivery_error), "
+            + "delivered_at = COALESCE(delivered_at, ?), "
+            + "read_at = COALESCE(read_at, ?) "
+            + "WHERE external_message_id = ? "
+            + "AND FIELD(COALESCE(delivery_status, ''), 'QUEUED', 'SENT', 'FAILED', 'DELIVERED', 'READ') < ?";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int flushThreshold;
+    private final long unmatchedRetentionMs;
+
+    // Writers share the read lock; flush takes the write lock only to swap the window
+    private final ReadWriteLock windowLock = new ReentrantReadWriteLock();
+    private volatile Map<String, StatusUpdate> window = new ConcurrentHashMap<>();
+    private final Map<String, DeliveryStatus> applied;
+
+    private final Timer flushTimer;
+    private final Counter received;
+    private final Counter dropped;
+    private final Counter stale;
+
+    public WhatsAppStatusCoalescer(
+            JdbcTemplate jdbcTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${whatsapp.status.flush-threshold:5000}") int flushThreshold,
+            @Value("${whatsapp.status.unmatched-retention-ms:60000}") long unmatchedRetentionMs,
+            @Value("${whatsapp.status.applied-cache-size:50000}") int appliedCacheSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.flushThreshold = flushThreshold;
+        this.unmatchedRetentionMs = unmatchedRetentionMs;
+        this.applied = new LinkedHashMap<>(Math.min(appliedCacheSize, 1024), 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, DeliveryStatus> eldest) {
+                return size() > appliedCacheSize;
+            }
+        };
+
+        Gauge.builder("whatsapp.status.pending", this, coalescer -> coalescer.window.size())
+                .description("Receipts waiting for the next flush")
+                .register(meterRegistry);
+        this.flushTimer = Timer.builder("whatsapp.status.flush")
+                .description("Time to write one batch of receipts")
+                .register(meterRegistry);
+        this.received = Counter.builder("whatsapp.status.received")
+                .description("WhatsApp status callbacks received")
+                .register(meterRegistry);
+        this.dropped = Counter.builder("whatsapp.status.unmatched")
+                .description("Receipts dropped because no message had their id")
+                .register(meterRegistry);
+        this.stale = Counter.builder("whatsapp.status.stale")
+                .description("Receipts dropped because a higher status was already written")
+                .register(meterRegistry);
+    }
+
+    /**
+     * Adds one status callback to the current window.
+     */
+    public void record(WhatsAppStatusDTO status) {
+        DeliveryStatus deliveryStatus = toDeliveryStatus(status.status());
+        if (status.id() == null || deliveryStatus == null) {
+            log.debug("Status de WhatsApp no soportado: {}", status.status());
+            return;
+        }
+        received.increment();
+        if (isOutranked(status.id(), deliveryStatus)) {
+            stale.increment();
+            return;
+        }
+
+        LocalDateTime at = parseTimestamp(status.timestamp());
+        StatusUpdate update = new StatusUpdate(
+                deliveryStatus,
+                deliveryStatus == DeliveryStatus.DELIVERED || deliveryStatus == DeliveryStatus.READ ? at : null,
+                deliveryStatus == DeliveryStatus.READ ? at : null,
+                deliveryStatus == DeliveryStatus.FAILED ? describe(status.errors()) : null,
+                System.currentTimeMillis());
+
+        int size;
+        windowLock.readLock().lock();
+        try {
+            window.merge(status.id(), update, StatusUpdate::merge);
+            size = window.size();
+        } finally {
+            windowLock.readLock().unlock();
+        }
+
+        if (size >= flushThreshold) {
+            flush();
+        }
+    }
+
+    @Scheduled(fixedDelayString = "${whatsapp.status.flush-interval-ms:1000}")
+    public void scheduledFlush() {
+        try {
+            flush();
+        } catch (Exception e) {
+            log.error("Error aplicando recibos de WhatsApp: {}", e.getMessage());
+        }
+    }
+
+    @PreDestroy
+    public void flushOnShutdown() {
+        scheduledFlush();
+    }
+
+    /**
+     * Writes the current window as one batched UPDATE. Unmatched receipts
+     * still within retention are merged back into the next window.
+     */
+    public synchronized void flush() {
+        Map<String, StatusUpdate> batch;
+        windowLock.writeLock().lock();
+        try {
+            if (window.isEmpty()) {
+                return;
+            }
+            batch = window;
+            window = new ConcurrentHashMap<>();
+        } finally {
+            windowLock.writeLock().unlock();
+        }
+
+        List<Map.Entry<String, StatusUpdate>> entries = new ArrayList<>(batch.entrySet());
+        List<Object[]> args = new ArrayList<>(entries.size());
+        for (Map.Entry<String, StatusUpdate> entry : entries) {
+            StatusUpdate update = entry.getValue();
+            args.add(new Object[] {
+                    update.status().name(),
+                    update.error(),
+                    toTimestamp(update.deliveredAt()),
+                    toTimestamp(update.readAt()),
+                    entry.getKey(),
+                    update.status().ordinal() + 1
+            });
+        }
+        int[] argTypes = { Types.VARCHAR, Types.VARCHAR, Types.TIMESTAMP, Types.TIMESTAMP, Types.VARCHAR,
+                Types.INTEGER };
+
+        int[] counts;
+        long start = System.nanoTime();
+        try {
+            counts = jdbcTemplate.batchUpdate(UPDATE_SQL, args, argTypes);
+        } catch (RuntimeException e) {
+            // Keep the window for the next flush instead of losing it
+            requeue(entries);
+            throw e;
+        } finally {
+            flushTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        }
+
+        List<Map.Entry<String, StatusUpdate>> unmatched = new ArrayList<>();
+        long cutoff = System.currentTimeMillis() - unmatchedRetentionMs;
+        for (int i = 0; i < counts.length; i++) {
+            // Statement.SUCCESS_NO_INFO (driver without row counts) counts as applied
+            Map.Entry<String, StatusUpdate> entry = entries.get(i);
+            if (counts[i] != 0) {
+                markApplied(entry.getKey(), entry.getValue().status());
+                continue;
+            }
+            if (entry.getValue().firstSeenAt() >= cutoff) {
+                unmatched.add(entry);
+            } else {
+                dropped.increment();
+            }
+        }
+        requeue(unmatched);
+
+        log.debug("📬 Recibos de WhatsApp aplicados: {} | reintentar: {}",
+                entries.size() - unmatched.size(), unmatched.size());
+    }
+
+    private boolean isOutranked(String externalMessageId, DeliveryStatus status) {
+        synchronized (applied) {
+            DeliveryStatus written = applied.get(externalMessageId);
+            return written != null && written.compareTo(status) >= 0;
+        }
+    }
+
+    private void markApplied(String externalMessageId, DeliveryStatus status) {
+        synchronized (applied) {
+            applied.merge(externalMessageId, status, (a, b) -> a.compareTo(b) >= 0 ? a : b);
+        }
+    }
+
+    private void requeue(List<Map.Entry<String, StatusUpdate>> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+        windowLock.readLock().lock();
+        try {
+            for (Map.Entry<String, StatusUpdate> entry : entries) {
+                window.merge(entry.getKey(), entry.getValue(), StatusUpdate::merge);
+            }
+        } finally {
+            windowLock.readLock().unlock();
+        }
+    }
+
+    private static DeliveryStatus toDeliveryStatus(String status) {
+        if (status == null) {
+            return null;
+        }
+        return switch (status.toLowerCase(Locale.ROOT)) {
+            case "sent" -> DeliveryStatus.SENT;
+            case "delivered" -> DeliveryStatus.DELIVERED;
+            case "read" -> DeliveryStatus.READ;
+            case "failed" -> DeliveryStatus.FAILED;
+            default -> null;
+        };
+    }
+
+    private static LocalDateTime parseTimestamp(String epochSeconds) {
+        try {
+            return LocalDateTime.ofEpochSecond(Long.parseLong(epochSeconds), 0, ZoneOffset.UTC);
+        } catch (RuntimeException e) {
+            return LocalDateTime.now();
+        }
+    }
+
+    private static String describe(List<WhatsAppErrorDTO> errors) {
+        if (errors == null || errors.isEmpty()) {
+            return "WhatsApp informó el mensaje como fallido";
+        }
+        WhatsAppErrorDTO error = errors.get(0);
+        String text = error.message() != null ? error.message() : error.title();
+        return error.code() != null ? error.code() + ": " + text : text;
+    }
+
+    private static Timestamp toTimestamp(LocalDateTime value) {
+        return value != null ? Timestamp.valueOf(value) : null;
+    }
+
+    /**
+     * Coalesced state of one message within a window.
+     */
+    private record StatusUpdate(
+            DeliveryStatus status,
+            LocalDateTime deliveredAt,
+            LocalDateTime readAt,
+            String error,
+            long firstSeenAt) {
+
+        StatusUpdate merge(StatusUpdate other) {
+            return new StatusUpdate(
+                    status.compareTo(other.status) >= 0 ? status : other.status,
+                    earliest(deliveredAt, other.deliveredAt),
+                    earliest(readAt, other.readAt),
+                    error != null ? error : other.error,
+                    Math.min(firstSeenAt, other.firstSeenAt));
+        }
+
+        private static LocalDateTime earliest(LocalDateTime a, LocalDateTime b) {
+            if (a == null) {
+                return b;
+            }
+            if (b == null) {
+                return a;
+            }
+            return a.isBefore(b) ? a : b;
+        }
+    }
+}
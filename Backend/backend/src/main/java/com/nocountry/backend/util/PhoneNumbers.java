@@ -0,0 +1,53 @@
+package com.nocountry.backend.util;
+
+/**
+ * Phone number normalization shared by lead writes and the WhatsApp inbound path.
+ */
+public final class PhoneNumbers {
+
+    private static final int MAX_E164_DIGITS = 15;
+
+    private PhoneNumbers() {
+    }
+
+    /**
+     * Quita el "9" de celular de números argentinos en formato internacional
+     * (549XXXXXXXXXX -> 54XXXXXXXXXX), como los envía WhatsApp.
+     */
+    public static String normalizeArgentineMobile(String digits) {
+        if (digits == null) {
+            return null;
+        }
+        if (digits.startsWith("549") && digits.length() >= 13) {
+            return "54" + digits.substring(3);
+        }
+        return digits;
+    }
+
+    /**
+     * Returns the E.164 key for {@code phone} ("+5411..."), or null if it has
+     * no digits or too many to be a phone number. Formatting characters and a
+     * leading "00" are dropped. Kept in sync with V17__crm_lead_phone_e164.sql.
+     */
+    public static String toE164(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        StringBuilder digits = new StringBuilder(phone.length());
+        for (int i = 0; i < phone.length(); i++) {
+            char c = phone.charAt(i);
+            if (c >= '0' && c <= '9') {
+                digits.append(c);
+            }
+        }
+        String normalized = digits.toString();
+        if (normalized.startsWith("00")) {
+            normalized = normalized.substring(2);
+        }
+        normalized = normalizeArgentineMobile(normalized);
+        if (normalized.isEmpty() || normalized.length() > MAX_E164_DIGITS) {
+            return null;
+        }
+        return "+" + normalized;
+    }
+}
@@ -0,0 +1,25 @@
+-- Bulk runs of an automation rule over the leads assigned in automation_rule_lead
+CREATE TABLE automation_campaign (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    automation_rule_id BIGINT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    rate_per_minute INT NULL,
+    -- Keyset checkpoint: every lead with id <= last_lead_id has been processed
+    last_lead_id BIGINT NOT NULL DEFAULT 0,
+    total_leads INT NOT NULL DEFAULT 0,
+    processed_leads INT NOT NULL DEFAULT 0,
+    sent_count INT NOT NULL DEFAULT 0,
+    failed_count INT NOT NULL DEFAULT 0,
+    locked_by VARCHAR(100) NULL,
+    locked_until DATETIME NULL,
+    error_message TEXT,
+    created_at DATETIME NOT NULL,
+    started_at DATETIME NULL,
+    finished_at DATETIME NULL,
+    CONSTRAINT fk_campaign_automation_rule
+        FOREIGN KEY (automation_rule_id)
+        REFERENCES automation_rule(id)
+        ON DELETE CASCADE
+);
+
+CREATE INDEX idx_campaign_status_locked_until ON automation_campaign(status, locked_until);
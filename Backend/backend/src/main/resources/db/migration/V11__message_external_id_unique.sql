@@ -0,0 +1,15 @@
+-- Webhook redeliveries could insert the same external message twice.
+-- Keep the oldest row of each duplicate group and clear the id on the rest
+UPDATE message SET external_message_id = NULL WHERE external_message_id = '';
+
+UPDATE message m
+JOIN (
+    SELECT external_message_id, MIN(id) AS keep_id
+    FROM message
+    WHERE external_message_id IS NOT NULL
+    GROUP BY external_message_id
+    HAVING COUNT(*) > 1
+) d ON m.external_message_id = d.external_message_id AND m.id <> d.keep_id
+SET m.external_message_id = NULL;
+
+CREATE UNIQUE INDEX uk_message_external_message_id ON message(external_message_id);
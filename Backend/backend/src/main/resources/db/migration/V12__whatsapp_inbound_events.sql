@@ -0,0 +1,17 @@
+-- Durable queue of raw WhatsApp webhook deliveries. The webhook only inserts
+-- here and returns 200; workers process the rows asynchronously.
+CREATE TABLE whatsapp_inbound_event (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    payload LONGTEXT NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    received_at DATETIME(3) NOT NULL,
+    next_attempt_at DATETIME(3) NULL,
+    processed_at DATETIME(3) NULL,
+    locked_by VARCHAR(100) NULL,
+    locked_until DATETIME(3) NULL,
+    error_message TEXT
+);
+
+CREATE INDEX idx_inbound_event_status_received ON whatsapp_inbound_event(status, received_at);
+CREATE INDEX idx_inbound_event_status_locked_until ON whatsapp_inbound_event(status, locked_until);
@@ -0,0 +1,9 @@
+-- Inbound media is fetched asynchronously after the message is saved.
+-- media_status is NULL for messages without pending media (text, outbound, legacy rows)
+ALTER TABLE message
+    ADD COLUMN media_status VARCHAR(20) NULL,
+    ADD COLUMN media_external_id VARCHAR(255) NULL,
+    ADD COLUMN media_attempts INT NOT NULL DEFAULT 0,
+    ADD COLUMN media_next_attempt_at DATETIME NULL;
+
+CREATE INDEX idx_message_media_status ON message(media_status, media_next_attempt_at);
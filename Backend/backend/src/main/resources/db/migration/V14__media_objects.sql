@@ -0,0 +1,14 @@
+-- Content-addressed media: one row (and one file) per distinct SHA-256.
+-- Files live under media.storage.location/<sha[0:2]>/<sha[2:4]>/<sha><ext>
+CREATE TABLE media_object (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    sha256 CHAR(64) NOT NULL,
+    stored_filename VARCHAR(100) NOT NULL,
+    mime_type VARCHAR(150) NOT NULL,
+    size_bytes BIGINT NOT NULL,
+    ref_count INT NOT NULL DEFAULT 1,
+    created_at DATETIME NOT NULL,
+    last_referenced_at DATETIME NOT NULL,
+    CONSTRAINT uk_media_object_sha256 UNIQUE (sha256),
+    CONSTRAINT uk_media_object_stored_filename UNIQUE (stored_filename)
+);
@@ -0,0 +1,29 @@
+-- Agent-sent messages are saved as QUEUED and delivered by a worker from this outbox,
+-- so the API request never waits on WhatsApp or SMTP.
+ALTER TABLE message
+    ADD COLUMN delivery_status VARCHAR(20) NULL,
+    ADD COLUMN delivery_error TEXT NULL;
+
+CREATE TABLE message_outbox (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    message_id BIGINT NOT NULL,
+    channel VARCHAR(20) NOT NULL,
+    status VARCHAR(20) NOT NULL,
+    attempts INT NOT NULL DEFAULT 0,
+    subject VARCHAR(500) NULL,
+    reply_to_external_id VARCHAR(255) NULL,
+    created_at DATETIME(3) NOT NULL,
+    next_attempt_at DATETIME(3) NULL,
+    sent_at DATETIME(3) NULL,
+    locked_by VARCHAR(100) NULL,
+    locked_until DATETIME(3) NULL,
+    last_error TEXT,
+    CONSTRAINT uk_message_outbox_message UNIQUE (message_id),
+    CONSTRAINT fk_message_outbox_message
+        FOREIGN KEY (message_id)
+        REFERENCES message(id)
+        ON DELETE CASCADE
+);
+
+CREATE INDEX idx_message_outbox_status_next ON message_outbox(status, next_attempt_at);
+CREATE INDEX idx_message_outbox_status_locked_until ON message_outbox(status, locked_until);
@@ -0,0 +1,5 @@
+-- WhatsApp delivered/read receipts, applied in batches by WhatsAppStatusCoalescer
+-- through the unique index on external_message_id (V11).
+ALTER TABLE message
+    ADD COLUMN delivered_at DATETIME(3) NULL,
+    ADD COLUMN read_at DATETIME(3) NULL;
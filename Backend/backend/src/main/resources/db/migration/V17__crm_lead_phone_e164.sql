@@ -0,0 +1,13 @@
+-- Normalized, indexed phone key for matching inbound WhatsApp senders to leads.
+-- Same rules as PhoneNumbers.toE164: digits only, no "00" prefix, Argentine
+-- mobile "549" -> "54", at most 15 digits, "+" prefix.
+ALTER TABLE crm_lead ADD COLUMN phone_e164 VARCHAR(20) NULL;
+
+UPDATE crm_lead SET phone_e164 = REGEXP_REPLACE(phone, '[^0-9]', '') WHERE phone IS NOT NULL;
+UPDATE crm_lead SET phone_e164 = SUBSTRING(phone_e164, 3) WHERE phone_e164 LIKE '00%';
+UPDATE crm_lead SET phone_e164 = CONCAT('54', SUBSTRING(phone_e164, 4))
+    WHERE phone_e164 LIKE '549%' AND LENGTH(phone_e164) >= 13;
+UPDATE crm_lead SET phone_e164 = NULL WHERE phone_e164 = '' OR LENGTH(phone_e164) > 15;
+UPDATE crm_lead SET phone_e164 = CONCAT('+', phone_e164) WHERE phone_e164 IS NOT NULL;
+
+CREATE INDEX idx_crm_lead_phone_e164 ON crm_lead(phone_e164);
@@ -0,0 +1,12 @@
+-- Incremental IMAP sync checkpoint per mailbox folder. Mail is read by UID
+-- instead of the \Seen flag; a UIDVALIDITY change invalidates last_uid.
+CREATE TABLE imap_sync_state (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    host VARCHAR(255) NOT NULL,
+    username VARCHAR(255) NOT NULL,
+    folder_name VARCHAR(255) NOT NULL,
+    uid_validity BIGINT NOT NULL,
+    last_uid BIGINT NOT NULL,
+    updated_at DATETIME(3) NOT NULL,
+    CONSTRAINT uk_imap_sync_state_folder UNIQUE (host, username, folder_name)
+);
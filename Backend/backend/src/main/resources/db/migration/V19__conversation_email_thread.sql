@@ -0,0 +1,35 @@
+-- Email thread state kept on the conversation so a reply's In-Reply-To and
+-- References are read in O(1) instead of scanning every message.
+-- email_references holds the root Message-ID plus the most recent ones, at
+-- most 20 ids separated by spaces (ConversationRepository.MAX_EMAIL_REFERENCES).
+ALTER TABLE conversation
+    ADD COLUMN email_last_inbound_message_id VARCHAR(255) NULL,
+    ADD COLUMN email_references TEXT NULL;
+
+UPDATE conversation c
+JOIN (
+    SELECT m.conversation_id, m.external_message_id
+    FROM message m
+    JOIN (
+        SELECT conversation_id, MAX(id) AS last_id
+        FROM message
+        WHERE message_type = 'EMAIL' AND message_direction = 'INBOUND' AND external_message_id IS NOT NULL
+        GROUP BY conversation_id
+    ) last_inbound ON last_inbound.last_id = m.id
+) li ON li.conversation_id = c.id
+SET c.email_last_inbound_message_id = li.external_message_id;
+
+SET SESSION group_concat_max_len = 1048576;
+
+UPDATE conversation c
+JOIN (
+    SELECT conversation_id,
+           GROUP_CONCAT(external_message_id ORDER BY sent_at, id SEPARATOR ' ') AS refs,
+           COUNT(*) AS total
+    FROM message
+    WHERE message_type = 'EMAIL' AND external_message_id IS NOT NULL AND external_message_id <> ''
+    GROUP BY conversation_id
+) t ON t.conversation_id = c.id
+SET c.email_references = IF(t.total > 20,
+        CONCAT(SUBSTRING_INDEX(t.refs, ' ', 1), ' ', SUBSTRING_INDEX(t.refs, ' ', -19)),
+        t.refs);
@@ -0,0 +1,21 @@
+-- Open/click tracking. Pixel and redirect hits are buffered in memory and
+-- written by EmailTrackingBuffer in batches: one row per hit here, plus the
+-- aggregated counters on email_log (only ever changed by that flush).
+ALTER TABLE email_log
+    ADD COLUMN open_count INT NOT NULL DEFAULT 0,
+    ADD COLUMN click_count INT NOT NULL DEFAULT 0,
+    ADD COLUMN first_opened_at DATETIME(3) NULL,
+    ADD COLUMN last_opened_at DATETIME(3) NULL,
+    ADD COLUMN last_clicked_at DATETIME(3) NULL;
+
+-- Append-only; no FK so a deleted email_log never fails a whole batch
+CREATE TABLE email_tracking_event (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    email_log_id BIGINT NOT NULL,
+    event_type VARCHAR(16) NOT NULL,
+    url VARCHAR(2048) NULL,
+    ip_address VARCHAR(45) NULL,
+    user_agent VARCHAR(512) NULL,
+    occurred_at DATETIME(3) NOT NULL,
+    INDEX idx_email_tracking_event_log (email_log_id, occurred_at)
+);
@@ -0,0 +1,3 @@
+-- UIDs at or below last_uid whose download, parse or save failed, retried on
+-- the next syncs: "uid:attempts" pairs separated by commas.
+ALTER TABLE imap_sync_state ADD COLUMN retry_uids TEXT NULL;
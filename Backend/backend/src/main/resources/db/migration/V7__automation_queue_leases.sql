@@ -0,0 +1,7 @@
+-- Lease columns so several workers (and nodes) can claim queue rows without running them twice
+ALTER TABLE automation_execution_queue
+    ADD COLUMN locked_by VARCHAR(100) NULL,
+    ADD COLUMN locked_until DATETIME NULL;
+
+-- Index used to find EXECUTING rows whose lease expired (crashed workers)
+CREATE INDEX idx_queue_status_locked_until ON automation_execution_queue(status, locked_until);
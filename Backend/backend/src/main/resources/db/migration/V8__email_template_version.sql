@@ -0,0 +1,2 @@
+-- Version column so compiled templates can be cached by (id, version)
+ALTER TABLE email_template ADD COLUMN version BIGINT NOT NULL DEFAULT 0;
@@ -0,0 +1,32 @@
+-- Retry scheduling for failed automation executions
+ALTER TABLE automation_execution_queue
+    ADD COLUMN next_attempt_at DATETIME NULL,
+    ADD COLUMN actions_completed INT NOT NULL DEFAULT 0;
+
+-- Executions that used up their retry budget
+CREATE TABLE automation_dead_letter (
+    id BIGINT PRIMARY KEY AUTO_INCREMENT,
+    queue_item_id BIGINT NOT NULL,
+    automation_rule_id BIGINT NOT NULL,
+    lead_id BIGINT NOT NULL,
+    action_type VARCHAR(30) NULL,
+    actions_completed INT NOT NULL DEFAULT 0,
+    retry_count INT NOT NULL,
+    error_message TEXT,
+    failed_at DATETIME NOT NULL,
+    replayed_at DATETIME NULL,
+    CONSTRAINT fk_dead_letter_queue_item
+        FOREIGN KEY (queue_item_id)
+        REFERENCES automation_execution_queue(id)
+        ON DELETE CASCADE,
+    CONSTRAINT fk_dead_letter_automation_rule
+        FOREIGN KEY (automation_rule_id)
+        REFERENCES automation_rule(id)
+        ON DELETE CASCADE,
+    CONSTRAINT fk_dead_letter_crm_lead
+        FOREIGN KEY (lead_id)
+        REFERENCES crm_lead(id)
+        ON DELETE CASCADE
+);
+
+CREATE INDEX idx_dead_letter_replayed ON automation_dead_letter(replayed_at, failed_at);
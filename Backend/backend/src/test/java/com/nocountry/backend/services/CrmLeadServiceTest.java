@@ -0,0 +1,58 @@
+package com.nocountry.backend.services;
+
+import com.nocountry.backend.dto.UpdateCrmLeadDTO;
+import com.nocountry.backend.entity.CrmLead;
+import com.nocountry.backend.enums.Stage;
+import com.nocountry.backend.mappers.AccountMapper;
+import com.nocountry.backend.mappers.CrmLeadMapper;
+import com.nocountry.backend.repository.CrmLeadRepository;
+import com.nocountry.backend.repository.TagRepository;
+import com.nocountry.backend.repository.UserRepository;
+import com.nocountry.backend.services.whatsapp.ContactRouteCache;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.util.HashSet;
+import java.util.Optional;
+
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks that {@link CrmLeadService#update} invalidates cached WhatsApp routes.
+ */
+class CrmLeadServiceTest {
+
+    private final CrmLeadRepository crmLeadRepository = mock(CrmLeadRepository.class);
+    private final ContactRouteCache contactRouteCache = mock(ContactRouteCache.class);
+    private CrmLeadService service;
+
+    @BeforeEach
+    void setUp() {
+        service = new CrmLeadService(crmLeadRepository, mock(TagRepository.class),
+                new CrmLeadMapper(mock(AccountMapper.class)), mock(LeadHistoryService.class),
+                mock(NotificationService.class), mock(UserRepository.class), mock(ApplicationEventPublisher.class),
+                contactRouteCache);
+
+        CrmLead lead = CrmLead.builder().id(7L).name("Diego").email("diego@example.com")
+                .phone("+54 9 11 2345-6789").stage(Stage.ACTIVE_LEAD).tag(new HashSet<>()).build();
+        when(crmLeadRepository.findById(7L)).thenReturn(Optional.of(lead));
+        when(crmLeadRepository.save(any(CrmLead.class))).thenAnswer(invocation -> invocation.getArgument(0));
+    }
+
+    @Test
+    void phoneChangeEvictsTheLeadAndTheNewNumber() {
+        service.update(7L, new UpdateCrmLeadDTO(null, null, "0054 9 351 555-1234", null, null, null, null, null));
+
+        verify(contactRouteCache).evictLeadAfterCommit(7L);
+        verify(contactRouteCache).evictPhoneAfterCommit("+543515551234");
+    }
+
+    @Test
+    void otherChangesKeepTheRoute() {
+        service.update(7L, new UpdateCrmLeadDTO("Diego R.", null, null, null, null, null, null, null));
+
+        verifyNoInteractions(contactRouteCache);
+    }
+}
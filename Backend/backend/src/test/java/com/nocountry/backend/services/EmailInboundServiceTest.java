@@ -0,0 +1,147 @@
+package com.nocountry.backend.services;
+
+import com.nocountry.backend.entity.Conversation;
+import com.nocountry.backend.entity.CrmLead;
+import com.nocountry.backend.entity.ImapSyncState;
+import com.nocountry.backend.entity.Message;
+import com.nocountry.backend.repository.ConversationRepository;
+import com.nocountry.backend.repository.CrmLeadRepository;
+import com.nocountry.backend.repository.ImapSyncStateRepository;
+import com.nocountry.backend.repository.MessageRepository;
+import com.nocountry.backend.services.email.EmailConfigService.EmailCredentials;
+import com.nocountry.backend.services.email.ReplyStripper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jakarta.mail.Folder;
+import jakarta.mail.MessagingException;
+import jakarta.mail.UIDFolder;
+import jakarta.mail.internet.InternetAddress;
+import jakarta.mail.internet.MimeMessage;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.scheduling.concurrent.ThreadPoolTaskExecutor;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.List;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.AdditionalMatchers.aryEq;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs {@link EmailInboundService#syncFolder} against a mocked IMAP folder.
+ */
+class EmailInboundServiceTest {
+
+    private static final EmailCredentials CREDENTIALS =
+            new EmailCredentials("smtp.test", 587, "imap.test", 993, "crm@test", "secret", "INBOX");
+
+    private final CrmLeadRepository leadRepository = mock(CrmLeadRepository.class);
+    private final ConversationRepository conversationRepository = mock(ConversationRepository.class);
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+    private final ImapSyncStateRepository syncStateRepository = mock(ImapSyncStateRepository.class);
+
+    private ThreadPoolTaskExecutor parseExecutor;
+    private EmailInboundService service;
+    private ImapSyncState state;
+
+    @BeforeEach
+    void setUp() {
+        parseExecutor = new ThreadPoolTaskExecutor();
+        parseExecutor.setCorePoolSize(2);
+        parseExecutor.initialize();
+        service = new EmailInboundService(leadRepository, conversationRepository, messageRepository,
+                syncStateRepository, new SimpleMeterRegistry(), new ReplyStripper(List.of()), parseExecutor,
+                mock(PlatformTransactionManager.class));
+        ReflectionTestUtils.setField(service, "maxRetries", 5);
+
+        CrmLead lead = CrmLead.builder().id(7L).email("lead@example.com").build();
+        when(leadRepository.findByLowerEmailIn(anyCollection())).thenReturn(List.of(lead));
+        when(leadRepository.findById(7L)).thenReturn(Optional.of(lead));
+        when(messageRepository.findExistingExternalIds(anyCollection())).thenReturn(List.of());
+        when(conversationRepository.findFirstByCrmLead(lead))
+                .thenReturn(Optional.of(Conversation.builder().id(3L).build()));
+
+        state = ImapSyncState.builder().host("imap.test").username("crm@test").folderName("INBOX")
+                .uidValidity(1L).lastUid(0L).build();
+        when(syncStateRepository.findByHostAndUsernameAndFolderName("imap.test", "crm@test", "INBOX"))
+                .thenReturn(Optional.of(state));
+    }
+
+    @AfterEach
+    void tearDown() {
+        parseExecutor.shutdown();
+    }
+
+    @Test
+    void failedMessageInTheMiddleIsRetriedOnNextSync() throws Exception {
+        Folder folder = mock(Folder.class, withSettings().extraInterfaces(UIDFolder.class));
+        UIDFolder uidFolder = (UIDFolder) folder;
+        when(folder.getFullName()).thenReturn("INBOX");
+        when(uidFolder.getUIDValidity()).thenReturn(1L);
+
+        MimeMessage m1 = mail("<id-1>", "Primero");
+        MimeMessage m2 = mail("<id-2>", "Segundo");
+        MimeMessage m3 = mail("<id-3>", "Tercero");
+        // La descarga del cuerpo falla la primera vez
+        when(m2.getContent()).thenThrow(new MessagingException("connection reset")).thenReturn("Segundo");
+        when(uidFolder.getUID(m1)).thenReturn(1L);
+        when(uidFolder.getUID(m2)).thenReturn(2L);
+        when(uidFolder.getUID(m3)).thenReturn(3L);
+
+        when(uidFolder.getMessagesByUID(1L, UIDFolder.LASTUID))
+                .thenReturn(new jakarta.mail.Message[] { m1, m2, m3 });
+        assertEquals(2, service.syncFolder(folder, CREDENTIALS));
+        assertEquals(List.of("<id-1>", "<id-3>"), savedMessageIds());
+        assertEquals(3L, state.getLastUid());
+        assertEquals("2:1", state.getRetryUids());
+
+        // "UID 4:*" devuelve el último mensaje aunque no haya nada nuevo
+        clearInvocations(messageRepository);
+        when(uidFolder.getMessagesByUID(4L, UIDFolder.LASTUID)).thenReturn(new jakarta.mail.Message[] { m3 });
+        when(uidFolder.getMessagesByUID(aryEq(new long[] { 2L }))).thenReturn(new jakarta.mail.Message[] { m2 });
+        assertEquals(1, service.syncFolder(folder, CREDENTIALS));
+        assertEquals(List.of("<id-2>"), savedMessageIds());
+        assertEquals(3L, state.getLastUid());
+        assertNull(state.getRetryUids());
+    }
+
+    @Test
+    void retriesAreGivenUpAfterMaxAttempts() throws Exception {
+        Folder folder = mock(Folder.class, withSettings().extraInterfaces(UIDFolder.class));
+        UIDFolder uidFolder = (UIDFolder) folder;
+        when(folder.getFullName()).thenReturn("INBOX");
+        when(uidFolder.getUIDValidity()).thenReturn(1L);
+        state.setLastUid(3L);
+        state.setRetryUids("2:4");
+
+        MimeMessage m2 = mail("<id-2>", "Segundo");
+        when(m2.getContent()).thenThrow(new MessagingException("connection reset"));
+        when(uidFolder.getUID(m2)).thenReturn(2L);
+        when(uidFolder.getMessagesByUID(4L, UIDFolder.LASTUID)).thenReturn(new jakarta.mail.Message[0]);
+        when(uidFolder.getMessagesByUID(aryEq(new long[] { 2L }))).thenReturn(new jakarta.mail.Message[] { m2 });
+
+        assertEquals(0, service.syncFolder(folder, CREDENTIALS));
+        assertNull(state.getRetryUids());
+    }
+
+    private List<String> savedMessageIds() {
+        ArgumentCaptor<Message> saved = ArgumentCaptor.forClass(Message.class);
+        verify(messageRepository, atLeast(0)).save(saved.capture());
+        return saved.getAllValues().stream().map(Message::getExternalMessageId).sorted().toList();
+    }
+
+    private static MimeMessage mail(String messageId, String body) throws Exception {
+        MimeMessage mail = mock(MimeMessage.class);
+        when(mail.getFrom()).thenReturn(new InternetAddress[] { new InternetAddress("Lead@Example.com") });
+        when(mail.getMessageID()).thenReturn(messageId);
+        when(mail.getSize()).thenReturn(100);
+        when(mail.isMimeType("text/plain")).thenReturn(true);
+        when(mail.getContent()).thenReturn(body);
+        return mail;
+    }
+}
@@ -0,0 +1,68 @@
+package com.nocountry.backend.services.automation;
+
+import com.nocountry.backend.repository.AutomationExecutionQueueRepository;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Drives {@link AutomationTimer} with a manual clock.
+ */
+class AutomationTimerTest {
+
+    private static final long START = 1_700_000_000_000L;
+
+    private final AtomicLong clock = new AtomicLong(START);
+    private final AutomationTimer timer =
+            new AutomationTimer(mock(AutomationExecutionQueueRepository.class), 15, 100, clock::get);
+
+    private static LocalDateTime at(long epochMs) {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(epochMs), ZoneId.systemDefault());
+    }
+
+    private int advanceTo(long epochMs) {
+        clock.set(epochMs);
+        return timer.advance();
+    }
+
+    @Test
+    void itemFiresOnceWhenDue() {
+        timer.schedule(1L, at(START + 5_000));
+        assertEquals(0, advanceTo(START + 4_000));
+        assertEquals(1, advanceTo(START + 6_000));
+        assertEquals(0, timer.pendingCount());
+        assertEquals(0, advanceTo(START + 60_000));
+    }
+
+    @Test
+    void reschedulingLaterIgnoresTheOldDeadline() {
+        timer.schedule(1L, at(START + 5_000));
+        timer.schedule(1L, at(START + 120_000));
+
+        assertEquals(0, advanceTo(START + 10_000));
+        assertEquals(1, timer.pendingCount());
+        assertEquals(1, advanceTo(START + 121_000));
+        assertEquals(0, timer.pendingCount());
+    }
+
+    @Test
+    void reschedulingEarlierFiresAtTheNewDeadlineOnly() {
+        timer.schedule(1L, at(START + 120_000));
+        timer.schedule(1L, at(START + 5_000));
+
+        assertEquals(1, advanceTo(START + 6_000));
+        assertEquals(0, advanceTo(START + 121_000));
+    }
+
+    @Test
+    void itemsOutsideTheWindowAreLeftForPreload() {
+        timer.schedule(1L, at(START + 16 * 60_000));
+        assertEquals(0, timer.pendingCount());
+    }
+}
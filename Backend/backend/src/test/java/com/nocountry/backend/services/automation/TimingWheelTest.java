@@ -0,0 +1,93 @@
+package com.nocountry.backend.services.automation;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Advances a small {@link TimingWheel} (4 x 10 ms, 4 x 40 ms, 4 x 160 ms) tick by tick.
+ */
+class TimingWheelTest {
+
+    private final TimingWheel<String> wheel = new TimingWheel<>(10, 0, 4, 4, 4);
+    private final List<String> fired = new ArrayList<>();
+
+    /**
+     * Advances one tick at a time and returns the tick at which {@code value} fired.
+     */
+    private long firesAt(String value, long untilMs) {
+        for (long now = 10; now <= untilMs; now += 10) {
+            wheel.advance(now, fired::add);
+            if (fired.contains(value)) {
+                return now;
+            }
+        }
+        return -1;
+    }
+
+    @Test
+    void entryFiresOnTheTickThatReachesItsDeadline() {
+        assertTrue(wheel.add("a", 25));
+        assertEquals(30, firesAt("a", 100));
+    }
+
+    @Test
+    void pastDeadlineFiresOnTheNextTick() {
+        wheel.advance(100, fired::add);
+        assertTrue(wheel.add("late", 50));
+        assertEquals(0, wheel.advance(105, fired::add));
+        assertEquals(1, wheel.advance(110, fired::add));
+        assertEquals(List.of("late"), fired);
+    }
+
+    @Test
+    void finestLevelSlotsAreReusedAfterRollover() {
+        // El nivel 0 tiene 4 slots: 15 y 55 caen en el mismo slot en vueltas distintas
+        assertTrue(wheel.add("first", 15));
+        assertTrue(wheel.add("second", 55));
+
+        wheel.advance(20, fired::add);
+        assertEquals(List.of("first"), fired);
+        wheel.advance(50, fired::add);
+        assertEquals(List.of("first"), fired);
+        wheel.advance(60, fired::add);
+        assertEquals(List.of("first", "second"), fired);
+    }
+
+    @Test
+    void longDelaysCascadeDownEveryLevel() {
+        // 500 ms está en el nivel 2 (slots de 160 ms) y baja por el 1 y el 0
+        assertTrue(wheel.add("far", 500));
+        assertTrue(wheel.add("mid", 130));
+        assertEquals(140, firesAt("mid", 1000));
+        assertEquals(510, firesAt("far", 1000));
+    }
+
+    @Test
+    void manyRoundsOfTheFinestLevelKeepEntriesOrdered() {
+        for (int i = 0; i < 60; i++) {
+            assertTrue(wheel.add("e" + i, i * 10L + 5));
+        }
+        wheel.advance(600, fired::add);
+        List<String> expected = new ArrayList<>();
+        for (int i = 0; i < 60; i++) {
+            expected.add("e" + i);
+        }
+        assertEquals(expected, fired);
+    }
+
+    @Test
+    void deadlinesBeyondTheHorizonAreRejected() {
+        assertEquals(640, wheel.horizonMs());
+        assertFalse(wheel.add("too-far", 640));
+        assertTrue(wheel.add("last", 639));
+
+        // El horizonte avanza con el nivel superior
+        wheel.advance(160, fired::add);
+        assertEquals(800, wheel.horizonMs());
+        assertTrue(wheel.add("later", 700));
+    }
+}
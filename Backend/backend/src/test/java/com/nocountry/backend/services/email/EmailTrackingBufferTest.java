@@ -0,0 +1,119 @@
+package com.nocountry.backend.services.email;
+
+import com.nocountry.backend.enums.EmailTrackingEventType;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.sql.Timestamp;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks what {@link EmailTrackingBuffer#flush} writes for a set of queued hits.
+ */
+class EmailTrackingBufferTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void coalescesHitsIntoOneUpdatePerEmail() throws Exception {
+        EmailTrackingBuffer buffer = buffer(100, 1000);
+        buffer.record(EmailTrackingEventType.OPEN, 1L, null, "10.0.0.1", "Mail");
+        Thread.sleep(5);
+        buffer.record(EmailTrackingEventType.CLICK, 2L, "https://example.com", "10.0.0.2", "Chrome");
+        buffer.record(EmailTrackingEventType.OPEN, 1L, null, "10.0.0.1", "Mail");
+        buffer.record(EmailTrackingEventType.CLICK, 1L, "https://example.com/a", "10.0.0.1", "Mail");
+
+        buffer.flush();
+
+        List<Object[]> inserts = captureBatch("INSERT INTO email_tracking_event");
+        assertEquals(4, inserts.size());
+        assertEquals(1L, inserts.get(0)[0]);
+        assertEquals("OPEN", inserts.get(0)[1]);
+        assertEquals("https://example.com", inserts.get(1)[2]);
+
+        List<Object[]> updates = captureBatch("UPDATE email_log");
+        assertEquals(2, updates.size());
+        Object[] first = updates.get(0);
+        assertEquals(1L, first[7]);
+        assertEquals(2, first[0]);
+        assertEquals(1, first[1]);
+        Timestamp firstOpen = (Timestamp) first[2];
+        Timestamp lastOpen = (Timestamp) first[3];
+        assertTrue(firstOpen.before(lastOpen));
+        assertEquals(lastOpen, first[4]);
+        assertNotNull(first[5]);
+
+        Object[] second = updates.get(1);
+        assertEquals(2L, second[7]);
+        assertEquals(0, second[0]);
+        assertEquals(1, second[1]);
+        assertNull(second[2]);
+        assertNull(second[3]);
+        assertNotNull(second[5]);
+    }
+
+    @Test
+    void writesOneTransactionPerChunk() {
+        EmailTrackingBuffer buffer = buffer(100, 2);
+        for (int i = 0; i < 5; i++) {
+            buffer.record(EmailTrackingEventType.OPEN, 7L, null, null, null);
+        }
+
+        buffer.flush();
+
+        verify(jdbcTemplate, times(3)).batchUpdate(startsWith("INSERT"), anyList(), any(int[].class));
+        verify(jdbcTemplate, times(3)).batchUpdate(startsWith("UPDATE"), anyList(), any(int[].class));
+        buffer.flush();
+        verifyNoMoreInteractions(jdbcTemplate);
+    }
+
+    @Test
+    void failedChunkIsQueuedAgain() {
+        EmailTrackingBuffer buffer = buffer(100, 1000);
+        buffer.record(EmailTrackingEventType.OPEN, 1L, null, null, null);
+        buffer.record(EmailTrackingEventType.CLICK, 1L, "https://example.com", null, null);
+        when(jdbcTemplate.batchUpdate(startsWith("INSERT"), anyList(), any(int[].class)))
+                .thenThrow(new DataAccessResourceFailureException("db down"))
+                .thenReturn(new int[] { 1, 1 });
+
+        assertThrows(DataAccessResourceFailureException.class, buffer::flush);
+        buffer.flush();
+
+        List<Object[]> updates = captureBatch("UPDATE email_log");
+        assertEquals(1, updates.size());
+        assertEquals(1, updates.get(0)[0]);
+        assertEquals(1, updates.get(0)[1]);
+    }
+
+    @Test
+    void dropsHitsWhenFull() {
+        EmailTrackingBuffer buffer = buffer(2, 1000);
+        for (int i = 0; i < 3; i++) {
+            buffer.record(EmailTrackingEventType.OPEN, 1L, null, null, null);
+        }
+
+        assertEquals(1.0, meterRegistry.counter("email.tracking.dropped").count());
+        assertEquals(2.0, meterRegistry.get("email.tracking.pending").gauge().value());
+    }
+
+    private EmailTrackingBuffer buffer(int capacity, int batchSize) {
+        return new EmailTrackingBuffer(jdbcTemplate, mock(PlatformTransactionManager.class), meterRegistry,
+                capacity, batchSize);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<Object[]> captureBatch(String sqlPrefix) {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, atLeastOnce()).batchUpdate(startsWith(sqlPrefix), rows.capture(), any(int[].class));
+        return rows.getValue();
+    }
+}
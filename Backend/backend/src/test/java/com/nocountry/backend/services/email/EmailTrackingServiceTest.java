@@ -0,0 +1,98 @@
+package com.nocountry.backend.services.email;
+
+import com.nocountry.backend.repository.EmailLogRepository;
+import org.jsoup.Jsoup;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.util.UriComponents;
+import org.springframework.web.util.UriComponentsBuilder;
+import org.springframework.web.util.UriUtils;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks the signed tracking URLs of {@link EmailTrackingService}.
+ */
+class EmailTrackingServiceTest {
+
+    private static final String JWT_KEY = "626306b2a19cd2db4e4e4892a4e5bfc6a80aa975753c999797d369e977f13b07";
+    private static final String TARGET = "https://example.com/promo?a=1&b=2";
+
+    private final EmailTrackingService service = tracking("");
+
+    @Test
+    void acceptsTheClickUrlItBuilt() {
+        ClickParts click = parse(service.clickUrl(42L, TARGET));
+        assertEquals(42L, click.id());
+        assertEquals(TARGET, click.target());
+        assertTrue(service.isValidClick(click.id(), click.target(), click.signature()));
+    }
+
+    @Test
+    void rejectsTamperedClickUrl() {
+        ClickParts click = parse(service.clickUrl(42L, TARGET));
+
+        assertFalse(service.isValidClick(click.id(), "https://evil.example/phish", click.signature()));
+        assertFalse(service.isValidClick(43L, click.target(), click.signature()));
+        String flipped = (click.signature().charAt(0) == 'A' ? "B" : "A") + click.signature().substring(1);
+        assertFalse(service.isValidClick(click.id(), click.target(), flipped));
+        assertFalse(service.isValidClick(click.id(), click.target(), null));
+        // Aun firmada, una URL no http(s) nunca se redirige
+        assertFalse(service.isValidClick(click.id(), "javascript:alert(1)", click.signature()));
+    }
+
+    @Test
+    void rejectsOpenPixelOfAnotherEmail() {
+        String pixel = service.pixelUrl(42L);
+        String signature = pixel.substring(pixel.lastIndexOf('/') + 1, pixel.length() - ".gif".length());
+        assertTrue(service.isValidOpen(42L, signature));
+        assertFalse(service.isValidOpen(43L, signature));
+    }
+
+    @Test
+    void doesNotSignWithTheJwtKey() {
+        // Con la clave JWT en crudo como secreto la firma sería otra: se usa una subclave derivada
+        EmailTrackingService rawJwtKey = tracking(JWT_KEY);
+        assertNotEquals(rawJwtKey.pixelUrl(42L), service.pixelUrl(42L));
+
+        EmailTrackingService dedicated = tracking("tracking-only-secret");
+        assertNotEquals(dedicated.pixelUrl(42L), service.pixelUrl(42L));
+        ClickParts click = parse(dedicated.clickUrl(42L, TARGET));
+        assertFalse(service.isValidClick(click.id(), click.target(), click.signature()));
+    }
+
+    @Test
+    void instrumentRoutesLinksThroughSignedRedirect() {
+        String html = service.instrument("<p><a href=\"" + TARGET.replace("&", "&amp;") + "\">Ver</a>"
+                + " <a href=\"mailto:ventas@acme.com\">Escribinos</a></p>", 42L);
+
+        List<String> hrefs = Jsoup.parse(html).select("a[href]").eachAttr("href");
+        ClickParts click = parse(hrefs.get(0));
+        assertTrue(service.isValidClick(click.id(), click.target(), click.signature()));
+        assertEquals("mailto:ventas@acme.com", hrefs.get(1));
+        assertTrue(html.contains(service.pixelUrl(42L)));
+    }
+
+    private static EmailTrackingService tracking(String secret) {
+        return new EmailTrackingService(mock(EmailLogRepository.class), true, "https://crm.example.com/",
+                secret, JWT_KEY);
+    }
+
+    /**
+     * Lo que recibe {@code EmailTrackingController} de una URL de clic.
+     */
+    private static ClickParts parse(String url) {
+        UriComponents uri = UriComponentsBuilder.fromUriString(url).build(true);
+        List<String> path = uri.getPathSegments();
+        assertEquals(List.of("api", "track", "click"), path.subList(0, 3));
+        return new ClickParts(Long.valueOf(path.get(3)),
+                UriUtils.decode(path.get(4), StandardCharsets.UTF_8),
+                UriUtils.decode(uri.getQueryParams().getFirst("u"), StandardCharsets.UTF_8));
+    }
+
+    private record ClickParts(Long id, String signature, String target) {
+    }
+}
@@ -0,0 +1,124 @@
+package com.nocountry.backend.services.email;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old per-call regex {@code cleanReply} with {@link ReplyStripper}
+ * on the replies in {@code src/test/resources/reply-corpus}, plus two
+ * generated cases: a 20-level quoted thread and ~2 KB of text full of dates
+ * and "el"/"on" with no quote marker (the old lazy {@code .+?\d{4}.*?}
+ * pattern backtracks super-linearly over it; already ~0.3 s per call at 2 KB).
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=com.nocountry.backend.services.email.ReplyStripperBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ReplyStripperBenchmark {
+
+    @Param({ "gmail-es", "gmail-en", "outlook-es", "outlook-en", "iphone-signature", "apple-mail-en",
+            "no-quote", "deep-thread", "pathological" })
+    public String sample;
+
+    private String text;
+    private ReplyStripper stripper;
+
+    @Setup
+    public void setUp() {
+        String raw = switch (sample) {
+            case "deep-thread" -> deepThread(20);
+            case "pathological" -> pathological(2 * 1024);
+            default -> load("reply-corpus/" + sample + ".txt");
+        };
+        // Como Jsoup.parse(html).text(): todo en una línea con espacios simples
+        text = raw.replaceAll("\\s+", " ").trim();
+        stripper = new ReplyStripper(List.of());
+    }
+
+    @Benchmark
+    public String legacyCleanReply() {
+        String cleaned = text.replaceAll("[\\u00A0\\u2007\\u202F]+", " ").trim();
+        String[] splitters = { "escribió:", "wrote:", "Sent from my iPhone", "Enviado desde mi iPhone",
+                "Enviado desde mi Android" };
+        for (String splitter : splitters) {
+            int idx = cleaned.lastIndexOf(splitter);
+            if (idx > 0) {
+                cleaned = cleaned.substring(0, idx).trim();
+            }
+        }
+        cleaned = cleaned.replaceAll("(?s)" + "(?i)(?:El|On)\\s+.+?\\d{4}.*?(?:a\\s+la\\(s\\)|at)\\s+\\d{1,2}:\\d{2}.*", "")
+                .trim();
+        cleaned = cleaned.replaceAll("(?i)el\\s+\\w{3},?\\s+\\d{1,2}\\s+\\w{3}.*$", "").trim();
+        return cleaned;
+    }
+
+    @Benchmark
+    public String replyStripper() {
+        return stripper.strip(text);
+    }
+
+    private static String load(String resource) {
+        try (InputStream in = ReplyStripperBenchmark.class.getClassLoader().getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IllegalStateException("Corpus sample not found: " + resource);
+            }
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static String deepThread(int depth) {
+        StringBuilder thread = new StringBuilder("Perfecto, avanzamos con la opción B.\n\n");
+        for (int level = 0; level < depth; level++) {
+            String quote = ">".repeat(level + 1) + " ";
+            thread.append(quote).append("El mar, ").append(1 + level % 28).append(" may 2024 a las 1")
+                    .append(level % 10).append(":30, Contacto ").append(level)
+                    .append(" <contacto").append(level).append("@example.com> escribió:\n")
+                    .append(quote).append("Te paso los números del trimestre ").append(level)
+                    .append(": 1200 unidades, 3400 en stock y el resto en tránsito.\n\n");
+        }
+        return thread.toString();
+    }
+
+    private static String pathological(int length) {
+        StringBuilder text = new StringBuilder();
+        int n = 0;
+        while (text.length() < length) {
+            text.append("el pedido ").append(1000 + n % 9000).append(" on hold, el lote ")
+                    .append(2000 + n).append(" sale el martes ").append(n % 28 + 1).append(" de mayo. ");
+            n++;
+        }
+        return text.toString();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(ReplyStripperBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,85 @@
+package com.nocountry.backend.services.email;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.regex.Pattern;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks {@link ReplyStripper} against the replies in {@code src/test/resources/reply-corpus}.
+ */
+class ReplyStripperTest {
+
+    private final ReplyStripper stripper = new ReplyStripper(List.of());
+
+    @ParameterizedTest(name = "{0}")
+    @CsvSource(delimiter = '|', textBlock = """
+            gmail-en         | Thanks John, that works for us. Please send the contract when it is ready. Best, Sarah
+            gmail-es         | Hola Marta, sí, el martes nos viene bien. ¿Pueden mandar la cotización antes? Saludos, Diego
+            outlook-en       | Approved on our end. Go ahead with the order.
+            outlook-es       | Buenas tardes, adjunto la orden de compra firmada. Quedo atento a la factura. Ing. Pablo Ríos Compras - Distribuidora Norte
+            apple-mail-en    | Perfect, see you there.
+            iphone-signature | Dale, lo veo mañana a primera hora y te confirmo.
+            """)
+    void stripsQuotedHistory(String sample, String expected) throws IOException {
+        assertEquals(expected, stripper.strip(load(sample)));
+    }
+
+    @Test
+    void keepsReplyWithoutQuote() throws IOException {
+        // Tiene "el", fechas y años, pero ninguna atribución
+        String text = load("no-quote");
+        assertEquals(text, stripper.strip(text));
+    }
+
+    @Test
+    void cutsAtTheFirstAttributionOfANestedThread() {
+        String text = "Perfecto, avanzamos. El mar, 5 mar 2024 a las 11:20, Ana <ana@example.com> escribió: "
+                + "> Confirmo el pedido. > El lun, 4 mar 2024 a las 10:15, Diego <diego@example.com> escribió: "
+                + ">> Les paso la cotización.";
+        assertEquals("Perfecto, avanzamos.", stripper.strip(text));
+    }
+
+    @Test
+    void cutsAtGmailDateHeaderWithoutMarker() {
+        assertEquals("Nos vemos el jueves.",
+                stripper.strip("Nos vemos el jueves. El lun, 4 mar 2024 Marta Gómez"));
+    }
+
+    @Test
+    void keepsEverythingWhenTheTextStartsWithAQuote() {
+        String text = "El lun, 4 mar 2024 a las 10:15, Marta <marta@acme.com.ar> escribió: > Hola";
+        assertEquals(text, stripper.strip(text));
+    }
+
+    @Test
+    void normalizesNonBreakingSpaces() {
+        assertEquals("Listo, gracias.",
+                stripper.strip("Listo, gracias.\u00A0Enviado\u00A0desde\u00A0mi\u00A0iPhone"));
+    }
+
+    @Test
+    void appliesExtraRules() {
+        ReplyStripper withRule = new ReplyStripper(List.of(QuoteRule.pattern(Pattern.compile("_{5,}"))));
+        assertEquals("Recibido.", withRule.strip("Recibido. ________ Mensaje anterior"));
+        assertEquals("", withRule.strip(null));
+    }
+
+    /**
+     * Como {@code Jsoup.parse(html).text()}: todo en una línea con espacios simples.
+     */
+    private static String load(String sample) throws IOException {
+        try (InputStream in = ReplyStripperTest.class.getClassLoader()
+                .getResourceAsStream("reply-corpus/" + sample + ".txt")) {
+            assertNotNull(in, "Corpus sample not found: " + sample);
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8).replaceAll("\\s+", " ").trim();
+        }
+    }
+}
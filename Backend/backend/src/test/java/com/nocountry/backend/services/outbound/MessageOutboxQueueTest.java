@@ -0,0 +1,87 @@
+package com.nocountry.backend.services.outbound;
+
+import com.nocountry.backend.entity.Message;
+import com.nocountry.backend.entity.MessageOutbox;
+import com.nocountry.backend.enums.Channel;
+import com.nocountry.backend.enums.DeliveryStatus;
+import com.nocountry.backend.enums.OutboxStatus;
+import com.nocountry.backend.repository.ConversationRepository;
+import com.nocountry.backend.repository.MessageOutboxRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks that {@link MessageOutboxQueue} only records results under the lease they were claimed with.
+ */
+class MessageOutboxQueueTest {
+
+    private final MessageOutboxRepository outboxRepository = mock(MessageOutboxRepository.class);
+    private final MessageOutboxQueue queue = new MessageOutboxQueue(outboxRepository, mock(ConversationRepository.class));
+    private MessageOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(queue, "maxAttempts", 5);
+        outbox = MessageOutbox.builder()
+                .id(1L)
+                .message(Message.builder().id(10L).deliveryStatus(DeliveryStatus.QUEUED).build())
+                .channel(Channel.WHATSAPP)
+                .status(OutboxStatus.PROCESSING)
+                .attempts(2)
+                .lockedBy("node-a")
+                .build();
+        when(outboxRepository.findClaimedWithMessage(1L, OutboxStatus.PROCESSING, "node-a"))
+                .thenReturn(Optional.of(outbox));
+    }
+
+    @Test
+    void ownerRecordsTheResult() {
+        queue.markSent(1L, "node-a", 2, "wamid.1");
+
+        assertEquals(OutboxStatus.SENT, outbox.getStatus());
+        assertEquals(DeliveryStatus.SENT, outbox.getMessage().getDeliveryStatus());
+        assertEquals("wamid.1", outbox.getMessage().getExternalMessageId());
+        assertNull(outbox.getLockedBy());
+    }
+
+    @Test
+    void resultOfALostLeaseIsDropped() {
+        when(outboxRepository.findClaimedWithMessage(1L, OutboxStatus.PROCESSING, "node-b"))
+                .thenReturn(Optional.empty());
+
+        queue.markSent(1L, "node-b", 2, "wamid.1");
+        assertFalse(queue.markFailed(1L, "node-b", 2, "timeout"));
+
+        assertEquals(OutboxStatus.PROCESSING, outbox.getStatus());
+        assertNull(outbox.getNextAttemptAt());
+        assertEquals("node-a", outbox.getLockedBy());
+    }
+
+    @Test
+    void resultOfAnEarlierClaimOnTheSameNodeIsDropped() {
+        // El lease venció y este mismo nodo volvió a reclamar la fila (intento 3)
+        outbox.setAttempts(3);
+
+        assertFalse(queue.markFailed(1L, "node-a", 2, "timeout"));
+        queue.markSent(1L, "node-a", 2, "wamid.1");
+
+        assertEquals(OutboxStatus.PROCESSING, outbox.getStatus());
+        assertNull(outbox.getLastError());
+        assertNull(outbox.getMessage().getExternalMessageId());
+    }
+
+    @Test
+    void ownerSchedulesARetry() {
+        assertFalse(queue.markFailed(1L, "node-a", 2, "timeout"));
+
+        assertEquals(OutboxStatus.PENDING, outbox.getStatus());
+        assertNotNull(outbox.getNextAttemptAt());
+        assertEquals("timeout", outbox.getLastError());
+    }
+}
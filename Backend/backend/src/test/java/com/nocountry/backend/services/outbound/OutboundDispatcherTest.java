@@ -0,0 +1,84 @@
+package com.nocountry.backend.services.outbound;
+
+import com.nocountry.backend.enums.Channel;
+import com.nocountry.backend.enums.OutboundPriority;
+import com.nocountry.backend.exceptions.OutboundBackpressureException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link OutboundDispatcher} with low email rates so ordering and
+ * backpressure show up within a few hundred milliseconds.
+ */
+class OutboundDispatcherTest {
+
+    private OutboundDispatcher dispatcher;
+
+    @AfterEach
+    void stop() {
+        if (dispatcher != null) {
+            dispatcher.shutdown();
+        }
+    }
+
+    private OutboundDispatcher dispatcher(double emailRate, double emailBurst, long interactiveMaxWaitMs) {
+        return new OutboundDispatcher(new SimpleMeterRegistry(), 20, 20, emailRate, emailBurst,
+                10, 10, 10, interactiveMaxWaitMs, 30_000, 30_000);
+    }
+
+    @Test
+    void higherPriorityWaitingSendGoesFirst() throws Exception {
+        dispatcher = dispatcher(2, 1, 5_000);
+        // Vacía el bucket: lo siguiente espera ~500 ms al próximo token
+        dispatcher.acquire(Channel.EMAIL, OutboundPriority.INTERACTIVE, 1);
+
+        List<OutboundPriority> granted = new CopyOnWriteArrayList<>();
+        CompletableFuture<Void> bulk = CompletableFuture.runAsync(() -> dispatcher.execute(
+                Channel.EMAIL, OutboundPriority.BULK, () -> granted.add(OutboundPriority.BULK)));
+        TimeUnit.MILLISECONDS.sleep(50);
+        CompletableFuture<Void> interactive = CompletableFuture.runAsync(() -> dispatcher.execute(
+                Channel.EMAIL, OutboundPriority.INTERACTIVE, () -> granted.add(OutboundPriority.INTERACTIVE)));
+
+        CompletableFuture.allOf(bulk, interactive).get(5, TimeUnit.SECONDS);
+        assertEquals(List.of(OutboundPriority.INTERACTIVE, OutboundPriority.BULK), granted);
+    }
+
+    @Test
+    void sendIsRejectedAfterItsMaxWait() {
+        dispatcher = dispatcher(0.5, 1, 200);
+        dispatcher.acquire(Channel.EMAIL, OutboundPriority.INTERACTIVE, 1);
+
+        long start = System.nanoTime();
+        OutboundBackpressureException e = assertThrows(OutboundBackpressureException.class,
+                () -> dispatcher.acquire(Channel.EMAIL, OutboundPriority.INTERACTIVE, 1));
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertEquals(OutboundPriority.INTERACTIVE, e.getPriority());
+        assertTrue(waitedMs >= 150 && waitedMs < 1_500, "waited " + waitedMs + " ms");
+    }
+
+    @Test
+    void bulkBatchLargerThanBurstDoesNotStarveInteractiveSends() throws Exception {
+        dispatcher = dispatcher(10, 2, 1_000);
+        // 20 tokens a 10/s: ~2 s en tajadas de 2
+        CompletableFuture<Void> bulk = CompletableFuture.runAsync(
+                () -> dispatcher.acquire(Channel.EMAIL, OutboundPriority.BULK, 20));
+        TimeUnit.MILLISECONDS.sleep(300);
+
+        long start = System.nanoTime();
+        dispatcher.acquire(Channel.EMAIL, OutboundPriority.INTERACTIVE, 1);
+        long waitedMs = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+
+        assertTrue(waitedMs < 600, "interactive send waited " + waitedMs + " ms");
+        assertFalse(bulk.isDone());
+        bulk.get(5, TimeUnit.SECONDS);
+    }
+}
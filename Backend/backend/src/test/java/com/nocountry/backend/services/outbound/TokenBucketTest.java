@@ -0,0 +1,59 @@
+package com.nocountry.backend.services.outbound;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives {@link TokenBucket} with a manual clock.
+ */
+class TokenBucketTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    private final AtomicLong clock = new AtomicLong(1_000);
+
+    @Test
+    void startsFullAndRefillsAtTheConfiguredRate() {
+        TokenBucket bucket = new TokenBucket(5, 10, clock::get);
+        assertEquals(0, bucket.nanosUntilAvailable(10));
+
+        bucket.consume(10);
+        assertEquals(SECOND / 5, bucket.nanosUntilAvailable(1));
+
+        clock.addAndGet(SECOND);
+        assertEquals(0, bucket.nanosUntilAvailable(5));
+        assertEquals(SECOND / 5, bucket.nanosUntilAvailable(6));
+    }
+
+    @Test
+    void refillIsCappedAtCapacity() {
+        TokenBucket bucket = new TokenBucket(5, 10, clock::get);
+        bucket.consume(10);
+        clock.addAndGet(60 * SECOND);
+
+        bucket.consume(10);
+        assertEquals(SECOND / 5, bucket.nanosUntilAvailable(1));
+    }
+
+    @Test
+    void debtIsPaidBackBeforeTheNextSend() {
+        TokenBucket bucket = new TokenBucket(5, 10, clock::get);
+        bucket.consume(15);
+
+        // 5 de deuda más 1 token: 6 tokens a 5/s
+        assertEquals(6 * SECOND / 5, bucket.nanosUntilAvailable(1));
+        clock.addAndGet(SECOND);
+        assertEquals(SECOND / 5, bucket.nanosUntilAvailable(1));
+    }
+
+    @Test
+    void requestsAboveCapacityOnlyWaitForAFullBucket() {
+        TokenBucket bucket = new TokenBucket(5, 10, clock::get);
+        bucket.consume(10);
+        assertEquals(2 * SECOND, bucket.nanosUntilAvailable(50));
+    }
+}
@@ -0,0 +1,109 @@
+package com.nocountry.backend.services.queue;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedDeque;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.LongStream;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Drives {@link LeasedQueueDispatcher#drain} with a manual executor.
+ */
+class LeasedQueueDispatcherTest {
+
+    private final Deque<Long> pending = new ConcurrentLinkedDeque<>(LongStream.rangeClosed(1, 10).boxed().toList());
+    private final List<Integer> claimLimits = new CopyOnWriteArrayList<>();
+    private final List<Long> processed = new CopyOnWriteArrayList<>();
+    private final Deque<Runnable> tasks = new ConcurrentLinkedDeque<>();
+
+    private List<Long> claim(String workerId, int limit, Duration lease) {
+        claimLimits.add(limit);
+        List<Long> ids = new ArrayList<>();
+        while (ids.size() < limit && !pending.isEmpty()) {
+            ids.add(pending.poll());
+        }
+        return ids;
+    }
+
+    private void awaitClaims(int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5000;
+        while (claimLimits.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(count, claimLimits.size());
+    }
+
+    @Test
+    void neverClaimsMoreThanIdleWorkers() {
+        LeasedQueueDispatcher dispatcher = new LeasedQueueDispatcher("test", this::claim, processed::add,
+                tasks::add, 3, 20, 1000, Duration.ofMinutes(1));
+
+        dispatcher.drain();
+        assertEquals(List.of(3), claimLimits);
+        assertEquals(3, tasks.size());
+
+        // Sin workers libres no se vuelve a reclamar
+        dispatcher.drain();
+        assertEquals(List.of(3), claimLimits);
+
+        tasks.poll().run();
+        dispatcher.drain();
+        assertEquals(List.of(3, 1), claimLimits);
+        assertEquals(List.of(1L), processed);
+    }
+
+    @Test
+    void drainsTheBacklogAsWorkersFreeUp() {
+        LeasedQueueDispatcher dispatcher = new LeasedQueueDispatcher("test", this::claim, processed::add,
+                tasks::add, 4, 20, 1000, Duration.ofMinutes(1));
+
+        dispatcher.drain();
+        while (!tasks.isEmpty()) {
+            tasks.poll().run();
+            dispatcher.drain();
+        }
+        assertEquals(LongStream.rangeClosed(1, 10).boxed().toList(), processed);
+    }
+
+    @Test
+    void finishingWorkerWakesTheDispatcherWhenThePoolWasSaturated() throws InterruptedException {
+        // Poll de respaldo largo: solo el worker que termina puede provocar el segundo reclamo
+        LeasedQueueDispatcher dispatcher = new LeasedQueueDispatcher("test", this::claim, processed::add,
+                tasks::add, 1, 20, 60_000, Duration.ofMinutes(1));
+        dispatcher.start();
+        try {
+            dispatcher.wakeUp();
+            awaitClaims(1);
+            // Otra fila vence con el único worker ocupado: no hay nada que reclamar todavía
+            dispatcher.wakeUp();
+            Thread.sleep(100);
+            assertEquals(1, claimLimits.size());
+
+            tasks.poll().run();
+            awaitClaims(2);
+            assertEquals(List.of(1L), processed);
+        } finally {
+            dispatcher.stop();
+        }
+    }
+
+    @Test
+    void rejectedTaskReleasesItsWorker() {
+        LeasedQueueDispatcher dispatcher = new LeasedQueueDispatcher("test", this::claim, processed::add,
+                task -> {
+                    throw new RejectedExecutionException("full");
+                }, 2, 20, 1000, Duration.ofMinutes(1));
+
+        // Cada rechazo devuelve su worker: se siguen reclamando lotes completos
+        dispatcher.drain();
+        assertEquals(List.of(2, 2, 2, 2, 2, 2), claimLimits);
+        assertTrue(processed.isEmpty());
+    }
+}
@@ -0,0 +1,97 @@
+package com.nocountry.backend.services.template;
+
+import com.nocountry.backend.entity.CrmLead;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old chained String.replace rendering with a precompiled
+ * {@link CompiledTemplate} on a ~50 KB HTML body.
+ *
+ * Run with: mvn test-compile exec:java -Dexec.classpathScope=test
+ *           -Dexec.mainClass=com.nocountry.backend.services.template.TemplateRenderBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TemplateRenderBenchmark {
+
+    private String source;
+    private CrmLead lead;
+    private Map<String, String> vars;
+    private CompiledTemplate compiled;
+    private VariableResolver resolver;
+
+    @Setup
+    public void setUp() {
+        StringBuilder html = new StringBuilder("<html><body>");
+        int block = 0;
+        while (html.length() < 50 * 1024) {
+            html.append("<p style='font-family: Arial, sans-serif;'>Hola {{name}}, bloque ").append(block++)
+                    .append(": escribinos a {{company.email}} o respondé este correo a {{email}}. ")
+                    .append("Tu código de cliente es {{customer.code}}.</p>");
+        }
+        html.append("</body></html>");
+        source = html.toString();
+
+        lead = CrmLead.builder().name("Ana Pérez").email("ana@example.com").phone("5491100000000").build();
+        vars = new LinkedHashMap<>();
+        vars.put("company.email", "ventas@example.com");
+        vars.put("customer.code", "AC-1029");
+
+        compiled = CompiledTemplate.parse(source);
+        resolver = VariableResolver.lead(lead).then(VariableResolver.map(vars));
+    }
+
+    @Benchmark
+    public String chainedReplace() {
+        String out = source;
+        out = out.replace("{{name}}", safe(lead.getName()));
+        out = out.replace("{{lead.name}}", safe(lead.getName()));
+        out = out.replace("{{email}}", safe(lead.getEmail()));
+        out = out.replace("{{lead.email}}", safe(lead.getEmail()));
+        out = out.replace("{{phone}}", safe(lead.getPhone()));
+        for (Map.Entry<String, String> e : vars.entrySet()) {
+            out = out.replace("{{" + e.getKey() + "}}", safe(e.getValue()));
+        }
+        return out;
+    }
+
+    @Benchmark
+    public String precompiledRender() {
+        return compiled.render(resolver);
+    }
+
+    @Benchmark
+    public String parseAndRender() {
+        return CompiledTemplate.parse(source).render(resolver);
+    }
+
+    private static String safe(Object o) {
+        return o == null ? "" : String.valueOf(o);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder()
+                .include(TemplateRenderBenchmark.class.getSimpleName())
+                .build()).run();
+    }
+}
@@ -0,0 +1,49 @@
+package com.nocountry.backend.services.whatsapp;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks the guarantees {@link InboundMessageDeduplicator} relies on.
+ */
+class BloomFilterTest {
+
+    private static final int EXPECTED = 20_000;
+
+    @Test
+    void neverReturnsFalseForAnAddedValue() {
+        BloomFilter filter = new BloomFilter(EXPECTED, 0.01);
+        for (int i = 0; i < EXPECTED; i++) {
+            filter.add("wamid.HBgL" + i);
+        }
+        for (int i = 0; i < EXPECTED; i++) {
+            assertTrue(filter.mightContain("wamid.HBgL" + i), "false negative for id " + i);
+        }
+    }
+
+    @Test
+    void keepsFalsePositivesNearTheConfiguredRateWhenFull() {
+        BloomFilter filter = new BloomFilter(EXPECTED, 0.01);
+        for (int i = 0; i < EXPECTED; i++) {
+            filter.add("wamid.HBgL" + i);
+        }
+
+        int falsePositives = 0;
+        int probes = 100_000;
+        for (int i = 0; i < probes; i++) {
+            if (filter.mightContain("wamid.other" + i)) {
+                falsePositives++;
+            }
+        }
+        double rate = (double) falsePositives / probes;
+        assertTrue(rate < 0.02, "false-positive rate " + rate);
+    }
+
+    @Test
+    void emptyFilterContainsNothing() {
+        BloomFilter filter = new BloomFilter(EXPECTED, 0.01);
+        assertFalse(filter.mightContain("wamid.HBgL1"));
+        assertFalse(filter.mightContain(""));
+    }
+}
@@ -0,0 +1,86 @@
+package com.nocountry.backend.services.whatsapp;
+
+import com.nocountry.backend.services.whatsapp.ContactRouteCache.ContactRoute;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks when {@link ContactRouteCache} adds and evicts routes.
+ */
+class ContactRouteCacheTest {
+
+    private final ContactRouteCache cache = new ContactRouteCache(new SimpleMeterRegistry(), 100);
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void phoneChangeEvictsTheOldAndNewNumbers() {
+        cache.putAfterCommit("+541123456789", 7L, 70L);
+        cache.putAfterCommit("+541199999999", 8L, 80L);
+
+        // Lo que hace CrmLeadService.update al cambiar el teléfono del lead 7
+        cache.evictLeadAfterCommit(7L);
+        cache.evictPhoneAfterCommit("+541199999999");
+
+        assertNull(cache.get("+541123456789"));
+        assertNull(cache.get("+541199999999"));
+    }
+
+    @Test
+    void evictionWaitsForCommit() {
+        cache.putAfterCommit("+541123456789", 7L, 70L);
+
+        TransactionSynchronizationManager.initSynchronization();
+        cache.evictLeadAfterCommit(7L);
+        // Antes del commit otro hilo todavía ve la ruta anterior
+        assertEquals(new ContactRoute(7L, 70L), cache.get("+541123456789"));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        assertNull(cache.get("+541123456789"));
+    }
+
+    @Test
+    void routeIsOnlyAddedOnCommit() {
+        TransactionSynchronizationManager.initSynchronization();
+        cache.putAfterCommit("+541123456789", 7L, 70L);
+        assertNull(cache.get("+541123456789"));
+
+        // Rollback: nunca se llama afterCommit
+        TransactionSynchronizationManager.clearSynchronization();
+        assertNull(cache.get("+541123456789"));
+    }
+
+    @Test
+    void deletedConversationIsEvicted() {
+        cache.putAfterCommit("+541123456789", 7L, 70L);
+        cache.putAfterCommit("+541122222222", 9L, 90L);
+
+        cache.evictConversationAfterCommit(70L);
+
+        assertNull(cache.get("+541123456789"));
+        assertEquals(new ContactRoute(9L, 90L), cache.get("+541122222222"));
+    }
+
+    @Test
+    void leastRecentlyUsedRouteIsDroppedWhenFull() {
+        ContactRouteCache small = new ContactRouteCache(new SimpleMeterRegistry(), 2);
+        small.putAfterCommit("+1", 1L, 10L);
+        small.putAfterCommit("+2", 2L, 20L);
+        small.get("+1");
+        small.putAfterCommit("+3", 3L, 30L);
+
+        assertNotNull(small.get("+1"));
+        assertNull(small.get("+2"));
+        assertNotNull(small.get("+3"));
+    }
+}
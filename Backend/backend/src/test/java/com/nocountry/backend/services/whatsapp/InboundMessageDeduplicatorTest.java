@@ -0,0 +1,127 @@
+package com.nocountry.backend.services.whatsapp;
+
+import com.nocountry.backend.enums.Direction;
+import com.nocountry.backend.repository.MessageRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Runs {@link InboundMessageDeduplicator} over a mocked message repository.
+ */
+class InboundMessageDeduplicatorTest {
+
+    private final MessageRepository messageRepository = mock(MessageRepository.class);
+
+    @Test
+    void newIdIsAcceptedWithoutQueryingTheDatabase() {
+        InboundMessageDeduplicator dedup = dedup(100, 1000);
+
+        assertTrue(dedup.tryBegin("wamid.1"));
+        verify(messageRepository, never()).existsByExternalMessageId(any());
+    }
+
+    @Test
+    void completedIdIsRejectedFromMemory() {
+        InboundMessageDeduplicator dedup = dedup(100, 1000);
+        assertTrue(dedup.tryBegin("wamid.1"));
+        dedup.complete("wamid.1");
+
+        assertFalse(dedup.tryBegin("wamid.1"));
+        verify(messageRepository, never()).existsByExternalMessageId(any());
+    }
+
+    @Test
+    void concurrentDeliveryIsRejectedUntilAbandoned() {
+        InboundMessageDeduplicator dedup = dedup(100, 1000);
+        assertTrue(dedup.tryBegin("wamid.1"));
+        assertFalse(dedup.tryBegin("wamid.1"));
+
+        dedup.abandon("wamid.1");
+        assertTrue(dedup.tryBegin("wamid.1"));
+    }
+
+    @Test
+    void warmUpRejectsRecentIdsAfterRestart() {
+        when(messageRepository.findRecentExternalIds(eq(Direction.INBOUND), any(), any()))
+                .thenReturn(List.of("wamid.1", "wamid.2"));
+        InboundMessageDeduplicator dedup = dedup(100, 1000);
+
+        dedup.warmUp();
+
+        assertFalse(dedup.tryBegin("wamid.1"));
+        assertFalse(dedup.tryBegin("wamid.2"));
+        assertTrue(dedup.tryBegin("wamid.3"));
+        verify(messageRepository, never()).existsByExternalMessageId(any());
+    }
+
+    @Test
+    void filterHitOutsideTheLruIsConfirmedInTheDatabase() {
+        InboundMessageDeduplicator dedup = dedup(1, 1000);
+        seen(dedup, "wamid.1");
+        // Desplaza wamid.1 del LRU: solo queda en el filtro
+        seen(dedup, "wamid.2");
+
+        when(messageRepository.existsByExternalMessageId("wamid.1")).thenReturn(true);
+        assertFalse(dedup.tryBegin("wamid.1"));
+        verify(messageRepository).existsByExternalMessageId("wamid.1");
+
+        // Confirmado como duplicado: vuelve al LRU y no se consulta de nuevo
+        assertFalse(dedup.tryBegin("wamid.1"));
+        verify(messageRepository, times(1)).existsByExternalMessageId("wamid.1");
+    }
+
+    @Test
+    void filterFalsePositiveIsAcceptedAfterTheDatabaseCheck() {
+        InboundMessageDeduplicator dedup = dedup(1, 1000);
+        seen(dedup, "wamid.1");
+        seen(dedup, "wamid.2");
+
+        // En el filtro pero no en la base (p.ej. falso positivo): se procesa
+        when(messageRepository.existsByExternalMessageId("wamid.1")).thenReturn(false);
+        assertTrue(dedup.tryBegin("wamid.1"));
+        verify(messageRepository).existsByExternalMessageId("wamid.1");
+    }
+
+    @Test
+    void previousGenerationStillAnswersAfterRotation() {
+        InboundMessageDeduplicator dedup = dedup(1, 4);
+        seen(dedup, "wamid.old");
+        for (int i = 0; i < 4; i++) {
+            // La cuarta inserción llena el filtro y lo rota
+            seen(dedup, "wamid.fill" + i);
+        }
+
+        when(messageRepository.existsByExternalMessageId("wamid.old")).thenReturn(true);
+        assertFalse(dedup.tryBegin("wamid.old"));
+        verify(messageRepository).existsByExternalMessageId("wamid.old");
+    }
+
+    @Test
+    void idsOlderThanTwoGenerationsSkipTheDatabase() {
+        InboundMessageDeduplicator dedup = dedup(1, 4);
+        seen(dedup, "wamid.old");
+        for (int i = 0; i < 7; i++) {
+            seen(dedup, "wamid.fill" + i);
+        }
+
+        // Fuera de ambas generaciones: lo frena el índice único, no el filtro
+        assertTrue(dedup.tryBegin("wamid.old"));
+        verify(messageRepository, never()).existsByExternalMessageId("wamid.old");
+    }
+
+    private InboundMessageDeduplicator dedup(int lruSize, int expectedIds) {
+        return new InboundMessageDeduplicator(messageRepository, new SimpleMeterRegistry(), lruSize, expectedIds,
+                0.01, 7);
+    }
+
+    private static void seen(InboundMessageDeduplicator dedup, String id) {
+        assertTrue(dedup.tryBegin(id));
+        dedup.complete(id);
+    }
+}
@@ -0,0 +1,67 @@
+package com.nocountry.backend.services.whatsapp;
+
+import com.nocountry.backend.exceptions.WebhookPayloadTooLargeException;
+import com.nocountry.backend.exceptions.WebhookSignatureException;
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.io.ByteArrayInputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HexFormat;
+import java.util.Optional;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Checks signature verification and the body size cap of {@link WebhookSignatureVerifier}.
+ */
+class WebhookSignatureVerifierTest {
+
+    private final WhatsAppConfigService configService = mock(WhatsAppConfigService.class);
+
+    private WebhookSignatureVerifier verifier(String secret, int maxBodyBytes) {
+        when(configService.getWhatsAppCredentials()).thenReturn(Optional.empty());
+        return new WebhookSignatureVerifier(configService, secret, false, maxBodyBytes);
+    }
+
+    private static String sign(String secret, byte[] body) throws Exception {
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret.getBytes(StandardCharsets.UTF_8), "HmacSHA256"));
+        return "sha256=" + HexFormat.of().formatHex(mac.doFinal(body));
+    }
+
+    @Test
+    void validSignatureReturnsTheBody() throws Exception {
+        byte[] body = "{\"entry\":[]}".getBytes(StandardCharsets.UTF_8);
+        byte[] read = verifier("app-secret", 1024)
+                .readVerified(new ByteArrayInputStream(body), sign("app-secret", body), body.length);
+        assertArrayEquals(body, read);
+    }
+
+    @Test
+    void wrongSignatureIsRejected() throws Exception {
+        byte[] body = "{\"entry\":[]}".getBytes(StandardCharsets.UTF_8);
+        assertThrows(WebhookSignatureException.class, () -> verifier("app-secret", 1024)
+                .readVerified(new ByteArrayInputStream(body), sign("other", body), body.length));
+    }
+
+    @Test
+    void declaredLengthAboveTheCapIsRejectedBeforeReading() {
+        ByteArrayInputStream body = new ByteArrayInputStream(new byte[2048]);
+        assertThrows(WebhookPayloadTooLargeException.class,
+                () -> verifier("", 1024).readVerified(body, null, 2048));
+        assertEquals(2048, body.available());
+    }
+
+    @Test
+    void bodyWithoutLengthStopsAtTheCap() {
+        // Chunked: Content-Length -1
+        ByteArrayInputStream body = new ByteArrayInputStream(new byte[64 * 1024]);
+        assertThrows(WebhookPayloadTooLargeException.class,
+                () -> verifier("", 10_000).readVerified(body, null, -1));
+        assertTrue(body.available() > 40 * 1024, "stopped reading early");
+    }
+}
@@ -0,0 +1,163 @@
+package com.nocountry.backend.services.whatsapp;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.nocountry.backend.exceptions.WhatsAppApiException;
+import com.nocountry.backend.services.whatsapp.WhatsAppConfigService.WhatsAppCredentials;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.client.RestClientResponseException;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Runs {@link WhatsAppGraphClient} against a local stub of the Graph API.
+ */
+class WhatsAppGraphClientTest {
+
+    private HttpServer server;
+    private String baseUrl;
+    private final AtomicInteger messageCalls = new AtomicInteger();
+    private volatile int messageStatus = 200;
+
+    @BeforeEach
+    void startStub() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.createContext("/v18.0/123/messages", exchange -> {
+            messageCalls.incrementAndGet();
+            exchange.getRequestBody().readAllBytes();
+            if (messageStatus == 200) {
+                respond(exchange, 200, "{\"messages\":[{\"id\":\"wamid.TEST\"}]}");
+            } else {
+                respond(exchange, messageStatus, "{\"error\":{\"message\":\"stub\"}}");
+            }
+        });
+        server.createContext("/v18.0/media-1", exchange -> respond(exchange, 200,
+                "{\"url\":\"" + baseUrl + "/cdn/media-1\",\"mime_type\":\"image/jpeg\"}"));
+        server.createContext("/cdn/media-1", exchange -> respond(exchange, 200, "binary-bytes"));
+        server.createContext("/v18.0/media-down", exchange -> respond(exchange, 500, "{}"));
+        server.createContext("/v18.0/media-slow", exchange -> {
+            try {
+                Thread.sleep(1000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            respond(exchange, 200, "{\"url\":\"" + baseUrl + "/cdn/media-1\"}");
+        });
+        server.start();
+        baseUrl = "http://127.0.0.1:" + server.getAddress().getPort();
+    }
+
+    @AfterEach
+    void stopStub() {
+        server.stop(0);
+    }
+
+    @Test
+    void postMessageReturnsParsedResponse() {
+        WhatsAppGraphClient client = newClient(5);
+
+        Map<String, Object> response = client.postMessage(credentials(), Map.of("to", "5491100000000"));
+
+        assertNotNull(response.get("messages"));
+        assertEquals(1, messageCalls.get());
+    }
+
+    @Test
+    void mediaUrlIsResolvedAndStreamed() throws Exception {
+        WhatsAppGraphClient client = newClient(5);
+
+        String url = client.fetchMediaUrl("media-1", "token");
+        try (InputStream in = client.openMedia(url, "token")) {
+            assertEquals("binary-bytes", new String(in.readAllBytes(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    void circuitOpensAfterConsecutiveServerErrors() {
+        WhatsAppGraphClient client = newClient(2);
+        messageStatus = 503;
+
+        for (int i = 0; i < 2; i++) {
+            assertThrows(RestClientResponseException.class,
+                    () -> client.postMessage(credentials(), Map.of("to", "1")));
+        }
+        assertEquals(CircuitBreaker.State.OPEN, client.circuitState(credentials().baseUrl()));
+
+        // Rejected locally: the stub is not called again
+        assertThrows(WhatsAppApiException.class, () -> client.postMessage(credentials(), Map.of("to", "1")));
+        assertEquals(2, messageCalls.get());
+    }
+
+    @Test
+    void clientErrorsDoNotTripTheCircuit() {
+        WhatsAppGraphClient client = newClient(1);
+        messageStatus = 400;
+
+        assertThrows(RestClientResponseException.class,
+                () -> client.postMessage(credentials(), Map.of("to", "1")));
+        assertEquals(CircuitBreaker.State.CLOSED, client.circuitState(credentials().baseUrl()));
+    }
+
+    @Test
+    void halfOpenProbeClosesCircuitOnSuccess() {
+        long[] now = {0};
+        CircuitBreaker breaker = new CircuitBreaker(1, java.time.Duration.ofSeconds(10), () -> now[0]);
+
+        breaker.onFailure();
+        assertFalse(breaker.tryAcquire());
+
+        now[0] = java.time.Duration.ofSeconds(10).toNanos();
+        assertTrue(breaker.tryAcquire());
+        assertFalse(breaker.tryAcquire(), "only one probe while half-open");
+
+        breaker.onSuccess();
+        assertEquals(CircuitBreaker.State.CLOSED, breaker.state());
+    }
+
+    @Test
+    void interruptedHalfOpenProbeIsReleased() throws Exception {
+        // open-seconds 0: the next call after a failure is already the half-open probe
+        WhatsAppGraphClient client = new WhatsAppGraphClient(new ObjectMapper(), baseUrl + "/v18.0", 1000, 2000,
+                2000, 1, 0);
+        assertThrows(IOException.class, () -> client.fetchMediaUrl("media-down", "token"));
+        assertEquals(CircuitBreaker.State.OPEN, client.circuitState(baseUrl + "/v18.0"));
+
+        Thread.currentThread().interrupt();
+        try {
+            assertThrows(InterruptedException.class, () -> client.fetchMediaUrl("media-slow", "token"));
+        } finally {
+            Thread.interrupted();
+        }
+
+        // Without releasing the probe this would fail fast with "circuit open"
+        assertEquals(baseUrl + "/cdn/media-1", client.fetchMediaUrl("media-1", "token"));
+        assertEquals(CircuitBreaker.State.CLOSED, client.circuitState(baseUrl + "/v18.0"));
+    }
+
+    private WhatsAppGraphClient newClient(int failureThreshold) {
+        return new WhatsAppGraphClient(new ObjectMapper(), baseUrl + "/v18.0", 1000, 2000, 2000,
+                failureThreshold, 60);
+    }
+
+    private WhatsAppCredentials credentials() {
+        return new WhatsAppCredentials("token", baseUrl + "/v18.0/123", "verify", null);
+    }
+
+    private static void respond(HttpExchange exchange, int status, String body) throws IOException {
+        byte[] bytes = body.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().add("Content-Type", "application/json");
+        exchange.sendResponseHeaders(status, bytes.length);
+        exchange.getResponseBody().write(bytes);
+        exchange.close();
+    }
+}
@@ -0,0 +1,161 @@
+package com.nocountry.backend.services.whatsapp;
+
+import com.nocountry.backend.dto.whatsapp.WhatsAppErrorDTO;
+import com.nocountry.backend.dto.whatsapp.WhatsAppStatusDTO;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+import static org.mockito.ArgumentMatchers.*;
+import static org.mockito.Mockito.*;
+
+/**
+ * Checks what {@link WhatsAppStatusCoalescer#flush} writes for a set of receipts.
+ */
+class WhatsAppStatusCoalescerTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private WhatsAppStatusCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        coalescer = new WhatsAppStatusCoalescer(jdbcTemplate, meterRegistry, 5000, 60_000, 1000);
+        // Por defecto cada UPDATE encuentra su mensaje
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), any(int[].class))).thenAnswer(invocation -> {
+            int[] counts = new int[invocation.<List<?>>getArgument(1).size()];
+            Arrays.fill(counts, 1);
+            return counts;
+        });
+    }
+
+    @Test
+    void flushWritesOnlyTheHighestStatusPerMessage() {
+        coalescer.record(status("wamid.A", "read", 1_700_000_300));
+        coalescer.record(status("wamid.A", "sent", 1_700_000_100));
+        coalescer.record(status("wamid.A", "delivered", 1_700_000_200));
+        coalescer.record(status("wamid.B", "sent", 1_700_000_100));
+
+        coalescer.flush();
+
+        List<Object[]> rows = flushedRows(1);
+        assertEquals(2, rows.size());
+        Object[] a = rows.get(0);
+        assertEquals("wamid.A", a[4]);
+        assertEquals("READ", a[0]);
+        assertEquals(at(1_700_000_200), a[2]);
+        assertEquals(at(1_700_000_300), a[3]);
+        // Guarda de la UPDATE: solo reemplaza estados de menor rango que READ
+        assertEquals(5, a[5]);
+
+        Object[] b = rows.get(1);
+        assertEquals("wamid.B", b[4]);
+        assertEquals("SENT", b[0]);
+        assertNull(b[2]);
+        assertEquals(2, b[5]);
+    }
+
+    @Test
+    void lateLowerStatusAfterFlushIsDropped() {
+        coalescer.record(status("wamid.A", "read", 1_700_000_300));
+        coalescer.flush();
+
+        coalescer.record(status("wamid.A", "sent", 1_700_000_100));
+        coalescer.record(status("wamid.A", "delivered", 1_700_000_200));
+        coalescer.flush();
+
+        verify(jdbcTemplate, times(1)).batchUpdate(anyString(), anyList(), any(int[].class));
+        assertEquals(2.0, meterRegistry.counter("whatsapp.status.stale").count());
+    }
+
+    @Test
+    void higherStatusAfterFlushIsWritten() {
+        coalescer.record(status("wamid.A", "delivered", 1_700_000_200));
+        coalescer.flush();
+        coalescer.record(status("wamid.A", "read", 1_700_000_300));
+        coalescer.flush();
+
+        List<Object[]> rows = flushedRows(2);
+        assertEquals("READ", rows.get(0)[0]);
+    }
+
+    @Test
+    void failedReceiptCarriesTheProviderError() {
+        coalescer.record(new WhatsAppStatusDTO("wamid.A", "failed", "1700000100", "5491100000000",
+                List.of(new WhatsAppErrorDTO(131047, "Re-engagement message", null))));
+        coalescer.flush();
+
+        Object[] row = flushedRows(1).get(0);
+        assertEquals("FAILED", row[0]);
+        assertEquals("131047: Re-engagement message", row[1]);
+    }
+
+    @Test
+    void unmatchedReceiptIsRetriedOnTheNextFlush() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), any(int[].class)))
+                .thenReturn(new int[] { 0 })
+                .thenReturn(new int[] { 1 });
+        coalescer.record(status("wamid.A", "sent", 1_700_000_100));
+
+        coalescer.flush();
+        coalescer.flush();
+
+        assertEquals("wamid.A", flushedRows(2).get(0)[4]);
+        // Aplicado: no hay un tercer intento
+        coalescer.flush();
+        verify(jdbcTemplate, times(2)).batchUpdate(anyString(), anyList(), any(int[].class));
+    }
+
+    @Test
+    void failedBatchKeepsTheWindow() {
+        when(jdbcTemplate.batchUpdate(anyString(), anyList(), any(int[].class)))
+                .thenThrow(new DataAccessResourceFailureException("db down"))
+                .thenReturn(new int[] { 1 });
+        coalescer.record(status("wamid.A", "delivered", 1_700_000_200));
+
+        assertThrows(DataAccessResourceFailureException.class, coalescer::flush);
+        coalescer.record(status("wamid.A", "read", 1_700_000_300));
+        coalescer.flush();
+
+        List<Object[]> rows = flushedRows(2);
+        assertEquals(1, rows.size());
+        assertEquals("READ", rows.get(0)[0]);
+    }
+
+    @Test
+    void unsupportedStatusIsIgnored() {
+        coalescer.record(status("wamid.A", "deleted", 1_700_000_100));
+        coalescer.flush();
+
+        verifyNoInteractions(jdbcTemplate);
+    }
+
+    private static WhatsAppStatusDTO status(String id, String status, long epochSeconds) {
+        return new WhatsAppStatusDTO(id, status, Long.toString(epochSeconds), "5491100000000", null);
+    }
+
+    private static Timestamp at(long epochSeconds) {
+        return Timestamp.valueOf(LocalDateTime.ofEpochSecond(epochSeconds, 0, ZoneOffset.UTC));
+    }
+
+    /**
+     * Rows of the last of {@code flushes} batches, ordered by external id.
+     */
+    @SuppressWarnings("unchecked")
+    private List<Object[]> flushedRows(int flushes) {
+        ArgumentCaptor<List<Object[]>> rows = ArgumentCaptor.forClass(List.class);
+        verify(jdbcTemplate, times(flushes)).batchUpdate(anyString(), rows.capture(), any(int[].class));
+        return rows.getValue().stream().sorted(Comparator.comparing(row -> (String) row[4])).toList();
+    }
+}
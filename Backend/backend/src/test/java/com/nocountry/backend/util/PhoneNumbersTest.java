@@ -0,0 +1,62 @@
+package com.nocountry.backend.util;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.CsvSource;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Checks {@link PhoneNumbers#toE164} against the phone_e164 backfill of
+ * {@code V17__crm_lead_phone_e164.sql}, so leads saved before and after the
+ * migration get the same key.
+ */
+class PhoneNumbersTest {
+
+    @ParameterizedTest(name = "[{index}] \"{0}\" -> {1}")
+    @CsvSource(delimiter = '|', nullValues = "NULL", textBlock = """
+            +54 9 11 2345-6789      | +541123456789
+            5491123456789           | +541123456789
+            0054 9 11 2345 6789     | +541123456789
+            +54 9 (351) 555-12-34   | +543515551234
+            +54 11 2345-6789        | +541123456789
+            549 11 1234             | +549111234
+            +1 (415) 555-0132       | +14155550132
+            001 415.555.0132        | +14155550132
+            0034 612 34 56 78       | +34612345678
+            11 2345-6789            | +1123456789
+            011 4567-8901           | +01145678901
+            15-2345-6789            | +1523456789
+            123456789012345         | +123456789012345
+            +1234567890123456       | NULL
+            00                      | NULL
+            0000                    | +00
+            ''                      | NULL
+            '   '                   | NULL
+            sin teléfono            | NULL
+            NULL                    | NULL
+            """)
+    void matchesTheV17Backfill(String phone, String expected) {
+        assertEquals(expected, PhoneNumbers.toE164(phone));
+        assertEquals(expected, v17Backfill(phone));
+    }
+
+    /**
+     * The UPDATE statements of V17 in order (MySQL SUBSTRING is 1-based).
+     */
+    private static String v17Backfill(String phone) {
+        if (phone == null) {
+            return null;
+        }
+        String e164 = phone.replaceAll("[^0-9]", "");
+        if (e164.startsWith("00")) {
+            e164 = e164.substring(2);
+        }
+        if (e164.startsWith("549") && e164.length() >= 13) {
+            e164 = "54" + e164.substring(3);
+        }
+        if (e164.isEmpty() || e164.length() > 15) {
+            return null;
+        }
+        return "+" + e164;
+    }
+}
@@ -125,6 +125,11 @@ export default function Message() {
       }
       // Siempre recargar lista de conversaciones para actualizar último mensaje
       loadConversations(false);
+    } else if (notification.type === 'MESSAGE_UPDATED') {
+      // La media de un mensaje terminó de descargarse (o falló)
+      if (selectedConversationRef.current?.id === notification.conversationId) {
+        loadMessages(notification.conversationId);
+      }
     }
   }, []);
 
@@ -738,11 +743,25 @@ export default function Message() {
                                     isOwn={isOwn}
                                   />
                                 ) : (
-                                  <p className="whitespace-pre-wrap break-words">{message.content}</p>
+                                  <p className="whitespace-pre-wrap break-words">
+                                    {message.content}
+                                    {message.mediaStatus === 'PENDING' && (
+                                      <span className="block text-xs text-slate-400 italic">Descargando archivo...</span>
+                                    )}
+                                    {message.mediaStatus === 'FAILED' && (
+                                      <span className="block text-xs text-red-400 italic">No se pudo descargar el archivo</span>
+                                    )}
+                                  </p>
                                 )}
                               </div>
                               <p className={`text-[10px] text-slate-400 mt-1 ${isOwn ? 'text-right mr-1' : 'text-left ml-1'}`}>
                                 {formatMessageTime(message.sentAt)}
+                                {message.deliveryStatus === 'QUEUED' && ' · Enviando...'}
+                                {message.deliveryStatus === 'DELIVERED' && ' · Entregado'}
+                                {message.deliveryStatus === 'READ' && ' · Leído'}
+                                {message.deliveryStatus === 'FAILED' && (
+                                  <span className="text-red-400" title={message.deliveryError}> · Error al enviar</span>
+                                )}
                               </p>
                             </div>
                             {/* Reply button for incoming messages (on the right) */}
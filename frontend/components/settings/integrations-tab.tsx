@@ -21,11 +21,13 @@ export function IntegrationsTab() {
   const [whatsappConfigId, setWhatsappConfigId] = useState<number | null>(null);
   const [showApiToken, setShowApiToken] = useState(false);
   const [showVerifyToken, setShowVerifyToken] = useState(false);
+  const [showAppSecret, setShowAppSecret] = useState(false);
 
   const [whatsappForm, setWhatsappForm] = useState<WhatsAppCredentials>({
     apiToken: "",
     baseUrl: "",
     verifyToken: "",
+    appSecret: "",
   });
 
   const [whatsappBackup, setWhatsappBackup] = useState<WhatsAppCredentials>(whatsappForm);
@@ -155,7 +157,7 @@ export function IntegrationsTab() {
     try {
       await integrationConfigService.delete(whatsappConfigId);
       setWhatsappConfigId(null);
-      setWhatsappForm({ apiToken: "", baseUrl: "", verifyToken: "" });
+      setWhatsappForm({ apiToken: "", baseUrl: "", verifyToken: "", appSecret: "" });
       toast.success("WhatsApp desconectado", {
         description: "Se eliminó la configuración de WhatsApp Cloud API."
       });
@@ -428,6 +430,31 @@ export function IntegrationsTab() {
                 </button>
               </div>
             </div>
+
+            {/* App Secret */}
+            <div className="space-y-2">
+              <Label>App Secret (opcional)</Label>
+              <p className="text-xs text-muted-foreground">
+                Clave secreta de la app de Meta para validar la firma X-Hub-Signature-256 de cada webhook
+              </p>
+              <div className="relative">
+                <Input
+                  type={showAppSecret ? "text" : "password"}
+                  value={whatsappForm.appSecret ?? ""}
+                  readOnly={!editWhatsApp}
+                  onChange={(e) => setWhatsappForm({ ...whatsappForm, appSecret: e.target.value })}
+                  className={!editWhatsApp ? "bg-gray-50 pr-10" : "pr-10"}
+                  placeholder="a1b2c3d4e5f6..."
+                />
+                <button
+                  type="button"
+                  onClick={() => setShowAppSecret((p) => !p)}
+                  className="absolute right-2 top-1/2 -translate-y-1/2 text-gray-600"
+                >
+                  {showAppSecret ? <EyeOff size={18} /> : <Eye size={18} />}
+                </button>
+              </div>
+            </div>
           </div>
 
           {/* Disconnect Button */}
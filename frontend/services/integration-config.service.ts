@@ -13,6 +13,7 @@ export interface WhatsAppCredentials {
     apiToken: string;
     baseUrl: string;
     verifyToken: string;
+    appSecret?: string;
 }
 
 export interface EmailCredentials {
@@ -21,7 +21,14 @@ export interface MessageDTO {
     mediaFileName?: string;
     mediaType?: string;
     mediaCaption?: string;
+    // Media INBOUND descargada en segundo plano
+    mediaStatus?: 'PENDING' | 'READY' | 'FAILED';
     sentAt: string;
+    // Mensajes OUTBOUND entregados por el outbox en segundo plano; DELIVERED/READ vienen de los recibos de WhatsApp
+    deliveryStatus?: 'QUEUED' | 'SENT' | 'FAILED' | 'DELIVERED' | 'READ';
+    deliveryError?: string;
+    deliveredAt?: string;
+    readAt?: string;
     externalMessageId?: string;
     senderLead?: {
         id: number;
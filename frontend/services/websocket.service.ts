@@ -4,7 +4,7 @@ import SockJS from 'sockjs-client';
 const WS_URL = process.env.NEXT_PUBLIC_API_URL?.replace('/api', '') || 'http://localhost:8080';
 
 export interface WebSocketMessage {
-    type: 'NEW_MESSAGE' | 'MESSAGE_SENT' | 'CONVERSATION_UPDATED';
+    type: 'NEW_MESSAGE' | 'MESSAGE_SENT' | 'CONVERSATION_UPDATED' | 'MESSAGE_UPDATED';
     conversationId: number;
     message?: unknown;
     conversation?: unknown;